@@ -0,0 +1,35 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.Base62;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class Base62Benchmark {
+    private final byte[] digest = new byte[32];
+    private final char[] out = new char[10];
+    private long value;
+
+    @Setup
+    public void setup() {
+        ThreadLocalRandom.current().nextBytes(digest);
+        value = ThreadLocalRandom.current().nextLong();
+    }
+
+    @Benchmark
+    public String bigInteger256() {
+        return Base62.encode(digest);
+    }
+
+    @Benchmark
+    public char[] long10() {
+        Base62.encode(value, 10, out, 0);
+        return out;
+    }
+}
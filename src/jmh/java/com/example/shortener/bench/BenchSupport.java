@@ -0,0 +1,41 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.CodeAllocator;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.SequentialCodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.infra.ServiceMetrics;
+
+import java.time.Duration;
+import java.util.UUID;
+
+final class BenchSupport {
+    static final String URL = "https://example.com/some/path?q=1";
+    static final Duration TTL = Duration.ofDays(1);
+
+    private BenchSupport() {}
+
+    static CodeAllocator allocator(String strategy, int codeLength) {
+        return switch (strategy) {
+            case "hash" -> new CodeGenerator(codeLength);
+            case "sequential" -> new SequentialCodeGenerator(codeLength, 0, 1, 42L);
+            default -> throw new IllegalArgumentException(strategy);
+        };
+    }
+
+    // с метриками, как в приложении по умолчанию (app.metrics=true)
+    static ShortenerService service(LinkRepository repo, CodeAllocator gen) {
+        return ShortenerService.builder(repo, gen, "clck.ru", TTL).metrics(new ServiceMetrics()).build();
+    }
+
+    static String[] fill(ShortenerService service, int links, int owners, int maxClicks) {
+        UUID[] us = new UUID[Math.max(1, owners)];
+        for (int i = 0; i < us.length; i++) us[i] = UUID.randomUUID();
+        String[] codes = new String[links];
+        for (int i = 0; i < links; i++) {
+            codes[i] = service.create(us[i % us.length], URL + "&n=" + i, maxClicks).code();
+        }
+        return codes;
+    }
+}
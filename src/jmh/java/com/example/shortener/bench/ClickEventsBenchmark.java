@@ -0,0 +1,56 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.ClickAnalytics;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// задержка open (в том числе p99) без событий переходов, с фоновым агрегатором и при переполненном
+// буфере (агрегатор не запущен — каждое событие отбрасывается)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClickEventsBenchmark {
+    @Param({"off", "on", "full"})
+    public String clicks;
+
+    private ClickAnalytics analytics;
+    private ShortenerService service;
+    private String[] codes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        analytics = switch (clicks) {
+            case "on" -> new ClickAnalytics(1 << 16, 100_000, true);
+            case "full" -> new ClickAnalytics(2, 100_000, false);
+            default -> null;
+        };
+        service = ShortenerService.builder(new InMemoryLinkRepository(), BenchSupport.allocator("sequential", 8), "clck.ru", BenchSupport.TTL)
+                .analytics(analytics)
+                .build();
+        codes = BenchSupport.fill(service, 10_000, 100, Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (analytics != null) analytics.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object open1() {
+        return service.open(codes[ThreadLocalRandom.current().nextInt(codes.length)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object open4() {
+        return service.open(codes[ThreadLocalRandom.current().nextInt(codes.length)]);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.CachedClock;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.TimeSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// часы сервиса: чтение TimeSource (system — System.currentTimeMillis(), cached — CachedClock с шагом 1 мс),
+// для сравнения Instant.now(), как до TimeSource, и open горячего кода без метрик, где часы — заметная доля
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClockBenchmark {
+    @Param({"system", "cached"})
+    public String clock;
+
+    private TimeSource time;
+    private ShortenerService service;
+    private String hot;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        time = clock.equals("cached") ? new CachedClock(Duration.ofMillis(1)) : TimeSource.SYSTEM;
+        service = ShortenerService.builder(new InMemoryLinkRepository(), BenchSupport.allocator("sequential", 8), "clck.ru", BenchSupport.TTL)
+                .clock(time)
+                .build();
+        hot = BenchSupport.fill(service, 1000, 10, Integer.MAX_VALUE)[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (time instanceof CachedClock c) c.close();
+    }
+
+    @Benchmark
+    public long millis() {
+        return time.millis();
+    }
+
+    @Benchmark
+    public Instant instantNow() {
+        return Instant.now();
+    }
+
+    @Benchmark
+    public Object open() {
+        return service.open(hot);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.Base62;
+import com.example.shortener.core.service.CodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// текущий генератор против прежней реализации (SHA-256 на каждый вызов, UUID.toString, BigInteger-Base62);
+// аллокации видно с -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CodeGeneratorBenchmark {
+    @Param({"8", "16"})
+    public int codeLength;
+
+    private CodeGenerator fast;
+    private LegacyCodeGenerator legacy;
+    private final UUID user = UUID.randomUUID();
+    private final String url = "https://example.com/some/fairly/long/path?with=query&and=more";
+
+    @Setup
+    public void setup() {
+        fast = new CodeGenerator(codeLength);
+        legacy = new LegacyCodeGenerator(codeLength);
+    }
+
+    @Benchmark
+    public String fast() {
+        return fast.generate(user, url);
+    }
+
+    @Benchmark
+    public String legacy() {
+        return legacy.generate(user, url);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String fast4() {
+        return fast.generate(user, url);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String legacy4() {
+        return legacy.generate(user, url);
+    }
+
+    static final class LegacyCodeGenerator {
+        private final SecureRandom rnd = new SecureRandom();
+        private final int codeLength;
+
+        LegacyCodeGenerator(int codeLength) {
+            this.codeLength = codeLength;
+        }
+
+        String generate(UUID userId, String url) {
+            try {
+                byte[] randNum = new byte[16];
+                rnd.nextBytes(randNum);
+
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                md.update(userId.toString().getBytes(StandardCharsets.UTF_8));
+                md.update((byte) '|');
+                md.update(url.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) '|');
+                md.update(randNum);
+
+                String base62 = Base62.encode(md.digest());
+                if (base62.length() < codeLength) {
+                    base62 = base62 + Base62.encode(md.digest(base62.getBytes(StandardCharsets.UTF_8)));
+                }
+                return base62.substring(0, codeLength);
+            } catch (Exception e) {
+                throw new RuntimeException("Cannot generate code", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.CodePool;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// распределение задержки create (p50/p99) с пулом кодов и без. work — «прочая работа» запроса в токенах
+// Blackhole.consumeCPU перед create (входит в замер): на одном ядре фоновому потоку пула нужно время,
+// чтобы успевать дозаполнять очередь; при work = 0 пул там быстро пустеет и create уходит на запасной путь
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodePoolBenchmark {
+    @Param({"off", "on"})
+    public String pool;
+
+    @Param({"0", "5000"})
+    public long work;
+
+    private CodePool codePool;
+    private ShortenerService service;
+    private final UUID user = UUID.randomUUID();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var repo = new InMemoryLinkRepository();
+        var gen = new CodeGenerator(8);
+        if (pool.equals("on")) {
+            codePool = new CodePool(gen, repo, 4096, 1024, 1);
+            codePool.fill();
+        }
+        service = BenchSupport.service(repo, codePool != null ? codePool : gen);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (codePool != null) {
+            System.out.println("\n[POOL] " + codePool.stats());
+            codePool.close();
+        }
+    }
+
+    @Benchmark
+    public Object create() {
+        Blackhole.consumeCPU(work);
+        return service.create(user, BenchSupport.URL, 10);
+    }
+}
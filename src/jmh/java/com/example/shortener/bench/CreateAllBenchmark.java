@@ -0,0 +1,79 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.infra.MappedLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// createAll против цикла create на одной и той же пачке URL; хранилище пустое перед каждым вызовом
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CreateAllBenchmark {
+    @Param({"10000", "100000"})
+    public int batch;
+
+    @Param({"hash", "sequential"})
+    public String strategy;
+
+    @Param({"memory", "mapped"})
+    public String store;
+
+    private List<String> urls;
+    private LinkRepository repo;
+    private ShortenerService service;
+    private Path dir;
+    private final UUID user = UUID.randomUUID();
+
+    @Setup(Level.Trial)
+    public void urls() {
+        urls = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) urls.add(BenchSupport.URL + "&n=" + i);
+    }
+
+    @Setup(Level.Invocation)
+    public void freshRepository() throws IOException {
+        if (store.equals("mapped")) {
+            dir = Files.createTempDirectory("createall");
+            repo = MappedLinkRepository.open(dir, batch * 2);
+        } else {
+            repo = new InMemoryLinkRepository();
+        }
+        service = BenchSupport.service(repo, BenchSupport.allocator(strategy, 8));
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropRepository() throws IOException {
+        if (repo instanceof MappedLinkRepository m) {
+            m.close();
+            try (Stream<Path> s = Files.walk(dir)) {
+                for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object loopCreate() {
+        Object last = null;
+        for (String url : urls) last = service.create(user, url, 10);
+        return last;
+    }
+
+    @Benchmark
+    public Object createAll() {
+        return service.createAll(user, urls, 10);
+    }
+}
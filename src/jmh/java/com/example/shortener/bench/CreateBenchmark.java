@@ -0,0 +1,36 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// create при разной заполненности репозитория; за время замера репозиторий немного дорастает
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CreateBenchmark {
+    @Param({"0", "100000", "1000000"})
+    public int fill;
+
+    @Param({"hash", "sequential"})
+    public String strategy;
+
+    private ShortenerService service;
+    private final UUID user = UUID.randomUUID();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = BenchSupport.service(new InMemoryLinkRepository(), BenchSupport.allocator(strategy, 8));
+        BenchSupport.fill(service, fill, 1000, 10);
+    }
+
+    @Benchmark
+    public Object create() {
+        return service.create(user, BenchSupport.URL, 10);
+    }
+}
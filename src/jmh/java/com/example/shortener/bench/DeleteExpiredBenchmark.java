@@ -0,0 +1,44 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// одна полная очистка на итерацию; доля истёкших ссылок — параметр
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class DeleteExpiredBenchmark {
+    @Param({"1000000"})
+    public int links;
+
+    @Param({"0.0", "0.01", "0.1", "0.5"})
+    public double expiredFraction;
+
+    private InMemoryLinkRepository repo;
+    private Instant now;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        repo = new InMemoryLinkRepository();
+        now = Instant.now();
+        UUID[] owners = new UUID[1000];
+        for (int i = 0; i < owners.length; i++) owners[i] = UUID.randomUUID();
+        int expired = (int) (links * expiredFraction);
+        for (int i = 0; i < links; i++) {
+            Instant exp = i < expired ? now.minusSeconds(1 + i % 3600) : now.plusSeconds(1 + i % 86400);
+            repo.save(new ShortLink("c" + i, owners[i % owners.length], BenchSupport.URL, now.minusSeconds(3600), exp, 10));
+        }
+    }
+
+    @Benchmark
+    public int deleteExpired() {
+        return repo.deleteExpired(now);
+    }
+}
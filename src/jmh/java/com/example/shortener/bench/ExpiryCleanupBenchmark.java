@@ -0,0 +1,66 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.ExpiryCleanup;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// распределение длительности одной порции фоновой очистки при массовом истечении (p99 — в выводе SampleTime).
+// Хранилище доливается истёкшими ссылками вне замера, когда в нём остаётся меньше половины
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExpiryCleanupBenchmark {
+    @Param({"1000000"})
+    public int links;
+
+    @Param({"2"})
+    public int sliceBudgetMillis;
+
+    private InMemoryLinkRepository repo;
+    private ExpiryCleanup cleanup;
+    private UUID owner;
+    private Instant expired;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        repo = new InMemoryLinkRepository();
+        ShortenerService service = BenchSupport.service(repo, new CodeGenerator(8));
+        cleanup = new ExpiryCleanup(service, Duration.ofSeconds(60), Duration.ofMillis(sliceBudgetMillis), false);
+        owner = UUID.randomUUID();
+        expired = Instant.now().minusSeconds(1);
+        refill();
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() {
+        if (repo.size() >= links / 2) return;
+        List<ShortLink> batch = new ArrayList<>(links);
+        for (int i = repo.size(); i < links; i++, next++) {
+            batch.add(new ShortLink(Integer.toString(next, 36), owner, BenchSupport.URL, expired, expired, 1));
+        }
+        repo.saveAll(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cleanup.close();
+    }
+
+    @Benchmark
+    public long slice() {
+        return cleanup.runOnce();
+    }
+}
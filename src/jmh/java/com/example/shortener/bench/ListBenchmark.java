@@ -0,0 +1,65 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// владельцы распределены по Zipf (s=1): у первого — львиная доля ссылок, у хвоста — единицы
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ListBenchmark {
+    @Param({"100000", "1000000"})
+    public int links;
+
+    @Param({"10000"})
+    public int owners;
+
+    private ShortenerService service;
+    private UUID heavy;
+    private UUID light;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = BenchSupport.service(new InMemoryLinkRepository(), BenchSupport.allocator("sequential", 8));
+        UUID[] us = new UUID[owners];
+        for (int i = 0; i < owners; i++) us[i] = UUID.randomUUID();
+
+        double[] cdf = new double[owners];
+        double sum = 0;
+        for (int i = 0; i < owners; i++) cdf[i] = sum += 1.0 / (i + 1);
+        java.util.Random rnd = new java.util.Random(1);
+        for (int i = 0; i < links; i++) {
+            double x = rnd.nextDouble() * sum;
+            int lo = 0, hi = owners - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cdf[mid] < x) lo = mid + 1; else hi = mid;
+            }
+            service.create(us[lo], BenchSupport.URL + "&n=" + i, 10);
+        }
+        heavy = us[0];
+        light = us[owners - 1];
+        service.create(light, BenchSupport.URL, 10);
+    }
+
+    @Benchmark
+    public Object heavyOwner() {
+        return service.list(heavy);
+    }
+
+    @Benchmark
+    public Object heavyOwnerFirstPage() {
+        return service.list(heavy, null, 20);
+    }
+
+    @Benchmark
+    public Object lightOwner() {
+        return service.list(light);
+    }
+}
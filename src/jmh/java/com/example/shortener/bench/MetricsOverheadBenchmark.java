@@ -0,0 +1,58 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.ServiceMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// цена метрик: record отдельно (без чтения часов и с ним) и open горячего кода с метриками и без
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+    @Param({"on", "off"})
+    public String metrics;
+
+    private ServiceMetrics m;
+    private ShortenerService service;
+    private String hot;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        m = metrics.equals("on") ? new ServiceMetrics() : ServiceMetrics.OFF;
+        service = ShortenerService.builder(new InMemoryLinkRepository(), BenchSupport.allocator("sequential", 8), "clck.ru", BenchSupport.TTL)
+                .metrics(m)
+                .build();
+        hot = BenchSupport.fill(service, 1000, 10, Integer.MAX_VALUE)[0];
+    }
+
+    // только запись в гистограмму, без чтения часов
+    @Benchmark
+    public void record() {
+        m.recordNanos(ServiceMetrics.Op.OPEN, LinkStatus.ACTIVE, ThreadLocalRandom.current().nextInt(1 << 20));
+    }
+
+    // запись вместе с чтением часов в начале и в конце операции
+    @Benchmark
+    public void startAndRecord() {
+        m.record(ServiceMetrics.Op.OPEN, LinkStatus.ACTIVE, m.start());
+    }
+
+    // для сравнения: одно чтение монотонных часов
+    @Benchmark
+    public long clock() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public Object open() {
+        return service.open(hot);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// hot — один код для всех, cold — случайный код из большого набора (промахи по кэшу CPU)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OpenBenchmark {
+    @Param({"1000000"})
+    public int links;
+
+    private ShortenerService service;
+    private String[] codes;
+    private String hot;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = BenchSupport.service(new InMemoryLinkRepository(), BenchSupport.allocator("sequential", 8));
+        codes = BenchSupport.fill(service, links, 1000, Integer.MAX_VALUE);
+        hot = codes[0];
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object hot1() {
+        return service.open(hot);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object hot4() {
+        return service.open(hot);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object cold1() {
+        return service.open(codes[ThreadLocalRandom.current().nextInt(codes.length)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object cold4() {
+        return service.open(codes[ThreadLocalRandom.current().nextInt(codes.length)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object notFound() {
+        return service.open("NO_SUCH");
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.ServiceMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// один «вирусный» код, который открывают все потоки: пропускная способность должна расти с числом потоков
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OpenContentionBenchmark {
+    private ShortenerService service;
+    private String code;
+
+    // новый сервис на каждую итерацию, чтобы лимит в Integer.MAX_VALUE кликов не исчерпался
+    @Setup(Level.Iteration)
+    public void setup() {
+        service = ShortenerService.builder(new InMemoryLinkRepository(), new CodeGenerator(8), "clck.ru", Duration.ofDays(1))
+                .metrics(new ServiceMetrics())
+                .build();
+        code = service.create(UUID.randomUUID(), "https://example.com/hot", Integer.MAX_VALUE).code();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object hot1() {
+        return service.open(code);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object hot2() {
+        return service.open(code);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object hot4() {
+        return service.open(code);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object hot8() {
+        return service.open(code);
+    }
+}
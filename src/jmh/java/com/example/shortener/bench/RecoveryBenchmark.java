@@ -0,0 +1,64 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.infra.Durability;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkPersistence;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// время старта: параллельная загрузка снапшота + повтор хвоста WAL (walTail операций после снапшота)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class RecoveryBenchmark {
+    @Param({"1000000"})
+    public int links;
+
+    @Param({"100000"})
+    public int walTail;
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("recovery-bench");
+        var repo = new InMemoryLinkRepository();
+        try (var p = LinkPersistence.open(dir, Durability.BATCHED, Duration.ofMillis(50), Duration.ofDays(1), repo)) {
+            Instant now = Instant.now();
+            UUID[] owners = new UUID[1000];
+            for (int i = 0; i < owners.length; i++) owners[i] = UUID.randomUUID();
+            for (int i = 0; i < links; i++) {
+                repo.save(new ShortLink("c" + i, owners[i % owners.length], BenchSupport.URL + "&n=" + i,
+                        now, now.plus(BenchSupport.TTL), 10));
+            }
+            p.snapshot();
+            for (int i = 0; i < walTail; i++) {
+                repo.tryClick(repo.get("c" + (i % links)));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public LinkPersistence.Recovery recover() throws IOException {
+        return LinkPersistence.recover(dir, new InMemoryLinkRepository());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.infra.RemoteLinkRepository;
+import com.example.shortener.infra.ShardServer;
+import com.example.shortener.infra.ShardedLinkRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// пропускная способность open при 1/2/4 шардах — отдельных процессах ShardServer на localhost;
+// почти линейный рост виден только при числе ядер >= шардов + клиентских потоков
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(16)
+@Fork(1)
+public class ShardScalingBenchmark {
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    @Param({"100000"})
+    public int links;
+
+    private final List<Process> processes = new ArrayList<>();
+    private ShardedLinkRepository repo;
+    private ShortenerService service;
+    private String[] codes;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        List<LinkRepository> clients = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            Process p = new ProcessBuilder(
+                    System.getProperty("java.home") + "/bin/java", "-cp", System.getProperty("java.class.path"),
+                    ShardServer.class.getName(), "0")
+                    .redirectErrorStream(true)
+                    .start();
+            processes.add(p);
+            String ready = new BufferedReader(new InputStreamReader(p.getInputStream())).readLine();
+            if (ready == null || !ready.startsWith("[SHARD] listening on port ")) {
+                throw new IllegalStateException("Shard did not start: " + ready);
+            }
+            int port = Integer.parseInt(ready.substring(ready.lastIndexOf(' ') + 1));
+            clients.add(new RemoteLinkRepository(new InetSocketAddress("127.0.0.1", port), 32));
+        }
+        repo = new ShardedLinkRepository(clients);
+        service = BenchSupport.service(repo, BenchSupport.allocator("sequential", 8));
+
+        UUID owner = UUID.randomUUID();
+        codes = new String[links];
+        List<String> urls = new ArrayList<>(10_000);
+        for (int done = 0; done < links; done += urls.size()) {
+            urls.clear();
+            for (int i = done; i < Math.min(links, done + 10_000); i++) urls.add(BenchSupport.URL + "&n=" + i);
+            var items = service.createAll(owner, urls, Integer.MAX_VALUE);
+            for (int i = 0; i < items.size(); i++) codes[done + i] = items.get(i).result().code();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        repo.close();
+        for (Process p : processes) p.destroy();
+        for (Process p : processes) p.waitFor(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Object open() {
+        return service.open(codes[ThreadLocalRandom.current().nextInt(codes.length)]);
+    }
+}
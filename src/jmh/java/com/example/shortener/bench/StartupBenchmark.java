@@ -0,0 +1,127 @@
+package com.example.shortener.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// холодный старт собранного jar (каждый замер — новая JVM): до первого приглашения, до ответа на первую
+// команду в интерактивном режиме и скрипт из одной команды (--batch) до выхода. cds=on — с архивом AppCDS,
+// который setup создаёт так же, как профиль cds; c1=on — с -XX:TieredStopAtLevel=1.
+// Нужен jar из target: mvn -Pbench verify -DskipTests -Djmh.args="StartupBenchmark -p c1=off,on"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+    private static final String CREATE = "create \"https://example.com/startup\" 5\n";
+
+    @Param({"off", "on"})
+    public String cds;
+
+    @Param({"off"})
+    public String c1;
+
+    private final List<String> command = new ArrayList<>();
+    private Path archiveDir;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path jar = findJar();
+        String java = System.getProperty("java.home") + "/bin/java";
+        command.add(java);
+        if (c1.equals("on")) command.add("-XX:TieredStopAtLevel=1");
+        if (cds.equals("on")) {
+            archiveDir = Files.createTempDirectory("startup-cds");
+            Path archive = archiveDir.resolve("app.jsa");
+            Process p = new ProcessBuilder(java, "-XX:ArchiveClassesAtExit=" + archive, "-jar", jar.toString(),
+                    "--batch", "src/cds/training.txt")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (p.waitFor() != 0 || !Files.exists(archive)) throw new IllegalStateException("CDS dump failed");
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.add("-jar");
+        command.add(jar.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (archiveDir == null) return;
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            for (Path f : files.toList()) Files.delete(f);
+        }
+        Files.delete(archiveDir);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws Exception {
+        if (process != null) {
+            process.destroyForcibly();
+            process.waitFor();
+            process = null;
+        }
+    }
+
+    @Benchmark
+    public void firstPrompt() throws Exception {
+        process = start("--interactive");
+        readUntil(process.getInputStream(), "> ");
+    }
+
+    @Benchmark
+    public void firstCommand() throws Exception {
+        process = start("--interactive");
+        OutputStream in = process.getOutputStream();
+        in.write(CREATE.getBytes(StandardCharsets.UTF_8));
+        in.flush();
+        readUntil(process.getInputStream(), "> OK ");
+        readUntil(process.getInputStream(), "\n");
+    }
+
+    @Benchmark
+    public int script() throws Exception {
+        process = start("--batch", "-");
+        try (OutputStream in = process.getOutputStream()) {
+            in.write(CREATE.getBytes(StandardCharsets.UTF_8));
+        }
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        return process.waitFor();
+    }
+
+    private Process start(String... args) throws IOException {
+        List<String> cmd = new ArrayList<>(command);
+        cmd.addAll(List.of(args));
+        return new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+    }
+
+    private static void readUntil(InputStream in, String marker) throws IOException {
+        byte[] m = marker.getBytes(StandardCharsets.UTF_8);
+        int matched = 0;
+        while (matched < m.length) {
+            int b = in.read();
+            if (b < 0) throw new IllegalStateException("Process exited before \"" + marker.trim() + "\"");
+            matched = (b == m[matched]) ? matched + 1 : (b == m[0] ? 1 : 0);
+        }
+    }
+
+    private static Path findJar() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of("target"))) {
+            return files.filter(f -> f.getFileName().toString().matches("urlShort-.*\\.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("target/urlShort-*.jar not found: run mvn package first"));
+        }
+    }
+}
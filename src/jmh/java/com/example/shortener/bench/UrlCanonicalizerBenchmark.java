@@ -0,0 +1,50 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.core.service.UrlCanonicalizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+// прежняя проверка через URI (без нормализации и с ней) против однопроходного UrlCanonicalizer;
+// -prof gc показывает байты на операцию
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UrlCanonicalizerBenchmark {
+    @Param({"canonical", "messy"})
+    public String kind;
+
+    private String url;
+
+    @Setup
+    public void setup() {
+        url = kind.equals("canonical")
+                ? "https://example.com/articles/2024/05/some-long-title?utm_source=newsletter&utm_medium=email#comments"
+                : " HTTPS://Example.COM:443/articles/./2024/05/%7Esome-long-title?utm_source=news%2fletter&utm_medium=email#comments ";
+    }
+
+    @Benchmark
+    public String uri() {
+        URI uri = URI.create(url.trim());
+        String scheme = uri.getScheme();
+        if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https")) || uri.getHost() == null) {
+            throw new IllegalArgumentException(url);
+        }
+        return uri.toString();
+    }
+
+    @Benchmark
+    public String uriNormalize() {
+        URI uri = URI.create(url.trim()).normalize();
+        if (uri.getHost() == null) throw new IllegalArgumentException(url);
+        return uri.toString();
+    }
+
+    @Benchmark
+    public String canonicalizer() {
+        return UrlCanonicalizer.canonicalize(url);
+    }
+}
@@ -6,5 +6,7 @@ public enum LinkStatus {
     EXPIRED,
     LIMIT_EXHAUSTED,
     FORBIDDEN,
-    INVALID_INPUT
+    INVALID_INPUT,
+    RATE_LIMITED,
+    QUOTA_EXCEEDED
 }
@@ -1,34 +1,112 @@
 package com.example.shortener.core.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.Instant;
 import java.util.UUID;
 
 public final class ShortLink {
+    // state = maxClicks << 32 | clicks; оба счётчика меняются одним CAS
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(ShortLink.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // признак отказа в результате tryClick/trySetMaxClicks; в остальных битах — состояние на момент отказа
+    public static final long REJECTED = Long.MIN_VALUE;
+
     public final String code;
     public final UUID ownerId;
     public final String originalUrl;
     public final Instant createdAt;
     public final Instant expiresAt;
 
-    public int clicks;
-    public int maxClicks;
+    private volatile long state;
 
     public ShortLink(String code, UUID ownerId, String originalUrl,
                      Instant createdAt, Instant expiresAt, int maxClicks) {
+        this(code, ownerId, originalUrl, createdAt, expiresAt, 0, maxClicks);
+    }
+
+    public ShortLink(String code, UUID ownerId, String originalUrl,
+                     Instant createdAt, Instant expiresAt, int clicks, int maxClicks) {
         this.code = code;
         this.ownerId = ownerId;
         this.originalUrl = originalUrl;
         this.createdAt = createdAt;
         this.expiresAt = expiresAt;
-        this.maxClicks = maxClicks;
-        this.clicks = 0;
+        this.state = pack(clicks, maxClicks);
     }
 
     public boolean expired(Instant now) {
         return !now.isBefore(expiresAt);
     }
 
+    // то же для миллисекунд от эпохи (TimeSource): без Instant на каждую проверку
+    public boolean expired(long nowMillis) {
+        long sec = Math.floorDiv(nowMillis, 1000);
+        long expSec = expiresAt.getEpochSecond();
+        return sec > expSec || sec == expSec && Math.floorMod(nowMillis, 1000) * 1_000_000L >= expiresAt.getNano();
+    }
+
     public boolean exhausted() {
-        return clicks >= maxClicks;
+        long s = state;
+        return clicksOf(s) >= maxClicksOf(s);
+    }
+
+    public int clicks() {
+        return clicksOf(state);
+    }
+
+    public int maxClicks() {
+        return maxClicksOf(state);
+    }
+
+    public long state() {
+        return state;
+    }
+
+    // резервирует один переход, не превышая maxClicks; возвращает новое состояние или REJECTED | текущее
+    public long tryClick() {
+        long s = state;
+        while (true) {
+            if (clicksOf(s) >= maxClicksOf(s)) return REJECTED | s;
+            long next = s + 1;
+            long witness = (long) STATE.compareAndExchange(this, s, next);
+            if (witness == s) return next;
+            s = witness;
+        }
+    }
+
+    // новый лимит не может быть меньше уже сделанных переходов
+    public long trySetMaxClicks(int newLimit) {
+        long s = state;
+        while (true) {
+            if (newLimit < clicksOf(s)) return REJECTED | s;
+            long next = pack(clicksOf(s), newLimit);
+            long witness = (long) STATE.compareAndExchange(this, s, next);
+            if (witness == s) return next;
+            s = witness;
+        }
+    }
+
+    public static boolean accepted(long result) {
+        return (result & REJECTED) == 0;
+    }
+
+    public static int clicksOf(long state) {
+        return (int) state;
+    }
+
+    public static int maxClicksOf(long state) {
+        return (int) (state >>> 32) & Integer.MAX_VALUE;
+    }
+
+    private static long pack(int clicks, int maxClicks) {
+        return ((long) maxClicks << 32) | (clicks & 0xFFFFFFFFL);
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,14 @@ import java.math.BigInteger;
 public final class Base62 {
     private static final char[] A = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
     private static final BigInteger BASE = BigInteger.valueOf(62);
+    private static final byte[] DIGIT = new byte[128];
+    static {
+        java.util.Arrays.fill(DIGIT, (byte) -1);
+        for (int i = 0; i < A.length; i++) DIGIT[A[i]] = (byte) i;
+    }
+
+    // столько base62-цифр целиком помещается в 64 бита (62^10 < 2^64 < 62^11)
+    public static final int DIGITS_PER_LONG = 10;
 
     private Base62() {}
 
@@ -19,4 +27,32 @@ public final class Base62 {
         }
         return sb.reverse().toString();
     }
-}
\ No newline at end of file
+
+    // младшие digits цифр беззнакового value в out[off..off+digits), старшая цифра слева, без аллокаций
+    public static void encode(long value, int digits, char[] out, int off) {
+        if (digits < 0 || digits > DIGITS_PER_LONG) throw new IllegalArgumentException("digits must be 0.." + DIGITS_PER_LONG);
+        if (digits == 0) return;
+        int i = off + digits - 1;
+        long q = Long.divideUnsigned(value, 62);
+        out[i--] = A[(int) (value - q * 62)];
+        value = q;
+        for (; i >= off; i--) {
+            q = value / 62;
+            out[i] = A[(int) (value - q * 62)];
+            value = q;
+        }
+    }
+
+    // обратное к encode(long, ...): -1, если в диапазоне есть символ не из алфавита
+    public static long decode(CharSequence s, int off, int digits) {
+        if (digits < 0 || digits > DIGITS_PER_LONG) throw new IllegalArgumentException("digits must be 0.." + DIGITS_PER_LONG);
+        long v = 0;
+        for (int i = off; i < off + digits; i++) {
+            char c = s.charAt(i);
+            int d = c < 128 ? DIGIT[c] : -1;
+            if (d < 0) return -1;
+            v = v * 62 + d;
+        }
+        return v;
+    }
+}
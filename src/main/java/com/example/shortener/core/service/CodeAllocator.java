@@ -0,0 +1,15 @@
+package com.example.shortener.core.service;
+
+import java.util.UUID;
+
+public interface CodeAllocator {
+    String allocate(UUID userId, String url);
+
+    // true — выданные коды гарантированно не повторяются, проверка repo.exists не нужна
+    default boolean collisionFree() {
+        return false;
+    }
+
+    // код сохранён в репозитории или больше не нужен (ссылка не создана): его можно перестать держать занятым
+    default void committed(String code) {}
+}
@@ -1,12 +1,46 @@
 package com.example.shortener.core.service;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.UUID;
 
-public final class CodeGenerator {
-    private final SecureRandom rnd = new SecureRandom();
+public final class CodeGenerator implements CodeAllocator {
+    // случайная часть кода — секрет потока и счётчик: код = SHA-256(владелец|URL|секрет|счётчик), без секрета
+    // его не угадать. Секрет берётся из общего SecureRandom при первом коде в потоке: отдельный DRBG на поток
+    // засевался десятки миллисекунд, и на холодной JVM это время уходило на первый create
+    private static final int SECRET = 24;
+
+    // дайджест, секрет и буферы у каждого потока свои: на горячем пути нет ни блокировок, ни лишних аллокаций
+    private static final class Scratch {
+        final MessageDigest md;
+        final byte[] buf = new byte[512];
+        // SECRET байт секрета, за ними 8 байт счётчика
+        final byte[] nonce = new byte[SECRET + 8];
+        final byte[] digest = new byte[32];
+        final char[] chars = new char[16];
+        long counter;
+
+        Scratch() {
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            Seed.RND.nextBytes(nonce);
+        }
+    }
+
+    // создаётся при первом коде, а не при загрузке класса; алгоритм тот же, что у UUID.randomUUID, и к первому
+    // create он уже загружен сессией
+    private static final class Seed {
+        static final SecureRandom RND = new SecureRandom();
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private final int codeLength;
 
     public CodeGenerator(int codeLength) {
@@ -14,25 +48,72 @@ public final class CodeGenerator {
         this.codeLength = codeLength;
     }
 
+    @Override
+    public String allocate(UUID userId, String url) {
+        return generate(userId, url);
+    }
+
     public String generate(UUID userId, String url) {
+        Scratch s = SCRATCH.get();
+        MessageDigest md = s.md;
+        byte[] buf = s.buf;
+
+        putLong(buf, 0, userId.getMostSignificantBits());
+        putLong(buf, 8, userId.getLeastSignificantBits());
+        buf[16] = '|';
+        md.update(buf, 0, 17);
+        updateUtf8(md, buf, url);
+        md.update((byte) '|');
+        putLong(s.nonce, SECRET, s.counter++);
+        md.update(s.nonce);
+
         try {
-            byte[] randNum = new byte[16];
-            rnd.nextBytes(randNum);
-
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(userId.toString().getBytes(StandardCharsets.UTF_8));
-            md.update((byte) '|');
-            md.update(url.getBytes(StandardCharsets.UTF_8));
-            md.update((byte) '|');
-            md.update(randNum);
-
-            String base62 = Base62.encode(md.digest());
-            if (base62.length() < codeLength) {
-                base62 = base62 + Base62.encode(md.digest(base62.getBytes(StandardCharsets.UTF_8)));
+            md.digest(s.digest, 0, 32);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate code", e);
+        }
+
+        // кодируем только нужные codeLength цифр: по 10 цифр на каждые 8 байт дайджеста
+        char[] out = s.chars;
+        int done = 0;
+        for (int off = 0; done < codeLength; off += 8) {
+            int n = Math.min(Base62.DIGITS_PER_LONG, codeLength - done);
+            Base62.encode(getLong(s.digest, off), n, out, done);
+            done += n;
+        }
+        return new String(out, 0, codeLength);
+    }
+
+    private static void updateUtf8(MessageDigest md, byte[] buf, String s) {
+        int len = s.length();
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // редкий случай: не-ASCII строку кодируем штатно
+                md.update(buf, 0, n);
+                md.update(s.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
             }
-            return base62.substring(0, codeLength);
-        } catch (Exception e) {
-            throw new RuntimeException("Cannot generate code", e);
+            buf[n++] = (byte) c;
+            if (n == buf.length) {
+                md.update(buf, 0, n);
+                n = 0;
+            }
+        }
+        md.update(buf, 0, n);
+    }
+
+    private static void putLong(byte[] b, int off, long v) {
+        for (int i = 7; i >= 0; i--) {
+            b[off + i] = (byte) v;
+            v >>>= 8;
         }
     }
-}
\ No newline at end of file
+
+    private static long getLong(byte[] b, int off) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) v = (v << 8) | (b[off + i] & 0xFF);
+        return v;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.shortener.core.service;
+
+import com.example.shortener.infra.LinkRepository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// заранее выданные коды: фоновые потоки генерируют коды source, проверяют их по репозиторию и держат
+// в очереди не больше capacity штук; create просто берёт готовый код. Когда в очереди остаётся меньше
+// lowWatermark кодов, потоки дозаполняют её до capacity; пустая очередь — код генерируется в потоке запроса.
+// Код считается занятым с момента выдачи в очередь до committed(code), поэтому пул и запасной путь
+// не выдают один код дважды и проверка repo.exists в create не нужна
+public final class CodePool implements CodeAllocator, AutoCloseable {
+    private static final int MAX_ATTEMPTS = 50;
+    private static final long IDLE_PARK_NANOS = 100_000_000;
+    // хэш-генератор подмешивает владельца и URL, но код всё равно случаен за счёт nonce
+    private static final UUID POOL_OWNER = new UUID(0, 0);
+
+    private final CodeAllocator source;
+    private final LinkRepository repo;
+    private final int capacity;
+    private final int lowWatermark;
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    // depth — коды в очереди; slots — они же плюс те, что потоки сейчас генерируют (по нему держится граница)
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger slots = new AtomicInteger();
+    private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder refilled = new LongAdder();
+    private final LongAdder refillNanos = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final Thread[] workers;
+    // хотя бы один поток ждёт опускания ниже lowWatermark
+    private volatile boolean waiting;
+    private volatile boolean closed;
+
+    public CodePool(CodeAllocator source, LinkRepository repo, int capacity, int lowWatermark, int threads) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        if (lowWatermark <= 0 || lowWatermark > capacity) throw new IllegalArgumentException("lowWatermark must be 1..capacity");
+        if (threads < 0) throw new IllegalArgumentException("threads must be >= 0");
+        this.source = source;
+        this.repo = repo;
+        this.capacity = capacity;
+        this.lowWatermark = lowWatermark;
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::run, "code-pool-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public CodeAllocator source() {
+        return source;
+    }
+
+    @Override
+    public String allocate(UUID userId, String url) {
+        String code = queue.poll();
+        if (code != null) {
+            int d = depth.decrementAndGet();
+            slots.decrementAndGet();
+            hits.increment();
+            if (d < lowWatermark && waiting) wake();
+            return code;
+        }
+        fallbacks.increment();
+        if (waiting) wake();
+        return reserve(userId, url);
+    }
+
+    @Override
+    public boolean collisionFree() {
+        return true;
+    }
+
+    @Override
+    public void committed(String code) {
+        reserved.remove(code);
+    }
+
+    // синхронное дозаполнение до capacity (для тестов и прогрева без фоновых потоков); число добавленных кодов
+    public int fill() {
+        int n = 0;
+        while (refillOne()) n++;
+        return n;
+    }
+
+    // коды в очереди выданы до импорта и могли совпасть с загруженными: выбросить их
+    public void discard() {
+        String code;
+        while ((code = queue.poll()) != null) {
+            depth.decrementAndGet();
+            slots.decrementAndGet();
+            reserved.remove(code);
+        }
+        if (waiting) wake();
+    }
+
+    public int depth() {
+        return depth.get();
+    }
+
+    // refillPerSecond — скорость одного потока заполнения (коды на секунду его работы);
+    // reserved — коды в очереди и выданные, но ещё не сохранённые
+    public Map<String, Number> stats() {
+        Map<String, Number> m = new LinkedHashMap<>();
+        long n = refilled.sum();
+        long nanos = refillNanos.sum();
+        m.put("depth", depth.get());
+        m.put("capacity", capacity);
+        m.put("hits", hits.sum());
+        m.put("fallbacks", fallbacks.sum());
+        m.put("refilled", n);
+        m.put("refillPerSecond", nanos == 0 ? 0 : Math.round(n * 1e9 / nanos));
+        m.put("collisions", collisions.sum());
+        m.put("reserved", reserved.size());
+        return m;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread t : workers) LockSupport.unpark(t);
+        for (Thread t : workers) {
+            try {
+                t.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                if (refillOne()) continue;
+            } catch (RuntimeException e) {
+                // репозиторий недоступен или коды кончились: create уйдёт на запасной путь, повтор позже
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            // очередь полна: ждать, пока в ней не останется меньше lowWatermark кодов
+            while (!closed) {
+                waiting = true;
+                if (depth.get() < lowWatermark) break;
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private boolean refillOne() {
+        if (slots.incrementAndGet() > capacity) {
+            slots.decrementAndGet();
+            return false;
+        }
+        long t0 = System.nanoTime();
+        String code;
+        try {
+            code = reserve(POOL_OWNER, "");
+        } catch (RuntimeException e) {
+            slots.decrementAndGet();
+            throw e;
+        }
+        queue.offer(code);
+        depth.incrementAndGet();
+        refilled.increment();
+        refillNanos.add(System.nanoTime() - t0);
+        return true;
+    }
+
+    private String reserve(UUID userId, String url) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String code = source.allocate(userId, url);
+            if (reserved.add(code)) {
+                if (!repo.exists(code)) return code;
+                reserved.remove(code);
+            }
+            collisions.increment();
+        }
+        throw new IllegalStateException("Too many collisions");
+    }
+
+    private void wake() {
+        waiting = false;
+        for (Thread t : workers) LockSupport.unpark(t);
+    }
+}
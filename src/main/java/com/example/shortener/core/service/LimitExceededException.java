@@ -0,0 +1,17 @@
+package com.example.shortener.core.service;
+
+import com.example.shortener.core.model.LinkStatus;
+
+// отказ create по лимиту: status — RATE_LIMITED или QUOTA_EXCEEDED
+public final class LimitExceededException extends RuntimeException {
+    private final LinkStatus status;
+
+    public LimitExceededException(LinkStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public LinkStatus status() {
+        return status;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.shortener.core.service;
+
+import com.example.shortener.infra.LinkRepository;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// потолок числа ссылок владельца: проверка и резерв — под замком полосы владельца, поэтому параллельные
+// create не проскакивают квоту. Резерв держится, пока ссылки вставляются, и снимается после вставки —
+// дальше их учитывает сам repo.countByOwner, а удаление и истечение освобождают квоту без учёта здесь.
+// Вставленная, но ещё не снятая с резерва ссылка на миг считается дважды: квота может отказать чуть раньше,
+// но не превышается
+final class OwnerQuota {
+    private static final int STRIPES = 64;
+
+    private final LinkRepository repo;
+    private final int max;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // владелец -> число ссылок, которые сейчас вставляются
+    private final ConcurrentHashMap<UUID, Integer> pending = new ConcurrentHashMap<>();
+
+    OwnerQuota(LinkRepository repo, int max) {
+        if (max <= 0) throw new IllegalArgumentException("max must be > 0");
+        this.repo = repo;
+        this.max = max;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+    }
+
+    // резервирует до n ссылок; возвращает, сколько выдано (0..n). Выданное вернуть через release
+    int reserve(UUID ownerId, int n) {
+        if (n <= 0) return 0;
+        ReentrantLock lock = stripe(ownerId);
+        lock.lock();
+        try {
+            int used = repo.countByOwner(ownerId) + pending.getOrDefault(ownerId, 0);
+            int granted = Math.max(0, Math.min(n, max - used));
+            if (granted > 0) pending.merge(ownerId, granted, Integer::sum);
+            return granted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // после вставки (или отказа от неё): ссылки уже видны в countByOwner или не появятся вовсе
+    void release(UUID ownerId, int n) {
+        if (n <= 0) return;
+        ReentrantLock lock = stripe(ownerId);
+        lock.lock();
+        try {
+            pending.computeIfPresent(ownerId, (k, v) -> v > n ? v - n : null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripe(UUID ownerId) {
+        return stripes[Math.floorMod(ownerId.hashCode(), STRIPES)];
+    }
+}
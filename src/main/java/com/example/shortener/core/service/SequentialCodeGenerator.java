@@ -0,0 +1,113 @@
+package com.example.shortener.core.service;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// коды из счётчика: узел nodeId владеет своим диапазоном, потоки берут из него блоки по BLOCK значений,
+// а значение перед кодированием проходит через биекцию (сеть Фейстеля), чтобы коды не шли подряд
+public final class SequentialCodeGenerator implements CodeAllocator {
+    private static final int BLOCK = 1024;
+    private static final int ROUNDS = 4;
+
+    private final int codeLength;
+    private final int digits;
+    private final long domain;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] keys = new long[ROUNDS];
+    private final long rangeStart;
+    private final long rangeEnd;
+    private final AtomicLong next;
+    private final ThreadLocal<long[]> lease = ThreadLocal.withInitial(() -> new long[2]);
+
+    public SequentialCodeGenerator(int codeLength, int nodeId, int nodeCount, long secret) {
+        if (codeLength < 6 || codeLength > 16) throw new IllegalArgumentException("codeLength must be 6..16");
+        if (nodeCount <= 0 || nodeId < 0 || nodeId >= nodeCount) throw new IllegalArgumentException("nodeId must be 0..nodeCount-1");
+        this.codeLength = codeLength;
+        // перемешиваемая часть — не длиннее 10 цифр, чтобы поместиться в long; остальные цифры случайные
+        this.digits = Math.min(codeLength, Base62.DIGITS_PER_LONG);
+        long d = 1;
+        for (int i = 0; i < digits; i++) d *= 62;
+        this.domain = d;
+        int bits = 64 - Long.numberOfLeadingZeros(d - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        long k = secret;
+        for (int i = 0; i < ROUNDS; i++) keys[i] = k = mix(k + 0x9E3779B97F4A7C15L);
+
+        long per = domain / nodeCount;
+        this.rangeStart = per * nodeId;
+        this.next = new AtomicLong(rangeStart);
+        this.rangeEnd = (nodeId == nodeCount - 1) ? domain : per * (nodeId + 1);
+    }
+
+    @Override
+    public String allocate(UUID userId, String url) {
+        long[] l = lease.get();
+        if (l[0] == l[1]) {
+            long start = next.getAndAdd(BLOCK);
+            if (start >= rangeEnd) throw new IllegalStateException("Code space exhausted");
+            l[0] = start;
+            l[1] = Math.min(start + BLOCK, rangeEnd);
+        }
+        long v = scramble(l[0]++);
+
+        char[] out = new char[codeLength];
+        int pad = codeLength - digits;
+        if (pad > 0) {
+            Base62.encode(ThreadLocalRandom.current().nextLong(), pad, out, 0);
+        }
+        Base62.encode(v, digits, out, pad);
+        return new String(out);
+    }
+
+    @Override
+    public boolean collisionFree() {
+        return true;
+    }
+
+    // после рестарта с сохранёнными ссылками: счётчик сдвигается за уже выданный код этого узла
+    public void advancePast(String code) {
+        if (code.length() != codeLength) return;
+        long v = Base62.decode(code, codeLength - digits, digits);
+        if (v < 0 || v >= domain) return;
+        long c = unscramble(v);
+        if (c >= rangeStart && c < rangeEnd) next.accumulateAndGet(c + 1, Math::max);
+    }
+
+    // биекция на [0, domain): Фейстель на 2*halfBits битах + cycle walking до попадания в диапазон
+    long scramble(long v) {
+        do {
+            long left = v >>> halfBits;
+            long right = v & halfMask;
+            for (int i = 0; i < ROUNDS; i++) {
+                long t = right;
+                right = left ^ (mix(right ^ keys[i]) & halfMask);
+                left = t;
+            }
+            v = (left << halfBits) | right;
+        } while (v >= domain);
+        return v;
+    }
+
+    long unscramble(long v) {
+        do {
+            long left = v >>> halfBits;
+            long right = v & halfMask;
+            for (int i = ROUNDS - 1; i >= 0; i--) {
+                long t = left;
+                left = right ^ (mix(left ^ keys[i]) & halfMask);
+                right = t;
+            }
+            v = (left << halfBits) | right;
+        } while (v >= domain);
+        return v;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -2,104 +2,473 @@ package com.example.shortener.core.service;
 
 import com.example.shortener.core.model.LinkStatus;
 import com.example.shortener.core.model.ShortLink;
-import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.ClickAnalytics;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.infra.LinkTransfer;
+import com.example.shortener.infra.RateLimits;
+import com.example.shortener.infra.ServiceMetrics;
+import com.example.shortener.infra.ServiceMetrics.Op;
+import com.example.shortener.infra.TimeSource;
 
-import java.net.URI;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 public final class ShortenerService {
 
     public record CreateResult(UUID userId, String code, String shortUrl, Instant expiresAt) {}
     public record OpenResult(LinkStatus status, String url, int clicks, int maxClicks, Instant expiresAt, String message) {}
     public record OpResult(LinkStatus status, String message) {}
+    // элемент createAll: либо result, либо error (ошибка не бросается, а возвращается на месте URL)
+    public record CreateItem(String url, CreateResult result, String error) {
+        public boolean ok() { return result != null; }
+    }
+
+    // сколько истёкших ссылок подчищается прямо в запросе; остальное добирает ExpiryCleanup
+    private static final int INLINE_DRAIN = 256;
+    private static final String RATE_LIMITED_MSG = "Too many creates, retry later";
+    private static final String QUOTA_EXCEEDED_MSG = "Link quota exceeded";
+    // с какого размера пачки проверка URL идёт в common pool
+    private static final int PARALLEL_VALIDATE = 2048;
+    private static final int TRANSFER_PARALLELISM = Runtime.getRuntime().availableProcessors();
 
-    private final InMemoryLinkRepository repo;
-    private final CodeGenerator gen;
+    private final LinkRepository repo;
+    private final CodeAllocator gen;
     private final String baseUrl;
     private final Duration ttl;
+    // повторный create того же URL тем же владельцем возвращает его живую ссылку
+    private final boolean idempotentCreate;
+    private final ServiceMetrics metrics;
+    private final RateLimits limits;
+    // null — число ссылок владельца не ограничено
+    private final OwnerQuota quota;
+    // null — события переходов не собираются
+    private final ClickAnalytics analytics;
+    // сроки create, проверки истечения и очистка идут по этим часам
+    private final TimeSource clock;
+
+    // без идемпотентного create, метрик, лимитов и аналитики, на системных часах; остальное — через builder
+    public ShortenerService(LinkRepository repo, CodeAllocator gen, String baseUrl, Duration ttl) {
+        this(builder(repo, gen, baseUrl, ttl));
+    }
+
+    private ShortenerService(Builder b) {
+        this.repo = b.repo;
+        this.gen = b.gen;
+        this.baseUrl = b.baseUrl;
+        this.ttl = b.ttl;
+        this.idempotentCreate = b.idempotentCreate;
+        this.metrics = b.metrics;
+        this.limits = b.limits;
+        this.quota = b.limits.maxLinksPerOwner() > 0 ? new OwnerQuota(b.repo, b.limits.maxLinksPerOwner()) : null;
+        this.analytics = b.analytics;
+        this.clock = b.clock;
+    }
+
+    public static Builder builder(LinkRepository repo, CodeAllocator gen, String baseUrl, Duration ttl) {
+        return new Builder(repo, gen, baseUrl, ttl);
+    }
+
+    // обязательное — в builder(...), необязательное — именованными вызовами со значениями по умолчанию
+    public static final class Builder {
+        private final LinkRepository repo;
+        private final CodeAllocator gen;
+        private final String baseUrl;
+        private final Duration ttl;
+        private boolean idempotentCreate;
+        // метрики включает тот, кто их читает (CliApp, сервер команд)
+        private ServiceMetrics metrics = ServiceMetrics.OFF;
+        private RateLimits limits = RateLimits.NONE;
+        private ClickAnalytics analytics;
+        private TimeSource clock = TimeSource.SYSTEM;
+
+        private Builder(LinkRepository repo, CodeAllocator gen, String baseUrl, Duration ttl) {
+            this.repo = Objects.requireNonNull(repo, "repo");
+            this.gen = Objects.requireNonNull(gen, "gen");
+            this.baseUrl = Objects.requireNonNull(baseUrl, "baseUrl");
+            this.ttl = Objects.requireNonNull(ttl, "ttl");
+        }
+
+        public Builder idempotentCreate(boolean on) {
+            this.idempotentCreate = on;
+            return this;
+        }
+
+        public Builder metrics(ServiceMetrics metrics) {
+            this.metrics = Objects.requireNonNull(metrics, "metrics");
+            return this;
+        }
+
+        public Builder limits(RateLimits limits) {
+            this.limits = Objects.requireNonNull(limits, "limits");
+            return this;
+        }
+
+        // null — события переходов не собираются
+        public Builder analytics(ClickAnalytics analytics) {
+            this.analytics = analytics;
+            return this;
+        }
+
+        public Builder clock(TimeSource clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        public ShortenerService build() {
+            return new ShortenerService(this);
+        }
+    }
 
-    public ShortenerService(InMemoryLinkRepository repo, CodeGenerator gen, String baseUrl, Duration ttl) {
-        this.repo = repo;
-        this.gen = gen;
-        this.baseUrl = baseUrl;
-        this.ttl = ttl;
+    public ServiceMetrics metrics() {
+        return metrics;
+    }
+
+    public TimeSource clock() {
+        return clock;
+    }
+
+    // переходы по коду за последний час и двое суток; null — аналитика выключена
+    public ClickAnalytics.Series clickSeries(String code) {
+        return analytics == null ? null : analytics.series(code, clock.now());
     }
 
     public CreateResult create(UUID userIdOrNull, String url, int maxClicks) {
+        long t0 = metrics.start();
+        try {
+            CreateResult r = createOne(userIdOrNull, url, maxClicks);
+            metrics.record(Op.CREATE, LinkStatus.ACTIVE, t0);
+            return r;
+        } catch (LimitExceededException e) {
+            metrics.record(Op.CREATE, e.status(), t0);
+            throw e;
+        } catch (IllegalArgumentException e) {
+            metrics.record(Op.CREATE, LinkStatus.INVALID_INPUT, t0);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordError(Op.CREATE, t0);
+            throw e;
+        }
+    }
+
+    private CreateResult createOne(UUID userIdOrNull, String url, int maxClicks) {
         UUID userId = (userIdOrNull == null) ? UUID.randomUUID() : userIdOrNull;
 
         String normalized = validateUrl(url);
         if (maxClicks <= 0) throw new IllegalArgumentException("maxClicks must be > 0");
 
-        Instant now = Instant.now();
+        Instant now = clock.now();
         Instant expiresAt = now.plus(ttl);
 
+        // повтор уже сохранённого URL ничего не создаёт — токен лимита частоты на него не тратится
+        if (idempotentCreate) {
+            ShortLink existing = repo.findByUrl(userId, normalized, now);
+            if (existing != null) return result(existing);
+        }
+        if (limits.acquireCreate(userId, 1) == 0) throw new LimitExceededException(LinkStatus.RATE_LIMITED, RATE_LIMITED_MSG);
+        if (quota != null && quota.reserve(userId, 1) == 0) {
+            throw new LimitExceededException(LinkStatus.QUOTA_EXCEEDED, QUOTA_EXCEEDED_MSG);
+        }
+        try {
+            return insertOne(userId, normalized, maxClicks, now, expiresAt);
+        } finally {
+            if (quota != null) quota.release(userId, 1);
+        }
+    }
+
+    private CreateResult insertOne(UUID userId, String normalized, int maxClicks, Instant now, Instant expiresAt) {
         String code;
-        int attempts = 0;
-        do {
-            if (++attempts > 50) throw new IllegalStateException("Too many collisions");
-            code = gen.generate(userId, normalized);
-        } while (repo.exists(code));
+        if (gen.collisionFree()) {
+            code = gen.allocate(userId, normalized);
+        } else {
+            int attempts = 0;
+            do {
+                if (++attempts > 50) {
+                    metrics.collisionRetries(attempts - 1);
+                    throw new IllegalStateException("Too many collisions");
+                }
+                code = gen.allocate(userId, normalized);
+            } while (repo.exists(code));
+            metrics.collisionRetries(attempts - 1);
+        }
+
+        var link = new ShortLink(code, userId, normalized, now, expiresAt, maxClicks);
+        try {
+            if (idempotentCreate) return result(repo.saveIfAbsentByUrl(link, now));
+            repo.save(link);
+            return result(link);
+        } finally {
+            gen.committed(code);
+        }
+    }
 
-        repo.save(new ShortLink(code, userId, normalized, now, expiresAt, maxClicks));
-        return new CreateResult(userId, code, baseUrl + "/" + code, expiresAt);
+    // пачка URL одного владельца: проверка параллельно, коды — одним проходом (каждый код проверяется
+    // в репозитории один раз, дубли внутри пачки отсекаются), затем одна вставка saveAll;
+    // в идемпотентном режиме повторы URL (в пачке и уже сохранённые) сначала получают существующую ссылку,
+    // и токены лимита частоты и квота тратятся только на то, что действительно создаётся; проверка и вставка
+    // пачки не атомарны относительно параллельных create (квоту владельца это не касается: она резервируется
+    // атомарно). URL сверх выданных токенов или квоты получают ошибку. В метриках пачка записывается
+    // с худшим статусом своих элементов: ACTIVE — только если создано или найдено всё
+    public List<CreateItem> createAll(UUID userIdOrNull, List<String> urls, int maxClicks) {
+        long t0 = metrics.start();
+        try {
+            LinkStatus[] worst = {LinkStatus.ACTIVE};
+            List<CreateItem> r = createBatch(userIdOrNull, urls, maxClicks, worst);
+            if (worst[0] == null) metrics.recordError(Op.CREATE_ALL, t0);
+            else metrics.record(Op.CREATE_ALL, worst[0], t0);
+            return r;
+        } catch (IllegalArgumentException e) {
+            metrics.record(Op.CREATE_ALL, LinkStatus.INVALID_INPUT, t0);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordError(Op.CREATE_ALL, t0);
+            throw e;
+        }
+    }
+
+    // worst[0] — худший статус элементов (null — внутренняя ошибка, например коллизии кодов)
+    private List<CreateItem> createBatch(UUID userIdOrNull, List<String> urls, int maxClicks, LinkStatus[] worst) {
+        UUID userId = (userIdOrNull == null) ? UUID.randomUUID() : userIdOrNull;
+        if (maxClicks <= 0) throw new IllegalArgumentException("maxClicks must be > 0");
+
+        int n = urls.size();
+        String[] normalized = new String[n];
+        String[] errors = new String[n];
+        LinkStatus[] failed = new LinkStatus[n];
+        IntStream idx = IntStream.range(0, n);
+        if (n >= PARALLEL_VALIDATE) idx = idx.parallel();
+        idx.forEach(i -> {
+            try {
+                normalized[i] = validateUrl(urls.get(i));
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+                failed[i] = LinkStatus.INVALID_INPUT;
+            }
+        });
+
+        Instant now = clock.now();
+        ShortLink[] links = new ShortLink[n];
+        // повтор URL внутри пачки -> индекс первого вхождения; -1 — не повтор
+        int[] dupOf = new int[n];
+        Arrays.fill(dupOf, -1);
+        int wanted = 0;
+        Map<String, Integer> firstByUrl = idempotentCreate ? new HashMap<>() : null;
+        for (int i = 0; i < n; i++) {
+            if (errors[i] != null) continue;
+            if (idempotentCreate) {
+                Integer first = firstByUrl.putIfAbsent(normalized[i], i);
+                if (first != null) {
+                    dupOf[i] = first;
+                    continue;
+                }
+                ShortLink existing = repo.findByUrl(userId, normalized[i], now);
+                if (existing != null) {
+                    links[i] = existing;
+                    continue;
+                }
+            }
+            wanted++;
+        }
+
+        int allowed = limits.acquireCreate(userId, wanted);
+        // квота резервируется на всё, что может быть создано; неиспользованное возвращается после вставки
+        int granted = quota != null ? quota.reserve(userId, allowed) : Integer.MAX_VALUE;
+        try {
+            insertBatch(userId, maxClicks, now, normalized, errors, failed, links, dupOf, allowed, granted);
+        } finally {
+            if (quota != null) quota.release(userId, granted);
+        }
+
+        List<CreateItem> res = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int src = dupOf[i] >= 0 ? dupOf[i] : i;
+            if (errors[src] != null) {
+                res.add(new CreateItem(urls.get(i), null, errors[src]));
+                worst[0] = worse(worst[0], failed[src]);
+            } else {
+                res.add(new CreateItem(urls.get(i), result(links[src]), null));
+            }
+        }
+        return res;
+    }
+
+    private void insertBatch(UUID userId, int maxClicks, Instant now, String[] normalized, String[] errors,
+                             LinkStatus[] failed, ShortLink[] links, int[] dupOf, int allowed, int granted) {
+        int n = normalized.length;
+        Instant expiresAt = now.plus(ttl);
+        boolean collisionFree = gen.collisionFree();
+        Set<String> taken = collisionFree ? null : new HashSet<>(n * 2);
+        List<ShortLink> fresh = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (errors[i] != null || dupOf[i] >= 0 || links[i] != null) continue;
+            if (allowed-- <= 0) {
+                errors[i] = RATE_LIMITED_MSG;
+                failed[i] = LinkStatus.RATE_LIMITED;
+                continue;
+            }
+            if (fresh.size() >= granted) {
+                errors[i] = QUOTA_EXCEEDED_MSG;
+                failed[i] = LinkStatus.QUOTA_EXCEEDED;
+                continue;
+            }
+            String code = null;
+            if (collisionFree) {
+                code = gen.allocate(userId, normalized[i]);
+            } else {
+                int attempt = 0;
+                while (attempt < 50 && code == null) {
+                    attempt++;
+                    String c = gen.allocate(userId, normalized[i]);
+                    if (taken.add(c) && !repo.exists(c)) code = c;
+                }
+                metrics.collisionRetries(code == null ? attempt : attempt - 1);
+            }
+            if (code == null) {
+                errors[i] = "Too many collisions";
+                continue;
+            }
+            links[i] = new ShortLink(code, userId, normalized[i], now, expiresAt, maxClicks);
+            fresh.add(links[i]);
+        }
+        try {
+            repo.saveAll(fresh);
+        } finally {
+            for (ShortLink l : fresh) gen.committed(l.code);
+        }
+    }
+
+    // null (внутренняя ошибка) хуже любого статуса; отказы лимитов хуже неверного ввода
+    private static LinkStatus worse(LinkStatus cur, LinkStatus item) {
+        if (cur == null || item == null) return null;
+        return rank(item) > rank(cur) ? item : cur;
+    }
+
+    private static int rank(LinkStatus s) {
+        return switch (s) {
+            case ACTIVE -> 0;
+            case INVALID_INPUT -> 1;
+            case QUOTA_EXCEEDED -> 2;
+            case RATE_LIMITED -> 3;
+            default -> 4;
+        };
     }
 
     public OpenResult open(String code) {
-        //repo.deleteExpired(Instant.now());
+        long t0 = metrics.start();
+        OpenResult r = openOne(code);
+        metrics.record(Op.OPEN, r.status(), t0);
+        return r;
+    }
 
+    private OpenResult openOne(String code) {
         ShortLink link = repo.get(code);
         if (link == null) {
             return new OpenResult(LinkStatus.NOT_FOUND, null, 0, 0, null, "Link not found");
         }
 
-        Instant now = Instant.now();
+        long now = clock.millis();
         if (link.expired(now)) {
             repo.delete(code);
-            return new OpenResult(LinkStatus.EXPIRED, null, link.clicks, link.maxClicks, link.expiresAt,
+            return new OpenResult(LinkStatus.EXPIRED, null, link.clicks(), link.maxClicks(), link.expiresAt,
                     "Link expired (removed)");
         }
 
-        synchronized (link) {
-            if (link.exhausted()) {
-                return new OpenResult(LinkStatus.LIMIT_EXHAUSTED, null, link.clicks, link.maxClicks, link.expiresAt,
-                        "Click limit exhausted");
-            }
-            link.clicks++;
-            String msg = (link.clicks >= link.maxClicks)
-                    ? "OK (limit exhausted after this open)"
-                    : "OK";
-            return new OpenResult(LinkStatus.ACTIVE, link.originalUrl, link.clicks, link.maxClicks, link.expiresAt, msg);
+        if (!limits.tryOpen(code)) {
+            return new OpenResult(LinkStatus.RATE_LIMITED, null, link.clicks(), link.maxClicks(), link.expiresAt,
+                    "Too many opens, retry later");
+        }
+
+        long st = repo.tryClick(link);
+        int clicks = ShortLink.clicksOf(st);
+        int maxClicks = ShortLink.maxClicksOf(st);
+        if (!ShortLink.accepted(st)) {
+            return new OpenResult(LinkStatus.LIMIT_EXHAUSTED, null, clicks, maxClicks, link.expiresAt,
+                    "Click limit exhausted");
+        }
+        if (analytics != null) analytics.publish(code, now);
+        String msg = (clicks >= maxClicks)
+                ? "OK (limit exhausted after this open)"
+                : "OK";
+        return new OpenResult(LinkStatus.ACTIVE, link.originalUrl, clicks, maxClicks, link.expiresAt, msg);
+    }
+
+    // то же, что open, но без перехода: счётчик кликов, лимит частоты и аналитика не трогаются,
+    // истёкшая ссылка не удаляется (HEAD от превью ссылок и проверок доступности)
+    public OpenResult resolve(String code) {
+        ShortLink link = repo.get(code);
+        if (link == null) {
+            return new OpenResult(LinkStatus.NOT_FOUND, null, 0, 0, null, "Link not found");
+        }
+        long st = link.state();
+        int clicks = ShortLink.clicksOf(st);
+        int maxClicks = ShortLink.maxClicksOf(st);
+        if (link.expired(clock.millis())) {
+            return new OpenResult(LinkStatus.EXPIRED, null, clicks, maxClicks, link.expiresAt, "Link expired");
         }
+        if (clicks >= maxClicks) {
+            return new OpenResult(LinkStatus.LIMIT_EXHAUSTED, null, clicks, maxClicks, link.expiresAt,
+                    "Click limit exhausted");
+        }
+        return new OpenResult(LinkStatus.ACTIVE, link.originalUrl, clicks, maxClicks, link.expiresAt, "OK");
     }
 
     public List<ShortLink> list(UUID userId) {
-        repo.deleteExpired(Instant.now());
-        return repo.listByOwner(userId);
+        long t0 = metrics.start();
+        Instant now = clock.now();
+        repo.drainExpired(now, INLINE_DRAIN);
+        List<ShortLink> r = live(repo.listByOwner(userId), now);
+        metrics.record(Op.LIST, LinkStatus.ACTIVE, t0);
+        return r;
+    }
+
+    public List<ShortLink> list(UUID userId, LinkRepository.OwnerCursor after, int limit) {
+        long t0 = metrics.start();
+        Instant now = clock.now();
+        repo.drainExpired(now, INLINE_DRAIN);
+        List<ShortLink> r = live(repo.listByOwner(userId, after, limit), now);
+        metrics.record(Op.LIST, LinkStatus.ACTIVE, t0);
+        return r;
     }
 
     public OpResult updateLimit(UUID userId, String code, int newLimit) {
-        repo.deleteExpired(Instant.now());
+        long t0 = metrics.start();
+        OpResult r = updateLimitOne(userId, code, newLimit);
+        metrics.record(Op.UPDATE_LIMIT, r.status(), t0);
+        return r;
+    }
 
-        ShortLink link = repo.get(code);
+    private OpResult updateLimitOne(UUID userId, String code, int newLimit) {
+        ShortLink link = liveLink(code);
         if (link == null) return new OpResult(LinkStatus.NOT_FOUND, "Link not found");
         if (!link.ownerId.equals(userId)) return new OpResult(LinkStatus.FORBIDDEN, "Only owner can update");
         if (newLimit <= 0) return new OpResult(LinkStatus.INVALID_INPUT, "newLimit must be > 0");
 
-        synchronized (link) {
-            if (newLimit < link.clicks) return new OpResult(LinkStatus.INVALID_INPUT, "newLimit must be >= current clicks");
-            link.maxClicks = newLimit;
-            return new OpResult(LinkStatus.ACTIVE, "Limit updated");
+        if (!ShortLink.accepted(repo.trySetMaxClicks(link, newLimit))) {
+            return new OpResult(LinkStatus.INVALID_INPUT, "newLimit must be >= current clicks");
         }
+        return new OpResult(LinkStatus.ACTIVE, "Limit updated");
     }
 
     public OpResult delete(UUID userId, String code) {
-        repo.deleteExpired(Instant.now());
+        long t0 = metrics.start();
+        OpResult r = deleteOne(userId, code);
+        metrics.record(Op.DELETE, r.status(), t0);
+        return r;
+    }
 
-        ShortLink link = repo.get(code);
+    private OpResult deleteOne(UUID userId, String code) {
+        ShortLink link = liveLink(code);
         if (link == null) return new OpResult(LinkStatus.NOT_FOUND, "Link not found");
         if (!link.ownerId.equals(userId)) return new OpResult(LinkStatus.FORBIDDEN, "Only owner can delete");
 
@@ -107,25 +476,91 @@ public final class ShortenerService {
         return new OpResult(LinkStatus.ACTIVE, "Deleted");
     }
 
+    // полная очистка (команда cleanup); фоновая идёт порциями через expireSlice
     public int cleanupExpiredNow() {
-        return repo.deleteExpired(Instant.now());
+        long t0 = System.nanoTime();
+        int removed = repo.deleteExpired(clock.now());
+        long nanos = System.nanoTime() - t0;
+        limits.evictIdle();
+        metrics.record(Op.CLEANUP, LinkStatus.ACTIVE, t0);
+        metrics.cleanupSweep(removed, nanos);
+        return removed;
     }
 
-    private static String validateUrl(String url) {
-        try {
-            URI uri = URI.create(url.trim());
-            String scheme = uri.getScheme();
-            if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
-                throw new IllegalArgumentException("URL must start with http:// or https://");
-            }
-            if (uri.getHost() == null || uri.getHost().isBlank()) {
-                throw new IllegalArgumentException("URL must have host");
-            }
-            return uri.toString();
-        } catch (IllegalArgumentException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid URL");
+    // удаляет не более max уже истёкших ссылок, начиная с самых ранних
+    public int expireSlice(int max) {
+        long t0 = System.nanoTime();
+        int removed = repo.drainExpired(clock.now(), max);
+        long nanos = System.nanoTime() - t0;
+        metrics.record(Op.CLEANUP, LinkStatus.ACTIVE, t0);
+        metrics.cleanupSweep(removed, nanos);
+        return removed;
+    }
+
+    // самый ранний срок истечения среди хранимых ссылок; null — ссылок нет
+    public Instant nextExpiry() {
+        return repo.nextExpiry();
+    }
+
+    public int evictIdleLimits() {
+        return limits.evictIdle();
+    }
+
+    // выгрузка всех ссылок в JSONL (см. LinkTransfer)
+    public LinkTransfer.Result exportLinks(Path file) throws IOException {
+        return LinkTransfer.export(repo, file, TRANSFER_PARALLELISM);
+    }
+
+    // загрузка выгрузки с сохранением кодов, владельцев, счётчиков и сроков: URL и код проверяются как при create,
+    // истёкшие ссылки пропускаются; лимиты частоты и квота владельца не применяются
+    public LinkTransfer.Result importLinks(Path file) throws IOException {
+        Instant now = clock.now();
+        CodeAllocator base = gen instanceof CodePool pool ? pool.source() : gen;
+        var r = LinkTransfer.importJsonl(repo, file, TRANSFER_PARALLELISM, l -> {
+            if (!validCode(l.code)) throw new IllegalArgumentException("Invalid code");
+            String url = validateUrl(l.originalUrl);
+            if (l.maxClicks() <= 0) throw new IllegalArgumentException("maxClicks must be > 0");
+            if (l.expired(now)) throw new IllegalArgumentException("Link expired at " + l.expiresAt);
+            if (base instanceof SequentialCodeGenerator seq) seq.advancePast(l.code);
+            return url.equals(l.originalUrl) ? l
+                    : new ShortLink(l.code, l.ownerId, url, l.createdAt, l.expiresAt, l.clicks(), l.maxClicks());
+        });
+        // коды в пуле проверены до загрузки и могли совпасть с загруженными
+        if (gen instanceof CodePool pool) pool.discard();
+        return r;
+    }
+
+    private CreateResult result(ShortLink l) {
+        return new CreateResult(l.ownerId, l.code, baseUrl + "/" + l.code, l.expiresAt);
+    }
+
+    private ShortLink liveLink(String code) {
+        Instant now = clock.now();
+        repo.drainExpired(now, INLINE_DRAIN);
+        ShortLink link = repo.get(code);
+        if (link != null && link.expired(now)) {
+            repo.delete(code);
+            return null;
         }
+        return link;
+    }
+
+    private static List<ShortLink> live(List<ShortLink> links, Instant now) {
+        links.removeIf(l -> l.expired(now));
+        return links;
+    }
+
+    // коды генераторов — Base62, не длиннее 16 символов
+    private static boolean validCode(String code) {
+        if (code.isEmpty() || code.length() > 16) return false;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) return false;
+        }
+        return true;
+    }
+
+    private static String validateUrl(String url) {
+        return UrlCanonicalizer.canonicalize(url);
     }
 }
\ No newline at end of file
@@ -0,0 +1,318 @@
+package com.example.shortener.core.service;
+
+import java.net.IDN;
+
+// проверка и нормализация http(s)-URL за один проход по символам, без URI и промежуточных строк:
+// схема и хост в нижнем регистре, IDN-хост в punycode, порт по умолчанию и ведущие нули порта убраны,
+// %XX незарезервированных символов раскодированы, остальные — с заглавными hex-цифрами, точечные сегменты пути
+// убраны (RFC 3986, 6.2.2). Принимает то же, что URI с хостом-именем, IPv4 или [IPv6], плюс IDN-хосты (URI их
+// отвергает) и минус порты больше 65535. Если менять нечего, возвращает саму (обрезанную) входную строку
+public final class UrlCanonicalizer {
+    private static final String NO_SCHEME = "URL must start with http:// or https://";
+    private static final String NO_HOST = "URL must have host";
+
+    private static final byte USER = 1, PATH = 2, QUERY = 4, FRAGMENT = 8, UNRESERVED = 16;
+    private static final byte[] CLASS = new byte[128];
+    static {
+        String unreserved = "-._~0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+        for (int i = 0; i < unreserved.length(); i++) CLASS[unreserved.charAt(i)] = USER | PATH | QUERY | FRAGMENT | UNRESERVED;
+        for (char c : "!$&'()*+,;=:".toCharArray()) CLASS[c] = USER | PATH | QUERY | FRAGMENT;
+        CLASS['@'] = PATH | QUERY | FRAGMENT;
+        CLASS['/'] = PATH | QUERY | FRAGMENT;
+        CLASS['?'] = QUERY | FRAGMENT;
+        CLASS['['] = QUERY | FRAGMENT;
+        CLASS[']'] = QUERY | FRAGMENT;
+    }
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // выходной буфер потока: растёт до самого длинного URL и переиспользуется
+    private static final ThreadLocal<Out> OUT = ThreadLocal.withInitial(Out::new);
+
+    private static final class Out {
+        char[] buf = new char[256];
+        int n;
+        boolean changed;
+
+        void put(char c) {
+            if (n == buf.length) buf = java.util.Arrays.copyOf(buf, buf.length * 2);
+            buf[n++] = c;
+        }
+    }
+
+    private UrlCanonicalizer() {}
+
+    public static String canonicalize(String url) {
+        int b = 0, e = url.length();
+        while (b < e && url.charAt(b) <= ' ') b++;
+        while (e > b && url.charAt(e - 1) <= ' ') e--;
+        Out out = OUT.get();
+        out.n = 0;
+        out.changed = b != 0 || e != url.length();
+
+        int i = scheme(url, b, e, out);
+        boolean https = i - b == 6;
+        if (i + 2 >= e || url.charAt(i) != '/' || url.charAt(i + 1) != '/') throw new IllegalArgumentException(NO_HOST);
+        out.put('/');
+        out.put('/');
+        i += 2;
+
+        int end = i, at = -1;
+        for (char c; end < e && (c = url.charAt(end)) != '/' && c != '?' && c != '#'; end++) {
+            if (c == '@' && at < 0) at = end;
+        }
+        if (at >= 0) {
+            component(url, i, at, USER, "user info", out);
+            out.put('@');
+            i = at + 1;
+        }
+        authority(url, i, end, https, out);
+
+        i = end;
+        int pathStart = out.n;
+        boolean dots = false;
+        for (char c; i < e && (c = url.charAt(i)) != '?' && c != '#'; i++) {
+            if (c == '/' && i + 1 < e && (url.charAt(i + 1) == '.' || url.charAt(i + 1) == '%')) dots = true;
+            i = put(url, i, e, PATH, "path", out);
+        }
+        if (dots) removeDotSegments(out, pathStart);
+        if (i < e && url.charAt(i) == '?') {
+            out.put('?');
+            for (i++; i < e && url.charAt(i) != '#'; i++) i = put(url, i, e, QUERY, "query", out);
+        }
+        if (i < e) {
+            out.put('#');
+            for (i++; i < e; i++) i = put(url, i, e, FRAGMENT, "fragment", out);
+        }
+        if (!out.changed) return b == 0 && e == url.length() ? url : url.substring(b, e);
+        return new String(out.buf, 0, out.n);
+    }
+
+    // схема http/https в нижнем регистре вместе с ':'; возвращает индекс после ':'
+    private static int scheme(String url, int b, int e, Out out) {
+        int i = b;
+        while (i < e && isSchemeChar(url.charAt(i), i == b)) i++;
+        if (i == e || url.charAt(i) != ':') throw new IllegalArgumentException(NO_SCHEME);
+        int len = i - b;
+        if (!(len == 4 || len == 5) || !url.regionMatches(true, b, "https", 0, len)) {
+            throw new IllegalArgumentException(NO_SCHEME);
+        }
+        for (int k = b; k < i; k++) {
+            char c = url.charAt(k);
+            if (c < 'a') out.changed = true;
+            out.put((char) (c | 0x20));
+        }
+        out.put(':');
+        return i + 1;
+    }
+
+    private static boolean isSchemeChar(char c, boolean first) {
+        if ((c | 0x20) >= 'a' && (c | 0x20) <= 'z') return true;
+        return !first && (c >= '0' && c <= '9' || c == '+' || c == '-' || c == '.');
+    }
+
+    // хост[:порт] из [b, e)
+    private static void authority(String url, int b, int e, boolean https, Out out) {
+        int hostEnd;
+        if (b < e && url.charAt(b) == '[') {
+            hostEnd = url.indexOf(']', b);
+            if (hostEnd < 0 || hostEnd >= e) throw new IllegalArgumentException(NO_HOST);
+            hostEnd++;
+            ipv6(url, b + 1, hostEnd - 1, out);
+        } else {
+            hostEnd = b;
+            boolean ascii = true;
+            for (char c; hostEnd < e && (c = url.charAt(hostEnd)) != ':'; hostEnd++) ascii &= c < 128;
+            if (ascii) {
+                hostname(url, b, hostEnd, out);
+            } else {
+                String idn;
+                try {
+                    idn = IDN.toASCII(url.substring(b, hostEnd));
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException(NO_HOST);
+                }
+                out.changed = true;
+                hostname(idn, 0, idn.length(), out);
+            }
+        }
+        if (hostEnd == e) return;
+        if (url.charAt(hostEnd) != ':') throw new IllegalArgumentException(NO_HOST);
+        int port = 0;
+        for (int i = hostEnd + 1; i < e; i++) {
+            char c = url.charAt(i);
+            if (c < '0' || c > '9') throw new IllegalArgumentException(NO_HOST);
+            port = port * 10 + (c - '0');
+            if (port > 65_535) throw new IllegalArgumentException("URL port must be <= 65535");
+        }
+        if (hostEnd + 1 == e || port == (https ? 443 : 80)) {
+            out.changed = true;
+            return;
+        }
+        out.put(':');
+        int start = out.n;
+        for (int p = port; p > 0 || out.n == start; p /= 10) out.put((char) ('0' + p % 10));
+        for (int l = start, r = out.n - 1; l < r; l++, r--) {
+            char t = out.buf[l];
+            out.buf[l] = out.buf[r];
+            out.buf[r] = t;
+        }
+        if (out.n - start != e - hostEnd - 1) out.changed = true;
+    }
+
+    // IPv4 из четырёх октетов <= 255 или имя из меток [a-z0-9-], верхняя метка многосоставного имени — с буквы
+    private static void hostname(String s, int b, int e, Out out) {
+        if (b == e) throw new IllegalArgumentException(NO_HOST);
+        int labels = 0, lastLabel = b;
+        boolean numeric = true;
+        for (int i = b; i < e; ) {
+            int start = i;
+            int value = 0;
+            boolean digits = true;
+            for (char c; i < e && (c = s.charAt(i)) != '.'; i++) {
+                boolean digit = c >= '0' && c <= '9';
+                char lower = (char) (c | 0x20);
+                if (!digit && !(lower >= 'a' && lower <= 'z') && !(c == '-' && i != start)) throw new IllegalArgumentException(NO_HOST);
+                if (digit) value = Math.min(value * 10 + (c - '0'), 1000);
+                else digits = false;
+                if (c != lower && !digit && c != '-') out.changed = true;
+                out.put(digit || c == '-' ? c : lower);
+            }
+            if (i == start || s.charAt(i - 1) == '-') throw new IllegalArgumentException(NO_HOST);
+            numeric &= digits && value <= 255 && i - start <= 3;
+            labels++;
+            lastLabel = start;
+            if (i < e) {
+                out.put('.');
+                i++;
+                if (i == e) numeric = false;
+            }
+        }
+        if (numeric && labels == 4) return;
+        char top = s.charAt(lastLabel);
+        if (labels > 1 && !((top | 0x20) >= 'a' && (top | 0x20) <= 'z')) throw new IllegalArgumentException(NO_HOST);
+    }
+
+    // содержимое [...]: до 8 групп hex, одно '::', в конце может быть IPv4, затем %зона из [A-Za-z0-9_.]; hex в нижнем регистре
+    private static void ipv6(String s, int b, int e, Out out) {
+        int zone = b;
+        while (zone < e && s.charAt(zone) != '%') zone++;
+        out.put('[');
+        int groups = 0;
+        boolean compressed = false;
+        int i = b;
+        if (i + 1 < zone && s.charAt(i) == ':' && s.charAt(i + 1) == ':') {
+            compressed = true;
+            out.put(':');
+            out.put(':');
+            i += 2;
+        }
+        while (i < zone) {
+            int j = i;
+            while (j < zone && Character.digit(s.charAt(j), 16) >= 0) j++;
+            if (j < zone && s.charAt(j) == '.') {
+                int before = out.n;
+                hostname(s, i, zone, out);
+                if (!isIpv4(out.buf, before, out.n)) throw new IllegalArgumentException(NO_HOST);
+                groups += 2;
+                i = zone;
+                break;
+            }
+            if (j == i || j - i > 4) throw new IllegalArgumentException(NO_HOST);
+            for (int k = i; k < j; k++) {
+                char c = s.charAt(k);
+                if (c >= 'A' && c <= 'F') {
+                    c |= 0x20;
+                    out.changed = true;
+                }
+                out.put(c);
+            }
+            groups++;
+            i = j;
+            if (i == zone) break;
+            if (s.charAt(i) != ':' || i + 1 == zone) throw new IllegalArgumentException(NO_HOST);
+            out.put(':');
+            if (s.charAt(++i) == ':') {
+                if (compressed) throw new IllegalArgumentException(NO_HOST);
+                compressed = true;
+                out.put(':');
+                i++;
+            }
+        }
+        if (compressed ? groups > 7 : groups != 8) throw new IllegalArgumentException(NO_HOST);
+        if (zone < e) {
+            if (zone + 1 == e) throw new IllegalArgumentException(NO_HOST);
+            out.put('%');
+            for (int k = zone + 1; k < e; k++) {
+                char c = s.charAt(k);
+                if (!(c < 128 && (CLASS[c] & UNRESERVED) != 0 && c != '-' && c != '~')) throw new IllegalArgumentException(NO_HOST);
+                out.put(c);
+            }
+        }
+        out.put(']');
+    }
+
+    private static boolean isIpv4(char[] buf, int b, int e) {
+        int dots = 0;
+        for (int i = b; i < e; i++) {
+            if (buf[i] == '.') dots++;
+            else if (buf[i] < '0' || buf[i] > '9') return false;
+        }
+        return dots == 3;
+    }
+
+    private static void component(String url, int b, int e, byte mask, String name, Out out) {
+        for (int i = b; i < e; i++) i = put(url, i, e, mask, name, out);
+    }
+
+    // один символ компонента или %XX; возвращает индекс последнего прочитанного символа
+    private static int put(String url, int i, int e, byte mask, String name, Out out) {
+        char c = url.charAt(i);
+        if (c == '%') {
+            int hi = i + 2 < e ? Character.digit(url.charAt(i + 1), 16) : -1;
+            int lo = hi >= 0 ? Character.digit(url.charAt(i + 2), 16) : -1;
+            if (lo < 0 || url.charAt(i + 1) >= 128 || url.charAt(i + 2) >= 128) {
+                throw new IllegalArgumentException("Malformed escape pair at index " + i + ": " + url);
+            }
+            char decoded = (char) (hi << 4 | lo);
+            if (decoded < 128 && (CLASS[decoded] & UNRESERVED) != 0) {
+                out.put(decoded);
+                out.changed = true;
+            } else {
+                out.put('%');
+                out.put(HEX[hi]);
+                out.put(HEX[lo]);
+                if (url.charAt(i + 1) != HEX[hi] || url.charAt(i + 2) != HEX[lo]) out.changed = true;
+            }
+            return i + 2;
+        }
+        boolean ok = c < 128 ? (CLASS[c] & mask) != 0 : !Character.isISOControl(c) && !Character.isSpaceChar(c);
+        if (!ok) throw new IllegalArgumentException("Illegal character in " + name + " at index " + i + ": " + url);
+        out.put(c);
+        return i;
+    }
+
+    // RFC 3986, 5.2.4 на месте в buf[start..n): путь начинается с '/', поэтому результат не длиннее исходного
+    private static void removeDotSegments(Out out, int start) {
+        char[] buf = out.buf;
+        int end = out.n, w = start;
+        for (int r = start; r < end; ) {
+            int seg = r + 1, segEnd = seg;
+            while (segEnd < end && buf[segEnd] != '/') segEnd++;
+            int len = segEnd - seg;
+            boolean last = segEnd == end;
+            if (len == 1 && buf[seg] == '.') {
+                if (last) buf[w++] = '/';
+            } else if (len == 2 && buf[seg] == '.' && buf[seg + 1] == '.') {
+                while (w > start && buf[w - 1] != '/') w--;
+                if (w > start) w--;
+                if (last) buf[w++] = '/';
+            } else {
+                System.arraycopy(buf, r, buf, w, segEnd - r);
+                w += segEnd - r;
+            }
+            r = segEnd;
+        }
+        if (w != end) out.changed = true;
+        out.n = w;
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.shortener.infra;
 
 import java.io.FileInputStream;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 public final class AppConfig {
@@ -10,13 +13,74 @@ public final class AppConfig {
     public final Duration cleanupInterval;
     public final int codeLength;
     public final boolean openBrowser;
+    public final String codeStrategy;
+    public final int nodeId;
+    public final int nodeCount;
+    public final Long codeSecret;
+    public final Durability durability;
+    public final Path dataDir;
+    public final Duration walBatch;
+    public final Duration snapshotInterval;
+    public final String repository;
+    public final int mappedCapacity;
+    public final boolean idempotentCreate;
+    public final int shards;
+    public final List<String> shardAddresses;
+    public final int cacheCapacity;
+    public final Duration cacheNegativeTtl;
+    public final long cacheBloomExpected;
+    public final boolean metrics;
+    public final Path metricsDumpFile;
+    public final Duration metricsDumpInterval;
+    public final RateLimits limits;
+    public final int clicksBufferSize;
+    public final int clicksMaxCodes;
+    public final int codePoolSize;
+    public final int codePoolLowWatermark;
+    public final int codePoolThreads;
+    // шаг грубых часов сервиса; ZERO — System.currentTimeMillis() на каждый вызов
+    public final Duration clockTick;
 
-    private AppConfig(String baseUrl, Duration ttl, Duration cleanupInterval, int codeLength, boolean openBrowser) {
+    private AppConfig(String baseUrl, Duration ttl, Duration cleanupInterval, int codeLength, boolean openBrowser,
+                      String codeStrategy, int nodeId, int nodeCount, Long codeSecret,
+                      Durability durability, Path dataDir, Duration walBatch, Duration snapshotInterval,
+                      String repository, int mappedCapacity, boolean idempotentCreate,
+                      int shards, List<String> shardAddresses,
+                      int cacheCapacity, Duration cacheNegativeTtl, long cacheBloomExpected,
+                      boolean metrics, Path metricsDumpFile, Duration metricsDumpInterval,
+                      RateLimits limits, int clicksBufferSize, int clicksMaxCodes,
+                      int codePoolSize, int codePoolLowWatermark, int codePoolThreads, Duration clockTick) {
         this.baseUrl = baseUrl;
         this.ttl = ttl;
         this.cleanupInterval = cleanupInterval;
         this.codeLength = codeLength;
         this.openBrowser = openBrowser;
+        this.codeStrategy = codeStrategy;
+        this.nodeId = nodeId;
+        this.nodeCount = nodeCount;
+        this.codeSecret = codeSecret;
+        this.durability = durability;
+        this.dataDir = dataDir;
+        this.walBatch = walBatch;
+        this.snapshotInterval = snapshotInterval;
+        this.repository = repository;
+        this.mappedCapacity = mappedCapacity;
+        this.idempotentCreate = idempotentCreate;
+        this.shards = shards;
+        this.shardAddresses = shardAddresses;
+        this.cacheCapacity = cacheCapacity;
+        this.cacheNegativeTtl = cacheNegativeTtl;
+        this.cacheBloomExpected = cacheBloomExpected;
+        this.metrics = metrics;
+        this.metricsDumpFile = metricsDumpFile;
+        this.metricsDumpInterval = metricsDumpInterval;
+        this.limits = limits;
+        this.clicksBufferSize = clicksBufferSize;
+        this.clicksMaxCodes = clicksMaxCodes;
+        this.codePoolSize = codePoolSize;
+        this.codePoolLowWatermark = codePoolLowWatermark;
+        this.codePoolThreads = codePoolThreads;
+        this.clockTick = clockTick;
     }
 
     public static AppConfig load() {
@@ -30,7 +94,51 @@ public final class AppConfig {
         long cleanupSec = Long.parseLong(p.getProperty("app.cleanupIntervalSeconds", "30"));
         int codeLen = Integer.parseInt(p.getProperty("app.codeLength", "8"));
         boolean openBrowser = Boolean.parseBoolean(p.getProperty("app.openBrowser", "true"));
+        String codeStrategy = p.getProperty("app.codeStrategy", "hash").trim().toLowerCase();
+        int nodeId = Integer.parseInt(p.getProperty("app.nodeId", "0"));
+        int nodeCount = Integer.parseInt(p.getProperty("app.nodeCount", "1"));
+        String secret = p.getProperty("app.codeSecret", "").trim();
+        Long codeSecret = secret.isEmpty() ? null : Long.parseLong(secret);
+        Durability durability = Durability.parse(p.getProperty("app.durability", "off"));
+        Path dataDir = Path.of(p.getProperty("app.dataDir", "data"));
+        long walBatchMs = Long.parseLong(p.getProperty("app.walBatchMillis", "10"));
+        long snapshotSec = Long.parseLong(p.getProperty("app.snapshotIntervalSeconds", "300"));
+        String repository = p.getProperty("app.repository", "memory").trim().toLowerCase();
+        int mappedCapacity = Integer.parseInt(p.getProperty("app.mappedCapacity", "1048576"));
+        boolean idempotentCreate = Boolean.parseBoolean(p.getProperty("app.idempotentCreate", "false"));
+        int shards = Integer.parseInt(p.getProperty("app.shards", "4"));
+        List<String> shardAddresses = Arrays.stream(p.getProperty("app.shardAddresses", "").split(","))
+                .map(String::trim).filter(a -> !a.isEmpty()).toList();
+        int cacheCapacity = Integer.parseInt(p.getProperty("app.cache.capacity", "0"));
+        long cacheNegativeMs = Long.parseLong(p.getProperty("app.cache.negativeTtlMillis", "1000"));
+        long cacheBloomExpected = Long.parseLong(p.getProperty("app.cache.bloomExpected", "1000000"));
+        boolean metrics = Boolean.parseBoolean(p.getProperty("app.metrics", "true"));
+        String dumpFile = p.getProperty("app.metrics.dumpFile", "").trim();
+        long dumpSec = Long.parseLong(p.getProperty("app.metrics.dumpIntervalSeconds", "60"));
+        var limits = new RateLimits(
+                Double.parseDouble(p.getProperty("app.limits.createPerSecond", "0")),
+                Integer.parseInt(p.getProperty("app.limits.createBurst", "0")),
+                Double.parseDouble(p.getProperty("app.limits.openPerSecond", "0")),
+                Integer.parseInt(p.getProperty("app.limits.openBurst", "0")),
+                Integer.parseInt(p.getProperty("app.limits.maxLinksPerOwner", "0")));
+        int clicksBufferSize = Integer.parseInt(p.getProperty("app.clicks.bufferSize", "65536"));
+        int clicksMaxCodes = Integer.parseInt(p.getProperty("app.clicks.maxCodes", "10000"));
+        int codePoolSize = Integer.parseInt(p.getProperty("app.codePool.size", "0"));
+        // пустое значение — четверть размера пула
+        String lowWatermark = p.getProperty("app.codePool.lowWatermark", "").trim();
+        int codePoolLowWatermark = lowWatermark.isEmpty()
+                ? Math.max(1, codePoolSize / 4) : Integer.parseInt(lowWatermark);
+        int codePoolThreads = Integer.parseInt(p.getProperty("app.codePool.threads", "1"));
+        long clockTickMs = Long.parseLong(p.getProperty("app.clock.tickMillis", "0"));
 
-        return new AppConfig(baseUrl, Duration.ofSeconds(ttlSec), Duration.ofSeconds(cleanupSec), codeLen, openBrowser);
+        return new AppConfig(baseUrl, Duration.ofSeconds(ttlSec), Duration.ofSeconds(cleanupSec), codeLen, openBrowser,
+                codeStrategy, nodeId, nodeCount, codeSecret,
+                durability, dataDir, Duration.ofMillis(walBatchMs), Duration.ofSeconds(snapshotSec),
+                repository, mappedCapacity, idempotentCreate,
+                shards, shardAddresses,
+                cacheCapacity, Duration.ofMillis(cacheNegativeMs), cacheBloomExpected,
+                metrics, dumpFile.isEmpty() ? null : Path.of(dumpFile), Duration.ofSeconds(dumpSec),
+                limits, clicksBufferSize, clicksMaxCodes,
+                codePoolSize, codePoolLowWatermark, codePoolThreads, Duration.ofMillis(clockTickMs));
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.example.shortener.infra;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// потокобезопасный фильтр Блума для строк: только добавление, k позиций двойным хэшированием
+final class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long size;
+    private final int k;
+
+    BloomFilter(long expected, double fpp) {
+        long m = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, (m + 63) & ~63L);
+        this.size = m;
+        this.k = Math.max(1, (int) Math.round((double) m / expected * Math.log(2)));
+        this.bits = new AtomicLongArray((int) (m >>> 6));
+    }
+
+    void add(CharSequence s) {
+        long h = hash(s);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 0; i < k; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % size;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long cur = bits.get(word);
+            while ((cur & mask) == 0) {
+                long witness = bits.compareAndExchange(word, cur, cur | mask);
+                if (witness == cur) break;
+                cur = witness;
+            }
+        }
+    }
+
+    boolean mightContain(CharSequence s) {
+        long h = hash(s);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 0; i < k; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % size;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private static long hash(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
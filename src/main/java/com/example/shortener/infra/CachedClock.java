@@ -0,0 +1,61 @@
+package com.example.shortener.infra;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+// грубые часы: фоновый поток раз в tick переписывает volatile-поле, и чтение на горячем пути — одна загрузка
+// вместо обращения к системным часам. Время отстаёт не больше чем на tick (плюс задержка планировщика под
+// нагрузкой) и не идёт назад, даже если системные часы перевели. Поток стартует при первом чтении,
+// после close часы снова читают System.currentTimeMillis()
+public final class CachedClock implements TimeSource, AutoCloseable {
+    private final long tickNanos;
+    private final Thread ticker;
+    // 0 — поток не запущен или уже остановлен
+    private volatile long millis;
+    private volatile boolean closed;
+
+    public CachedClock(Duration tick) {
+        if (tick.isNegative() || tick.isZero()) throw new IllegalArgumentException("tick must be > 0");
+        this.tickNanos = tick.toNanos();
+        this.ticker = new Thread(this::run, "cached-clock");
+        ticker.setDaemon(true);
+    }
+
+    @Override
+    public long millis() {
+        long m = millis;
+        return m != 0 ? m : start();
+    }
+
+    private synchronized long start() {
+        if (closed) return System.currentTimeMillis();
+        if (millis == 0) {
+            millis = System.currentTimeMillis();
+            ticker.start();
+        }
+        return millis;
+    }
+
+    private void run() {
+        while (!closed) {
+            LockSupport.parkNanos(this, tickNanos);
+            long now = System.currentTimeMillis();
+            if (now > millis) millis = now;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        LockSupport.unpark(ticker);
+        try {
+            if (ticker.isAlive()) ticker.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        millis = 0;
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// кэш чтения по коду перед любым LinkRepository: сегментированный LRU (пробный + защищённый сегменты)
+// в SEGMENTS независимых полосах, отрицательные записи с коротким TTL для несуществующих кодов и
+// фильтр Блума сохранённых кодов, отсекающий промахи без похода в хранилище. Фильтр только растёт:
+// удалённые и истёкшие коды остаются в нём, поэтому, когда вставок с последней сборки становится больше
+// расчётной ёмкости, он пересобирается в фоне из forEach хранилища.
+// Кэш и фильтр видят только записи через этот экземпляр: если в хранилище пишут и в обход него
+// (несколько фронтендов над общими шардами), фильтр нужно выключать (bloomExpected = 0).
+public final class CachingLinkRepository implements LinkRepository, AutoCloseable {
+    public record Stats(long hits, long misses, long negativeHits, long bloomRejects, long evictions, int size,
+                        long bloomRebuilds) {
+        public double hitRatio() {
+            long lookups = hits + negativeHits + bloomRejects + misses;
+            return lookups == 0 ? 0 : (double) (hits + negativeHits + bloomRejects) / lookups;
+        }
+
+        public Map<String, Number> toMap() {
+            Map<String, Number> m = new LinkedHashMap<>();
+            m.put("hits", hits);
+            m.put("misses", misses);
+            m.put("negativeHits", negativeHits);
+            m.put("bloomRejects", bloomRejects);
+            m.put("evictions", evictions);
+            m.put("size", size);
+            m.put("bloomRebuilds", bloomRebuilds);
+            m.put("hitRatio", hitRatio());
+            return m;
+        }
+    }
+
+    private static final int SEGMENTS = 64;
+
+    // link == null — отрицательная запись, действует до negativeUntil (System.nanoTime)
+    private record Entry(ShortLink link, long negativeUntil) {}
+
+    // пробный сегмент принимает новые записи; повторное попадание переводит запись в защищённый,
+    // вытесненные из защищённого возвращаются в пробный, из пробного — удаляются
+    private static final class Segment {
+        final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<String, Entry> protect = new LinkedHashMap<>(16, 0.75f, true);
+        final int probationCap;
+        final int protectCap;
+        long version;
+
+        Segment(int capacity) {
+            this.probationCap = Math.max(1, capacity / 5);
+            this.protectCap = Math.max(1, capacity - probationCap);
+        }
+
+        Entry get(String code) {
+            Entry e = protect.get(code);
+            if (e != null) return e;
+            e = probation.remove(code);
+            if (e == null) return null;
+            if (e.link() == null) {
+                probation.put(code, e);
+            } else {
+                protect.put(code, e);
+                if (protect.size() > protectCap) {
+                    Iterator<Map.Entry<String, Entry>> it = protect.entrySet().iterator();
+                    Map.Entry<String, Entry> lru = it.next();
+                    it.remove();
+                    probation.put(lru.getKey(), lru.getValue());
+                }
+            }
+            return e;
+        }
+
+        // возвращает число вытесненных записей
+        int put(String code, Entry e) {
+            protect.remove(code);
+            probation.put(code, e);
+            int evicted = 0;
+            Iterator<Map.Entry<String, Entry>> it = probation.entrySet().iterator();
+            while (probation.size() > probationCap && it.hasNext()) {
+                it.next();
+                it.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        void remove(String code) {
+            if (protect.remove(code) == null) probation.remove(code);
+        }
+
+        int size() {
+            return probation.size() + protect.size();
+        }
+    }
+
+    private final LinkRepository delegate;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long negativeTtlNanos;
+    private final long bloomExpected;
+    // текущий фильтр; next — собираемая замена, в которую на время сборки пишутся и новые коды
+    private volatile BloomFilter bloom;
+    private volatile BloomFilter next;
+    private volatile long bloomCapacity;
+    private final AtomicLong bloomInserted = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // запись держит read-замок от добавления кода в фильтр до записи в хранилище, подмена фильтров — write:
+    // код либо уже в хранилище к началу обхода, либо попадает в next
+    private final ReentrantReadWriteLock bloomLock = new ReentrantReadWriteLock();
+    // часы сервиса: запись, истёкшая по ним, не отдаётся из кэша, даже если системное время ещё не дошло
+    private final TimeSource clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder bloomRejects = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bloomRebuilds = new LongAdder();
+
+    public CachingLinkRepository(LinkRepository delegate, int capacity, Duration negativeTtl, long bloomExpected) {
+        this(delegate, capacity, negativeTtl, bloomExpected, TimeSource.SYSTEM);
+    }
+
+    // bloomExpected — ожидаемое число кодов (0 — без фильтра); фильтр заполняется уже сохранёнными кодами
+    public CachingLinkRepository(LinkRepository delegate, int capacity, Duration negativeTtl, long bloomExpected,
+                                 TimeSource clock) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        this.delegate = delegate;
+        this.clock = clock;
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.bloomExpected = bloomExpected;
+        if (bloomExpected > 0) {
+            long expected = Math.max(bloomExpected, delegate.size());
+            BloomFilter f = new BloomFilter(expected, 0.01);
+            delegate.forEach(l -> f.add(l.code));
+            bloom = f;
+            bloomCapacity = expected;
+            bloomInserted.set(delegate.size());
+        }
+    }
+
+    public Stats stats() {
+        int size = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), negativeHits.sum(), bloomRejects.sum(), evictions.sum(), size,
+                bloomRebuilds.sum());
+    }
+
+    // проверка коллизий при create: ответ «нет» от фильтра точен (в статистику чтений не входит)
+    @Override
+    public boolean exists(String code) {
+        BloomFilter f = bloom;
+        if (f != null && !f.mightContain(code)) return false;
+        return delegate.exists(code);
+    }
+
+    // код попадает в фильтр до записи, иначе параллельный get мог бы получить ложный промах
+    @Override
+    public void save(ShortLink link) {
+        if (bloom == null) {
+            delegate.save(link);
+        } else {
+            bloomLock.readLock().lock();
+            try {
+                addToBloom(link.code);
+                delegate.save(link);
+            } finally {
+                bloomLock.readLock().unlock();
+            }
+            maybeRebuildBloom();
+        }
+        invalidate(link.code);
+    }
+
+    @Override
+    public void saveAll(List<ShortLink> links) {
+        if (bloom == null) {
+            delegate.saveAll(links);
+        } else {
+            bloomLock.readLock().lock();
+            try {
+                for (ShortLink l : links) addToBloom(l.code);
+                delegate.saveAll(links);
+            } finally {
+                bloomLock.readLock().unlock();
+            }
+            maybeRebuildBloom();
+        }
+        for (ShortLink l : links) invalidate(l.code);
+    }
+
+    @Override
+    public ShortLink get(String code) {
+        Segment seg = segment(code);
+        long now = clock.millis();
+        long nanos = System.nanoTime();
+        long version;
+        synchronized (seg) {
+            Entry e = seg.get(code);
+            if (e != null) {
+                if (e.link() == null) {
+                    if (nanos - e.negativeUntil() < 0) {
+                        negativeHits.increment();
+                        return null;
+                    }
+                    seg.remove(code);
+                } else if (!e.link().expired(now)) {
+                    hits.increment();
+                    return e.link();
+                } else {
+                    // истёкшая ссылка могла уже уйти из хранилища при очистке — решает хранилище
+                    seg.remove(code);
+                }
+            }
+            version = seg.version;
+        }
+        BloomFilter f = bloom;
+        if (f != null && !f.mightContain(code)) {
+            bloomRejects.increment();
+            return null;
+        }
+        misses.increment();
+        ShortLink l = delegate.get(code);
+        Entry fresh = l != null ? new Entry(l, 0) : new Entry(null, System.nanoTime() + negativeTtlNanos);
+        synchronized (seg) {
+            // запись успела поменяться, пока читали хранилище, — результат мог устареть, не кэшируем
+            if (seg.version == version) evictions.add(seg.put(code, fresh));
+        }
+        return l;
+    }
+
+    @Override
+    public boolean delete(String code) {
+        boolean r = delegate.delete(code);
+        invalidate(code);
+        return r;
+    }
+
+    // хранилища со снимками (mapped, compact, удалённое) меняют счётчик у себя, а не в закэшированном
+    // объекте: копия в кэше обновляется принятым состоянием, иначе resolve видел бы исчерпанную ссылку активной
+    @Override
+    public long tryClick(ShortLink link) {
+        long st = delegate.tryClick(link);
+        if (ShortLink.accepted(st) && link.state() != st) refresh(link, st);
+        return st;
+    }
+
+    @Override
+    public long trySetMaxClicks(ShortLink link, int newLimit) {
+        long st = delegate.trySetMaxClicks(link, newLimit);
+        invalidate(link.code);
+        return st;
+    }
+
+    @Override
+    public ShortLink findByUrl(UUID ownerId, String url, Instant now) {
+        return delegate.findByUrl(ownerId, url, now);
+    }
+
+    @Override
+    public ShortLink saveIfAbsentByUrl(ShortLink link, Instant now) {
+        if (bloom == null) {
+            ShortLink r = delegate.saveIfAbsentByUrl(link, now);
+            invalidate(link.code);
+            return r;
+        }
+        ShortLink r;
+        bloomLock.readLock().lock();
+        try {
+            addToBloom(link.code);
+            r = delegate.saveIfAbsentByUrl(link, now);
+        } finally {
+            bloomLock.readLock().unlock();
+        }
+        maybeRebuildBloom();
+        invalidate(link.code);
+        return r;
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId) {
+        return delegate.listByOwner(ownerId);
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        return delegate.countByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId, OwnerCursor after, int limit) {
+        return delegate.listByOwner(ownerId, after, limit);
+    }
+
+    // удалённые очисткой коды не перечисляются, поэтому записи кэша проверяются по expiresAt при чтении
+    @Override
+    public int deleteExpired(Instant now) {
+        return delegate.deleteExpired(now);
+    }
+
+    @Override
+    public int drainExpired(Instant now, int max) {
+        return delegate.drainExpired(now, max);
+    }
+
+    @Override
+    public Instant nextExpiry() {
+        return delegate.nextExpiry();
+    }
+
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable c) c.close();
+    }
+
+    private void addToBloom(String code) {
+        bloom.add(code);
+        BloomFilter n = next;
+        if (n != null) n.add(code);
+        bloomInserted.incrementAndGet();
+    }
+
+    private void maybeRebuildBloom() {
+        if (bloomInserted.get() <= bloomCapacity || !rebuilding.compareAndSet(false, true)) return;
+        Thread t = new Thread(this::rebuildBloom, "bloom-rebuild");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // новый фильтр с запасом вдвое от текущего числа ссылок; пока идёт обход, новые коды пишутся в оба
+    private void rebuildBloom() {
+        try {
+            long expected = Math.max(bloomExpected, 2L * delegate.size());
+            BloomFilter fresh = new BloomFilter(expected, 0.01);
+            bloomLock.writeLock().lock();
+            try {
+                next = fresh;
+                bloomInserted.set(0);
+            } finally {
+                bloomLock.writeLock().unlock();
+            }
+            AtomicLong count = new AtomicLong();
+            delegate.forEach(l -> {
+                fresh.add(l.code);
+                count.incrementAndGet();
+            });
+            bloomLock.writeLock().lock();
+            try {
+                bloom = fresh;
+                next = null;
+                bloomCapacity = expected;
+                // вставки за время обхода уже посчитаны; часть из них могла попасть и в обход — оценка сверху
+                bloomInserted.addAndGet(count.get());
+            } finally {
+                bloomLock.writeLock().unlock();
+            }
+            bloomRebuilds.increment();
+        } finally {
+            rebuilding.set(false);
+        }
+        // за время обхода фильтр мог снова переполниться, а записи, заставшие флаг, сборку не запускали
+        maybeRebuildBloom();
+    }
+
+    // копия в кэше заменяется, только если она отстаёт от принятого состояния: параллельные клики
+    // не откатывают счётчик назад
+    private void refresh(ShortLink link, long st) {
+        Segment seg = segment(link.code);
+        synchronized (seg) {
+            seg.version++;
+            Map<String, Entry> m = seg.protect.containsKey(link.code) ? seg.protect : seg.probation;
+            Entry e = m.get(link.code);
+            if (e == null || e.link() == null || e.link().clicks() >= ShortLink.clicksOf(st)) return;
+            ShortLink l = e.link();
+            m.put(link.code, new Entry(new ShortLink(l.code, l.ownerId, l.originalUrl, l.createdAt, l.expiresAt,
+                    ShortLink.clicksOf(st), ShortLink.maxClicksOf(st)), 0));
+        }
+    }
+
+    private void invalidate(String code) {
+        Segment seg = segment(code);
+        synchronized (seg) {
+            seg.version++;
+            seg.remove(code);
+        }
+    }
+
+    private Segment segment(String code) {
+        int h = code.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.shortener.infra;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+// сводка переходов по времени: open кладёт событие в ClickEventRing, фоновый поток раскладывает события
+// по минутным (последний час) и часовым (последние двое суток) корзинам кода. Память ограничена:
+// не больше maxCodes кодов, при переполнении забывается код, по которому дольше всего не было переходов
+public final class ClickAnalytics implements AutoCloseable {
+    public static final int MINUTES = 60;
+    public static final int HOURS = 48;
+    private static final int BATCH = 4096;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    public record Point(Instant start, int clicks) {}
+
+    // только непустые корзины, от старых к новым; total — все учтённые переходы кода
+    public record Series(String code, long total, List<Point> minutes, List<Point> hours) {}
+
+    // корзина хранит номер своей минуты (часа): более новое событие обнуляет её, а опоздавшее событие
+    // старше корзины в ряд уже не попадает (учитывается только в total)
+    private static final class Counters {
+        long total;
+        final int[] minuteOf = new int[MINUTES];
+        final int[] perMinute = new int[MINUTES];
+        final int[] hourOf = new int[HOURS];
+        final int[] perHour = new int[HOURS];
+
+        void add(long epochMillis) {
+            total++;
+            int m = (int) (epochMillis / 60_000);
+            bump(minuteOf, perMinute, m, m % MINUTES);
+            int h = m / 60;
+            bump(hourOf, perHour, h, h % HOURS);
+        }
+
+        private static void bump(int[] of, int[] counts, int period, int i) {
+            if (of[i] == period) {
+                counts[i]++;
+            } else if (of[i] < period) {
+                of[i] = period;
+                counts[i] = 1;
+            }
+        }
+    }
+
+    private final ClickEventRing ring;
+    private final int maxCodes;
+    private final LinkedHashMap<String, Counters> byCode;
+    private long consumed;
+    private long evicted;
+    // поток разбора запускается первым переходом: запуск без open не платит за опрос буфера раз в миллисекунду
+    private final Thread worker;
+    private volatile boolean started;
+    private volatile boolean stopped;
+
+    // bufferSize — степень двойки; background = false — разбор только через drain() (для тестов)
+    public ClickAnalytics(int bufferSize, int maxCodes, boolean background) {
+        if (maxCodes <= 0) throw new IllegalArgumentException("maxCodes must be > 0");
+        this.ring = new ClickEventRing(bufferSize);
+        this.maxCodes = maxCodes;
+        this.byCode = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Counters> eldest) {
+                if (size() <= ClickAnalytics.this.maxCodes) return false;
+                evicted++;
+                return true;
+            }
+        };
+        if (background) {
+            worker = new Thread(this::run, "click-aggregator");
+            worker.setDaemon(true);
+        } else {
+            worker = null;
+        }
+    }
+
+    // не блокирует: при переполнении буфера событие теряется (см. dropped)
+    public boolean publish(String code, long epochMillis) {
+        if (!started && worker != null) start();
+        return ring.offer(code, epochMillis);
+    }
+
+    // разбирает всё, что уже лежит в буфере; возвращает число событий
+    public synchronized int drain() {
+        int total = 0;
+        int n;
+        do {
+            n = ring.drain((code, t) -> byCode.computeIfAbsent(code, c -> new Counters()).add(t), BATCH);
+            total += n;
+        } while (n == BATCH);
+        consumed += total;
+        return total;
+    }
+
+    public synchronized Series series(String code, Instant now) {
+        Counters c = byCode.get(code);
+        if (c == null) return new Series(code, 0, List.of(), List.of());
+        int nowMinute = (int) (now.toEpochMilli() / 60_000);
+        List<Point> minutes = new ArrayList<>();
+        for (int m = nowMinute - MINUTES + 1; m <= nowMinute; m++) {
+            int i = Math.floorMod(m, MINUTES);
+            if (c.minuteOf[i] == m && c.perMinute[i] > 0) {
+                minutes.add(new Point(Instant.ofEpochMilli(m * 60_000L), c.perMinute[i]));
+            }
+        }
+        int nowHour = nowMinute / 60;
+        List<Point> hours = new ArrayList<>();
+        for (int h = nowHour - HOURS + 1; h <= nowHour; h++) {
+            int j = Math.floorMod(h, HOURS);
+            if (c.hourOf[j] == h && c.perHour[j] > 0) {
+                hours.add(new Point(Instant.ofEpochMilli(h * 3_600_000L), c.perHour[j]));
+            }
+        }
+        return new Series(code, c.total, minutes, hours);
+    }
+
+    // для ServiceMetrics.source
+    public synchronized Map<String, Number> stats() {
+        Map<String, Number> m = new LinkedHashMap<>();
+        m.put("published", ring.published());
+        m.put("dropped", ring.dropped());
+        m.put("consumed", consumed);
+        m.put("codes", byCode.size());
+        m.put("evictedCodes", evicted);
+        return m;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            stopped = true;
+        }
+        if (started) {
+            LockSupport.unpark(worker);
+            try {
+                worker.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+    }
+
+    private synchronized void start() {
+        if (started || stopped) return;
+        worker.start();
+        started = true;
+    }
+
+    private void run() {
+        while (!stopped) {
+            if (drain() == 0) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.shortener.infra;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// ограниченный кольцевой буфер событий (код, время) для многих писателей и одного читателя без блокировок:
+// у каждой ячейки свой номер последовательности (схема Вьюкова); писатель занимает ячейку CAS по tail,
+// читатель освобождает её, сдвигая номер на круг вперёд. Переполненный буфер не ждёт читателя —
+// новое событие отбрасывается и учитывается в dropped
+public final class ClickEventRing {
+    public interface Consumer {
+        void accept(String code, long epochMillis);
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final String[] codes;
+    private final long[] times;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private final LongAdder dropped = new LongAdder();
+
+    public ClickEventRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two >= 2");
+        this.mask = capacity - 1;
+        this.sequence = new AtomicLongArray(capacity);
+        this.codes = new String[capacity];
+        this.times = new long[capacity];
+        for (int i = 0; i < capacity; i++) sequence.set(i, i);
+    }
+
+    // false — буфер полон, событие отброшено
+    public boolean offer(String code, long epochMillis) {
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long seq = sequence.get(slot);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    codes[slot] = code;
+                    times[slot] = epochMillis;
+                    sequence.lazySet(slot, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (seq < pos) {
+                dropped.increment();
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    // только один читатель одновременно; возвращает число прочитанных событий (не больше max)
+    public int drain(Consumer consumer, int max) {
+        int n = 0;
+        while (n < max) {
+            int slot = (int) head & mask;
+            if (sequence.get(slot) != head + 1) break;
+            String code = codes[slot];
+            long t = times[slot];
+            codes[slot] = null;
+            sequence.lazySet(slot, head + mask + 1);
+            head++;
+            consumer.accept(code, t);
+            n++;
+        }
+        return n;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long published() {
+        return tail.get();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+}
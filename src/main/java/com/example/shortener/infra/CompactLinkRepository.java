@@ -0,0 +1,660 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Ссылки в куче без объекта на каждую: поля лежат в параллельных массивах по слотам (сегменты по 64K слотов).
+//
+// Слот, 56 байт:
+//   long code0, code1 (до 16 ASCII-символов) | int owner (id владельца, 0 — слот свободен)
+//   int createdAt, int expiresAt (epoch sec, без знака) | long state (maxClicks << 32 | clicks)
+//   int host (id префикса URL) | long url (кусок арены, смещение, длина) | int prevByOwner, nextByOwner
+//
+// Владельцы и префиксы URL «схема://хост[:порт]» интернированы в int-идентификаторы со счётчиком ссылок,
+// остаток URL — в UTF-8 в дописываемых кусках арены. Кусок освобождается, когда в нём не остаётся живых URL:
+// при общем TTL ссылки истекают в порядке записи, и куски уходят целиком.
+//
+// Как в MappedLinkRepository: get без блокировок, клики — CAS по state в массиве под read-lock, чтобы слот
+// не освободился и не достался другой ссылке между find и CAS; ShortLink собирается при чтении, изменения
+// структуры — под write-lock. Время хранится с точностью до секунды, срок истечения — с округлением вверх.
+// Ссылка, которая не новее всех ссылок владельца, вставляется проходом по его цепочке — загрузка в произвольном
+// порядке владельцев с тысячами ссылок здесь заметно медленнее, чем в InMemoryLinkRepository.
+public final class CompactLinkRepository implements LinkRepository {
+    private static final int SEG_SHIFT = 16;
+    private static final int SEG_SLOTS = 1 << SEG_SHIFT;
+    private static final int CHUNK_SHIFT = 20;
+    private static final int CHUNK = 1 << CHUNK_SHIFT;
+    private static final int CODE_MAX = 16;
+    private static final int NONE = -1;
+    private static final int TOMBSTONE = -1;
+    private static final long MAX_EPOCH_SECOND = 0xFFFFFFFFL;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final class IntList {
+        int[] a = new int[4];
+        int n;
+
+        void add(int v) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = v;
+        }
+    }
+
+    private static final class Segment {
+        final long[] code0 = new long[SEG_SLOTS];
+        final long[] code1 = new long[SEG_SLOTS];
+        final int[] owner = new int[SEG_SLOTS];
+        final int[] created = new int[SEG_SLOTS];
+        final int[] expires = new int[SEG_SLOTS];
+        final long[] state = new long[SEG_SLOTS];
+        final int[] host = new int[SEG_SLOTS];
+        final long[] url = new long[SEG_SLOTS];
+        final int[] prev = new int[SEG_SLOTS];
+        final int[] next = new int[SEG_SLOTS];
+    }
+
+    // интернирование: id с 1, refs — число живых ссылок; id без ссылок возвращается в оборот.
+    // Меняется под write-lock, keys публикуется volatile-записью для читателей без блокировки
+    private static final class Dictionary<K> {
+        final ConcurrentHashMap<K, Integer> ids = new ConcurrentHashMap<>();
+        volatile Object[] keys = new Object[16];
+        int[] refs = new int[16];
+        int[] head = new int[16];
+        final IntList free = new IntList();
+        int next = 1;
+
+        int acquire(K key) {
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = free.n > 0 ? free.a[--free.n] : next++;
+                if (id >= refs.length) {
+                    keys = Arrays.copyOf(keys, id * 2);
+                    refs = Arrays.copyOf(refs, id * 2);
+                    head = Arrays.copyOf(head, id * 2);
+                }
+                keys[id] = key;
+                head[id] = NONE;
+                ids.put(key, id);
+            }
+            refs[id]++;
+            return id;
+        }
+
+        void release(int id) {
+            if (--refs[id] > 0) return;
+            ids.remove(keyOf(id));
+            free.add(id);
+        }
+
+        @SuppressWarnings("unchecked")
+        K keyOf(int id) {
+            Object[] k = keys;
+            return id < k.length ? (K) k[id] : null;
+        }
+    }
+
+    // таблица открытой адресации: 0 — пусто, -1 — надгробие, иначе slot + 1
+    private static final class Table {
+        final int[] a;
+        final int mask;
+        int used;
+
+        Table(int capacity) {
+            a = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        int get(int i) {
+            return (int) INTS.getAcquire(a, i);
+        }
+
+        void set(int i, int v) {
+            INTS.setRelease(a, i, v);
+        }
+    }
+
+    private volatile Segment[] segments = new Segment[0];
+    private volatile Table table;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int highWater;
+    private volatile int live;
+    private final IntList free = new IntList();
+    private final Dictionary<UUID> owners = new Dictionary<>();
+    private final Dictionary<String> hosts = new Dictionary<>();
+    private final ConcurrentSkipListMap<Long, IntList> expiry = new ConcurrentSkipListMap<>();
+
+    private volatile byte[][] chunks = new byte[0][];
+    private int[] chunkLive = new int[0];
+    private final IntList freeChunks = new IntList();
+    private int chunk = NONE;
+    private int chunkPos = CHUNK;
+
+    public CompactLinkRepository() {
+        this(1 << 16);
+    }
+
+    // capacity — начальная ёмкость хэш-индекса кодов
+    public CompactLinkRepository(int capacity) {
+        this.table = new Table(tableSize(capacity));
+    }
+
+    @Override
+    public boolean exists(String code) {
+        return find(code) >= 0;
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        saveAll(List.of(link));
+    }
+
+    // от конца порядка владельца к началу: каждая ссылка встаёт в голову цепочки, без обхода
+    @Override
+    public void saveAll(List<ShortLink> links) {
+        int n = links.size();
+        long[][] codes = new long[n][];
+        byte[][] rests = new byte[n][];
+        String[] prefixes = new String[n];
+        for (int i = 0; i < n; i++) {
+            ShortLink l = links.get(i);
+            codes[i] = packCode(l.code);
+            if (codes[i] == null) throw new IllegalArgumentException("code must be 1.." + CODE_MAX + " ASCII chars");
+            epochSecond(l.createdAt);
+            ceilEpochSecond(l.expiresAt);
+            String url = l.originalUrl;
+            int split = prefixEnd(url);
+            prefixes[i] = url.substring(0, split);
+            rests[i] = url.substring(split).getBytes(StandardCharsets.UTF_8);
+            if (rests[i].length >= CHUNK) throw new IllegalArgumentException("URL too long");
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (x, y) -> {
+            ShortLink a = links.get(x), c = links.get(y);
+            int t = Long.compare(a.createdAt.getEpochSecond(), c.createdAt.getEpochSecond());
+            return t != 0 ? t : c.code.compareTo(a.code);
+        });
+        lock.writeLock().lock();
+        try {
+            for (int i : order) insert(links.get(i), codes[i], prefixes[i], rests[i]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(ShortLink link, long[] code, String prefix, byte[] rest) {
+        int existing = find(code);
+        if (existing >= 0) deleteSlot(existing);
+
+        int slot = free.n > 0 ? free.a[--free.n] : allocateSlot();
+        Segment s = seg(slot);
+        int i = slot & (SEG_SLOTS - 1);
+        int expires = (int) ceilEpochSecond(link.expiresAt);
+        s.code0[i] = code[0];
+        s.code1[i] = code[1];
+        s.created[i] = (int) link.createdAt.getEpochSecond();
+        s.expires[i] = expires;
+        s.state[i] = link.state();
+        s.host[i] = hosts.acquire(prefix);
+        s.url[i] = append(rest);
+        int owner = owners.acquire(link.ownerId);
+        linkOwner(slot, owner);
+        // слот становится живым последним: читатель, увидевший owner != 0, видит и остальные поля
+        INTS.setRelease(s.owner, i, owner);
+
+        indexInsert(slot, hash(code[0], code[1]));
+        expiry.computeIfAbsent(Integer.toUnsignedLong(expires), k -> new IntList()).add(slot);
+        live++;
+    }
+
+    @Override
+    public ShortLink get(String code) {
+        long[] c = packCode(code);
+        if (c == null) return null;
+        int slot = find(c);
+        if (slot < 0) return null;
+        ShortLink l = materialize(slot);
+        // слот мог освободиться или переиспользоваться, пока читали поля
+        return (l != null && l.code.equals(code) && find(c) == slot) ? l : null;
+    }
+
+    @Override
+    public boolean delete(String code) {
+        long[] c = packCode(code);
+        if (c == null) return false;
+        lock.writeLock().lock();
+        try {
+            int slot = find(c);
+            if (slot < 0) return false;
+            deleteSlot(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long tryClick(ShortLink link) {
+        lock.readLock().lock();
+        try {
+            int slot = find(link.code);
+            if (slot < 0) return ShortLink.REJECTED | link.state();
+            long[] state = seg(slot).state;
+            int i = slot & (SEG_SLOTS - 1);
+            long s = (long) LONGS.getVolatile(state, i);
+            while (true) {
+                if (ShortLink.clicksOf(s) >= ShortLink.maxClicksOf(s)) return ShortLink.REJECTED | s;
+                long witness = (long) LONGS.compareAndExchange(state, i, s, s + 1);
+                if (witness == s) return s + 1;
+                s = witness;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long trySetMaxClicks(ShortLink link, int newLimit) {
+        lock.readLock().lock();
+        try {
+            int slot = find(link.code);
+            if (slot < 0) return ShortLink.REJECTED | link.state();
+            long[] state = seg(slot).state;
+            int i = slot & (SEG_SLOTS - 1);
+            long s = (long) LONGS.getVolatile(state, i);
+            while (true) {
+                if (newLimit < ShortLink.clicksOf(s)) return ShortLink.REJECTED | s;
+                long next = ((long) newLimit << 32) | (s & 0xFFFFFFFFL);
+                long witness = (long) LONGS.compareAndExchange(state, i, s, next);
+                if (witness == s) return next;
+                s = witness;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId) {
+        return listByOwner(ownerId, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        lock.readLock().lock();
+        try {
+            Integer id = owners.ids.get(ownerId);
+            return id == null ? 0 : owners.refs[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId, OwnerCursor after, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        ArrayList<ShortLink> res = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Integer id = owners.ids.get(ownerId);
+            int slot = id == null ? NONE : owners.head[id];
+            if (after != null) {
+                int at = find(after.code());
+                if (at >= 0 && id != null && ownerOf(at) == id) {
+                    slot = nextOf(at);
+                } else {
+                    while (slot != NONE && OwnerCursor.of(materialize(slot)).compareTo(after) <= 0) slot = nextOf(slot);
+                }
+            }
+            while (slot != NONE && res.size() < limit) {
+                res.add(materialize(slot));
+                slot = nextOf(slot);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return res;
+    }
+
+    @Override
+    public int deleteExpired(Instant now) {
+        return drainExpired(now, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainExpired(Instant now, int max) {
+        long nowSec = now.getEpochSecond();
+        int removed = 0;
+        lock.writeLock().lock();
+        try {
+            while (removed < max) {
+                var e = expiry.firstEntry();
+                if (e == null || e.getKey() > nowSec) break;
+                IntList slots = e.getValue();
+                while (slots.n > 0 && removed < max) {
+                    int slot = slots.a[--slots.n];
+                    Segment s = seg(slot);
+                    int i = slot & (SEG_SLOTS - 1);
+                    // в корзине могут остаться удалённые или переиспользованные слоты
+                    if (s.owner[i] != 0 && Integer.toUnsignedLong(s.expires[i]) == e.getKey()) {
+                        deleteSlot(slot);
+                        removed++;
+                    }
+                }
+                if (slots.n == 0) expiry.remove(e.getKey(), slots);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    @Override
+    public Instant nextExpiry() {
+        var e = expiry.firstEntry();
+        return e == null ? null : Instant.ofEpochSecond(e.getKey());
+    }
+
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        int hw;
+        lock.readLock().lock();
+        try {
+            hw = highWater;
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int slot = 0; slot < hw; slot++) {
+            ShortLink l = materialize(slot);
+            if (l != null) action.accept(l);
+        }
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    // --- внутреннее ---
+
+    private int find(String code) {
+        long[] c = packCode(code);
+        return c == null ? -1 : find(c);
+    }
+
+    private int find(long[] code) {
+        Table t = table;
+        int i = hash(code[0], code[1]) & t.mask;
+        while (true) {
+            int v = t.get(i);
+            if (v == 0) return -1;
+            if (v > 0) {
+                Segment s = seg(v - 1);
+                int j = (v - 1) & (SEG_SLOTS - 1);
+                if (s.code0[j] == code[0] && s.code1[j] == code[1]) return v - 1;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    private void indexInsert(int slot, int h) {
+        Table t = table;
+        if ((t.used + 1) * 2 > t.mask + 1) t = rehash();
+        int i = h & t.mask;
+        while (t.get(i) > 0) i = (i + 1) & t.mask;
+        if (t.get(i) == 0) t.used++;
+        t.set(i, slot + 1);
+    }
+
+    private void indexRemove(int slot) {
+        Table t = table;
+        int i = slotHash(slot) & t.mask;
+        while (true) {
+            int v = t.get(i);
+            if (v == 0) return;
+            if (v == slot + 1) {
+                t.set(i, TOMBSTONE);
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    // новая таблица строится целиком и публикуется volatile-записью; читатели дочитывают старую
+    private Table rehash() {
+        Table t = new Table(tableSize(Math.max(live + 1, 16)));
+        Table old = table;
+        for (int i = 0; i <= old.mask; i++) {
+            int v = old.get(i);
+            if (v <= 0) continue;
+            int j = slotHash(v - 1) & t.mask;
+            while (t.get(j) != 0) j = (j + 1) & t.mask;
+            t.set(j, v);
+            t.used++;
+        }
+        table = t;
+        return t;
+    }
+
+    private void deleteSlot(int slot) {
+        Segment s = seg(slot);
+        int i = slot & (SEG_SLOTS - 1);
+        int owner = s.owner[i];
+        indexRemove(slot);
+        unlinkOwner(slot, owner);
+        INTS.setRelease(s.owner, i, 0);
+        owners.release(owner);
+        hosts.release(s.host[i]);
+        releaseUrl(s.url[i]);
+        free.add(slot);
+        live--;
+    }
+
+    // цепочка владельца упорядочена как OwnerCursor: новые первыми, при равном времени — по коду
+    private void linkOwner(int slot, int owner) {
+        int prev = NONE, cur = owners.head[owner];
+        while (cur != NONE && !before(slot, cur)) {
+            prev = cur;
+            cur = nextOf(cur);
+        }
+        Segment s = seg(slot);
+        int i = slot & (SEG_SLOTS - 1);
+        s.prev[i] = prev;
+        s.next[i] = cur;
+        if (cur != NONE) seg(cur).prev[cur & (SEG_SLOTS - 1)] = slot;
+        if (prev != NONE) seg(prev).next[prev & (SEG_SLOTS - 1)] = slot;
+        else owners.head[owner] = slot;
+    }
+
+    private void unlinkOwner(int slot, int owner) {
+        Segment s = seg(slot);
+        int i = slot & (SEG_SLOTS - 1);
+        int prev = s.prev[i], next = s.next[i];
+        if (next != NONE) seg(next).prev[next & (SEG_SLOTS - 1)] = prev;
+        if (prev != NONE) seg(prev).next[prev & (SEG_SLOTS - 1)] = next;
+        else owners.head[owner] = next;
+    }
+
+    private boolean before(int a, int b) {
+        long ca = Integer.toUnsignedLong(seg(a).created[a & (SEG_SLOTS - 1)]);
+        long cb = Integer.toUnsignedLong(seg(b).created[b & (SEG_SLOTS - 1)]);
+        if (ca != cb) return ca > cb;
+        // байты кода в long идут от младшего, после разворота беззнаковое сравнение — как у String
+        Segment sa = seg(a), sb = seg(b);
+        int ia = a & (SEG_SLOTS - 1), ib = b & (SEG_SLOTS - 1);
+        int c = Long.compareUnsigned(Long.reverseBytes(sa.code0[ia]), Long.reverseBytes(sb.code0[ib]));
+        if (c == 0) c = Long.compareUnsigned(Long.reverseBytes(sa.code1[ia]), Long.reverseBytes(sb.code1[ib]));
+        return c < 0;
+    }
+
+    private int nextOf(int slot) {
+        return seg(slot).next[slot & (SEG_SLOTS - 1)];
+    }
+
+    private int ownerOf(int slot) {
+        return seg(slot).owner[slot & (SEG_SLOTS - 1)];
+    }
+
+    private ShortLink materialize(int slot) {
+        Segment s = seg(slot);
+        int i = slot & (SEG_SLOTS - 1);
+        int owner = (int) INTS.getAcquire(s.owner, i);
+        if (owner == 0) return null;
+        UUID ownerId = owners.keyOf(owner);
+        String host = hosts.keyOf(s.host[i]);
+        String rest = rest(s.url[i]);
+        // ссылку удалили, и её кусок арены уже освобождён
+        if (ownerId == null || host == null || rest == null) return null;
+        long st = (long) LONGS.getVolatile(s.state, i);
+        return new ShortLink(code(slot), ownerId, host + rest,
+                Instant.ofEpochSecond(Integer.toUnsignedLong(s.created[i])),
+                Instant.ofEpochSecond(Integer.toUnsignedLong(s.expires[i])),
+                ShortLink.clicksOf(st), ShortLink.maxClicksOf(st));
+    }
+
+    private String code(int slot) {
+        Segment s = seg(slot);
+        int i = slot & (SEG_SLOTS - 1);
+        byte[] b = new byte[CODE_MAX];
+        int n = 0;
+        while (n < CODE_MAX) {
+            byte c = (byte) ((n < 8 ? s.code0[i] : s.code1[i]) >>> 8 * (n & 7));
+            if (c == 0) break;
+            b[n++] = c;
+        }
+        return new String(b, 0, n, StandardCharsets.ISO_8859_1);
+    }
+
+    private String rest(long url) {
+        int len = (int) url & (CHUNK - 1);
+        if (len == 0) return "";
+        byte[][] cs = chunks;
+        int c = (int) (url >>> 2 * CHUNK_SHIFT);
+        byte[] bytes = c < cs.length ? cs[c] : null;
+        return bytes == null ? null : new String(bytes, (int) (url >>> CHUNK_SHIFT) & (CHUNK - 1), len, StandardCharsets.UTF_8);
+    }
+
+    // URL арены: кусок << 40 | смещение << 20 | длина; пустой остаток места в арене не занимает
+    private long append(byte[] rest) {
+        if (rest.length == 0) return 0;
+        if (chunk == NONE || CHUNK - chunkPos < rest.length) {
+            int old = chunk;
+            chunk = freeChunks.n > 0 ? freeChunks.a[--freeChunks.n] : newChunkIndex();
+            byte[][] cs = chunks.clone();
+            cs[chunk] = new byte[CHUNK];
+            chunks = cs;
+            chunkPos = 0;
+            if (old != NONE && chunkLive[old] == 0) freeChunk(old);
+        }
+        int off = chunkPos;
+        System.arraycopy(rest, 0, chunks[chunk], off, rest.length);
+        chunkPos += rest.length;
+        chunkLive[chunk] += rest.length;
+        return (long) chunk << 2 * CHUNK_SHIFT | (long) off << CHUNK_SHIFT | rest.length;
+    }
+
+    private void releaseUrl(long url) {
+        int len = (int) url & (CHUNK - 1);
+        if (len == 0) return;
+        int c = (int) (url >>> 2 * CHUNK_SHIFT);
+        chunkLive[c] -= len;
+        if (chunkLive[c] == 0 && c != chunk) freeChunk(c);
+    }
+
+    private int newChunkIndex() {
+        int c = chunks.length;
+        if (c >= 1 << 23) throw new IllegalStateException("URL arena is full");
+        chunks = Arrays.copyOf(chunks, c + 1);
+        chunkLive = Arrays.copyOf(chunkLive, c + 1);
+        return c;
+    }
+
+    private void freeChunk(int c) {
+        byte[][] cs = chunks.clone();
+        cs[c] = null;
+        chunks = cs;
+        freeChunks.add(c);
+    }
+
+    private int allocateSlot() {
+        int slot = highWater++;
+        Segment[] s = segments;
+        if (slot >>> SEG_SHIFT >= s.length) {
+            s = Arrays.copyOf(s, s.length + 1);
+            s[s.length - 1] = new Segment();
+            segments = s;
+        }
+        return slot;
+    }
+
+    private Segment seg(int slot) {
+        return segments[slot >>> SEG_SHIFT];
+    }
+
+    private int slotHash(int slot) {
+        Segment s = seg(slot);
+        int i = slot & (SEG_SLOTS - 1);
+        return hash(s.code0[i], s.code1[i]);
+    }
+
+    // «схема://хост[:порт]» — до первого '/', '?' или '#' после "://"; без "://" префикс пустой
+    static int prefixEnd(String url) {
+        int start = url.indexOf("://");
+        if (start < 0) return 0;
+        for (int i = start + 3; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') return i;
+        }
+        return url.length();
+    }
+
+    // код — два long по 8 ASCII-символов (младший байт — первый символ); null, если код не помещается
+    private static long[] packCode(String code) {
+        int n = code.length();
+        if (n == 0 || n > CODE_MAX) return null;
+        long[] w = new long[2];
+        for (int i = 0; i < n; i++) {
+            char c = code.charAt(i);
+            if (c == 0 || c >= 0x80) return null;
+            w[i >>> 3] |= (long) c << 8 * (i & 7);
+        }
+        return w;
+    }
+
+    private static long epochSecond(Instant t) {
+        long s = t.getEpochSecond();
+        if (s < 0 || s > MAX_EPOCH_SECOND) throw new IllegalArgumentException("Timestamp out of range: " + t);
+        return s;
+    }
+
+    // срок истечения округляется вверх до секунды: ссылка может прожить чуть дольше, но не уйдёт раньше срока
+    private static long ceilEpochSecond(Instant t) {
+        long s = epochSecond(t);
+        if (t.getNano() == 0) return s;
+        if (s == MAX_EPOCH_SECOND) throw new IllegalArgumentException("Timestamp out of range: " + t);
+        return s + 1;
+    }
+
+    private static int hash(long code0, long code1) {
+        long h = (code0 * 0x9E3779B97F4A7C15L) ^ (code1 * 0xC2B2AE3D27D4EB4FL);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSize(int capacity) {
+        int n = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) << 1;
+        if (n <= 0 || n > (1 << 30)) throw new IllegalArgumentException("capacity too large: " + capacity);
+        return n;
+    }
+}
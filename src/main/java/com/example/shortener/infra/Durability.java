@@ -0,0 +1,11 @@
+package com.example.shortener.infra;
+
+public enum Durability {
+    OFF,
+    BATCHED,
+    SYNC;
+
+    public static Durability parse(String s) {
+        return valueOf(s.trim().toUpperCase());
+    }
+}
@@ -3,31 +3,159 @@ package com.example.shortener.infra;
 import com.example.shortener.core.service.ShortenerService;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+// фоновая очистка истёкших ссылок: поток просыпается к ближайшему сроку истечения (nextExpiry, не реже
+// maxIdle), удаляет истёкшее порциями не дольше sliceBudget и между порциями отдыхает в backoff раз дольше
+// самой порции. backoff зависит от нагрузки: сколько запросов в среднем было в работе с прошлого прохода
+// (прирост ServiceMetrics.busyNanos за реальное время) — без запросов очистка занимает до половины потока,
+// под нагрузкой уступает им всё больше. С выключенными метриками сигнала нет, и backoff постоянный. Запросы не ждут
+// очистки: open удаляет истёкшую ссылку сам, list/update-limit/delete — её и небольшую порцию соседних.
+// Сроки сравниваются по часам сервиса (service.clock()); бюджет и паузы порций — реальное время
 public final class ExpiryCleanup implements AutoCloseable {
-    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread t = new Thread(r, "expiry-cleaner");
-        t.setDaemon(true);
-        return t;
-    });
-
-    public ExpiryCleanup(ShortenerService service, Duration interval) {
-        long sec = Math.max(1, interval.getSeconds());
-        exec.scheduleAtFixedRate(() -> {
-            try {
-                int removed = service.cleanupExpiredNow();
-                if (removed > 0) System.out.println("[CLEANUP] removed expired: " + removed);
-            } catch (Exception e) {
-                System.out.println("[CLEANUP] error: " + e.getMessage());
+    // число ссылок на одно обращение к хранилищу внутри порции
+    private static final int CHUNK = 64;
+    // очистка занимает не больше 1 / (backoff + 1) времени потока, пока есть что удалять:
+    // MIN_BACKOFF без нагрузки, +LOAD_BACKOFF на каждый запрос в работе, не больше MAX_BACKOFF
+    private static final double MIN_BACKOFF = 1;
+    private static final double LOAD_BACKOFF = 4;
+    private static final double MAX_BACKOFF = 16;
+    // без метрик
+    private static final double FIXED_BACKOFF = 3;
+    // нижняя граница паузы между порциями, до умножения на backoff
+    private static final long MIN_PAUSE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // близкие сроки истечения собираются в одно пробуждение
+    private static final long COALESCE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    public record Stats(long slices, long removed, long maxSliceNanos, long p50SliceNanos, long p99SliceNanos) {}
+
+    // создаётся первым schedule: без фонового потока (runOnce) его нет вовсе; после close не пересоздаётся
+    private ScheduledExecutorService exec;
+    private boolean closed;
+    private final ShortenerService service;
+    private final TimeSource clock;
+    private final ServiceMetrics metrics;
+    // false — фонового потока нет, проходы вызывает runOnce
+    private final boolean background;
+    private final long maxIdleNanos;
+    private final long sliceBudgetNanos;
+    private final LatencyHistogram sliceTimes = new LatencyHistogram();
+    private final AtomicLong removed = new AtomicLong();
+    private long batchRemoved;
+    private long batchStart;
+    private long lastHousekeeping = System.nanoTime();
+    private long lastBusy;
+    private long lastSample;
+
+    public ExpiryCleanup(ShortenerService service, Duration maxIdle) {
+        this(service, maxIdle, Duration.ofMillis(2));
+    }
+
+    public ExpiryCleanup(ShortenerService service, Duration maxIdle, Duration sliceBudget) {
+        this(service, maxIdle, sliceBudget, true);
+    }
+
+    public ExpiryCleanup(ShortenerService service, Duration maxIdle, Duration sliceBudget, boolean background) {
+        this.service = service;
+        this.clock = service.clock();
+        this.metrics = service.metrics();
+        this.lastBusy = metrics.busyNanos();
+        this.lastSample = System.nanoTime();
+        this.background = background;
+        this.maxIdleNanos = Math.max(TimeUnit.SECONDS.toNanos(1), maxIdle.toNanos());
+        this.sliceBudgetNanos = sliceBudget.toNanos();
+        if (!background) return;
+        // пустое хранилище (обычный запуск из скрипта): первый проход сразу лишь уснул бы на maxIdle,
+        // поэтому он откладывается и не отнимает процессор у первой команды
+        schedule(service.nextExpiry() == null ? maxIdleNanos : 0);
+    }
+
+    public Stats stats() {
+        return new Stats(sliceTimes.count(), removed.get(), sliceTimes.max(), sliceTimes.percentile(0.5),
+                sliceTimes.percentile(0.99));
+    }
+
+    // один проход: порции подряд в пределах sliceBudget и служебные дела; возвращает паузу до следующего
+    // прохода в нс. Без фонового потока проходы вызывает тест или симуляция — и вместо ожидания может
+    // промотать VirtualClock на эту паузу. Параллельно с фоновым потоком не вызывать
+    public long runOnce() {
+        long t0 = System.nanoTime();
+        int n = 0, last;
+        do {
+            last = service.expireSlice(CHUNK);
+            n += last;
+        } while (last == CHUNK && System.nanoTime() - t0 < sliceBudgetNanos);
+        long elapsed = System.nanoTime() - t0;
+        if (n > 0) {
+            sliceTimes.record(elapsed);
+            removed.addAndGet(n);
+            if (batchRemoved == 0) batchStart = t0;
+            batchRemoved += n;
+        }
+        double backoff = backoff();
+        if (last == CHUNK) return (long) (Math.max(elapsed, MIN_PAUSE_NANOS) * backoff);
+        if (batchRemoved > 0) {
+            // симуляция проходит тысячи пробуждений за секунду: построчный отчёт только у фонового потока,
+            // и в stderr — в пакетном режиме stdout занят ответами (--jsonl), строка из другого потока их бы разорвала
+            if (background) {
+                System.err.printf("[CLEANUP] removed expired: %d in %.1f ms%n", batchRemoved, (System.nanoTime() - batchStart) / 1e6);
             }
-        }, sec, sec, TimeUnit.SECONDS);
+            batchRemoved = 0;
+        }
+        if (System.nanoTime() - lastHousekeeping >= maxIdleNanos) {
+            service.evictIdleLimits();
+            lastHousekeeping = System.nanoTime();
+        }
+        return untilNextExpiry();
+    }
+
+    // нагрузка — за время с прошлого прохода, включая паузу: так видны и запросы, пришедшие, пока очистка спала
+    private double backoff() {
+        if (!metrics.enabled()) return FIXED_BACKOFF;
+        long now = System.nanoTime();
+        long busy = metrics.busyNanos();
+        double load = (double) (busy - lastBusy) / Math.max(1, now - lastSample);
+        lastBusy = busy;
+        lastSample = now;
+        return Math.min(MAX_BACKOFF, MIN_BACKOFF + LOAD_BACKOFF * load);
+    }
+
+    private void tick() {
+        try {
+            schedule(runOnce());
+        } catch (Exception e) {
+            System.err.println("[CLEANUP] error: " + e.getMessage());
+            schedule(maxIdleNanos);
+        }
+    }
+
+    private long untilNextExpiry() {
+        Instant next = service.nextExpiry();
+        if (next == null) return maxIdleNanos;
+        long ms = next.toEpochMilli() - clock.millis();
+        if (ms >= TimeUnit.NANOSECONDS.toMillis(maxIdleNanos)) return maxIdleNanos;
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, ms)) + COALESCE_NANOS;
+    }
+
+    private synchronized void schedule(long delayNanos) {
+        if (closed) return;
+        if (exec == null) {
+            exec = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "expiry-cleaner");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        exec.schedule(this::tick, delayNanos, TimeUnit.NANOSECONDS);
     }
 
     @Override
-    public void close() {
-        exec.shutdownNow();
+    public synchronized void close() {
+        closed = true;
+        if (exec != null) exec.shutdownNow();
     }
-}
\ No newline at end of file
+}
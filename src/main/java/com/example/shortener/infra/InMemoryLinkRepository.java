@@ -5,43 +5,310 @@ import com.example.shortener.core.model.ShortLink;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+public final class InMemoryLinkRepository implements LinkRepository {
+    // порядок истечения: по expiresAt, при равенстве — по коду. Срок хранится миллисекундами, округлёнными
+    // вверх: сравнения в индексе не разыменовывают Instant, и ссылка не уходит раньше своего срока
+    private record ExpiryKey(long expiresAt, String code) implements Comparable<ExpiryKey> {
+        static ExpiryKey of(ShortLink l) {
+            return new ExpiryKey(ceilMillis(l.expiresAt), l.code);
+        }
+
+        static long ceilMillis(Instant t) {
+            long sec = t.getEpochSecond();
+            if (sec >= Long.MAX_VALUE / 1000) return Long.MAX_VALUE;
+            if (sec <= Long.MIN_VALUE / 1000) return Long.MIN_VALUE;
+            return sec * 1000 + (t.getNano() + 999_999) / 1_000_000;
+        }
+
+        @Override
+        public int compareTo(ExpiryKey o) {
+            int c = Long.compare(expiresAt, o.expiresAt);
+            return c != 0 ? c : code.compareTo(o.code);
+        }
+    }
+
+    // ключ индекса идемпотентного создания: владелец + 64-битный хэш нормализованного URL;
+    // при попадании URL сверяется целиком, так что коллизия хэша даёт лишь новую ссылку
+    private record UrlKey(UUID ownerId, long urlHash) {
+        static UrlKey of(ShortLink l) {
+            return new UrlKey(l.ownerId, hash(l.originalUrl));
+        }
+
+        static long hash(String url) {
+            long h = 1125899906842597L;
+            for (int i = 0; i < url.length(); i++) h = 31 * h + url.charAt(i);
+            return h;
+        }
+    }
+
+    private static final int LIMIT_STRIPES = 64;
 
-public final class InMemoryLinkRepository {
     private final ConcurrentHashMap<String, ShortLink> byCode = new ConcurrentHashMap<>();
+    // ссылки владельца; count меняется только внутри byOwner.compute, поэтому не расходится с картой
+    private static final class OwnerIndex extends ConcurrentSkipListMap<OwnerCursor, ShortLink> {
+        volatile int count;
+    }
 
+    private final ConcurrentHashMap<UUID, OwnerIndex> byOwner = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<ExpiryKey, ShortLink> byExpiry = new ConcurrentSkipListMap<>();
+    private volatile LinkJournal journal = LinkJournal.NONE;
+    // null — индекс по URL не ведётся (идемпотентное создание выключено)
+    private final ConcurrentHashMap<UrlKey, String> byUrl;
+    // смена лимита и её запись в журнал идут под замком полосы кода, чтобы журнал видел их в порядке CAS
+    private final ReentrantLock[] limitStripes = new ReentrantLock[LIMIT_STRIPES];
+
+    public InMemoryLinkRepository() {
+        this(false);
+    }
+
+    // порядок захвата: byUrl -> byCode. Запись в byUrl ставится под блокировкой своей ячейки вокруг записи
+    // в byCode, а удаляется после снятия блокировки byCode по паре (ключ, код): удаление, начатое во время
+    // вставки, ждёт её и снимает уже поставленную запись. Устаревшие записи отсеиваются проверкой при чтении
+    public InMemoryLinkRepository(boolean urlIndex) {
+        this.byUrl = urlIndex ? new ConcurrentHashMap<>() : null;
+        for (int i = 0; i < LIMIT_STRIPES; i++) limitStripes[i] = new ReentrantLock();
+    }
+
+    // журнал подключается после восстановления, чтобы повтор WAL не писал сам себя
+    public void attachJournal(LinkJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
     public boolean exists(String code) {
         return byCode.containsKey(code);
     }
 
+    @Override
     public void save(ShortLink link) {
-        byCode.put(link.code, link);
+        journal.sync(insert(link));
+    }
+
+    // каждая ссылка журналируется отдельной записью, но fsync ждём один раз — на последней;
+    // пачка вставляется в порядке индекса владельца, чтобы вставки в skip list шли подряд, а не вразброс
+    @Override
+    public void saveAll(List<ShortLink> links) {
+        LinkJournal j = journal;
+        long[] seq = {0};
+        List<ShortLink> ordered = new ArrayList<>(links);
+        ordered.sort(OwnerCursor.LINK_ORDER);
+        for (ShortLink link : ordered) seq[0] = Math.max(seq[0], insert(link));
+        j.sync(seq[0]);
     }
 
+    @Override
+    public ShortLink findByUrl(UUID ownerId, String url, Instant now) {
+        if (byUrl == null) return LinkRepository.super.findByUrl(ownerId, url, now);
+        String code = byUrl.get(new UrlKey(ownerId, UrlKey.hash(url)));
+        ShortLink l = code == null ? null : byCode.get(code);
+        return reusable(l, ownerId, url, now) ? l : null;
+    }
+
+    // проверка и вставка — под блокировкой ячейки byUrl, поэтому параллельные повторы одного запроса
+    // получают одну и ту же ссылку
+    @Override
+    public ShortLink saveIfAbsentByUrl(ShortLink link, Instant now) {
+        if (byUrl == null) return LinkRepository.super.saveIfAbsentByUrl(link, now);
+        ShortLink[] res = {link};
+        ShortLink[] replaced = {null};
+        long[] seq = {0};
+        byUrl.compute(UrlKey.of(link), (k, code) -> {
+            ShortLink cur = code == null ? null : byCode.get(code);
+            if (reusable(cur, link.ownerId, link.originalUrl, now)) {
+                res[0] = cur;
+                return code;
+            }
+            seq[0] = indexAndJournal(link, replaced);
+            return link.code;
+        });
+        if (replaced[0] != null && !UrlKey.of(replaced[0]).equals(UrlKey.of(link))) forgetUrl(replaced[0]);
+        journal.sync(seq[0]);
+        return res[0];
+    }
+
+    @Override
     public ShortLink get(String code) {
         return byCode.get(code);
     }
 
+    @Override
     public boolean delete(String code) {
-        return byCode.remove(code) != null;
+        LinkJournal j = journal;
+        long[] seq = {0};
+        ShortLink[] removed = {null};
+        byCode.computeIfPresent(code, (k, l) -> {
+            unindex(l);
+            seq[0] = j.deleted(code);
+            removed[0] = l;
+            return null;
+        });
+        j.sync(seq[0]);
+        forgetUrl(removed[0]);
+        return removed[0] != null;
+    }
+
+    // счётчик только растёт, и повтор WAL берёт максимум, поэтому порядок записей о переходах не важен
+    @Override
+    public long tryClick(ShortLink link) {
+        long st = link.tryClick();
+        if (ShortLink.accepted(st)) {
+            LinkJournal j = journal;
+            j.sync(j.clicked(link.code, ShortLink.clicksOf(st)));
+        }
+        return st;
     }
 
+    // лимит может и расти, и падать, а повтор WAL применяет последнюю запись: CAS и запись в журнал идут
+    // под одним замком полосы, иначе две параллельные смены легли бы в журнал в обратном порядке.
+    // fsync ждём уже без замка
+    @Override
+    public long trySetMaxClicks(ShortLink link, int newLimit) {
+        LinkJournal j = journal;
+        long st;
+        long seq = 0;
+        ReentrantLock lock = limitStripes[Math.floorMod(link.code.hashCode(), LIMIT_STRIPES)];
+        lock.lock();
+        try {
+            st = link.trySetMaxClicks(newLimit);
+            if (ShortLink.accepted(st)) seq = j.limitChanged(link.code, ShortLink.maxClicksOf(st));
+        } finally {
+            lock.unlock();
+        }
+        j.sync(seq);
+        return st;
+    }
+
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        byCode.values().forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return byCode.size();
+    }
+
+    @Override
     public List<ShortLink> listByOwner(UUID ownerId) {
-        ArrayList<ShortLink> res = new ArrayList<>();
-        for (ShortLink l : byCode.values()) {
-            if (l.ownerId.equals(ownerId)) res.add(l);
+        var idx = byOwner.get(ownerId);
+        return idx == null ? new ArrayList<>() : new ArrayList<>(idx.values());
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        var idx = byOwner.get(ownerId);
+        return idx == null ? 0 : idx.count;
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId, OwnerCursor after, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        var idx = byOwner.get(ownerId);
+        if (idx == null) return new ArrayList<>();
+        var view = (after == null) ? idx : idx.tailMap(after, false);
+        ArrayList<ShortLink> res = new ArrayList<>(Math.min(limit, 64));
+        for (ShortLink l : view.values()) {
+            res.add(l);
+            if (res.size() >= limit) break;
         }
-        res.sort((a, b) -> b.createdAt.compareTo(a.createdAt));
         return res;
     }
 
+    @Override
     public int deleteExpired(Instant now) {
+        return drainExpired(now, Integer.MAX_VALUE);
+    }
+
+    // истечение в журнал не пишется: после рестарта такие ссылки снова истекут по expiresAt;
+    // просматривается только то, что уже истекло
+    @Override
+    public int drainExpired(Instant now, int max) {
+        long nowMillis = now.toEpochMilli();
         int removed = 0;
-        for (var e : byCode.entrySet()) {
-            ShortLink l = e.getValue();
-            if (l.expired(now)) {
-                if (byCode.remove(e.getKey(), l)) removed++;
-            }
+        while (removed < max) {
+            var e = byExpiry.firstEntry();
+            if (e == null || e.getKey().expiresAt() > nowMillis) break;
+            if (removeExact(e.getValue())) removed++;
+            else byExpiry.remove(e.getKey(), e.getValue());
         }
         return removed;
     }
-}
\ No newline at end of file
+
+    @Override
+    public Instant nextExpiry() {
+        var e = byExpiry.firstEntry();
+        return e == null ? null : Instant.ofEpochMilli(e.getKey().expiresAt());
+    }
+
+    private boolean removeExact(ShortLink l) {
+        boolean[] removed = {false};
+        byCode.computeIfPresent(l.code, (k, cur) -> {
+            if (cur != l) return cur;
+            unindex(l);
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) forgetUrl(l);
+        return removed[0];
+    }
+
+    // вставка с журналированием; возвращает seq для sync. Запись в byUrl ставится в том же compute, что и
+    // в byCode, — как в saveIfAbsentByUrl: иначе delete, прошедший между ними, оставил бы запись навсегда
+    private long insert(ShortLink link) {
+        ShortLink[] replaced = {null};
+        if (byUrl == null) return indexAndJournal(link, replaced);
+        long[] seq = {0};
+        byUrl.compute(UrlKey.of(link), (k, code) -> {
+            seq[0] = indexAndJournal(link, replaced);
+            return link.code;
+        });
+        if (replaced[0] != null && !UrlKey.of(replaced[0]).equals(UrlKey.of(link))) forgetUrl(replaced[0]);
+        return seq[0];
+    }
+
+    // индекс владельца меняется под блокировкой ячейки byCode, поэтому save/delete одного кода не разъезжаются;
+    // вытесненная ссылка с тем же кодом возвращается в replaced
+    private long indexAndJournal(ShortLink link, ShortLink[] replaced) {
+        LinkJournal j = journal;
+        long[] seq = {0};
+        byCode.compute(link.code, (k, prev) -> {
+            if (prev != null && prev != link) {
+                unindex(prev);
+                replaced[0] = prev;
+            }
+            index(link);
+            seq[0] = j.saved(link);
+            return link;
+        });
+        return seq[0];
+    }
+
+    private void forgetUrl(ShortLink l) {
+        if (byUrl != null && l != null) byUrl.remove(UrlKey.of(l), l.code);
+    }
+
+    private static boolean reusable(ShortLink l, UUID ownerId, String url, Instant now) {
+        return l != null && l.ownerId.equals(ownerId) && l.originalUrl.equals(url) && !l.expired(now) && !l.exhausted();
+    }
+
+    private void index(ShortLink l) {
+        byOwner.compute(l.ownerId, (k, idx) -> {
+            if (idx == null) idx = new OwnerIndex();
+            if (idx.put(OwnerCursor.of(l), l) == null) idx.count++;
+            return idx;
+        });
+        byExpiry.put(ExpiryKey.of(l), l);
+    }
+
+    private void unindex(ShortLink l) {
+        byExpiry.remove(ExpiryKey.of(l), l);
+        byOwner.computeIfPresent(l.ownerId, (k, idx) -> {
+            if (idx.remove(OwnerCursor.of(l), l)) idx.count--;
+            return idx.isEmpty() ? null : idx;
+        });
+    }
+}
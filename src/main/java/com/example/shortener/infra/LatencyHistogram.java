@@ -0,0 +1,95 @@
+package com.example.shortener.infra;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// гистограмма задержек в наносекундах в духе HdrHistogram: логарифмические корзины по степеням двойки,
+// каждая поделена на SUB линейных подкорзин (относительная погрешность квантилей и среднего <= 1/SUB);
+// запись — одно атомарное сложение в массиве (максимум обновляется только при новом рекорде)
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    // значения от 2^MAX_EXP нс (~18 минут) попадают в последнюю корзину
+    private static final int MAX_EXP = 40;
+    private static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.getAndIncrement(index(nanos));
+        if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+    }
+
+    // сумма нескольких гистограмм (например, одной операции по всем исходам)
+    public static LatencyHistogram merge(LatencyHistogram... parts) {
+        var r = new LatencyHistogram();
+        for (LatencyHistogram p : parts) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = p.counts.get(i);
+                if (c != 0) r.counts.getAndAdd(i, c);
+            }
+            r.max.accumulateAndGet(p.max.get(), Math::max);
+        }
+        return r;
+    }
+
+    public long count() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+        return n;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    // по серединам корзин
+    public double mean() {
+        long n = 0;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+            n += c;
+            sum += c * ((lowerBound(i) + upperBound(i)) / 2.0);
+        }
+        return n == 0 ? 0 : Math.min(sum / n, max.get());
+    }
+
+    // верхняя граница корзины, в которую попадает квантиль q (0..1); 0 — если записей нет
+    public long percentile(double q) {
+        long n = 0;
+        long[] c = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) n += c[i] = counts.get(i);
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += c[i];
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int index(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        if (exp > MAX_EXP) return BUCKETS - 1;
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB) return index;
+        int exp = index / SUB + SUB_BITS - 1;
+        return (long) (SUB + index % SUB) << (exp - SUB_BITS);
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB) return index;
+        int exp = index / SUB + SUB_BITS - 1;
+        return lowerBound(index) + (1L << (exp - SUB_BITS)) - 1;
+    }
+}
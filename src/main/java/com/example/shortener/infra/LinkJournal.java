@@ -0,0 +1,24 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+// методы возвращают номер записи; sync(seq) ждёт её сохранности, если этого требует режим
+public interface LinkJournal {
+    LinkJournal NONE = new LinkJournal() {
+        @Override public long saved(ShortLink link) { return 0; }
+        @Override public long deleted(String code) { return 0; }
+        @Override public long clicked(String code, int clicks) { return 0; }
+        @Override public long limitChanged(String code, int maxClicks) { return 0; }
+        @Override public void sync(long seq) {}
+    };
+
+    long saved(ShortLink link);
+
+    long deleted(String code);
+
+    long clicked(String code, int clicks);
+
+    long limitChanged(String code, int maxClicks);
+
+    void sync(long seq);
+}
@@ -0,0 +1,220 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// снапшот поколения g покрывает все записи WAL поколений < g; снапшот «нечёткий» (пишется на ходу),
+// поэтому записи WAL применяются идемпотентно: save/delete перезаписывают, клики берутся по максимуму
+public final class LinkPersistence implements AutoCloseable {
+    public record Recovery(int links, int walRecords, long millis) {}
+
+    private static final int SNAPSHOT_PARTS = 8;
+    private static final Pattern WAL = Pattern.compile("wal-(\\d{16})\\.log");
+    private static final Pattern SNAPSHOT_OK = Pattern.compile("snapshot-(\\d{16})\\.ok");
+    private static final Pattern SNAPSHOT_ANY = Pattern.compile("snapshot-(\\d{16})[.-].*");
+
+    private final Path dir;
+    private final InMemoryLinkRepository repo;
+    private final WriteAheadLog wal;
+    private final Recovery recovery;
+    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "snapshot-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private LinkPersistence(Path dir, InMemoryLinkRepository repo, WriteAheadLog wal, Recovery recovery) {
+        this.dir = dir;
+        this.repo = repo;
+        this.wal = wal;
+        this.recovery = recovery;
+    }
+
+    public static LinkPersistence open(Path dir, Durability durability, Duration walBatch, Duration snapshotInterval,
+                                       InMemoryLinkRepository repo) throws IOException {
+        Files.createDirectories(dir);
+        Recovery rec = recover(dir, repo);
+        long gen = Math.max(maxGeneration(dir, WAL), maxGeneration(dir, SNAPSHOT_OK)) + 1;
+        var wal = new WriteAheadLog(dir, gen, durability, walBatch);
+        repo.attachJournal(wal);
+
+        var p = new LinkPersistence(dir, repo, wal, rec);
+        long sec = Math.max(1, snapshotInterval.getSeconds());
+        p.exec.scheduleWithFixedDelay(() -> {
+            try {
+                p.snapshot();
+            } catch (Exception e) {
+                System.err.println("[SNAPSHOT] error: " + e.getMessage());
+            }
+        }, sec, sec, TimeUnit.SECONDS);
+        return p;
+    }
+
+    public Recovery recovery() {
+        return recovery;
+    }
+
+    // восстановление: части снапшота грузятся параллельно, хвост WAL — последовательно по поколениям
+    public static Recovery recover(Path dir, InMemoryLinkRepository repo) throws IOException {
+        long t0 = System.nanoTime();
+        long snap = maxGeneration(dir, SNAPSHOT_OK);
+        if (snap > 0) loadSnapshot(dir, snap, repo);
+
+        int records = 0;
+        var replay = new WriteAheadLog.Visitor() {
+            @Override public void saved(ShortLink link) { repo.save(link); }
+            @Override public void deleted(String code) { repo.delete(code); }
+
+            @Override
+            public void clicked(String code, int clicks) {
+                ShortLink l = repo.get(code);
+                if (l != null && clicks > l.clicks()) repo.save(withCounters(l, clicks, l.maxClicks()));
+            }
+
+            @Override
+            public void limitChanged(String code, int maxClicks) {
+                ShortLink l = repo.get(code);
+                if (l != null) repo.save(withCounters(l, l.clicks(), maxClicks));
+            }
+        };
+        // оборванным может быть только последний непустой сегмент: ротация создаёт следующий файл
+        // до того, как сбросит предыдущий
+        List<Path> segments = new ArrayList<>();
+        for (long g : generations(dir, WAL)) {
+            if (g >= snap) segments.add(WriteAheadLog.file(dir, g));
+        }
+        int last = segments.size() - 1;
+        while (last > 0 && Files.size(segments.get(last)) == 0) last--;
+        for (int i = 0; i < segments.size(); i++) {
+            records += WriteAheadLog.read(segments.get(i), replay, i >= last);
+        }
+        return new Recovery(repo.size(), records, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    // WAL переключается на новое поколение g, затем все ссылки пишутся в части снапшота g;
+    // после записи маркера .ok старые WAL и снапшоты удаляются
+    public synchronized void snapshot() throws IOException {
+        long gen = wal.rotate();
+        int parts = SNAPSHOT_PARTS;
+
+        List<FileOutputStream> files = new ArrayList<>(parts);
+        List<OutputStream> outs = new ArrayList<>(parts);
+        try {
+            for (int i = 0; i < parts; i++) {
+                var f = new FileOutputStream(part(dir, gen, i).toFile());
+                files.add(f);
+                outs.add(new BufferedOutputStream(f, 1 << 16));
+            }
+            ByteBuffer b = ByteBuffer.allocate(1 << 16);
+            IOException[] err = {null};
+            repo.forEach(l -> {
+                if (err[0] != null) return;
+                try {
+                    int need = 64 + (l.code.length() + l.originalUrl.length()) * 3;
+                    ByteBuffer body = need <= b.capacity() ? b.clear() : ByteBuffer.allocate(need);
+                    body.put(WriteAheadLog.SAVE);
+                    WriteAheadLog.putLink(body, l);
+                    outs.get(Math.floorMod(l.code.hashCode(), parts)).write(WriteAheadLog.frame(body));
+                } catch (IOException e) {
+                    err[0] = e;
+                }
+            });
+            if (err[0] != null) throw err[0];
+            for (int i = 0; i < parts; i++) {
+                outs.get(i).flush();
+                files.get(i).getFD().sync();
+            }
+        } finally {
+            for (OutputStream o : outs) o.close();
+        }
+
+        Path tmp = dir.resolve(String.format("snapshot-%016d.tmp", gen));
+        Files.writeString(tmp, Integer.toString(parts), StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(String.format("snapshot-%016d.ok", gen)), StandardCopyOption.ATOMIC_MOVE);
+
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : s.toList()) {
+                String name = p.getFileName().toString();
+                Matcher w = WAL.matcher(name);
+                Matcher sn = SNAPSHOT_ANY.matcher(name);
+                if ((w.matches() && Long.parseLong(w.group(1)) < gen)
+                        || (sn.matches() && Long.parseLong(sn.group(1)) < gen)) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        exec.shutdownNow();
+        try {
+            exec.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+    }
+
+    private static void loadSnapshot(Path dir, long gen, InMemoryLinkRepository repo) throws IOException {
+        int parts = Integer.parseInt(Files.readString(dir.resolve(String.format("snapshot-%016d.ok", gen))).trim());
+        var load = new WriteAheadLog.Visitor() {
+            @Override public void saved(ShortLink link) { repo.save(link); }
+            @Override public void deleted(String code) {}
+            @Override public void clicked(String code, int clicks) {}
+            @Override public void limitChanged(String code, int maxClicks) {}
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parts, Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<Integer>> fs = new ArrayList<>();
+            for (int i = 0; i < parts; i++) {
+                Path p = part(dir, gen, i);
+                fs.add(pool.submit(() -> WriteAheadLog.read(p, load, false)));
+            }
+            for (Future<Integer> f : fs) f.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IllegalStateException("Snapshot load failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Snapshot load interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ShortLink withCounters(ShortLink l, int clicks, int maxClicks) {
+        return new ShortLink(l.code, l.ownerId, l.originalUrl, l.createdAt, l.expiresAt, clicks, maxClicks);
+    }
+
+    private static Path part(Path dir, long gen, int i) {
+        return dir.resolve(String.format("snapshot-%016d-%03d.bin", gen, i));
+    }
+
+    private static long maxGeneration(Path dir, Pattern p) throws IOException {
+        List<Long> gs = generations(dir, p);
+        return gs.isEmpty() ? 0 : gs.get(gs.size() - 1);
+    }
+
+    private static List<Long> generations(Path dir, Pattern p) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.map(f -> p.matcher(f.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> Long.parseLong(m.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public interface LinkRepository {
+    // позиция в списке владельца: новые ссылки первыми, при равном createdAt — по коду
+    record OwnerCursor(Instant createdAt, String code) implements Comparable<OwnerCursor> {
+        // тот же порядок прямо на ссылках, без создания курсоров
+        public static final Comparator<ShortLink> LINK_ORDER = (a, b) -> {
+            int c = b.createdAt.compareTo(a.createdAt);
+            return c != 0 ? c : a.code.compareTo(b.code);
+        };
+
+        public static OwnerCursor of(ShortLink l) {
+            return new OwnerCursor(l.createdAt, l.code);
+        }
+
+        @Override
+        public int compareTo(OwnerCursor o) {
+            int c = o.createdAt.compareTo(createdAt);
+            return c != 0 ? c : code.compareTo(o.code);
+        }
+    }
+
+    boolean exists(String code);
+
+    void save(ShortLink link);
+
+    // вставка пачки одной операцией хранилища (один sync журнала, одна блокировка)
+    default void saveAll(List<ShortLink> links) {
+        for (ShortLink l : links) save(l);
+    }
+
+    ShortLink get(String code);
+
+    // живая (не истёкшая и не исчерпанная) ссылка владельца на этот URL, если есть
+    default ShortLink findByUrl(UUID ownerId, String url, Instant now) {
+        for (ShortLink l : listByOwner(ownerId)) {
+            if (l.originalUrl.equals(url) && !l.expired(now) && !l.exhausted()) return l;
+        }
+        return null;
+    }
+
+    // идемпотентное создание: возвращает живую ссылку владельца на тот же URL либо сохраняет link;
+    // реализация по умолчанию — просмотр списка владельца без атомарности между проверкой и вставкой
+    default ShortLink saveIfAbsentByUrl(ShortLink link, Instant now) {
+        ShortLink existing = findByUrl(link.ownerId, link.originalUrl, now);
+        if (existing != null) return existing;
+        save(link);
+        return link;
+    }
+
+    boolean delete(String code);
+
+    // резерв клика и смена лимита идут через репозиторий: он хранит счётчики и журналирует их
+    long tryClick(ShortLink link);
+
+    long trySetMaxClicks(ShortLink link, int newLimit);
+
+    List<ShortLink> listByOwner(UUID ownerId);
+
+    // число ссылок владельца (включая истёкшие, но ещё не удалённые) — для квоты на создание
+    default int countByOwner(UUID ownerId) {
+        return listByOwner(ownerId).size();
+    }
+
+    // страница из не более чем limit ссылок, строго после курсора (null — с самой новой)
+    List<ShortLink> listByOwner(UUID ownerId, OwnerCursor after, int limit);
+
+    int deleteExpired(Instant now);
+
+    // удаляет не более max истёкших ссылок, начиная с самых ранних
+    int drainExpired(Instant now, int max);
+
+    Instant nextExpiry();
+
+    // слабо согласованный обход без копирования всего хранилища
+    void forEach(Consumer<ShortLink> action);
+
+    int size();
+}
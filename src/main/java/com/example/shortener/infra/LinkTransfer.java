@@ -0,0 +1,360 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+// выгрузка и загрузка ссылок в JSONL, одна ссылка на строку:
+//   {"code":"..","owner":"<uuid>","url":"..","createdAt":"<ISO>","expiresAt":"<ISO>","clicks":0,"maxClicks":5}
+// Обе стороны потоковые: в памяти не больше 2 × parallelism пачек по BATCH ссылок. Экспорт обходит хранилище через
+// forEach (без копии), строки пачек форматируются в ForkJoinPool, а пишутся по порядку в файл.tmp,
+// который переименовывается после fsync. Импорт читает строки и раздаёт пачки задачам «разбор — проверка —
+// saveAll»; порядок вставки пачек не гарантирован, коды из файла перезаписывают существующие.
+public final class LinkTransfer {
+    public record Result(long links, long skipped, long bytes, long millis, String firstError) {
+        public double perSecond() {
+            return links * 1000.0 / Math.max(1, millis);
+        }
+    }
+
+    private static final int BATCH = 4096;
+    private static final int MAX_LINE = 1 << 20;
+
+    private LinkTransfer() {}
+
+    public static Result export(LinkRepository repo, Path file, int parallelism) throws IOException {
+        long t0 = System.nanoTime();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long[] links = {0}, bytes = {0};
+        try (var fos = new FileOutputStream(tmp.toFile()); var out = new BufferedOutputStream(fos, 1 << 16)) {
+            var pending = new ArrayDeque<Future<byte[]>>();
+            List<ShortLink> batch = new ArrayList<>(BATCH);
+            try {
+                repo.forEach(l -> {
+                    batch.add(l);
+                    links[0]++;
+                    if (batch.size() < BATCH) return;
+                    List<ShortLink> full = List.copyOf(batch);
+                    batch.clear();
+                    pending.addLast(pool.submit(() -> format(full)));
+                    try {
+                        while (pending.size() > 2 * parallelism) bytes[0] += write(out, pending.removeFirst());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (!batch.isEmpty()) pending.addLast(CompletableFuture.completedFuture(format(batch)));
+            while (!pending.isEmpty()) bytes[0] += write(out, pending.removeFirst());
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            pool.shutdownNow();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Result(links[0], 0, bytes[0], (System.nanoTime() - t0) / 1_000_000, null);
+    }
+
+    // validate проверяет и может заменить ссылку; IllegalArgumentException — строка пропускается
+    public static Result importJsonl(LinkRepository repo, Path file, int parallelism,
+                                     UnaryOperator<ShortLink> validate) throws IOException {
+        long t0 = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Semaphore window = new Semaphore(2 * parallelism);
+        LongAdder links = new LongAdder(), skipped = new LongAdder();
+        // пачки разбираются параллельно: из ошибок запоминается та, что раньше в файле
+        long[] errorLine = {Long.MAX_VALUE};
+        String[] firstError = {null};
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long bytes = Files.size(file);
+        try (var in = new BufferedReader(new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8), 1 << 16)) {
+            long lineNo = 0;
+            List<String> lines = new ArrayList<>(BATCH);
+            long[] numbers = new long[BATCH];
+            String line;
+            while (failure.get() == null) {
+                line = in.readLine();
+                if (line != null) {
+                    lineNo++;
+                    if (line.isBlank()) continue;
+                    numbers[lines.size()] = lineNo;
+                    lines.add(line);
+                    if (lines.size() < BATCH) continue;
+                }
+                if (lines.isEmpty()) break;
+                List<String> chunk = lines;
+                long[] at = numbers;
+                lines = new ArrayList<>(BATCH);
+                numbers = new long[BATCH];
+                acquire(window, 1);
+                pool.execute(() -> {
+                    try {
+                        List<ShortLink> parsed = new ArrayList<>(chunk.size());
+                        for (int i = 0; i < chunk.size(); i++) {
+                            try {
+                                parsed.add(validate.apply(parse(chunk.get(i))));
+                            } catch (IllegalArgumentException e) {
+                                skipped.increment();
+                                synchronized (errorLine) {
+                                    if (at[i] < errorLine[0]) {
+                                        errorLine[0] = at[i];
+                                        firstError[0] = "line " + at[i] + ": " + e.getMessage();
+                                    }
+                                }
+                            }
+                        }
+                        repo.saveAll(parsed);
+                        links.add(parsed.size());
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        window.release();
+                    }
+                });
+                if (line == null) break;
+            }
+            acquire(window, 2 * parallelism);
+        } finally {
+            pool.shutdownNow();
+        }
+        Throwable f = failure.get();
+        if (f instanceof RuntimeException e) throw e;
+        if (f instanceof Error e) throw e;
+        if (f != null) throw new IllegalStateException("Import failed", f);
+        return new Result(links.sum(), skipped.sum(), bytes, (System.nanoTime() - t0) / 1_000_000, firstError[0]);
+    }
+
+    private static long write(OutputStream out, Future<byte[]> f) throws IOException {
+        try {
+            byte[] b = f.get();
+            out.write(b);
+            return b.length;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Export failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        }
+    }
+
+    private static void acquire(Semaphore s, int permits) throws InterruptedIOException {
+        try {
+            s.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        }
+    }
+
+    // --- формат ---
+
+    static byte[] format(List<ShortLink> links) {
+        var sb = new StringBuilder(links.size() * 160);
+        for (ShortLink l : links) {
+            sb.append("{\"code\":");
+            str(sb, l.code);
+            sb.append(",\"owner\":\"").append(l.ownerId).append("\",\"url\":");
+            str(sb, l.originalUrl);
+            sb.append(",\"createdAt\":\"").append(l.createdAt).append("\",\"expiresAt\":\"").append(l.expiresAt)
+                    .append("\",\"clicks\":").append(l.clicks()).append(",\"maxClicks\":").append(l.maxClicks()).append("}\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void str(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 15, 16));
+                    else out.append(c);
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    // плоский JSON-объект со строками и целыми числами; неизвестные поля пропускаются
+    static ShortLink parse(String line) {
+        if (line.length() > MAX_LINE) throw new IllegalArgumentException("line too long");
+        var p = new Parser(line);
+        String code = null, owner = null, url = null, created = null, expires = null;
+        long clicks = 0, maxClicks = -1;
+        p.expect('{');
+        if (!p.tryConsume('}')) {
+            do {
+                String key = p.string();
+                p.expect(':');
+                switch (key) {
+                    case "code" -> code = p.string();
+                    case "owner" -> owner = p.string();
+                    case "url" -> url = p.string();
+                    case "createdAt" -> created = p.string();
+                    case "expiresAt" -> expires = p.string();
+                    case "clicks" -> clicks = p.number();
+                    case "maxClicks" -> maxClicks = p.number();
+                    default -> p.skipValue();
+                }
+            } while (p.tryConsume(','));
+            p.expect('}');
+        }
+        p.end();
+        if (code == null || owner == null || url == null || created == null || expires == null || maxClicks < 0) {
+            throw new IllegalArgumentException("missing field (code, owner, url, createdAt, expiresAt, maxClicks)");
+        }
+        if (clicks < 0 || clicks > maxClicks || maxClicks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("clicks must be 0..maxClicks");
+        }
+        try {
+            return new ShortLink(code, UUID.fromString(owner), url, instant(created), instant(expires),
+                    (int) clicks, (int) maxClicks);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("bad timestamp: " + e.getMessage());
+        }
+    }
+
+    // форма Instant.toString() — yyyy-MM-ddTHH:mm:ss[.f]Z — разбирается вручную: Instant.parse через
+    // DateTimeFormatter занимает большую часть времени импорта; прочие формы — через Instant.parse
+    static Instant instant(String s) {
+        int n = s.length();
+        if (n < 20 || n > 30 || n == 21 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+                || s.charAt(13) != ':' || s.charAt(16) != ':' || s.charAt(n - 1) != 'Z' || (n > 20 && s.charAt(19) != '.')) {
+            return Instant.parse(s);
+        }
+        int year = digits(s, 0, 4), month = digits(s, 5, 7), day = digits(s, 8, 10);
+        int h = digits(s, 11, 13), m = digits(s, 14, 16), sec = digits(s, 17, 19);
+        int nanos = n > 20 ? digits(s, 20, n - 1) : 0;
+        if (year < 0 || month < 0 || day < 0 || h < 0 || h > 23 || m < 0 || m > 59 || sec < 0 || sec > 59 || nanos < 0) {
+            return Instant.parse(s);
+        }
+        for (int i = n - 1; i < 29; i++) nanos *= 10;
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        return Instant.ofEpochSecond(epochDay * 86_400 + h * 3600 + m * 60 + sec, nanos);
+    }
+
+    // десятичное число из s[from, to) или -1
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static final class Parser {
+        final String s;
+        int i;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        void ws() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        }
+
+        boolean tryConsume(char c) {
+            ws();
+            if (i < s.length() && s.charAt(i) == c) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!tryConsume(c)) throw new IllegalArgumentException("expected '" + c + "' at " + i);
+        }
+
+        void end() {
+            ws();
+            if (i != s.length()) throw new IllegalArgumentException("trailing data at " + i);
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = null;
+            int start = i;
+            while (i < s.length()) {
+                char c = s.charAt(i);
+                if (c == '"') {
+                    String r = sb == null ? s.substring(start, i) : sb.append(s, start, i).toString();
+                    i++;
+                    return r;
+                }
+                if (c != '\\') {
+                    i++;
+                    continue;
+                }
+                if (sb == null) sb = new StringBuilder();
+                sb.append(s, start, i);
+                if (++i >= s.length()) break;
+                char e = s.charAt(i++);
+                switch (e) {
+                    case '"', '\\', '/' -> sb.append(e);
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (i + 4 > s.length()) throw new IllegalArgumentException("bad \\u escape");
+                        sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        i += 4;
+                    }
+                    default -> throw new IllegalArgumentException("bad escape \\" + e);
+                }
+                start = i;
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+
+        long number() {
+            ws();
+            int start = i;
+            if (i < s.length() && s.charAt(i) == '-') i++;
+            while (i < s.length() && Character.isDigit(s.charAt(i))) i++;
+            if (start == i) throw new IllegalArgumentException("expected number at " + i);
+            return Long.parseLong(s, start, i, 10);
+        }
+
+        void skipValue() {
+            ws();
+            if (i >= s.length()) throw new IllegalArgumentException("unexpected end");
+            char c = s.charAt(i);
+            if (c == '"') {
+                string();
+            } else if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("nested values are not supported");
+            } else {
+                while (i < s.length() && ",}".indexOf(s.charAt(i)) < 0) i++;
+            }
+        }
+    }
+}
@@ -0,0 +1,645 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Ссылки вне кучи: записи фиксированной длины в records.bin (mmap), URL — в дописываемом urls.bin,
+// индекс код -> слот — открытая адресация в direct-буфере (перестраивается при открытии).
+//
+// Запись, 80 байт:
+//   0 int status | 4 int urlLen | 8 byte[16] code | 24 long ownerHi | 32 long ownerLo
+//   40 long createdAt (epoch ms) | 48 long expiresAt (epoch sec, вверх) | 56 long state (maxClicks << 32 | clicks)
+//   64 long urlOffset | 72 int prevByOwner | 76 int nextByOwner
+// Слот 0 — заголовок: magic, highWater (первый неиспользованный слот), urlEnd.
+//
+// Получение не берёт блокировок; клики — CAS по state прямо в mmap под read-lock, чтобы слот не освободился
+// и не достался другой ссылке между find и CAS; изменения структуры — под write-lock.
+// createdAt хранится в миллисекундах (меньше равных значений — короче обход цепочки владельца при вставке),
+// expiresAt — в секундах с округлением вверх, чтобы ссылка не истекала раньше срока; код — до 16 ASCII-символов. Место удалённых URL не переиспользуется.
+public final class MappedLinkRepository implements LinkRepository, AutoCloseable {
+    static final int RECORD = 80;
+    private static final int SEG_SHIFT = 20;
+    private static final int SEG_RECORDS = 1 << SEG_SHIFT;
+    private static final int URL_STAGE = 1 << 20;
+    private static final long SEG_BYTES = (long) SEG_RECORDS * RECORD;
+    private static final long MAGIC = 0x4C4E4B5245433032L;
+
+    private static final int STATUS = 0, URL_LEN = 4, CODE = 8, OWNER_HI = 24, OWNER_LO = 32,
+            CREATED = 40, EXPIRES = 48, STATE = 56, URL_OFF = 64, PREV = 72, NEXT = 76;
+    private static final int CODE_MAX = 16;
+    private static final int LIVE = 1, DELETED = 2;
+    private static final int NONE = -1;
+    private static final int TOMBSTONE = -1;
+    private static final int MAX_TABLE = 1 << 28;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final class IntList {
+        int[] a = new int[4];
+        int n;
+
+        void add(int v) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = v;
+        }
+    }
+
+    // таблица открытой адресации: 0 — пусто, -1 — надгробие, иначе slot + 1
+    private static final class Table {
+        final ByteBuffer buf;
+        final int mask;
+        int used;
+
+        Table(int capacity) {
+            buf = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder());
+            mask = capacity - 1;
+        }
+
+        int get(int i) {
+            return (int) INTS.getAcquire(buf, i << 2);
+        }
+
+        void set(int i, int v) {
+            INTS.setRelease(buf, i << 2, v);
+        }
+    }
+
+    private final FileChannel recordsCh;
+    private final FileChannel urlsCh;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile Table table;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long highWater;
+    private long urlEnd;
+    private volatile int live;
+    private final IntList free = new IntList();
+    private final ConcurrentHashMap<UUID, Integer> ownerHeads = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, IntList> expiry = new ConcurrentSkipListMap<>();
+
+    private MappedLinkRepository(FileChannel recordsCh, FileChannel urlsCh, int tableSize) {
+        this.recordsCh = recordsCh;
+        this.urlsCh = urlsCh;
+        this.table = new Table(tableSize);
+    }
+
+    public static MappedLinkRepository open(Path dir, int capacity) throws IOException {
+        int tableSize = tableSize(capacity);
+        Files.createDirectories(dir);
+        var rc = FileChannel.open(dir.resolve("records.bin"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var uc = FileChannel.open(dir.resolve("urls.bin"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var r = new MappedLinkRepository(rc, uc, tableSize);
+        r.load();
+        return r;
+    }
+
+    private void load() throws IOException {
+        boolean fresh = recordsCh.size() == 0;
+        ensureSegment(0);
+        ByteBuffer h = segments[0];
+        if (fresh) {
+            h.putLong(0, MAGIC);
+            highWater = 1;
+            urlEnd = 0;
+            writeHeader();
+            return;
+        }
+        if (h.getLong(0) != MAGIC) throw new IOException("Not a link store: " + recordsCh);
+        highWater = h.getLong(8);
+        urlEnd = h.getLong(16);
+        ensureSegment((int) ((highWater - 1) >>> SEG_SHIFT));
+
+        for (int slot = 1; slot < highWater; slot++) {
+            ByteBuffer b = seg(slot);
+            int off = off(slot);
+            if (b.getInt(off + STATUS) != LIVE) {
+                free.add(slot);
+                continue;
+            }
+            indexInsert(slot, codeHash(b, off));
+            if (b.getInt(off + PREV) == NONE) ownerHeads.put(owner(b, off), slot);
+            expiry.computeIfAbsent(b.getLong(off + EXPIRES), k -> new IntList()).add(slot);
+            live++;
+        }
+    }
+
+    @Override
+    public boolean exists(String code) {
+        return find(code) >= 0;
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        saveAll(List.of(link));
+    }
+
+    // одна запись под write-lock; URL пачки дописываются в арену крупными кусками, заголовок — один раз
+    @Override
+    public void saveAll(List<ShortLink> links) {
+        int n = links.size();
+        byte[][] codes = new byte[n][];
+        byte[][] urls = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            codes[i] = codeBytes(links.get(i).code);
+            urls[i] = links.get(i).originalUrl.getBytes(StandardCharsets.UTF_8);
+        }
+        lock.writeLock().lock();
+        try {
+            // сначала URL: запись становится видна читателям без блокировки, и её URL уже должен быть в арене
+            long base = urlEnd;
+            ByteBuffer staged = ByteBuffer.allocate(URL_STAGE);
+            long stagedAt = base;
+            for (byte[] url : urls) {
+                if (staged.remaining() < url.length) {
+                    stagedAt = writeUrls(staged, stagedAt);
+                    if (url.length > staged.capacity()) staged = ByteBuffer.allocate(url.length);
+                }
+                staged.put(url);
+            }
+            writeUrls(staged, stagedAt);
+
+            long[] urlOffs = new long[n];
+            long urlOff = base;
+            for (int i = 0; i < n; i++) {
+                urlOffs[i] = urlOff;
+                urlOff += urls[i].length;
+            }
+            urlEnd = urlOff;
+            // от конца порядка владельца к началу: каждая ссылка встаёт в голову цепочки, без обхода
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, (x, y) -> {
+                ShortLink a = links.get(x), c = links.get(y);
+                int t = Long.compare(a.createdAt.toEpochMilli(), c.createdAt.toEpochMilli());
+                return t != 0 ? t : c.code.compareTo(a.code);
+            });
+            for (int i : order) insert(links.get(i), codes[i], urls[i].length, urlOffs[i]);
+            writeHeader();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long writeUrls(ByteBuffer staged, long at) throws IOException {
+        staged.flip();
+        while (staged.hasRemaining()) urlsCh.write(staged, at + staged.position());
+        long end = at + staged.limit();
+        staged.clear();
+        return end;
+    }
+
+    private void insert(ShortLink link, byte[] code, int urlLen, long urlOff) throws IOException {
+        int existing = find(link.code);
+        if (existing >= 0) deleteSlot(existing);
+
+        int slot = free.n > 0 ? free.a[--free.n] : allocateSlot();
+        ByteBuffer b = seg(slot);
+        int off = off(slot);
+        long st = link.state();
+        b.putInt(off + URL_LEN, urlLen);
+        for (int i = 0; i < CODE_MAX; i++) b.put(off + CODE + i, i < code.length ? code[i] : 0);
+        b.putLong(off + OWNER_HI, link.ownerId.getMostSignificantBits());
+        b.putLong(off + OWNER_LO, link.ownerId.getLeastSignificantBits());
+        b.putLong(off + CREATED, link.createdAt.toEpochMilli());
+        long expires = ceilEpochSecond(link.expiresAt);
+        b.putLong(off + EXPIRES, expires);
+        b.putLong(off + STATE, st);
+        b.putLong(off + URL_OFF, urlOff);
+        INTS.setRelease(b, off + STATUS, LIVE);
+
+        indexInsert(slot, hash(link.code));
+        linkOwner(slot, link.ownerId);
+        expiry.computeIfAbsent(expires, k -> new IntList()).add(slot);
+        live++;
+    }
+
+    @Override
+    public ShortLink get(String code) {
+        int slot = find(code);
+        if (slot < 0) return null;
+        ShortLink l = materialize(slot);
+        // слот мог освободиться или переиспользоваться, пока читали поля
+        return (l != null && l.code.equals(code) && find(code) == slot) ? l : null;
+    }
+
+    @Override
+    public boolean delete(String code) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(code);
+            if (slot < 0) return false;
+            deleteSlot(slot);
+            writeHeader();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long tryClick(ShortLink link) {
+        lock.readLock().lock();
+        try {
+            int slot = find(link.code);
+            if (slot < 0) return ShortLink.REJECTED | link.state();
+            ByteBuffer b = seg(slot);
+            int at = off(slot) + STATE;
+            long s = (long) LONGS.getVolatile(b, at);
+            while (true) {
+                if (ShortLink.clicksOf(s) >= ShortLink.maxClicksOf(s)) return ShortLink.REJECTED | s;
+                long witness = (long) LONGS.compareAndExchange(b, at, s, s + 1);
+                if (witness == s) return s + 1;
+                s = witness;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long trySetMaxClicks(ShortLink link, int newLimit) {
+        lock.readLock().lock();
+        try {
+            int slot = find(link.code);
+            if (slot < 0) return ShortLink.REJECTED | link.state();
+            ByteBuffer b = seg(slot);
+            int at = off(slot) + STATE;
+            long s = (long) LONGS.getVolatile(b, at);
+            while (true) {
+                if (newLimit < ShortLink.clicksOf(s)) return ShortLink.REJECTED | s;
+                long next = ((long) newLimit << 32) | (s & 0xFFFFFFFFL);
+                long witness = (long) LONGS.compareAndExchange(b, at, s, next);
+                if (witness == s) return next;
+                s = witness;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId) {
+        return listByOwner(ownerId, null, Integer.MAX_VALUE);
+    }
+
+    // проход по цепочке владельца без чтения URL
+    @Override
+    public int countByOwner(UUID ownerId) {
+        lock.readLock().lock();
+        try {
+            Integer head = ownerHeads.get(ownerId);
+            int n = 0;
+            for (int slot = head == null ? NONE : head; slot != NONE; slot = seg(slot).getInt(off(slot) + NEXT)) n++;
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId, OwnerCursor after, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        ArrayList<ShortLink> res = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Integer head = ownerHeads.get(ownerId);
+            int slot = head == null ? NONE : head;
+            if (after != null) {
+                int at = find(after.code());
+                if (at >= 0 && owner(seg(at), off(at)).equals(ownerId)) {
+                    slot = seg(at).getInt(off(at) + NEXT);
+                } else {
+                    while (slot != NONE && OwnerCursor.of(materialize(slot)).compareTo(after) <= 0) {
+                        slot = seg(slot).getInt(off(slot) + NEXT);
+                    }
+                }
+            }
+            while (slot != NONE && res.size() < limit) {
+                res.add(materialize(slot));
+                slot = seg(slot).getInt(off(slot) + NEXT);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return res;
+    }
+
+    @Override
+    public int deleteExpired(Instant now) {
+        return drainExpired(now, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainExpired(Instant now, int max) {
+        long nowSec = now.getEpochSecond();
+        int removed = 0;
+        lock.writeLock().lock();
+        try {
+            while (removed < max) {
+                var e = expiry.firstEntry();
+                if (e == null || e.getKey() > nowSec) break;
+                IntList slots = e.getValue();
+                while (slots.n > 0 && removed < max) {
+                    int slot = slots.a[--slots.n];
+                    ByteBuffer b = seg(slot);
+                    int off = off(slot);
+                    // в корзине могут остаться удалённые или переиспользованные слоты
+                    if (b.getInt(off + STATUS) == LIVE && b.getLong(off + EXPIRES) == e.getKey()) {
+                        deleteSlot(slot);
+                        removed++;
+                    }
+                }
+                if (slots.n == 0) expiry.remove(e.getKey(), slots);
+            }
+            if (removed > 0) writeHeader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    @Override
+    public Instant nextExpiry() {
+        var e = expiry.firstEntry();
+        return e == null ? null : Instant.ofEpochSecond(e.getKey());
+    }
+
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        long hw;
+        lock.readLock().lock();
+        try {
+            hw = highWater;
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int slot = 1; slot < hw; slot++) {
+            if ((int) INTS.getAcquire(seg(slot), off(slot) + STATUS) != LIVE) continue;
+            ShortLink l = materialize(slot);
+            if (l != null) action.accept(l);
+        }
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            writeHeader();
+            for (MappedByteBuffer m : segments) m.force();
+            urlsCh.force(false);
+            recordsCh.close();
+            urlsCh.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- внутреннее ---
+
+    private int find(String code) {
+        if (code.length() > CODE_MAX || code.isEmpty()) return -1;
+        Table t = table;
+        int i = hash(code) & t.mask;
+        while (true) {
+            int v = t.get(i);
+            if (v == 0) return -1;
+            if (v > 0 && codeEquals(v - 1, code)) return v - 1;
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    private void indexInsert(int slot, int h) {
+        Table t = table;
+        if ((t.used + 1) * 2 > t.mask + 1) t = rehash();
+        int i = h & t.mask;
+        while (t.get(i) > 0) i = (i + 1) & t.mask;
+        if (t.get(i) == 0) t.used++;
+        t.set(i, slot + 1);
+    }
+
+    private void indexRemove(int slot) {
+        Table t = table;
+        ByteBuffer b = seg(slot);
+        int i = codeHash(b, off(slot)) & t.mask;
+        while (true) {
+            int v = t.get(i);
+            if (v == 0) return;
+            if (v == slot + 1) {
+                t.set(i, TOMBSTONE);
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    // новая таблица строится целиком и публикуется volatile-записью; читатели дочитывают старую
+    private Table rehash() {
+        Table t = new Table(tableSize(Math.max(live + 1, 16)));
+        Table old = table;
+        for (int i = 0; i <= old.mask; i++) {
+            int v = old.get(i);
+            if (v <= 0) continue;
+            int j = codeHash(seg(v - 1), off(v - 1)) & t.mask;
+            while (t.get(j) != 0) j = (j + 1) & t.mask;
+            t.set(j, v);
+            t.used++;
+        }
+        table = t;
+        return t;
+    }
+
+    private void deleteSlot(int slot) {
+        ByteBuffer b = seg(slot);
+        int off = off(slot);
+        indexRemove(slot);
+        unlinkOwner(slot);
+        INTS.setRelease(b, off + STATUS, DELETED);
+        free.add(slot);
+        live--;
+    }
+
+    // цепочка владельца упорядочена как OwnerCursor: новые первыми, при равном времени — по коду
+    private void linkOwner(int slot, UUID owner) {
+        ByteBuffer b = seg(slot);
+        int off = off(slot);
+        Integer head = ownerHeads.get(owner);
+        int prev = NONE, cur = head == null ? NONE : head;
+        while (cur != NONE && !before(slot, cur)) {
+            prev = cur;
+            cur = seg(cur).getInt(off(cur) + NEXT);
+        }
+        b.putInt(off + PREV, prev);
+        b.putInt(off + NEXT, cur);
+        if (cur != NONE) seg(cur).putInt(off(cur) + PREV, slot);
+        if (prev != NONE) seg(prev).putInt(off(prev) + NEXT, slot);
+        else ownerHeads.put(owner, slot);
+    }
+
+    private void unlinkOwner(int slot) {
+        ByteBuffer b = seg(slot);
+        int off = off(slot);
+        int prev = b.getInt(off + PREV), next = b.getInt(off + NEXT);
+        if (next != NONE) seg(next).putInt(off(next) + PREV, prev);
+        if (prev != NONE) {
+            seg(prev).putInt(off(prev) + NEXT, next);
+        } else {
+            UUID owner = owner(b, off);
+            if (next == NONE) ownerHeads.remove(owner);
+            else ownerHeads.put(owner, next);
+        }
+    }
+
+    private boolean before(int a, int b) {
+        long ca = seg(a).getLong(off(a) + CREATED), cb = seg(b).getLong(off(b) + CREATED);
+        if (ca != cb) return ca > cb;
+        return code(a).compareTo(code(b)) < 0;
+    }
+
+    private ShortLink materialize(int slot) {
+        ByteBuffer b = seg(slot);
+        int off = off(slot);
+        if ((int) INTS.getAcquire(b, off + STATUS) != LIVE) return null;
+        String code = code(slot);
+        UUID owner = owner(b, off);
+        long st = (long) LONGS.getVolatile(b, off + STATE);
+        byte[] url = new byte[b.getInt(off + URL_LEN)];
+        try {
+            ByteBuffer ub = ByteBuffer.wrap(url);
+            long pos = b.getLong(off + URL_OFF);
+            while (ub.hasRemaining()) {
+                if (urlsCh.read(ub, pos + ub.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ShortLink(code, owner, new String(url, StandardCharsets.UTF_8),
+                Instant.ofEpochMilli(b.getLong(off + CREATED)), Instant.ofEpochSecond(b.getLong(off + EXPIRES)),
+                ShortLink.clicksOf(st), ShortLink.maxClicksOf(st));
+    }
+
+    private String code(int slot) {
+        ByteBuffer b = seg(slot);
+        int off = off(slot);
+        byte[] c = new byte[CODE_MAX];
+        int n = 0;
+        while (n < CODE_MAX && (c[n] = b.get(off + CODE + n)) != 0) n++;
+        return new String(c, 0, n, StandardCharsets.ISO_8859_1);
+    }
+
+    private boolean codeEquals(int slot, String code) {
+        ByteBuffer b = seg(slot);
+        int off = off(slot);
+        int n = code.length();
+        for (int i = 0; i < n; i++) {
+            char c = code.charAt(i);
+            if (c >= 0x80 || b.get(off + CODE + i) != (byte) c) return false;
+        }
+        return n == CODE_MAX || b.get(off + CODE + n) == 0;
+    }
+
+    private static UUID owner(ByteBuffer b, int off) {
+        return new UUID(b.getLong(off + OWNER_HI), b.getLong(off + OWNER_LO));
+    }
+
+    private int allocateSlot() throws IOException {
+        int slot = (int) highWater++;
+        ensureSegment(slot >>> SEG_SHIFT);
+        return slot;
+    }
+
+    private void ensureSegment(int idx) throws IOException {
+        MappedByteBuffer[] s = segments;
+        if (idx < s.length) return;
+        MappedByteBuffer[] n = Arrays.copyOf(s, idx + 1);
+        for (int i = s.length; i <= idx; i++) {
+            n[i] = recordsCh.map(FileChannel.MapMode.READ_WRITE, i * SEG_BYTES, SEG_BYTES);
+            n[i].order(ByteOrder.nativeOrder());
+        }
+        segments = n;
+    }
+
+    private void writeHeader() {
+        ByteBuffer h = segments[0];
+        h.putLong(8, highWater);
+        h.putLong(16, urlEnd);
+    }
+
+    private ByteBuffer seg(int slot) {
+        return segments[slot >>> SEG_SHIFT];
+    }
+
+    private static int off(int slot) {
+        return (slot & (SEG_RECORDS - 1)) * RECORD;
+    }
+
+    private static byte[] codeBytes(String code) {
+        if (code.isEmpty() || code.length() > CODE_MAX) throw new IllegalArgumentException("code must be 1.." + CODE_MAX + " chars");
+        byte[] b = new byte[code.length()];
+        for (int i = 0; i < b.length; i++) {
+            char c = code.charAt(i);
+            if (c == 0 || c >= 0x80) throw new IllegalArgumentException("code must be ASCII");
+            b[i] = (byte) c;
+        }
+        return b;
+    }
+
+    private static int hash(String code) {
+        int h = 0;
+        for (int i = 0; i < code.length(); i++) h = 31 * h + (byte) code.charAt(i);
+        return spread(h);
+    }
+
+    private static int codeHash(ByteBuffer b, int off) {
+        int h = 0;
+        for (int i = 0; i < CODE_MAX; i++) {
+            byte c = b.get(off + CODE + i);
+            if (c == 0) break;
+            h = 31 * h + c;
+        }
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // срок истечения округляется вверх до секунды: ссылка может прожить чуть дольше, но не уйдёт раньше срока
+    private static long ceilEpochSecond(Instant t) {
+        long s = t.getEpochSecond();
+        return t.getNano() == 0 || s == Long.MAX_VALUE ? s : s + 1;
+    }
+
+    // ячейка таблицы — int в одном direct-буфере, поэтому ячеек не больше MAX_TABLE: 4 байта на каждую влезают в int
+    private static int tableSize(int capacity) {
+        long n = Long.highestOneBit(Math.max(16L, capacity) * 2 - 1) << 1;
+        if (n > MAX_TABLE) throw new IllegalArgumentException("capacity too large: " + capacity);
+        return (int) n;
+    }
+}
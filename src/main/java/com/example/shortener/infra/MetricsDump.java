@@ -0,0 +1,56 @@
+package com.example.shortener.infra;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// периодически дописывает снимок метрик в файл: одна JSON-строка на интервал, последняя — при закрытии
+public final class MetricsDump implements AutoCloseable {
+    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "metrics-dump");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ServiceMetrics metrics;
+    private final Path file;
+
+    public MetricsDump(ServiceMetrics metrics, Path file, Duration interval) {
+        this.metrics = metrics;
+        this.file = file;
+        long sec = Math.max(1, interval.getSeconds());
+        exec.scheduleAtFixedRate(() -> {
+            try {
+                dump();
+            } catch (Exception e) {
+                System.err.println("[METRICS] dump error: " + e.getMessage());
+            }
+        }, sec, sec, TimeUnit.SECONDS);
+    }
+
+    public void dump() throws IOException {
+        var sb = new StringBuilder(2048);
+        sb.append("{\"at\":\"").append(Instant.now()).append("\",\"stats\":");
+        metrics.snapshot().appendJson(sb);
+        sb.append("}\n");
+        synchronized (this) {
+            Files.writeString(file, sb, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    @Override
+    public void close() {
+        exec.shutdownNow();
+        try {
+            dump();
+        } catch (IOException e) {
+            System.err.println("[METRICS] dump error: " + e.getMessage());
+        }
+    }
+}
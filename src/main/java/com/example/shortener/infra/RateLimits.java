@@ -0,0 +1,48 @@
+package com.example.shortener.infra;
+
+import java.util.UUID;
+
+// ограничения одного процесса: ведро токенов на владельца для create, ведро на код для open
+// и потолок числа ссылок владельца; нулевое значение — без ограничения
+public final class RateLimits {
+    public static final RateLimits NONE = new RateLimits(0, 0, 0, 0, 0);
+
+    private final TokenBucketLimiter<UUID> create;
+    private final TokenBucketLimiter<String> open;
+    private final int maxLinksPerOwner;
+
+    // burst <= 0 — ведро на одну секунду трафика
+    public RateLimits(double createPerSecond, int createBurst, double openPerSecond, int openBurst, int maxLinksPerOwner) {
+        this.create = createPerSecond > 0 ? new TokenBucketLimiter<>(createPerSecond, burst(createPerSecond, createBurst)) : null;
+        this.open = openPerSecond > 0 ? new TokenBucketLimiter<>(openPerSecond, burst(openPerSecond, openBurst)) : null;
+        this.maxLinksPerOwner = Math.max(0, maxLinksPerOwner);
+    }
+
+    // сколько из n созданий владельцу разрешено прямо сейчас
+    public int acquireCreate(UUID ownerId, int n) {
+        return create == null ? n : create.acquire(ownerId, n);
+    }
+
+    public boolean tryOpen(String code) {
+        return open == null || open.acquire(code, 1) == 1;
+    }
+
+    public int maxLinksPerOwner() {
+        return maxLinksPerOwner;
+    }
+
+    public int evictIdle() {
+        int n = 0;
+        if (create != null) n += create.evictIdle();
+        if (open != null) n += open.evictIdle();
+        return n;
+    }
+
+    public int buckets() {
+        return (create == null ? 0 : create.size()) + (open == null ? 0 : open.size());
+    }
+
+    private static int burst(double perSecond, int burst) {
+        return burst > 0 ? burst : (int) Math.min(TokenBucketLimiter.MAX_BURST, Math.max(1, Math.ceil(perSecond)));
+    }
+}
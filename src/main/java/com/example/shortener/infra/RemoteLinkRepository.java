@@ -0,0 +1,290 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.example.shortener.infra.ShardProtocol.*;
+
+// клиент ShardServer: синхронные запросы через пул соединений (не больше maxConnections);
+// get/list возвращают копии ссылок, поэтому клики и лимиты идут только через tryClick/trySetMaxClicks по коду
+public final class RemoteLinkRepository implements LinkRepository, AutoCloseable {
+    private interface Call<T> {
+        T run(DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+    private static final class Conn implements Closeable {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Conn(InetSocketAddress addr) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(addr, 5_000);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private final InetSocketAddress addr;
+    private final int maxConnections;
+    private final BlockingQueue<Conn> idle;
+    private final AtomicInteger opened = new AtomicInteger();
+    private volatile boolean closed;
+
+    public RemoteLinkRepository(InetSocketAddress addr, int maxConnections) {
+        if (maxConnections <= 0) throw new IllegalArgumentException("maxConnections must be > 0");
+        this.addr = addr;
+        this.maxConnections = maxConnections;
+        this.idle = new ArrayBlockingQueue<>(maxConnections);
+    }
+
+    // "host:port"
+    public static RemoteLinkRepository connect(String address, int maxConnections) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("Expected host:port, got " + address);
+        return new RemoteLinkRepository(
+                new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))),
+                maxConnections);
+    }
+
+    @Override
+    public boolean exists(String code) {
+        return call(EXISTS, (in, out) -> {
+            writeString(out, code);
+            return ok(out, in).readBoolean();
+        });
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        call(SAVE, (in, out) -> {
+            writeLink(out, link);
+            ok(out, in);
+            return null;
+        });
+    }
+
+    @Override
+    public void saveAll(List<ShortLink> links) {
+        call(SAVE_ALL, (in, out) -> {
+            writeLinks(out, links);
+            ok(out, in);
+            return null;
+        });
+    }
+
+    @Override
+    public ShortLink get(String code) {
+        return call(GET, (in, out) -> {
+            writeString(out, code);
+            return readNullableLink(ok(out, in));
+        });
+    }
+
+    @Override
+    public boolean delete(String code) {
+        return call(DELETE, (in, out) -> {
+            writeString(out, code);
+            return ok(out, in).readBoolean();
+        });
+    }
+
+    @Override
+    public long tryClick(ShortLink link) {
+        return call(TRY_CLICK, (in, out) -> {
+            writeString(out, link.code);
+            return ok(out, in).readLong();
+        });
+    }
+
+    @Override
+    public long trySetMaxClicks(ShortLink link, int newLimit) {
+        return call(TRY_SET_MAX, (in, out) -> {
+            writeString(out, link.code);
+            out.writeInt(newLimit);
+            return ok(out, in).readLong();
+        });
+    }
+
+    @Override
+    public ShortLink findByUrl(UUID ownerId, String url, Instant now) {
+        return call(FIND_BY_URL, (in, out) -> {
+            writeUuid(out, ownerId);
+            writeString(out, url);
+            writeInstant(out, now);
+            return readNullableLink(ok(out, in));
+        });
+    }
+
+    @Override
+    public ShortLink saveIfAbsentByUrl(ShortLink link, Instant now) {
+        return call(SAVE_IF_ABSENT, (in, out) -> {
+            writeLink(out, link);
+            writeInstant(out, now);
+            return readLink(ok(out, in));
+        });
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId) {
+        return call(LIST, (in, out) -> {
+            writeUuid(out, ownerId);
+            return readLinks(ok(out, in));
+        });
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        return call(COUNT_BY_OWNER, (in, out) -> {
+            writeUuid(out, ownerId);
+            return ok(out, in).readInt();
+        });
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId, OwnerCursor after, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return call(LIST_PAGE, (in, out) -> {
+            writeUuid(out, ownerId);
+            out.writeBoolean(after != null);
+            if (after != null) {
+                writeInstant(out, after.createdAt());
+                writeString(out, after.code());
+            }
+            out.writeInt(limit);
+            return readLinks(ok(out, in));
+        });
+    }
+
+    @Override
+    public int deleteExpired(Instant now) {
+        return call(DELETE_EXPIRED, (in, out) -> {
+            writeInstant(out, now);
+            return ok(out, in).readInt();
+        });
+    }
+
+    @Override
+    public int drainExpired(Instant now, int max) {
+        return call(DRAIN_EXPIRED, (in, out) -> {
+            writeInstant(out, now);
+            out.writeInt(max);
+            return ok(out, in).readInt();
+        });
+    }
+
+    @Override
+    public Instant nextExpiry() {
+        return call(NEXT_EXPIRY, (in, out) -> {
+            DataInputStream r = ok(out, in);
+            return r.readBoolean() ? readInstant(r) : null;
+        });
+    }
+
+    // ссылки читаются из сокета по одной, без сборки всего шарда в памяти
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        call(FOR_EACH, (in, out) -> {
+            DataInputStream r = ok(out, in);
+            while (r.readBoolean()) action.accept(readLink(r));
+            return null;
+        });
+    }
+
+    @Override
+    public int size() {
+        return call(SIZE, (in, out) -> ok(out, in).readInt());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Conn c;
+        while ((c = idle.poll()) != null) closeQuietly(c);
+    }
+
+    private <T> T call(byte op, Call<T> body) {
+        Conn c = borrow();
+        boolean reusable = false;
+        try {
+            c.out.writeByte(op);
+            T r = body.run(c.in, c.out);
+            reusable = true;
+            return r;
+        } catch (RemoteException e) {
+            reusable = true;
+            throw new IllegalStateException("Shard " + addr + ": " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Shard " + addr + " unavailable", e);
+        } finally {
+            if (reusable && !closed) {
+                idle.offer(c);
+            } else {
+                closeQuietly(c);
+                opened.decrementAndGet();
+            }
+        }
+    }
+
+    // отправляет запрос и читает статус ответа
+    private static DataInputStream ok(DataOutputStream out, DataInputStream in) throws IOException {
+        out.flush();
+        byte status = in.readByte();
+        if (status == ERR) throw new RemoteException(readString(in));
+        if (status != OK) throw new IOException("Bad response status " + status);
+        return in;
+    }
+
+    private Conn borrow() {
+        if (closed) throw new IllegalStateException("Repository closed");
+        Conn c = idle.poll();
+        if (c != null) return c;
+        while (true) {
+            int n = opened.get();
+            if (n >= maxConnections) break;
+            if (opened.compareAndSet(n, n + 1)) {
+                try {
+                    return new Conn(addr);
+                } catch (IOException e) {
+                    opened.decrementAndGet();
+                    throw new UncheckedIOException("Shard " + addr + " unavailable", e);
+                }
+            }
+        }
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard connection");
+        }
+    }
+
+    private static void closeQuietly(Conn c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final class RemoteException extends IOException {
+        RemoteException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.LinkStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// счётчики и гистограммы задержек операций ShortenerService: гистограмма на пару (операция, исход),
+// так что запись — одно атомарное сложение, а число операций по исходам — сумма корзин;
+// выключенный экземпляр (OFF) не читает часы и ничего не пишет
+public final class ServiceMetrics {
+    public enum Op {
+        CREATE("create"), CREATE_ALL("createAll"), OPEN("open"), LIST("list"),
+        UPDATE_LIMIT("updateLimit"), DELETE("delete"), CLEANUP("cleanup");
+
+        public final String label;
+
+        Op(String label) {
+            this.label = label;
+        }
+    }
+
+    // byStatus — по LinkStatus.ordinal(); errors — исключения, не сводящиеся к статусу; задержки в мкс
+    public record OpStats(Op op, long count, long[] byStatus, long errors,
+                          double meanMicros, double p50Micros, double p90Micros, double p99Micros, double maxMicros) {}
+
+    public record Snapshot(Duration uptime, List<OpStats> ops, long collisionRetries,
+                           long cleanupSweeps, long cleanupRemoved, long lastCleanupRemoved, double lastCleanupMillis,
+                           Map<String, Map<String, Number>> sources) {
+
+        public void appendText(StringBuilder out) {
+            out.append("uptime=").append(uptime.toSeconds()).append("s collisionRetries=").append(collisionRetries)
+                    .append(" cleanup: sweeps=").append(cleanupSweeps).append(" removed=").append(cleanupRemoved)
+                    .append(" last=").append(lastCleanupRemoved).append(" in ").append(fixed(lastCleanupMillis)).append(" ms\n");
+            out.append("op             count     mean      p50      p90      p99      max  (us)\n");
+            for (OpStats s : ops) {
+                if (s.count() == 0) continue;
+                pad(out, s.op().label, 11, false);
+                pad(out, Long.toString(s.count()), 9, true);
+                for (double v : new double[] {s.meanMicros(), s.p50Micros(), s.p90Micros(), s.p99Micros(), s.maxMicros()}) {
+                    pad(out, fixed(v), 9, true);
+                }
+                out.append(' ');
+                for (LinkStatus st : LinkStatus.values()) {
+                    long n = s.byStatus()[st.ordinal()];
+                    if (n > 0) out.append(' ').append(st).append('=').append(n);
+                }
+                if (s.errors() > 0) out.append(" ERROR=").append(s.errors());
+                out.append('\n');
+            }
+            for (var src : sources.entrySet()) {
+                out.append(src.getKey()).append(':');
+                src.getValue().forEach((k, v) -> out.append(' ').append(k).append('=').append(number(v)));
+                out.append('\n');
+            }
+        }
+
+        public void appendJson(StringBuilder out) {
+            out.append("{\"uptimeSeconds\":").append(uptime.toSeconds())
+                    .append(",\"collisionRetries\":").append(collisionRetries)
+                    .append(",\"cleanup\":{\"sweeps\":").append(cleanupSweeps).append(",\"removed\":").append(cleanupRemoved)
+                    .append(",\"lastRemoved\":").append(lastCleanupRemoved)
+                    .append(",\"lastMillis\":").append(fixed(lastCleanupMillis)).append("},\"ops\":{");
+            boolean first = true;
+            for (OpStats s : ops) {
+                if (!first) out.append(',');
+                first = false;
+                out.append('"').append(s.op().label).append("\":{\"count\":").append(s.count()).append(",\"status\":{");
+                boolean firstStatus = true;
+                for (LinkStatus st : LinkStatus.values()) {
+                    long n = s.byStatus()[st.ordinal()];
+                    if (n == 0) continue;
+                    if (!firstStatus) out.append(',');
+                    firstStatus = false;
+                    out.append('"').append(st).append("\":").append(n);
+                }
+                out.append("},\"errors\":").append(s.errors())
+                        .append(",\"meanUs\":").append(fixed(s.meanMicros()))
+                        .append(",\"p50Us\":").append(fixed(s.p50Micros()))
+                        .append(",\"p90Us\":").append(fixed(s.p90Micros()))
+                        .append(",\"p99Us\":").append(fixed(s.p99Micros()))
+                        .append(",\"maxUs\":").append(fixed(s.maxMicros())).append('}');
+            }
+            out.append('}');
+            for (var src : sources.entrySet()) {
+                out.append(",\"").append(src.getKey()).append("\":{");
+                boolean firstKey = true;
+                for (var e : src.getValue().entrySet()) {
+                    if (!firstKey) out.append(',');
+                    firstKey = false;
+                    out.append('"').append(e.getKey()).append("\":").append(number(e.getValue()));
+                }
+                out.append('}');
+            }
+            out.append('}');
+        }
+    }
+
+    private static final int STATUSES = LinkStatus.values().length;
+
+    public static final ServiceMetrics OFF = new ServiceMetrics(false);
+
+    private final boolean enabled;
+    private final long startedNanos = System.nanoTime();
+    // [op][status], последняя колонка — исключения
+    private final LatencyHistogram[][] latency = new LatencyHistogram[Op.values().length][STATUSES + 1];
+    // суммарное время обслуживания запросов (все операции, кроме фоновой очистки)
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder collisionRetries = new LongAdder();
+    private final LongAdder cleanupSweeps = new LongAdder();
+    private final LongAdder cleanupRemoved = new LongAdder();
+    private final AtomicLong lastCleanupRemoved = new AtomicLong();
+    private final AtomicLong lastCleanupNanos = new AtomicLong();
+    private final Map<String, Supplier<Map<String, Number>>> sources = new LinkedHashMap<>();
+
+    public ServiceMetrics() {
+        this(true);
+    }
+
+    private ServiceMetrics(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) return;
+        for (LatencyHistogram[] row : latency) {
+            for (int j = 0; j <= STATUSES; j++) row[j] = new LatencyHistogram();
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    // отметка начала операции для record; при выключенных метриках — 0 без обращения к часам
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(Op op, LinkStatus status, long startNanos) {
+        if (!enabled) return;
+        recordNanos(op, status, System.nanoTime() - startNanos);
+    }
+
+    // запись уже измеренной длительности
+    public void recordNanos(Op op, LinkStatus status, long nanos) {
+        if (!enabled) return;
+        latency[op.ordinal()][status.ordinal()].record(nanos);
+        if (op != Op.CLEANUP) busy.add(nanos);
+    }
+
+    public void recordError(Op op, long startNanos) {
+        if (!enabled) return;
+        long nanos = System.nanoTime() - startNanos;
+        latency[op.ordinal()][STATUSES].record(nanos);
+        if (op != Op.CLEANUP) busy.add(nanos);
+    }
+
+    // прирост за интервал, делённый на его длину, — среднее число запросов в работе: сигнал нагрузки
+    // для фоновой очистки. При выключенных метриках всегда 0
+    public long busyNanos() {
+        return busy.sum();
+    }
+
+    public void collisionRetries(int retries) {
+        if (enabled && retries > 0) collisionRetries.add(retries);
+    }
+
+    public void cleanupSweep(int removed, long nanos) {
+        if (!enabled) return;
+        cleanupSweeps.increment();
+        cleanupRemoved.add(removed);
+        lastCleanupRemoved.set(removed);
+        lastCleanupNanos.set(nanos);
+    }
+
+    // дополнительный блок в stats (например, счётчики кэша); значения читаются при каждом snapshot
+    public synchronized void source(String name, Supplier<Map<String, Number>> values) {
+        sources.put(name, values);
+    }
+
+    public Snapshot snapshot() {
+        List<OpStats> ops = new ArrayList<>();
+        for (Op op : Op.values()) {
+            long[] byStatus = new long[STATUSES];
+            if (!enabled) {
+                ops.add(new OpStats(op, 0, byStatus, 0, 0, 0, 0, 0, 0));
+                continue;
+            }
+            LatencyHistogram[] row = latency[op.ordinal()];
+            for (int j = 0; j < STATUSES; j++) byStatus[j] = row[j].count();
+            long errors = row[STATUSES].count();
+            LatencyHistogram h = LatencyHistogram.merge(row);
+            ops.add(new OpStats(op, h.count(), byStatus, errors,
+                    h.mean() / 1e3, h.percentile(0.5) / 1e3, h.percentile(0.9) / 1e3, h.percentile(0.99) / 1e3,
+                    h.max() / 1e3));
+        }
+        Map<String, Map<String, Number>> src = new LinkedHashMap<>();
+        synchronized (this) {
+            sources.forEach((name, values) -> src.put(name, values.get()));
+        }
+        return new Snapshot(Duration.ofNanos(System.nanoTime() - startedNanos), ops, collisionRetries.sum(),
+                cleanupSweeps.sum(), cleanupRemoved.sum(), lastCleanupRemoved.get(), lastCleanupNanos.get() / 1e6, src);
+    }
+
+    private static void pad(StringBuilder out, String s, int width, boolean right) {
+        if (!right) out.append(s);
+        for (int i = s.length(); i < width; i++) out.append(' ');
+        if (right) out.append(s);
+    }
+
+    private static String fixed(double v) {
+        return Double.toString(Math.round(v * 10) / 10.0);
+    }
+
+    private static String number(Number n) {
+        if (n instanceof Double || n instanceof Float) return Double.toString(Math.round(n.doubleValue() * 1000) / 1000.0);
+        return n.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// запрос: [byte op][аргументы]; ответ: [byte OK|ERR][результат | строка ошибки]
+final class ShardProtocol {
+    static final byte EXISTS = 1;
+    static final byte SAVE = 2;
+    static final byte SAVE_ALL = 3;
+    static final byte GET = 4;
+    static final byte DELETE = 5;
+    static final byte TRY_CLICK = 6;
+    static final byte TRY_SET_MAX = 7;
+    static final byte LIST = 8;
+    static final byte LIST_PAGE = 9;
+    static final byte DELETE_EXPIRED = 10;
+    static final byte DRAIN_EXPIRED = 11;
+    static final byte NEXT_EXPIRY = 12;
+    static final byte FOR_EACH = 13;
+    static final byte SIZE = 14;
+    static final byte FIND_BY_URL = 15;
+    static final byte SAVE_IF_ABSENT = 16;
+    static final byte COUNT_BY_OWNER = 17;
+
+    static final byte OK = 0;
+    static final byte ERR = 1;
+
+    private ShardProtocol() {}
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    static void writeUuid(DataOutput out, UUID u) throws IOException {
+        out.writeLong(u.getMostSignificantBits());
+        out.writeLong(u.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void writeInstant(DataOutput out, Instant t) throws IOException {
+        out.writeLong(t.getEpochSecond());
+        out.writeInt(t.getNano());
+    }
+
+    static Instant readInstant(DataInput in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    static void writeLink(DataOutput out, ShortLink l) throws IOException {
+        long st = l.state();
+        writeString(out, l.code);
+        writeUuid(out, l.ownerId);
+        writeString(out, l.originalUrl);
+        writeInstant(out, l.createdAt);
+        writeInstant(out, l.expiresAt);
+        out.writeInt(ShortLink.clicksOf(st));
+        out.writeInt(ShortLink.maxClicksOf(st));
+    }
+
+    static ShortLink readLink(DataInput in) throws IOException {
+        String code = readString(in);
+        UUID owner = readUuid(in);
+        String url = readString(in);
+        Instant createdAt = readInstant(in);
+        Instant expiresAt = readInstant(in);
+        int clicks = in.readInt();
+        int maxClicks = in.readInt();
+        return new ShortLink(code, owner, url, createdAt, expiresAt, clicks, maxClicks);
+    }
+
+    // null кодируется флагом перед ссылкой
+    static void writeNullableLink(DataOutput out, ShortLink l) throws IOException {
+        out.writeBoolean(l != null);
+        if (l != null) writeLink(out, l);
+    }
+
+    static ShortLink readNullableLink(DataInput in) throws IOException {
+        return in.readBoolean() ? readLink(in) : null;
+    }
+
+    static void writeLinks(DataOutput out, List<ShortLink> links) throws IOException {
+        out.writeInt(links.size());
+        for (ShortLink l : links) writeLink(out, l);
+    }
+
+    static List<ShortLink> readLinks(DataInput in) throws IOException {
+        int n = in.readInt();
+        List<ShortLink> res = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) res.add(readLink(in));
+        return res;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.shortener.infra;
+
+import java.util.Arrays;
+
+// консистентное хэширование кодов: у каждого шарда vnodes точек на кольце 2^64, код принадлежит
+// шарду первой точки не меньше его хэша; при добавлении шарда переезжает ~1/(N+1) кодов
+public final class ShardRing {
+    private final long[] points;
+    private final int[] owners;
+    private final int shards;
+
+    public ShardRing(int shards, int vnodes) {
+        if (shards <= 0) throw new IllegalArgumentException("shards must be > 0");
+        if (vnodes <= 0) throw new IllegalArgumentException("vnodes must be > 0");
+        this.shards = shards;
+        int n = shards * vnodes;
+        long[] keys = new long[n];
+        for (int s = 0, i = 0; s < shards; s++) {
+            for (int v = 0; v < vnodes; v++, i++) {
+                // старшие 48 бит — точка, младшие 16 — номер шарда (для сортировки вместе с владельцем)
+                keys[i] = (mix(((long) s << 32) | v) & ~0xFFFFL) | s;
+            }
+        }
+        Arrays.sort(keys);
+        points = new long[n];
+        owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = keys[i] & ~0xFFFFL;
+            owners[i] = (int) (keys[i] & 0xFFFF);
+        }
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    public int shardOf(CharSequence code) {
+        long h = hash(code);
+        int lo = 0, hi = points.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (points[mid] < h) lo = mid + 1;
+            else hi = mid;
+        }
+        return owners[lo == points.length ? 0 : lo];
+    }
+
+    // FNV-1a по символам + финализатор splitmix64; знаковое сравнение точек не мешает — это лишь порядок на кольце
+    static long hash(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
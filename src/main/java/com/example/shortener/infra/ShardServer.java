@@ -0,0 +1,247 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import static com.example.shortener.infra.ShardProtocol.*;
+
+// процесс-шард: отдаёт LinkRepository по TCP (ShardProtocol), поток на соединение;
+// запуск: java -cp <jar> com.example.shortener.infra.ShardServer <port>
+public final class ShardServer implements AutoCloseable {
+    // буфер ответа крупнее этого не держится между запросами
+    private static final int RETAINED_RESPONSE = 1 << 20;
+
+    private final LinkRepository repo;
+    private final ServerSocket server;
+    private final ExecutorService exec = ThreadPools.perTask("shard-conn");
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    private ShardServer(LinkRepository repo, ServerSocket server) {
+        this.repo = repo;
+        this.server = server;
+        this.acceptor = new Thread(this::acceptLoop, "shard-accept");
+        acceptor.setDaemon(true);
+    }
+
+    // слушает только loopback: протокол без аутентификации
+    public static ShardServer start(LinkRepository repo, int port) throws IOException {
+        var ss = new ServerSocket();
+        ss.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        var s = new ShardServer(repo, ss);
+        s.acceptor.start();
+        return s;
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) throw new IllegalArgumentException("Usage: ShardServer <port>");
+        var stop = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(stop::countDown));
+        try (var s = start(new InMemoryLinkRepository(), Integer.parseInt(args[0]))) {
+            // строка готовности: её ждёт запускающий процесс
+            System.out.println("[SHARD] listening on port " + s.port());
+            stop.await();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket c : clients) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+            }
+        }
+        exec.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket c = server.accept();
+                c.setTcpNoDelay(true);
+                clients.add(c);
+                exec.execute(() -> serve(c));
+            } catch (IOException e) {
+                if (server.isClosed()) return;
+            }
+        }
+    }
+
+    // ответ (кроме FOR_EACH) собирается целиком в буфере и уходит только после успешной обработки:
+    // исключение в обработчике превращается в ERR, и в сокет не попадает ничего лишнего
+    private void serve(Socket c) {
+        var buf = new ByteArrayOutputStream(256);
+        var resp = new DataOutputStream(buf);
+        try (c;
+             var in = new DataInputStream(new BufferedInputStream(c.getInputStream(), 1 << 16));
+             var out = new DataOutputStream(new BufferedOutputStream(c.getOutputStream(), 1 << 16))) {
+            while (true) {
+                int op = in.read();
+                if (op < 0) return;
+                if (op == FOR_EACH) {
+                    try {
+                        streamAll(out);
+                    } catch (RuntimeException e) {
+                        // OK и часть ссылок уже отправлены: ERR клиент прочитал бы как данные, поэтому
+                        // соединение закрывается, и клиент выбрасывает его из пула
+                        System.out.println("[SHARD] forEach failed, closing connection: " + e.getMessage());
+                        return;
+                    }
+                } else {
+                    try {
+                        handle((byte) op, in, resp);
+                        buf.writeTo(out);
+                    } catch (RuntimeException e) {
+                        // аргументы уже прочитаны целиком, а ответ ещё не отправлен
+                        out.writeByte(ERR);
+                        writeString(out, String.valueOf(e.getMessage()));
+                    }
+                    if (buf.size() > RETAINED_RESPONSE) {
+                        buf = new ByteArrayOutputStream(256);
+                        resp = new DataOutputStream(buf);
+                    } else {
+                        buf.reset();
+                    }
+                }
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // клиент закрыл соединение
+        } catch (IOException e) {
+            System.out.println("[SHARD] connection error: " + e.getMessage());
+        } finally {
+            clients.remove(c);
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case EXISTS -> {
+                boolean r = repo.exists(readString(in));
+                out.writeByte(OK);
+                out.writeBoolean(r);
+            }
+            case SAVE -> {
+                repo.save(readLink(in));
+                out.writeByte(OK);
+            }
+            case SAVE_ALL -> {
+                repo.saveAll(readLinks(in));
+                out.writeByte(OK);
+            }
+            case GET -> {
+                ShortLink l = repo.get(readString(in));
+                out.writeByte(OK);
+                writeNullableLink(out, l);
+            }
+            case DELETE -> {
+                boolean r = repo.delete(readString(in));
+                out.writeByte(OK);
+                out.writeBoolean(r);
+            }
+            case TRY_CLICK -> {
+                ShortLink l = repo.get(readString(in));
+                long st = l == null ? ShortLink.REJECTED : repo.tryClick(l);
+                out.writeByte(OK);
+                out.writeLong(st);
+            }
+            case TRY_SET_MAX -> {
+                String code = readString(in);
+                int limit = in.readInt();
+                ShortLink l = repo.get(code);
+                long st = l == null ? ShortLink.REJECTED : repo.trySetMaxClicks(l, limit);
+                out.writeByte(OK);
+                out.writeLong(st);
+            }
+            case LIST -> {
+                List<ShortLink> r = repo.listByOwner(readUuid(in));
+                out.writeByte(OK);
+                writeLinks(out, r);
+            }
+            case LIST_PAGE -> {
+                var owner = readUuid(in);
+                LinkRepository.OwnerCursor after = in.readBoolean()
+                        ? new LinkRepository.OwnerCursor(readInstant(in), readString(in)) : null;
+                int limit = in.readInt();
+                List<ShortLink> r = repo.listByOwner(owner, after, limit);
+                out.writeByte(OK);
+                writeLinks(out, r);
+            }
+            case DELETE_EXPIRED -> {
+                int r = repo.deleteExpired(readInstant(in));
+                out.writeByte(OK);
+                out.writeInt(r);
+            }
+            case DRAIN_EXPIRED -> {
+                Instant now = readInstant(in);
+                int r = repo.drainExpired(now, in.readInt());
+                out.writeByte(OK);
+                out.writeInt(r);
+            }
+            case NEXT_EXPIRY -> {
+                Instant t = repo.nextExpiry();
+                out.writeByte(OK);
+                out.writeBoolean(t != null);
+                if (t != null) writeInstant(out, t);
+            }
+            case SIZE -> {
+                out.writeByte(OK);
+                out.writeInt(repo.size());
+            }
+            case COUNT_BY_OWNER -> {
+                int n = repo.countByOwner(readUuid(in));
+                out.writeByte(OK);
+                out.writeInt(n);
+            }
+            case FIND_BY_URL -> {
+                var owner = readUuid(in);
+                String url = readString(in);
+                ShortLink l = repo.findByUrl(owner, url, readInstant(in));
+                out.writeByte(OK);
+                writeNullableLink(out, l);
+            }
+            case SAVE_IF_ABSENT -> {
+                ShortLink link = readLink(in);
+                ShortLink l = repo.saveIfAbsentByUrl(link, readInstant(in));
+                out.writeByte(OK);
+                writeLink(out, l);
+            }
+            default -> throw new IOException("Unknown op " + op);
+        }
+    }
+
+    // весь шард потоком, без сборки в памяти
+    private void streamAll(DataOutputStream out) throws IOException {
+        out.writeByte(OK);
+        IOException[] err = {null};
+        repo.forEach(l -> {
+            if (err[0] != null) return;
+            try {
+                out.writeBoolean(true);
+                writeLink(out, l);
+            } catch (IOException e) {
+                err[0] = e;
+            }
+        });
+        if (err[0] != null) throw err[0];
+        out.writeBoolean(false);
+    }
+}
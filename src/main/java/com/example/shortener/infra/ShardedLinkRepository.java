@@ -0,0 +1,221 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// маршрутизатор поверх N шардов (в процессе или удалённых): операции по коду идут в шард кода по ShardRing,
+// список владельца и поиск по URL — scatter-gather по всем шардам, очистка — параллельно по шардам
+public final class ShardedLinkRepository implements LinkRepository, AutoCloseable {
+    private static final int VNODES = 128;
+    private static final int URL_STRIPES = 64;
+
+    private final List<LinkRepository> shards;
+    private final ShardRing ring;
+    private final ExecutorService scatter = ThreadPools.perTask("shard-scatter");
+    // идемпотентное создание: ссылки одного (владелец, URL) могут лежать в разных шардах, поэтому
+    // проверка и вставка сериализуются здесь, полосой по хэшу пары
+    private final ReentrantLock[] urlStripes = new ReentrantLock[URL_STRIPES];
+    private int drainFrom;
+
+    public ShardedLinkRepository(List<? extends LinkRepository> shards) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("at least one shard required");
+        this.shards = List.copyOf(shards);
+        this.ring = new ShardRing(shards.size(), VNODES);
+        for (int i = 0; i < URL_STRIPES; i++) urlStripes[i] = new ReentrantLock();
+    }
+
+    public int shardOf(String code) {
+        return ring.shardOf(code);
+    }
+
+    private LinkRepository shard(String code) {
+        return shards.get(ring.shardOf(code));
+    }
+
+    @Override
+    public boolean exists(String code) {
+        return shard(code).exists(code);
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        shard(link.code).save(link);
+    }
+
+    @Override
+    public void saveAll(List<ShortLink> links) {
+        List<List<ShortLink>> parts = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) parts.add(new ArrayList<>());
+        for (ShortLink l : links) parts.get(ring.shardOf(l.code)).add(l);
+        gather(i -> {
+            if (!parts.get(i).isEmpty()) shards.get(i).saveAll(parts.get(i));
+            return null;
+        });
+    }
+
+    @Override
+    public ShortLink get(String code) {
+        return shard(code).get(code);
+    }
+
+    @Override
+    public boolean delete(String code) {
+        return shard(code).delete(code);
+    }
+
+    @Override
+    public long tryClick(ShortLink link) {
+        return shard(link.code).tryClick(link);
+    }
+
+    @Override
+    public long trySetMaxClicks(ShortLink link, int newLimit) {
+        return shard(link.code).trySetMaxClicks(link, newLimit);
+    }
+
+    @Override
+    public ShortLink findByUrl(UUID ownerId, String url, Instant now) {
+        for (ShortLink l : gather(i -> shards.get(i).findByUrl(ownerId, url, now))) {
+            if (l != null) return l;
+        }
+        return null;
+    }
+
+    @Override
+    public ShortLink saveIfAbsentByUrl(ShortLink link, Instant now) {
+        ReentrantLock lock = urlStripes[Math.floorMod(Objects.hash(link.ownerId, link.originalUrl), URL_STRIPES)];
+        lock.lock();
+        try {
+            ShortLink existing = findByUrl(link.ownerId, link.originalUrl, now);
+            if (existing != null) return existing;
+            save(link);
+            return link;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId) {
+        List<ShortLink> res = new ArrayList<>();
+        for (List<ShortLink> part : gather(i -> shards.get(i).listByOwner(ownerId))) res.addAll(part);
+        res.sort(OwnerCursor.LINK_ORDER);
+        return res;
+    }
+
+    // каждый шард отдаёт до limit ссылок после курсора, затем слияние по порядку владельца
+    @Override
+    public List<ShortLink> listByOwner(UUID ownerId, OwnerCursor after, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        List<List<ShortLink>> parts = gather(i -> shards.get(i).listByOwner(ownerId, after, limit));
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                OwnerCursor.LINK_ORDER.compare(parts.get(a[0]).get(a[1]), parts.get(b[0]).get(b[1])));
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) heads.add(new int[]{i, 0});
+        }
+        List<ShortLink> res = new ArrayList<>(Math.min(limit, 64));
+        while (res.size() < limit && !heads.isEmpty()) {
+            int[] h = heads.poll();
+            List<ShortLink> part = parts.get(h[0]);
+            res.add(part.get(h[1]));
+            if (++h[1] < part.size()) heads.add(h);
+        }
+        return res;
+    }
+
+    @Override
+    public int deleteExpired(Instant now) {
+        int removed = 0;
+        for (int n : gather(i -> shards.get(i).deleteExpired(now))) removed += n;
+        return removed;
+    }
+
+    // бюджет max делится между шардами по кругу, начиная каждый раз со следующего
+    @Override
+    public int drainExpired(Instant now, int max) {
+        int n = shards.size();
+        int start;
+        synchronized (this) {
+            start = drainFrom;
+            drainFrom = (drainFrom + 1) % n;
+        }
+        int removed = 0;
+        for (int k = 0; k < n && removed < max; k++) {
+            removed += shards.get((start + k) % n).drainExpired(now, max - removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public Instant nextExpiry() {
+        Instant min = null;
+        for (Instant t : gather(i -> shards.get(i).nextExpiry())) {
+            if (t != null && (min == null || t.isBefore(min))) min = t;
+        }
+        return min;
+    }
+
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        for (LinkRepository s : shards) s.forEach(action);
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        int n = 0;
+        for (int c : gather(i -> shards.get(i).countByOwner(ownerId))) n += c;
+        return n;
+    }
+
+    @Override
+    public int size() {
+        int n = 0;
+        for (int s : gather(i -> shards.get(i).size())) n += s;
+        return n;
+    }
+
+    @Override
+    public void close() throws Exception {
+        scatter.shutdownNow();
+        Exception first = null;
+        for (LinkRepository s : shards) {
+            if (s instanceof AutoCloseable c) {
+                try {
+                    c.close();
+                } catch (Exception e) {
+                    if (first == null) first = e;
+                }
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    // запрос ко всем шардам: остальные — в пуле, шард 0 — в вызывающем потоке
+    private <T> List<T> gather(Function<Integer, T> call) {
+        int n = shards.size();
+        if (n == 1) return Collections.singletonList(call.apply(0));
+        List<CompletableFuture<T>> fs = new ArrayList<>(n - 1);
+        for (int i = 1; i < n; i++) {
+            int shard = i;
+            fs.add(CompletableFuture.supplyAsync(() -> call.apply(shard), scatter));
+        }
+        List<T> res = new ArrayList<>(n);
+        res.add(call.apply(0));
+        for (CompletableFuture<T> f : fs) {
+            try {
+                res.add(f.join());
+            } catch (java.util.concurrent.CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw e;
+            }
+        }
+        return res;
+    }
+}
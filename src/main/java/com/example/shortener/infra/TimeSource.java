@@ -0,0 +1,16 @@
+package com.example.shortener.infra;
+
+import java.time.Instant;
+
+// текущее время для сервиса и очистки: миллисекунды от эпохи, чтобы сроки истечения сравнивались без Instant.
+// SYSTEM — System.currentTimeMillis() на каждый вызов; CachedClock — грубые часы для горячего пути;
+// VirtualClock — время, которое двигают тест или симуляция
+public interface TimeSource {
+    TimeSource SYSTEM = System::currentTimeMillis;
+
+    long millis();
+
+    default Instant now() {
+        return Instant.ofEpochMilli(millis());
+    }
+}
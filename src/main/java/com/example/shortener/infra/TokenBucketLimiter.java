@@ -0,0 +1,82 @@
+package com.example.shortener.infra;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// «ведро токенов» на каждый ключ без блокировок: состояние ведра — один long
+// (время последнего пополнения в мс | уровень в 1/1024 токена), меняется CAS;
+// полное ведро ничем не отличается от отсутствующего, поэтому простаивающие вёдра можно удалять
+public final class TokenBucketLimiter<K> {
+    private static final int UNIT_BITS = 10;
+    private static final int LEVEL_BITS = 24;
+    private static final long LEVEL_MASK = (1L << LEVEL_BITS) - 1;
+    public static final int MAX_BURST = (int) (LEVEL_MASK >>> UNIT_BITS);
+
+    private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long capacity;
+    private final double unitsPerMilli;
+    // за столько мс пустое ведро наполняется полностью; больший промежуток ничего не добавляет
+    private final long fillMillis;
+    private final long originNanos = System.nanoTime();
+
+    public TokenBucketLimiter(double perSecond, int burst) {
+        if (perSecond <= 0) throw new IllegalArgumentException("perSecond must be > 0");
+        if (burst < 1 || burst > MAX_BURST) throw new IllegalArgumentException("burst must be in 1.." + MAX_BURST);
+        this.capacity = (long) burst << UNIT_BITS;
+        this.unitsPerMilli = perSecond * (1 << UNIT_BITS) / 1000.0;
+        this.fillMillis = (long) Math.ceil(capacity / unitsPerMilli);
+    }
+
+    public long nowMillis() {
+        return (System.nanoTime() - originNanos) / 1_000_000;
+    }
+
+    public int acquire(K key, int permits) {
+        return acquire(key, permits, nowMillis());
+    }
+
+    // берёт до permits целых токенов и возвращает, сколько выдано (0 — отказ); при отказе ведро
+    // не переписывается, так что дробное накопление не теряется
+    public int acquire(K key, int permits, long nowMs) {
+        if (permits <= 0) return 0;
+        AtomicLong b = buckets.get(key);
+        if (b == null) b = buckets.computeIfAbsent(key, k -> new AtomicLong(pack(nowMs, capacity)));
+        long want = Math.min((long) permits << UNIT_BITS, capacity);
+        while (true) {
+            long st = b.get();
+            long level = level(st, nowMs);
+            long granted = Math.min(want, level) >>> UNIT_BITS << UNIT_BITS;
+            if (granted == 0) return 0;
+            if (b.compareAndSet(st, pack(Math.max(nowMs, st >>> LEVEL_BITS), level - granted))) {
+                return (int) (granted >>> UNIT_BITS);
+            }
+        }
+    }
+
+    // удаляет вёдра, успевшие наполниться; поток, взявший ведро до удаления, спишет токен с уже
+    // удалённого ведра — следующее начнёт с полного, т.е. на ключ можно получить лишний burst
+    public int evictIdle(long nowMs) {
+        int removed = 0;
+        for (var e : buckets.entrySet()) {
+            if (level(e.getValue().get(), nowMs) >= capacity && buckets.remove(e.getKey(), e.getValue())) removed++;
+        }
+        return removed;
+    }
+
+    public int evictIdle() {
+        return evictIdle(nowMillis());
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private long level(long st, long nowMs) {
+        long elapsed = Math.min(fillMillis, Math.max(0, nowMs - (st >>> LEVEL_BITS)));
+        return Math.min(capacity, (st & LEVEL_MASK) + (long) (elapsed * unitsPerMilli));
+    }
+
+    private static long pack(long timeMs, long level) {
+        return timeMs << LEVEL_BITS | level;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.shortener.infra;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// время, которое двигают вручную: тесты и симуляция проматывают часы и дни без sleep. Назад не идёт
+public final class VirtualClock implements TimeSource {
+    private final AtomicLong millis;
+
+    public VirtualClock(Instant start) {
+        this.millis = new AtomicLong(start.toEpochMilli());
+    }
+
+    @Override
+    public long millis() {
+        return millis.get();
+    }
+
+    public void advance(Duration d) {
+        advanceMillis(d.toMillis());
+    }
+
+    public void advanceMillis(long ms) {
+        if (ms < 0) throw new IllegalArgumentException("time cannot go back");
+        millis.addAndGet(ms);
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.shortener.infra;
+
+import com.example.shortener.core.model.ShortLink;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// запись: [int длина тела][int crc32c тела][тело: тип + данные]; при чтении отбрасывается только
+// оборванный хвост последнего сегмента, порча в остальных местах — ошибка (см. read)
+public final class WriteAheadLog implements LinkJournal, AutoCloseable {
+    static final byte SAVE = 1;
+    static final byte DELETE = 2;
+    static final byte CLICK = 3;
+    static final byte LIMIT = 4;
+
+    public interface Visitor {
+        void saved(ShortLink link);
+        void deleted(String code);
+        void clicked(String code, int clicks);
+        void limitChanged(String code, int maxClicks);
+    }
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    private final Path dir;
+    private final Durability durability;
+    private final long batchNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+    private FileChannel ch;
+    private long generation;
+    private long appended;
+    private long durable;
+    private boolean closed;
+    private volatile IOException failure;
+    private final Thread flusher;
+
+    public WriteAheadLog(Path dir, long generation, Durability durability, Duration batch) throws IOException {
+        if (durability == Durability.OFF) throw new IllegalArgumentException("WAL is not used with durability=off");
+        this.dir = dir;
+        this.durability = durability;
+        this.batchNanos = Math.max(1, batch.toNanos());
+        this.generation = generation;
+        this.ch = openChannel(dir, generation);
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public static Path file(Path dir, long generation) {
+        return dir.resolve(String.format("wal-%016d.log", generation));
+    }
+
+    @Override
+    public long saved(ShortLink link) {
+        ByteBuffer b = scratch(64 + link.code.length() * 3 + link.originalUrl.length() * 3);
+        b.put(SAVE);
+        putLink(b, link);
+        return append(b);
+    }
+
+    @Override
+    public long deleted(String code) {
+        ByteBuffer b = scratch(8 + code.length() * 3);
+        b.put(DELETE);
+        putString(b, code);
+        return append(b);
+    }
+
+    @Override
+    public long clicked(String code, int clicks) {
+        ByteBuffer b = scratch(12 + code.length() * 3);
+        b.put(CLICK);
+        putString(b, code);
+        b.putInt(clicks);
+        return append(b);
+    }
+
+    @Override
+    public long limitChanged(String code, int maxClicks) {
+        ByteBuffer b = scratch(12 + code.length() * 3);
+        b.put(LIMIT);
+        putString(b, code);
+        b.putInt(maxClicks);
+        return append(b);
+    }
+
+    // в режиме SYNC ждёт fsync своей записи; ожидающие потоки объединяются в один fsync (group commit)
+    @Override
+    public void sync(long seq) {
+        if (durability != Durability.SYNC || seq == 0) return;
+        lock.lock();
+        try {
+            while (durable < seq) {
+                checkFailure();
+                if (closed) throw new IllegalStateException("WAL closed");
+                pending.signal();
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // переключение на новый файл; всё записанное в старый к возврату уже на диске
+    public long rotate() throws IOException {
+        FileChannel old;
+        long target;
+        lock.lock();
+        try {
+            checkFailure();
+            drain();
+            old = ch;
+            target = appended;
+            ch = openChannel(dir, ++generation);
+        } finally {
+            lock.unlock();
+        }
+        old.force(false);
+        old.close();
+        markDurable(target);
+        return generation;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            pending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            drain();
+            ch.force(false);
+            ch.close();
+            durable = appended;
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long append(ByteBuffer body) {
+        body.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        int len = body.remaining();
+        lock.lock();
+        try {
+            checkFailure();
+            if (closed) throw new IllegalStateException("WAL closed");
+            if (buf.remaining() < len + 8) drain();
+            if (buf.remaining() < len + 8) {
+                ByteBuffer big = ByteBuffer.allocate(len + 8);
+                big.putInt(len).putInt((int) crc.getValue()).put(body).flip();
+                while (big.hasRemaining()) ch.write(big);
+            } else {
+                buf.putInt(len).putInt((int) crc.getValue()).put(body);
+            }
+            long seq = ++appended;
+            if (durability == Durability.SYNC) pending.signal();
+            return seq;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            FileChannel c;
+            long target;
+            lock.lock();
+            try {
+                // BATCHED: fsync не чаще раза в batchNanos; SYNC: сразу, как только кто-то ждёт
+                if (durability == Durability.BATCHED && !closed) pending.awaitNanos(batchNanos);
+                while (!closed && appended == durable) {
+                    if (durability == Durability.BATCHED) pending.awaitNanos(batchNanos);
+                    else pending.await();
+                }
+                if (closed) return;
+                drain();
+                c = ch;
+                target = appended;
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                fail(e);
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                c.force(false);
+            } catch (ClosedChannelException e) {
+                // файл закрыл rotate(), он же и сделал fsync
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            markDurable(target);
+        }
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    private void markDurable(long target) {
+        lock.lock();
+        try {
+            if (target > durable) durable = target;
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        lock.lock();
+        try {
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFailure() {
+        IOException f = failure;
+        if (f != null) throw new IllegalStateException("WAL write failed", f);
+    }
+
+    private static FileChannel openChannel(Path dir, long generation) throws IOException {
+        return FileChannel.open(file(dir, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static ByteBuffer scratch(int max) {
+        ByteBuffer b = SCRATCH.get();
+        if (b.capacity() < max) {
+            b = ByteBuffer.allocate(Math.max(max, b.capacity() * 2));
+            SCRATCH.set(b);
+        }
+        b.clear();
+        return b;
+    }
+
+    // --- кодек, общий для WAL и снапшотов ---
+
+    static void putLink(ByteBuffer b, ShortLink l) {
+        long st = l.state();
+        putString(b, l.code);
+        b.putLong(l.ownerId.getMostSignificantBits()).putLong(l.ownerId.getLeastSignificantBits());
+        putString(b, l.originalUrl);
+        b.putLong(l.createdAt.getEpochSecond()).putInt(l.createdAt.getNano());
+        b.putLong(l.expiresAt.getEpochSecond()).putInt(l.expiresAt.getNano());
+        b.putInt(ShortLink.clicksOf(st)).putInt(ShortLink.maxClicksOf(st));
+    }
+
+    static ShortLink getLink(ByteBuffer b) {
+        String code = getString(b);
+        UUID owner = new UUID(b.getLong(), b.getLong());
+        String url = getString(b);
+        Instant createdAt = Instant.ofEpochSecond(b.getLong(), b.getInt());
+        Instant expiresAt = Instant.ofEpochSecond(b.getLong(), b.getInt());
+        int clicks = b.getInt();
+        int maxClicks = b.getInt();
+        return new ShortLink(code, owner, url, createdAt, expiresAt, clicks, maxClicks);
+    }
+
+    static void putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b.putInt(bytes.length).put(bytes);
+    }
+
+    static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] frame(ByteBuffer body) {
+        body.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        ByteBuffer out = ByteBuffer.allocate(body.remaining() + 8);
+        out.putInt(body.remaining()).putInt((int) crc.getValue()).put(body);
+        return out.array();
+    }
+
+    // читает записи до конца файла; возвращает число прочитанных записей. Обрыв или порча записи допустимы
+    // только в хвосте последнего сегмента WAL (tornTailAllowed): процесс мог упасть посреди записи. Такой хвост
+    // отрезается от файла — после следующей ротации сегмент перестанет быть последним — и об этом пишется
+    // в stderr. В остальных файлах (части снапшота, ранние сегменты) порча — ошибка с байтовым смещением
+    public static int read(Path file, Visitor v, boolean tornTailAllowed) throws IOException {
+        int n = 0;
+        long off = 0;
+        long size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (off < size) {
+                if (size - off < 8) break;
+                int len = in.readInt();
+                int crc = in.readInt();
+                if (len <= 0 || len > (64 << 20) || size - off - 8 < len) break;
+                byte[] body = new byte[len];
+                in.readFully(body);
+                CRC32C c = new CRC32C();
+                c.update(body);
+                if ((int) c.getValue() != crc) break;
+
+                // тело разбирается до вызова visitor: ошибки разбора — порча, ошибки visitor — нет
+                ByteBuffer b = ByteBuffer.wrap(body);
+                byte type;
+                ShortLink link = null;
+                String code = null;
+                int value = 0;
+                try {
+                    type = b.get();
+                    switch (type) {
+                        case SAVE -> link = getLink(b);
+                        case DELETE -> code = getString(b);
+                        case CLICK, LIMIT -> {
+                            code = getString(b);
+                            value = b.getInt();
+                        }
+                        default -> type = 0;
+                    }
+                } catch (RuntimeException e) {
+                    type = 0;
+                }
+                if (type == 0) break;
+                switch (type) {
+                    case SAVE -> v.saved(link);
+                    case DELETE -> v.deleted(code);
+                    case CLICK -> v.clicked(code, value);
+                    default -> v.limitChanged(code, value);
+                }
+                off += 8 + len;
+                n++;
+            }
+        }
+        if (off == size) return n;
+        if (!tornTailAllowed) {
+            throw new IOException(String.format("%s: corrupt record at offset %d after %d records, %d of %d bytes unread",
+                    file, off, n, size - off, size));
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(off);
+            ch.force(false);
+        }
+        System.err.printf("[WAL] %s: torn tail at offset %d after %d records, dropped %d bytes%n",
+                file.getFileName(), off, n, size - off);
+        return n;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.shortener.ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// пакетный режим: команды читаются потоково, без приглашений; create/open/... уходят в «полосы» —
+// однопоточные исполнители. Команды пользователя (create, list, update-limit, delete) выбирают полосу
+// по пользователю сессии на момент разбора, open — по коду: open чужой ссылки не привязан к полосе её
+// владельца. Поэтому подряд идущие команды одного вида выполняются параллельно, а при смене вида
+// (команды пользователя <-> open) все полосы сначала дорабатывают, и open видит create с предыдущих строк.
+// Глобальные команды (stats, cleanup, export, import) — барьер: выполняются, когда все полосы пусты.
+// Ответы пишутся в порядке ввода через окно не более WINDOW незавершённых команд.
+public final class BatchRunner {
+    public record Summary(long commands, long errors, long millis) {
+        public double perSecond() {
+            return commands * 1000.0 / Math.max(1, millis);
+        }
+    }
+
+    private record Done(StringBuilder out, CommandExecutor.Outcome outcome) {}
+
+    private enum Kind { SESSION, GLOBAL, OPEN, USER }
+
+    private static final int WINDOW = 8192;
+
+    private final CommandExecutor exec;
+    private final String baseUrl;
+    private final int lanes;
+
+    public BatchRunner(CommandExecutor exec, String baseUrl, int lanes) {
+        if (lanes <= 0) throw new IllegalArgumentException("lanes must be > 0");
+        this.exec = exec;
+        this.baseUrl = baseUrl;
+        this.lanes = lanes;
+    }
+
+    public Summary run(BufferedReader in, Writer out) throws IOException {
+        ExecutorService[] pool = new ExecutorService[lanes];
+        for (int i = 0; i < lanes; i++) {
+            String name = "batch-lane-" + i;
+            pool[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        var parser = new CliParser();
+        var session = new Session();
+        var window = new ArrayDeque<CompletableFuture<Done>>();
+        long t0 = System.nanoTime();
+        long commands = 0;
+        long errors = 0;
+        // вид команд, которые сейчас в полосах; null — полосы пусты после барьера или в начале
+        Kind phase = null;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                var cmd = parser.parse(CliApp.normalizeShortLinkInput(line, baseUrl));
+                if (cmd.name().isEmpty()) continue;
+                commands++;
+
+                CompletableFuture<Done> f;
+                Kind kind = kind(cmd.name());
+                if (kind == Kind.SESSION) {
+                    var sb = new StringBuilder(64);
+                    f = CompletableFuture.completedFuture(new Done(sb, exec.execute(cmd, session, sb)));
+                } else if (kind == Kind.GLOBAL) {
+                    drain(window);
+                    phase = null;
+                    var sb = new StringBuilder(128);
+                    f = CompletableFuture.completedFuture(new Done(sb, exec.execute(cmd, session.copy(), sb)));
+                } else {
+                    if (phase != null && phase != kind) drain(window);
+                    phase = kind;
+                    if (CommandExecutor.needsUser(cmd.name())) session.ensureUser();
+                    Session snapshot = session.copy();
+                    int lane;
+                    if (kind == Kind.OPEN) {
+                        lane = cmd.args().isEmpty() ? 0 : Math.floorMod(cmd.args().get(0).hashCode(), lanes);
+                    } else {
+                        UUID u = snapshot.userId();
+                        lane = (u == null) ? 0 : Math.floorMod(u.hashCode(), lanes);
+                    }
+                    f = CompletableFuture.supplyAsync(() -> {
+                        var sb = new StringBuilder(128);
+                        return new Done(sb, exec.execute(cmd, snapshot, sb));
+                    }, pool[lane]);
+                }
+                window.addLast(f);
+                errors += emit(window, out, WINDOW);
+                if (f.isDone() && f.join().outcome() == CommandExecutor.Outcome.EXIT) break;
+            }
+            errors += emit(window, out, 0);
+        } finally {
+            for (ExecutorService e : pool) e.shutdownNow();
+        }
+        out.flush();
+        return new Summary(commands, errors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+    }
+
+    private static Kind kind(String name) {
+        if (CommandExecutor.sessionOnly(name)) return Kind.SESSION;
+        return switch (name) {
+            case "stats", "cleanup", "export", "import" -> Kind.GLOBAL;
+            case "open" -> Kind.OPEN;
+            default -> Kind.USER;
+        };
+    }
+
+    // ждёт все отправленные в полосы команды; ответы остаются в окне и пишутся по порядку как обычно
+    private static void drain(ArrayDeque<CompletableFuture<Done>> window) {
+        for (var f : window) f.join();
+    }
+
+    // пишет готовые ответы из головы окна; ждёт, пока в окне больше keep команд
+    private static long emit(ArrayDeque<CompletableFuture<Done>> window, Writer out, int keep) throws IOException {
+        long errors = 0;
+        while (!window.isEmpty() && (window.peekFirst().isDone() || window.size() > keep)) {
+            Done d = window.pollFirst().join();
+            out.append(d.out());
+            if (d.outcome() == CommandExecutor.Outcome.ERROR) errors++;
+        }
+        return errors;
+    }
+}
@@ -1,11 +1,19 @@
 package com.example.shortener.ui;
 
 import java.awt.Desktop;
+import java.awt.GraphicsEnvironment;
 import java.net.URI;
 
+// AWT загружается при первом открытии, а не при старте. Без дисплея (сервер, ssh, скрипт) Desktop не
+// трогается вовсе: его инициализация — больше 100 мс только на то, чтобы узнать, что браузера нет
 public final class BrowserOpener {
+    // null — ещё не проверяли
+    private volatile Boolean supported;
+
     public void open(String url) throws Exception {
-        if (!Desktop.isDesktopSupported()) throw new IllegalStateException("Desktop not supported");
+        Boolean s = supported;
+        if (s == null) supported = s = !GraphicsEnvironment.isHeadless() && Desktop.isDesktopSupported();
+        if (!s) throw new IllegalStateException("Desktop not supported");
         Desktop.getDesktop().browse(new URI(url));
     }
-}
\ No newline at end of file
+}
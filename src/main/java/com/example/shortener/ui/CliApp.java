@@ -1,130 +1,260 @@
 package com.example.shortener.ui;
 
-import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeAllocator;
 import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.CodePool;
+import com.example.shortener.core.service.SequentialCodeGenerator;
 import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.CachedClock;
+import com.example.shortener.infra.CachingLinkRepository;
+import com.example.shortener.infra.ClickAnalytics;
+import com.example.shortener.infra.CompactLinkRepository;
 import com.example.shortener.infra.ExpiryCleanup;
 import com.example.shortener.infra.AppConfig;
+import com.example.shortener.infra.Durability;
 import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkPersistence;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.infra.MappedLinkRepository;
+import com.example.shortener.infra.MetricsDump;
+import com.example.shortener.infra.RemoteLinkRepository;
+import com.example.shortener.infra.ServiceMetrics;
+import com.example.shortener.infra.ShardedLinkRepository;
+import com.example.shortener.infra.ThreadPools;
+import com.example.shortener.infra.TimeSource;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 
 public final class CliApp {
     public static void main(String[] args) throws Exception {
+        Options opts = Options.parse(args);
         AppConfig cfg = AppConfig.load();
 
-        var repo = new InMemoryLinkRepository();
-        var gen = new CodeGenerator(cfg.codeLength);
-        var service = new ShortenerService(repo, gen, cfg.baseUrl, cfg.ttl);
+        var gen = codeAllocator(cfg);
+        LinkRepository repo = openRepository(cfg);
+        AutoCloseable store = (repo instanceof AutoCloseable c) ? c : null;
+        var persistence = openPersistence(cfg, repo, gen);
+        var metrics = cfg.metrics ? new ServiceMetrics() : ServiceMetrics.OFF;
+        // грубые часы окупаются только под потоком запросов сервера; в пакетном и интерактивном режиме
+        // фоновый поток будил бы процесс каждый tick впустую
+        boolean server = opts.servePort() != null || opts.listenPort() != null;
+        var clock = server && !cfg.clockTick.isZero() ? new CachedClock(cfg.clockTick) : null;
+        TimeSource time = clock != null ? clock : TimeSource.SYSTEM;
+        if (cfg.cacheCapacity > 0) {
+            var cache = new CachingLinkRepository(repo, cfg.cacheCapacity, cfg.cacheNegativeTtl, cfg.cacheBloomExpected,
+                    time);
+            metrics.source("cache", () -> cache.stats().toMap());
+            repo = cache;
+        }
+        var clicks = cfg.clicksBufferSize > 0 ? new ClickAnalytics(cfg.clicksBufferSize, cfg.clicksMaxCodes, true) : null;
+        if (clicks != null) metrics.source("clicks", clicks::stats);
+        var pool = cfg.codePoolSize > 0
+                ? new CodePool(gen, repo, cfg.codePoolSize, cfg.codePoolLowWatermark, cfg.codePoolThreads) : null;
+        if (pool != null) metrics.source("codePool", pool::stats);
+        var service = ShortenerService.builder(repo, pool != null ? pool : gen, cfg.baseUrl, cfg.ttl)
+                .idempotentCreate(cfg.idempotentCreate)
+                .metrics(metrics)
+                .limits(cfg.limits)
+                .analytics(clicks)
+                .clock(time)
+                .build();
+        var dump = cfg.metricsDumpFile != null && metrics.enabled()
+                ? new MetricsDump(metrics, cfg.metricsDumpFile, cfg.metricsDumpInterval) : null;
+
+        try (store; persistence; clicks; pool; clock; var cleanup = new ExpiryCleanup(service, cfg.cleanupInterval); dump) {
+            if (opts.servePort() != null) {
+                serve(service, opts.servePort());
+            } else if (opts.listenPort() != null) {
+                listen(service, cfg, opts, metrics);
+            } else if (opts.batch() != null || (!opts.interactive() && System.console() == null)) {
+                batch(service, cfg, opts);
+            } else {
+                interactive(service, cfg);
+            }
+        }
+    }
+
+    // --serve <port> | --listen <port> [--jsonl] | --batch <file|-> [--jsonl] | --interactive
+    record Options(Integer servePort, Integer listenPort, String batch, boolean jsonl, boolean interactive) {
+        static Options parse(String[] args) {
+            Integer port = null;
+            Integer listen = null;
+            String batch = null;
+            boolean jsonl = false;
+            boolean interactive = false;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--serve" -> port = Integer.parseInt(value(args, ++i, "--serve <port>"));
+                    case "--listen" -> listen = Integer.parseInt(value(args, ++i, "--listen <port>"));
+                    case "--batch" -> batch = value(args, ++i, "--batch <file|->");
+                    case "--jsonl" -> jsonl = true;
+                    case "--interactive" -> interactive = true;
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            return new Options(port, listen, batch, jsonl, interactive);
+        }
+
+        private static String value(String[] args, int i, String usage) {
+            if (i >= args.length) throw new IllegalArgumentException("Usage: " + usage);
+            return args[i];
+        }
+    }
 
+    private static void interactive(ShortenerService service, AppConfig cfg) throws Exception {
         var session = new Session();
         var parser = new CliParser();
-        var opener = new BrowserOpener();
-
-        try (var cleanup = new ExpiryCleanup(service, cfg.cleanupInterval)) {
-            System.out.println("URL Shortener CLI");
-            System.out.println("Type 'help'.");
-
-            BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-            while (true) {
-                System.out.print("> ");
-                String line = br.readLine();
-                if (line == null) break;
-
-                line = normalizeShortLinkInput(line, cfg.baseUrl);
-
-                var cmd = parser.parse(line);
-                if (cmd.name().isEmpty()) continue;
-
-                try {
-                    switch (cmd.name()) {
-                        case "help" -> help();
-                        case "whoami" -> System.out.println("user=" + session.ensureUser());
-                        case "new-user" -> { session.newUser(); System.out.println("user=" + session.userId()); }
-                        case "login" -> {
-                            if (cmd.args().size() != 1) { System.out.println("Usage: login <uuid>"); break; }
-                            session.login(UUID.fromString(cmd.args().get(0)));
-                            System.out.println("user=" + session.userId());
-                        }
-                        case "create" -> {
-                            if (cmd.args().size() != 2) { System.out.println("Usage: create \"<url>\" <maxClicks>"); break; }
-                            UUID u = session.ensureUser();
-                            String url = cmd.args().get(0);
-                            int max = Integer.parseInt(cmd.args().get(1));
-                            var res = service.create(u, url, max);
-                            System.out.printf("OK short=%s code=%s expiresAt=%s user=%s%n",
-                                    res.shortUrl(), res.code(), res.expiresAt(), res.userId());
-                        }
-                        case "open" -> {
-                            if (cmd.args().size() != 1) { System.out.println("Usage: open <code>"); break; }
-                            String code = cmd.args().get(0);
-                            var res = service.open(code);
-                            System.out.printf("status=%s clicks=%d/%d expiresAt=%s msg=%s%n",
-                                    res.status(), res.clicks(), res.maxClicks(), res.expiresAt(), res.message());
-
-                            if (res.status().name().equals("ACTIVE") && res.url() != null) {
-                                if (cfg.openBrowser) {
-                                    opener.open(res.url());
-                                    System.out.println("Opened: " + res.url());
-                                } else {
-                                    System.out.println("URL: " + res.url());
-                                }
-                            }
-                        }
-                        case "list" -> {
-                            UUID u = session.ensureUser();
-                            List<ShortLink> links = service.list(u);
-                            if (links.isEmpty()) {
-                                System.out.println("No links for user=" + u);
-                            } else {
-                                for (ShortLink l : links) {
-                                    System.out.printf("- code=%s url=%s clicks=%d/%d expiresAt=%s%n",
-                                            l.code, l.originalUrl, l.clicks, l.maxClicks, l.expiresAt);
-                                }
-                            }
-                        }
-                        case "update-limit" -> {
-                            if (cmd.args().size() != 2) { System.out.println("Usage: update-limit <code> <newLimit>"); break; }
-                            UUID u = session.ensureUser();
-                            var r = service.updateLimit(u, cmd.args().get(0), Integer.parseInt(cmd.args().get(1)));
-                            System.out.printf("status=%s msg=%s%n", r.status(), r.message());
-                        }
-                        case "delete" -> {
-                            if (cmd.args().size() != 1) { System.out.println("Usage: delete <code>"); break; }
-                            UUID u = session.ensureUser();
-                            var r = service.delete(u, cmd.args().get(0));
-                            System.out.printf("status=%s msg=%s%n", r.status(), r.message());
-                        }
-                        case "cleanup" -> System.out.println("removed=" + service.cleanupExpiredNow());
-                        case "exit", "quit" -> { System.out.println("Bye"); return; }
-                        default -> System.out.println("Unknown command. Type 'help'.");
-                    }
-                } catch (Exception e) {
-                    System.out.println("ERROR: " + e.getMessage());
-                }
+        var exec = new CommandExecutor(service, Replies.TEXT, cfg.openBrowser ? new BrowserOpener() : null);
+        var out = new StringBuilder(256);
+
+        System.out.println("URL Shortener CLI");
+        System.out.println("Type 'help'.");
+
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+        while (true) {
+            System.out.print("> ");
+            String line = br.readLine();
+            if (line == null) break;
+
+            line = normalizeShortLinkInput(line, cfg.baseUrl);
+
+            var cmd = parser.parse(line);
+            if (cmd.name().isEmpty()) continue;
+
+            out.setLength(0);
+            var outcome = exec.execute(cmd, session, out);
+            System.out.print(out);
+            if (outcome == CommandExecutor.Outcome.EXIT) return;
+        }
+    }
+
+    // без приглашений и браузера; сводка — в stderr, чтобы не смешиваться с JSONL в stdout
+    private static void batch(ShortenerService service, AppConfig cfg, Options opts) throws Exception {
+        var exec = new CommandExecutor(service, opts.jsonl() ? Replies.JSONL : Replies.TEXT, null);
+        var runner = new BatchRunner(exec, cfg.baseUrl, Math.max(2, Runtime.getRuntime().availableProcessors()));
+        boolean stdin = opts.batch() == null || opts.batch().equals("-");
+        var in = stdin
+                ? new BufferedReader(new InputStreamReader(System.in), 1 << 16)
+                : Files.newBufferedReader(Path.of(opts.batch()));
+        var out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16);
+        BatchRunner.Summary s;
+        try (in) {
+            s = runner.run(in, out);
+        }
+        System.err.printf("[BATCH] commands=%d errors=%d time=%d ms throughput=%.0f cmd/s%n",
+                s.commands(), s.errors(), s.millis(), s.perSecond());
+    }
+
+    // только HTTP-редиректы, без интерактивного ввода; остановка по SIGINT/SIGTERM
+    private static void serve(ShortenerService service, int port) throws Exception {
+        var stop = new CountDownLatch(1);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stop.countDown();
+            try {
+                main.join(10_000);
+            } catch (InterruptedException ignored) {
             }
+        }));
+        // заголовки и тело ответа уходят разными write(); с алгоритмом Нейгла ответ ждёт delayed ACK клиента (~40 мс).
+        // JDK читает свойство один раз, при первом HttpServer, и оно действует на всю JVM — поэтому его ставит
+        // режим --serve, а не класс сервера; явное -Dsun.net.httpserver.nodelay=false не перекрывается
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        try (var server = RedirectServer.start(service, port)) {
+            System.out.printf("[HTTP] redirect server on port %d (virtual threads: %s)%n",
+                    server.port(), ThreadPools.virtualThreadsAvailable());
+            stop.await();
         }
     }
 
-    private static void help() {
-        System.out.println("""
-Commands:
-  help
-  whoami
-  new-user
-  login <uuid>
-  create "<url>" <maxClicks>
-  open <code>
-  list
-  update-limit <code> <newLimit>
-  delete <code>
-  cleanup
-  exit|quit
-""");
+    // команды CLI по TCP (loopback), каждое соединение — своя сессия; остановка по SIGINT/SIGTERM
+    private static void listen(ShortenerService service, AppConfig cfg, Options opts, ServiceMetrics metrics) throws Exception {
+        var stop = new CountDownLatch(1);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stop.countDown();
+            try {
+                main.join(10_000);
+            } catch (InterruptedException ignored) {
+            }
+        }));
+        try (var server = CommandServer.start(service, opts.jsonl() ? Replies.JSONL : Replies.TEXT, cfg.baseUrl, opts.listenPort())) {
+            metrics.source("server", server::stats);
+            System.out.printf("[TCP] command server on port %d (virtual threads: %s)%n",
+                    server.port(), ThreadPools.virtualThreadsAvailable());
+            stop.await();
+        }
     }
+
+    private static CodeAllocator codeAllocator(AppConfig cfg) {
+        return switch (cfg.codeStrategy) {
+            case "hash" -> new CodeGenerator(cfg.codeLength);
+            case "sequential" -> new SequentialCodeGenerator(cfg.codeLength, cfg.nodeId, cfg.nodeCount,
+                    cfg.codeSecret != null ? cfg.codeSecret : new SecureRandom().nextLong());
+            default -> throw new IllegalArgumentException("Unknown app.codeStrategy: " + cfg.codeStrategy);
+        };
+    }
+
+    private static LinkRepository openRepository(AppConfig cfg) throws Exception {
+        return switch (cfg.repository) {
+            case "memory" -> new InMemoryLinkRepository(cfg.idempotentCreate);
+            case "mapped" -> {
+                if (cfg.durability != Durability.OFF) {
+                    throw new IllegalStateException("app.durability applies to app.repository=memory; mapped store is persistent itself");
+                }
+                yield MappedLinkRepository.open(cfg.dataDir.resolve("mapped"), cfg.mappedCapacity);
+            }
+            case "compact" -> {
+                if (cfg.durability != Durability.OFF) {
+                    throw new IllegalStateException("app.durability applies to app.repository=memory");
+                }
+                yield new CompactLinkRepository(cfg.mappedCapacity);
+            }
+            case "sharded" -> {
+                if (cfg.durability != Durability.OFF) {
+                    throw new IllegalStateException("app.durability is not supported with app.repository=sharded");
+                }
+                List<LinkRepository> shards = new ArrayList<>();
+                if (cfg.shardAddresses.isEmpty()) {
+                    for (int i = 0; i < cfg.shards; i++) shards.add(new InMemoryLinkRepository(cfg.idempotentCreate));
+                } else {
+                    for (String a : cfg.shardAddresses) shards.add(RemoteLinkRepository.connect(a, 64));
+                }
+                yield new ShardedLinkRepository(shards);
+            }
+            default -> throw new IllegalArgumentException("Unknown app.repository: " + cfg.repository);
+        };
+    }
+
+    private static LinkPersistence openPersistence(AppConfig cfg, LinkRepository repo, CodeAllocator gen) throws Exception {
+        boolean persistent = cfg.durability != Durability.OFF || repo instanceof MappedLinkRepository
+                || !cfg.shardAddresses.isEmpty() && repo instanceof ShardedLinkRepository;
+        if (!persistent) return null;
+        if (gen instanceof SequentialCodeGenerator && cfg.codeSecret == null) {
+            throw new IllegalStateException("app.codeSecret is required for sequential codes with persistent storage");
+        }
+        LinkPersistence p = null;
+        if (repo instanceof InMemoryLinkRepository mem) {
+            p = LinkPersistence.open(cfg.dataDir, cfg.durability, cfg.walBatch, cfg.snapshotInterval, mem);
+            var r = p.recovery();
+            System.err.printf("[WAL] recovered links=%d walRecords=%d in %d ms%n", r.links(), r.walRecords(), r.millis());
+        }
+        if (gen instanceof SequentialCodeGenerator seq) repo.forEach(l -> seq.advancePast(l.code));
+        return p;
+    }
+
     // для работы строки по baseUrl/code или https.//baseUrl/code
     public static String normalizeShortLinkInput(String line, String baseUrl) {
         if (line == null) return "";
@@ -0,0 +1,153 @@
+package com.example.shortener.ui;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.service.ShortenerService;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// выполнение одной разобранной команды; общий код интерактивного и пакетного режимов
+public final class CommandExecutor {
+    public enum Outcome { OK, ERROR, EXIT }
+
+    private final ShortenerService service;
+    private final Replies replies;
+    private final BrowserOpener opener;
+    // false — клиент удалённый (сервер команд): export/import читали бы и писали файлы сервера,
+    // поэтому они отклоняются и не показываются в help
+    private final boolean localFiles;
+
+    // opener == null — URL только печатается
+    public CommandExecutor(ShortenerService service, Replies replies, BrowserOpener opener) {
+        this(service, replies, opener, true);
+    }
+
+    public CommandExecutor(ShortenerService service, Replies replies, BrowserOpener opener, boolean localFiles) {
+        this.service = service;
+        this.replies = replies;
+        this.opener = opener;
+        this.localFiles = localFiles;
+    }
+
+    // команды, которые работают от имени пользователя сессии (и создают его, если ещё нет)
+    public static boolean needsUser(String name) {
+        return switch (name) {
+            case "whoami", "create", "list", "update-limit", "delete" -> true;
+            default -> false;
+        };
+    }
+
+    // команды, меняющие только сессию; в пакетном режиме выполняются сразу при разборе
+    public static boolean sessionOnly(String name) {
+        return switch (name) {
+            case "whoami", "new-user", "login", "help", "exit", "quit" -> true;
+            default -> false;
+        };
+    }
+
+    public Outcome execute(CliParser.Cmd cmd, Session session, StringBuilder out) {
+        var args = cmd.args();
+        try {
+            switch (cmd.name()) {
+                case "help" -> replies.message(out, "help", localFiles ? HELP : REMOTE_HELP);
+                case "whoami" -> replies.user(out, session.ensureUser());
+                case "new-user" -> { session.newUser(); replies.user(out, session.userId()); }
+                case "login" -> {
+                    if (args.size() != 1) return usage(out, cmd, "Usage: login <uuid>");
+                    session.login(UUID.fromString(args.get(0)));
+                    replies.user(out, session.userId());
+                }
+                case "create" -> {
+                    if (args.size() != 2) return usage(out, cmd, "Usage: create \"<url>\" <maxClicks>");
+                    UUID u = session.ensureUser();
+                    replies.created(out, service.create(u, args.get(0), Integer.parseInt(args.get(1))));
+                }
+                case "open" -> {
+                    if (args.size() != 1) return usage(out, cmd, "Usage: open <code>");
+                    String code = args.get(0);
+                    var res = service.open(code);
+                    boolean browse = opener != null && res.status() == LinkStatus.ACTIVE && res.url() != null;
+                    if (browse) {
+                        try {
+                            opener.open(res.url());
+                        } catch (Exception e) {
+                            replies.opened(out, code, res, false);
+                            throw e;
+                        }
+                    }
+                    replies.opened(out, code, res, browse);
+                }
+                case "list" -> {
+                    UUID u = session.ensureUser();
+                    replies.listed(out, u, service.list(u));
+                }
+                case "update-limit" -> {
+                    if (args.size() != 2) return usage(out, cmd, "Usage: update-limit <code> <newLimit>");
+                    UUID u = session.ensureUser();
+                    replies.op(out, "update-limit", service.updateLimit(u, args.get(0), Integer.parseInt(args.get(1))));
+                }
+                case "delete" -> {
+                    if (args.size() != 1) return usage(out, cmd, "Usage: delete <code>");
+                    UUID u = session.ensureUser();
+                    replies.op(out, "delete", service.delete(u, args.get(0)));
+                }
+                case "cleanup" -> replies.removed(out, service.cleanupExpiredNow());
+                case "stats" -> {
+                    if (args.isEmpty()) {
+                        replies.stats(out, service.metrics().snapshot());
+                    } else if (args.size() == 1) {
+                        var series = service.clickSeries(args.get(0));
+                        if (series == null) return usage(out, cmd, "Click analytics is disabled (app.clicks.bufferSize=0)");
+                        replies.clicks(out, series);
+                    } else {
+                        return usage(out, cmd, "Usage: stats [code]");
+                    }
+                }
+                case "export", "import" -> {
+                    if (!localFiles) {
+                        replies.error(out, cmd.name(), "Not available over the network");
+                        return Outcome.ERROR;
+                    }
+                    if (args.size() != 1) return usage(out, cmd, "Usage: " + cmd.name() + " <file>");
+                    Path file = Path.of(args.get(0));
+                    replies.transferred(out, cmd.name(),
+                            cmd.name().equals("export") ? service.exportLinks(file) : service.importLinks(file));
+                }
+                case "exit", "quit" -> { replies.message(out, cmd.name(), "Bye"); return Outcome.EXIT; }
+                default -> { replies.message(out, cmd.name(), "Unknown command. Type 'help'."); return Outcome.ERROR; }
+            }
+            return Outcome.OK;
+        } catch (Exception e) {
+            replies.error(out, cmd.name(), e.getMessage());
+            return Outcome.ERROR;
+        }
+    }
+
+    private Outcome usage(StringBuilder out, CliParser.Cmd cmd, String usage) {
+        replies.message(out, cmd.name(), usage);
+        return Outcome.ERROR;
+    }
+
+    static final String HELP = """
+Commands:
+  help
+  whoami
+  new-user
+  login <uuid>
+  create "<url>" <maxClicks>
+  open <code>
+  list
+  update-limit <code> <newLimit>
+  delete <code>
+  cleanup
+  stats [code]
+  export <file>
+  import <file>
+  exit|quit
+""";
+
+    static final String REMOTE_HELP = HELP.lines()
+            .filter(l -> !l.startsWith("  export ") && !l.startsWith("  import "))
+            .collect(Collectors.joining("\n", "", "\n"));
+}
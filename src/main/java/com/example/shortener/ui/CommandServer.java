@@ -0,0 +1,133 @@
+package com.example.shortener.ui;
+
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.ThreadPools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+// команды CLI по TCP: строка — команда, ответы в том же формате, что в пакетном режиме (TEXT или JSONL).
+// У соединения свой поток (виртуальный на JVM 21+) и своя Session. Клиент может слать команды, не дожидаясь
+// ответов: они выполняются по порядку, ответы копятся в буфере соединения и уходят одной записью, когда
+// уже прочитанные команды кончились (или буфер заполнен). export/import работают с файлами сервера и по сети
+// недоступны (их нет и в help); запуск: CliApp --listen <port> [--jsonl] с настройками из AppConfig
+public final class CommandServer implements AutoCloseable {
+    private static final int BUFFER = 8192;
+    private static final int BACKLOG = 4096;
+
+    private final CommandExecutor exec;
+    private final Replies replies;
+    private final String baseUrl;
+    private final ServerSocket server;
+    private final ExecutorService pool = ThreadPools.perTask("command-conn");
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private CommandServer(ShortenerService service, Replies replies, String baseUrl, ServerSocket server) {
+        this.exec = new CommandExecutor(service, replies, null, false);
+        this.replies = replies;
+        this.baseUrl = baseUrl;
+        this.server = server;
+        this.acceptor = new Thread(this::acceptLoop, "command-accept");
+        acceptor.setDaemon(true);
+    }
+
+    // слушает только loopback: сессия — это UUID из login, аутентификации нет
+    public static CommandServer start(ShortenerService service, Replies replies, String baseUrl, int port) throws IOException {
+        var ss = new ServerSocket();
+        ss.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        var s = new CommandServer(service, replies, baseUrl, ss);
+        s.acceptor.start();
+        return s;
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    // flushes меньше commands — столько ответов ушло пачками
+    public Map<String, Number> stats() {
+        Map<String, Number> m = new LinkedHashMap<>();
+        m.put("connections", connections.sum());
+        m.put("active", clients.size());
+        m.put("commands", commands.sum());
+        m.put("flushes", flushes.sum());
+        return m;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket c : clients) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+            }
+        }
+        pool.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket c = server.accept();
+                c.setTcpNoDelay(true);
+                clients.add(c);
+                connections.increment();
+                pool.execute(() -> serve(c));
+            } catch (IOException e) {
+                if (server.isClosed()) return;
+            }
+        }
+    }
+
+    private void serve(Socket c) {
+        var session = new Session();
+        var parser = new CliParser();
+        var sb = new StringBuilder(256);
+        try (c;
+             var in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8), BUFFER);
+             var out = new BufferedWriter(new OutputStreamWriter(c.getOutputStream(), StandardCharsets.UTF_8), BUFFER)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                var cmd = parser.parse(CliApp.normalizeShortLinkInput(line, baseUrl));
+                if (!cmd.name().isEmpty()) {
+                    sb.setLength(0);
+                    CommandExecutor.Outcome outcome = exec.execute(cmd, session, sb);
+                    commands.increment();
+                    out.append(sb);
+                    if (outcome == CommandExecutor.Outcome.EXIT) break;
+                }
+                // следующая readLine заблокируется: отдать накопленные ответы
+                if (!in.ready()) {
+                    out.flush();
+                    flushes.increment();
+                }
+            }
+        } catch (SocketException e) {
+            // клиент закрыл соединение
+        } catch (IOException e) {
+            System.out.println("[COMMAND] connection error: " + e.getMessage());
+        } finally {
+            clients.remove(c);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.shortener.ui;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.ThreadPools;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// GET /{code} -> 302 на исходный URL; каждый GET — один open(), т.е. один переход по счётчику.
+// HEAD отвечает теми же статусом и Location через resolve(): превью ссылок и проверки доступности
+// не расходуют переходы. TCP_NODELAY — системное свойство JVM sun.net.httpserver.nodelay; его ставит
+// CliApp.serve до запуска сервера, встраивающий код задаёт его сам (-Dsun.net.httpserver.nodelay=true)
+public final class RedirectServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService exec;
+
+    private RedirectServer(HttpServer server, ExecutorService exec) {
+        this.server = server;
+        this.exec = exec;
+    }
+
+    public static RedirectServer start(ShortenerService service, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        ExecutorService exec = ThreadPools.perTask("http");
+        server.setExecutor(exec);
+        server.createContext("/", ex -> {
+            try {
+                handle(service, ex);
+            } catch (RuntimeException e) {
+                reply(ex, 500, "Internal error");
+            } finally {
+                ex.close();
+            }
+        });
+        server.start();
+        return new RedirectServer(server, exec);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public static int httpStatus(LinkStatus status) {
+        return switch (status) {
+            case ACTIVE -> 302;
+            case NOT_FOUND -> 404;
+            case EXPIRED -> 410;
+            case LIMIT_EXHAUSTED -> 429;
+            case FORBIDDEN -> 403;
+            case INVALID_INPUT -> 400;
+            case RATE_LIMITED -> 429;
+            case QUOTA_EXCEEDED -> 403;
+        };
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        exec.shutdown();
+        try {
+            exec.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void handle(ShortenerService service, HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            ex.getResponseHeaders().set("Allow", "GET, HEAD");
+            reply(ex, 405, "Method not allowed");
+            return;
+        }
+        String path = ex.getRequestURI().getRawPath();
+        String code = path.length() > 1 ? path.substring(1) : "";
+        if (code.isEmpty() || code.indexOf('/') >= 0) {
+            reply(ex, 404, "Link not found");
+            return;
+        }
+
+        var res = method.equals("HEAD") ? service.resolve(code) : service.open(code);
+        int http = httpStatus(res.status());
+        if (http == 302) {
+            ex.getResponseHeaders().set("Location", res.url());
+            ex.getResponseHeaders().set("Cache-Control", "no-store");
+        } else if (res.status() == LinkStatus.RATE_LIMITED) {
+            ex.getResponseHeaders().set("Retry-After", "1");
+        }
+        reply(ex, http, res.message());
+    }
+
+    private static void reply(HttpExchange ex, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        if (ex.getRequestMethod().equals("HEAD")) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.shortener.ui;
+
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.ShortenerService.CreateResult;
+import com.example.shortener.core.service.ShortenerService.OpResult;
+import com.example.shortener.core.service.ShortenerService.OpenResult;
+import com.example.shortener.infra.ClickAnalytics;
+import com.example.shortener.infra.LinkTransfer;
+import com.example.shortener.infra.ServiceMetrics;
+
+import java.util.List;
+import java.util.UUID;
+
+// форматы ответа команды: TEXT — как в интерактивном режиме, JSONL — один JSON-объект на команду;
+// пишут в StringBuilder без String.format, чтобы пакетный режим не упирался в форматирование
+public interface Replies {
+    void user(StringBuilder out, UUID userId);
+    void created(StringBuilder out, CreateResult r);
+    void opened(StringBuilder out, String code, OpenResult r, boolean browserOpened);
+    void listed(StringBuilder out, UUID userId, List<ShortLink> links);
+    void op(StringBuilder out, String cmd, OpResult r);
+    void removed(StringBuilder out, int removed);
+    void stats(StringBuilder out, ServiceMetrics.Snapshot s);
+    void clicks(StringBuilder out, ClickAnalytics.Series s);
+    void transferred(StringBuilder out, String cmd, LinkTransfer.Result r);
+    void message(StringBuilder out, String cmd, String msg);
+    void error(StringBuilder out, String cmd, String msg);
+
+    Replies TEXT = new Replies() {
+        @Override
+        public void user(StringBuilder out, UUID userId) {
+            out.append("user=").append(userId).append('\n');
+        }
+
+        @Override
+        public void created(StringBuilder out, CreateResult r) {
+            out.append("OK short=").append(r.shortUrl()).append(" code=").append(r.code())
+                    .append(" expiresAt=").append(r.expiresAt()).append(" user=").append(r.userId()).append('\n');
+        }
+
+        @Override
+        public void opened(StringBuilder out, String code, OpenResult r, boolean browserOpened) {
+            out.append("status=").append(r.status()).append(" clicks=").append(r.clicks()).append('/').append(r.maxClicks())
+                    .append(" expiresAt=").append(r.expiresAt()).append(" msg=").append(r.message()).append('\n');
+            if (r.url() != null) out.append(browserOpened ? "Opened: " : "URL: ").append(r.url()).append('\n');
+        }
+
+        @Override
+        public void listed(StringBuilder out, UUID userId, List<ShortLink> links) {
+            if (links.isEmpty()) {
+                out.append("No links for user=").append(userId).append('\n');
+                return;
+            }
+            for (ShortLink l : links) {
+                out.append("- code=").append(l.code).append(" url=").append(l.originalUrl)
+                        .append(" clicks=").append(l.clicks()).append('/').append(l.maxClicks())
+                        .append(" expiresAt=").append(l.expiresAt).append('\n');
+            }
+        }
+
+        @Override
+        public void op(StringBuilder out, String cmd, OpResult r) {
+            out.append("status=").append(r.status()).append(" msg=").append(r.message()).append('\n');
+        }
+
+        @Override
+        public void removed(StringBuilder out, int removed) {
+            out.append("removed=").append(removed).append('\n');
+        }
+
+        @Override
+        public void stats(StringBuilder out, ServiceMetrics.Snapshot s) {
+            s.appendText(out);
+        }
+
+        @Override
+        public void clicks(StringBuilder out, ClickAnalytics.Series s) {
+            out.append("code=").append(s.code()).append(" total=").append(s.total()).append('\n');
+            out.append("per minute (last hour):\n");
+            for (var p : s.minutes()) out.append("  ").append(p.start()).append(' ').append(p.clicks()).append('\n');
+            out.append("per hour (last 48h):\n");
+            for (var p : s.hours()) out.append("  ").append(p.start()).append(' ').append(p.clicks()).append('\n');
+        }
+
+        @Override
+        public void transferred(StringBuilder out, String cmd, LinkTransfer.Result r) {
+            out.append(cmd).append("ed=").append(r.links()).append(" skipped=").append(r.skipped())
+                    .append(" bytes=").append(r.bytes()).append(" millis=").append(r.millis())
+                    .append(" linksPerSecond=").append(Math.round(r.perSecond())).append('\n');
+            if (r.firstError() != null) out.append("first error: ").append(r.firstError()).append('\n');
+        }
+
+        @Override
+        public void message(StringBuilder out, String cmd, String msg) {
+            out.append(msg).append('\n');
+        }
+
+        @Override
+        public void error(StringBuilder out, String cmd, String msg) {
+            out.append("ERROR: ").append(msg).append('\n');
+        }
+    };
+
+    Replies JSONL = new Replies() {
+        @Override
+        public void user(StringBuilder out, UUID userId) {
+            out.append("{\"user\":\"").append(userId).append("\"}\n");
+        }
+
+        @Override
+        public void created(StringBuilder out, CreateResult r) {
+            out.append("{\"cmd\":\"create\",\"status\":\"OK\",\"short\":");
+            str(out, r.shortUrl());
+            out.append(",\"code\":");
+            str(out, r.code());
+            out.append(",\"expiresAt\":\"").append(r.expiresAt()).append("\",\"user\":\"").append(r.userId()).append("\"}\n");
+        }
+
+        @Override
+        public void opened(StringBuilder out, String code, OpenResult r, boolean browserOpened) {
+            out.append("{\"cmd\":\"open\",\"code\":");
+            str(out, code);
+            out.append(",\"status\":\"").append(r.status()).append("\",\"clicks\":").append(r.clicks())
+                    .append(",\"maxClicks\":").append(r.maxClicks());
+            if (r.expiresAt() != null) out.append(",\"expiresAt\":\"").append(r.expiresAt()).append('"');
+            if (r.url() != null) {
+                out.append(",\"url\":");
+                str(out, r.url());
+            }
+            out.append(",\"msg\":");
+            str(out, r.message());
+            out.append("}\n");
+        }
+
+        @Override
+        public void listed(StringBuilder out, UUID userId, List<ShortLink> links) {
+            out.append("{\"cmd\":\"list\",\"user\":\"").append(userId).append("\",\"links\":[");
+            for (int i = 0; i < links.size(); i++) {
+                ShortLink l = links.get(i);
+                if (i > 0) out.append(',');
+                out.append("{\"code\":");
+                str(out, l.code);
+                out.append(",\"url\":");
+                str(out, l.originalUrl);
+                out.append(",\"clicks\":").append(l.clicks()).append(",\"maxClicks\":").append(l.maxClicks())
+                        .append(",\"expiresAt\":\"").append(l.expiresAt).append("\"}");
+            }
+            out.append("]}\n");
+        }
+
+        @Override
+        public void op(StringBuilder out, String cmd, OpResult r) {
+            out.append("{\"cmd\":");
+            str(out, cmd);
+            out.append(",\"status\":\"").append(r.status()).append("\",\"msg\":");
+            str(out, r.message());
+            out.append("}\n");
+        }
+
+        @Override
+        public void removed(StringBuilder out, int removed) {
+            out.append("{\"cmd\":\"cleanup\",\"removed\":").append(removed).append("}\n");
+        }
+
+        @Override
+        public void stats(StringBuilder out, ServiceMetrics.Snapshot s) {
+            out.append("{\"cmd\":\"stats\",\"stats\":");
+            s.appendJson(out);
+            out.append("}\n");
+        }
+
+        @Override
+        public void clicks(StringBuilder out, ClickAnalytics.Series s) {
+            out.append("{\"cmd\":\"stats\",\"code\":");
+            str(out, s.code());
+            out.append(",\"total\":").append(s.total()).append(",\"minutes\":");
+            points(out, s.minutes());
+            out.append(",\"hours\":");
+            points(out, s.hours());
+            out.append("}\n");
+        }
+
+        @Override
+        public void transferred(StringBuilder out, String cmd, LinkTransfer.Result r) {
+            out.append("{\"cmd\":");
+            str(out, cmd);
+            out.append(",\"links\":").append(r.links()).append(",\"skipped\":").append(r.skipped())
+                    .append(",\"bytes\":").append(r.bytes()).append(",\"millis\":").append(r.millis())
+                    .append(",\"linksPerSecond\":").append(Math.round(r.perSecond()));
+            if (r.firstError() != null) {
+                out.append(",\"firstError\":");
+                str(out, r.firstError());
+            }
+            out.append("}\n");
+        }
+
+        private void points(StringBuilder out, List<ClickAnalytics.Point> points) {
+            out.append('[');
+            for (int i = 0; i < points.size(); i++) {
+                if (i > 0) out.append(',');
+                out.append("{\"start\":\"").append(points.get(i).start()).append("\",\"clicks\":")
+                        .append(points.get(i).clicks()).append('}');
+            }
+            out.append(']');
+        }
+
+        @Override
+        public void message(StringBuilder out, String cmd, String msg) {
+            out.append("{\"cmd\":");
+            str(out, cmd);
+            out.append(",\"msg\":");
+            str(out, msg);
+            out.append("}\n");
+        }
+
+        @Override
+        public void error(StringBuilder out, String cmd, String msg) {
+            out.append("{\"cmd\":");
+            str(out, cmd);
+            out.append(",\"error\":");
+            str(out, msg);
+            out.append("}\n");
+        }
+
+        private void str(StringBuilder out, String s) {
+            if (s == null) {
+                out.append("null");
+                return;
+            }
+            out.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                        else out.append(c);
+                    }
+                }
+            }
+            out.append('"');
+        }
+    };
+}
@@ -14,4 +14,11 @@ public final class Session {
 
     public void login(UUID id) { this.userId = id; }
     public void newUser() { this.userId = UUID.randomUUID(); }
+
+    // снимок пользователя на момент разбора команды (пакетный режим выполняет её позже)
+    public Session copy() {
+        Session s = new Session();
+        s.userId = userId;
+        return s;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.example.shortener;
+
+import com.example.shortener.core.service.CodeAllocator;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.ui.BatchRunner;
+import com.example.shortener.ui.CommandExecutor;
+import com.example.shortener.ui.Replies;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    private static ShortenerService svc() {
+        return new ShortenerService(new InMemoryLinkRepository(), new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+    }
+
+    private static String run(ShortenerService s, Replies replies, String input) throws Exception {
+        var runner = new BatchRunner(new CommandExecutor(s, replies, null), "clck.ru", 4);
+        var out = new StringWriter();
+        runner.run(new BufferedReader(new StringReader(input)), out);
+        return out.toString();
+    }
+
+    @Test
+    void outputFollowsInputOrderAndUsesSessionUserAtParseTime() throws Exception {
+        var s = svc();
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        var in = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            in.append("login ").append(i % 2 == 0 ? a : b).append('\n');
+            in.append("create \"https://example.com/").append(i).append("\" 5\n");
+        }
+        String[] lines = run(s, Replies.TEXT, in.toString()).split("\n");
+
+        assertEquals(400, lines.length);
+        for (int i = 0; i < 200; i++) {
+            UUID u = i % 2 == 0 ? a : b;
+            assertEquals("user=" + u, lines[2 * i]);
+            assertTrue(lines[2 * i + 1].startsWith("OK "), lines[2 * i + 1]);
+            assertTrue(lines[2 * i + 1].endsWith("user=" + u), lines[2 * i + 1]);
+        }
+        assertEquals(100, s.list(a).size());
+        assertEquals(100, s.list(b).size());
+    }
+
+    @Test
+    void commandsOfOneUserRunInOrder() throws Exception {
+        var s = svc();
+        UUID u = UUID.randomUUID();
+        var c = s.create(u, "https://example.com", 1);
+
+        String out = run(s, Replies.TEXT, "login " + u + "\n"
+                + "update-limit " + c.code() + " 3\n"
+                + "open " + c.code() + "\n"
+                + "open " + c.code() + "\n"
+                + "open " + c.code() + "\n"
+                + "delete " + c.code() + "\n"
+                + "open " + c.code() + "\n");
+
+        String[] lines = out.split("\n");
+        assertTrue(lines[1].startsWith("status=ACTIVE"));
+        assertTrue(lines[2].startsWith("status=ACTIVE clicks=1/3"));
+        assertTrue(lines[4].startsWith("status=ACTIVE clicks=2/3"));
+        assertTrue(lines[6].startsWith("status=ACTIVE clicks=3/3"));
+        assertTrue(lines[8].startsWith("status=ACTIVE msg=Deleted"));
+        assertTrue(lines[9].startsWith("status=NOT_FOUND"));
+    }
+
+    @Test
+    void jsonlWritesOneObjectPerCommandAndStopsAtExit() throws Exception {
+        String out = run(svc(), Replies.JSONL, "create \"https://example.com/a?q=1\" 5\nopen NOPE\nbogus\nexit\nopen NOPE\n");
+        String[] lines = out.split("\n");
+
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("{\"cmd\":\"create\",\"status\":\"OK\""), lines[0]);
+        assertTrue(lines[1].contains("\"status\":\"NOT_FOUND\""), lines[1]);
+        assertTrue(lines[2].contains("\"cmd\":\"bogus\""), lines[2]);
+        assertEquals("{\"cmd\":\"exit\",\"msg\":\"Bye\"}", lines[3]);
+    }
+
+    // open чужой ссылки и export идут в порядке ввода, хотя create выполнялся в полосе другого пользователя
+    @Test
+    void openOfAnotherUsersLinkAndExportSeeEarlierLines(@TempDir Path dir) throws Exception {
+        // код известен заранее, а create медленный: без упорядочивания open из другой полосы его обгоняет
+        CodeAllocator slow = (u, url) -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return url.substring(url.lastIndexOf('/') + 1);
+        };
+        var s = new ShortenerService(new InMemoryLinkRepository(), slow, "clck.ru", Duration.ofSeconds(60));
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        int n = 300;
+        var in = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            in.append("login ").append(a).append('\n');
+            in.append("create \"https://example.com/k").append(i).append("\" 5\n");
+            in.append("login ").append(b).append('\n');
+            in.append("open k").append(i).append('\n');
+        }
+        Path file = dir.resolve("links.jsonl");
+        in.append("export ").append(file).append('\n');
+        String[] lines = run(s, Replies.JSONL, in.toString()).split("\n");
+
+        assertEquals(4 * n + 1, lines.length);
+        for (int i = 0; i < n; i++) {
+            assertTrue(lines[4 * i + 3].contains("\"status\":\"ACTIVE\",\"clicks\":1,"), lines[4 * i + 3]);
+        }
+        assertTrue(lines[4 * n].startsWith("{\"cmd\":\"export\",\"links\":" + n + ","), lines[4 * n]);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.shortener;
+
+import com.example.shortener.infra.CachedClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedClockTest {
+
+    @Test
+    void followsSystemClockWithinTicks() throws Exception {
+        try (var clock = new CachedClock(Duration.ofMillis(1))) {
+            long before = System.currentTimeMillis();
+            long first = clock.millis();
+            assertTrue(first >= before);
+            Thread.sleep(50);
+            long later = clock.millis();
+            // поток обновляет время раз в 1 мс; запас на планировщик одного ядра
+            assertTrue(later >= first + 30, "first=" + first + " later=" + later);
+            assertTrue(later <= System.currentTimeMillis());
+        }
+    }
+
+    @Test
+    void neverGoesBack() throws Exception {
+        try (var clock = new CachedClock(Duration.ofMillis(1))) {
+            long prev = clock.millis();
+            long deadline = System.nanoTime() + Duration.ofMillis(200).toNanos();
+            while (System.nanoTime() < deadline) {
+                long m = clock.millis();
+                assertTrue(m >= prev);
+                prev = m;
+            }
+        }
+    }
+
+    @Test
+    void readsSystemClockAfterClose() throws Exception {
+        var clock = new CachedClock(Duration.ofMillis(1));
+        clock.millis();
+        clock.close();
+        Thread.sleep(20);
+        long before = System.currentTimeMillis();
+        assertTrue(clock.millis() >= before);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.CachingLinkRepository;
+import com.example.shortener.infra.CompactLinkRepository;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.MappedLinkRepository;
+import com.example.shortener.infra.VirtualClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingLinkRepositoryTest {
+
+    private static ShortLink link(String code, Instant expiresAt) {
+        return new ShortLink(code, UUID.randomUUID(), "https://example.com/" + code, Instant.now(), expiresAt, 5);
+    }
+
+    @Test
+    void repeatedReadsAreServedFromCache() {
+        var cache = new CachingLinkRepository(new InMemoryLinkRepository(), 1024, Duration.ofSeconds(10), 0);
+        cache.save(link("a", Instant.now().plusSeconds(600)));
+        for (int i = 0; i < 10; i++) assertEquals("a", cache.get("a").code);
+
+        var st = cache.stats();
+        assertEquals(1, st.misses());
+        assertEquals(9, st.hits());
+        assertEquals(1, st.size());
+        assertEquals(0.9, st.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void missingCodesAreAnsweredByBloomFilterOrNegativeEntries() {
+        var store = new InMemoryLinkRepository();
+        store.save(link("known", Instant.now().plusSeconds(600)));
+        var withBloom = new CachingLinkRepository(store, 1024, Duration.ofSeconds(10), 1000);
+        for (int i = 0; i < 100; i++) assertNull(withBloom.get("missing" + i));
+        assertNotNull(withBloom.get("known"));
+        assertTrue(withBloom.stats().bloomRejects() >= 90, withBloom.stats().toString());
+        assertFalse(withBloom.exists("missing0"));
+        assertTrue(withBloom.exists("known"));
+
+        var noBloom = new CachingLinkRepository(store, 1024, Duration.ofSeconds(10), 0);
+        assertNull(noBloom.get("missing"));
+        assertNull(noBloom.get("missing"));
+        assertEquals(1, noBloom.stats().misses());
+        assertEquals(1, noBloom.stats().negativeHits());
+    }
+
+    @Test
+    void negativeEntryExpiresAfterTtl() throws Exception {
+        var store = new InMemoryLinkRepository();
+        var cache = new CachingLinkRepository(store, 1024, Duration.ofMillis(50), 0);
+        assertNull(cache.get("late"));
+        store.save(link("late", Instant.now().plusSeconds(600)));
+        assertNull(cache.get("late"));
+        Thread.sleep(80);
+        assertNotNull(cache.get("late"));
+    }
+
+    @Test
+    void writesThroughCacheInvalidateEntries(@TempDir Path dir) throws Exception {
+        try (var cache = new CachingLinkRepository(MappedLinkRepository.open(dir, 1024), 1024, Duration.ofSeconds(10), 1000)) {
+            var s = new ShortenerService(cache, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+            UUID u = UUID.randomUUID();
+            String code = s.create(u, "https://example.com/x", 3).code();
+
+            assertEquals(LinkStatus.ACTIVE, s.open(code).status());
+            assertEquals(LinkStatus.ACTIVE, s.updateLimit(u, code, 7).status());
+            assertEquals(7, cache.get(code).maxClicks());
+
+            assertEquals(LinkStatus.ACTIVE, s.delete(u, code).status());
+            assertNull(cache.get(code));
+            assertEquals(LinkStatus.NOT_FOUND, s.open(code).status());
+        }
+    }
+
+    @Test
+    void expiredLinksAreNotServedFromCache() throws Exception {
+        var store = new InMemoryLinkRepository();
+        var cache = new CachingLinkRepository(store, 1024, Duration.ofSeconds(10), 0);
+        cache.save(link("soon", Instant.now().plusMillis(50)));
+        assertNotNull(cache.get("soon"));
+        Thread.sleep(80);
+        store.deleteExpired(Instant.now());
+        assertNull(cache.get("soon"));
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void expiryInCacheFollowsServiceClock() {
+        var clock = new VirtualClock(Instant.now());
+        var cache = new CachingLinkRepository(new InMemoryLinkRepository(), 1024, Duration.ofSeconds(10), 0, clock);
+        cache.save(link("later", clock.now().plusSeconds(600)));
+        assertNotNull(cache.get("later"));
+        assertNotNull(cache.get("later"));
+        assertEquals(1, cache.stats().hits());
+
+        // по системным часам ссылка жива, по часам сервиса — истекла: кэш её не отдаёт, решает хранилище
+        clock.advance(Duration.ofSeconds(601));
+        assertNotNull(cache.get("later"));
+        assertEquals(1, cache.stats().hits());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void capacityIsBounded() {
+        var cache = new CachingLinkRepository(new InMemoryLinkRepository(), 640, Duration.ofSeconds(10), 0);
+        for (int i = 0; i < 10_000; i++) cache.save(link("c" + i, Instant.now().plusSeconds(600)));
+        for (int i = 0; i < 10_000; i++) assertNotNull(cache.get("c" + i));
+        assertTrue(cache.stats().size() <= 640, cache.stats().toString());
+        assertTrue(cache.stats().evictions() > 0);
+    }
+
+    @Test
+    void clickOnSnapshotStoreRefreshesCachedCopy() {
+        var cache = new CachingLinkRepository(new CompactLinkRepository(1024), 1024, Duration.ofSeconds(10), 1000);
+        var s = new ShortenerService(cache, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+        String code = s.create(UUID.randomUUID(), "https://example.com/once", 1).code();
+
+        assertEquals(LinkStatus.ACTIVE, s.resolve(code).status());
+        assertEquals(LinkStatus.ACTIVE, s.open(code).status());
+        // копия из кэша — снимок хранилища; после принятого клика она не должна остаться «активной»
+        assertEquals(LinkStatus.LIMIT_EXHAUSTED, s.resolve(code).status());
+        assertEquals(1, cache.get(code).clicks());
+        assertEquals(LinkStatus.LIMIT_EXHAUSTED, s.open(code).status());
+    }
+
+    @Test
+    void bloomFilterIsRebuiltWhenCodesChurn() throws Exception {
+        // без отрицательных записей каждый промах доходит до фильтра
+        var cache = new CachingLinkRepository(new InMemoryLinkRepository(), 1024, Duration.ZERO, 100);
+        // удалённые коды остаются в фильтре, пока он не пересобран
+        for (int i = 0; i < 1000; i++) {
+            cache.save(link("gone" + i, Instant.now().plusSeconds(600)));
+            cache.delete("gone" + i);
+        }
+        // сборка идёт в фоне и повторяется, пока фильтр переполнен; коды удалены — новый фильтр их отсекает
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        long rejected;
+        do {
+            long before = cache.stats().bloomRejects();
+            for (int i = 0; i < 100; i++) assertNull(cache.get("gone" + i));
+            rejected = cache.stats().bloomRejects() - before;
+            if (rejected < 90) Thread.sleep(5);
+        } while (rejected < 90 && System.nanoTime() < deadline);
+        assertTrue(rejected >= 90, cache.stats().toString());
+        assertTrue(cache.stats().bloomRebuilds() > 0, cache.stats().toString());
+    }
+}
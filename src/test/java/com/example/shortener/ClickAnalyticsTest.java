@@ -0,0 +1,115 @@
+package com.example.shortener;
+
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.ClickAnalytics;
+import com.example.shortener.infra.ClickEventRing;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.ServiceMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClickAnalyticsTest {
+
+    @Test
+    void fullRingDropsNewEventsAndRecoversAfterDrain() {
+        var ring = new ClickEventRing(4);
+        for (int i = 0; i < 4; i++) assertTrue(ring.offer("c" + i, i));
+        assertFalse(ring.offer("late", 5));
+        assertEquals(1, ring.dropped());
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(3, ring.drain((code, t) -> seen.add(code), 3));
+        assertEquals(List.of("c0", "c1", "c2"), seen);
+        assertTrue(ring.offer("c4", 4));
+        assertEquals(2, ring.drain((code, t) -> seen.add(code), 10));
+        assertEquals(List.of("c0", "c1", "c2", "c3", "c4"), seen);
+        assertEquals(5, ring.published());
+    }
+
+    @Test
+    void concurrentProducersDeliverEveryAcceptedEventOnce() throws Exception {
+        var ring = new ClickEventRing(1024);
+        int producers = 4, perProducer = 50_000;
+        Map<String, Integer> counts = new HashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String code = "p" + p;
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) ring.offer(code, i);
+            });
+            t.start();
+            threads.add(t);
+        }
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            ring.drain((code, t) -> counts.merge(code, 1, Integer::sum), 256);
+        }
+        for (Thread t : threads) t.join();
+        ring.drain((code, t) -> counts.merge(code, 1, Integer::sum), Integer.MAX_VALUE);
+
+        long delivered = counts.values().stream().mapToLong(Integer::intValue).sum();
+        assertEquals(producers * (long) perProducer, delivered + ring.dropped());
+        assertEquals(delivered, ring.published());
+    }
+
+    @Test
+    void aggregatesPerMinuteAndPerHour() {
+        var a = new ClickAnalytics(1024, 100, false);
+        Instant t = Instant.parse("2030-01-01T10:00:00Z");
+        for (int i = 0; i < 3; i++) a.publish("x", t.toEpochMilli() + i * 1000);
+        a.publish("x", t.plusSeconds(60).toEpochMilli());
+        a.publish("x", t.minusSeconds(3600).toEpochMilli());
+        a.publish("y", t.toEpochMilli());
+        assertEquals(6, a.drain());
+
+        var s = a.series("x", t.plusSeconds(90));
+        assertEquals(5, s.total());
+        assertEquals(List.of(new ClickAnalytics.Point(t, 3), new ClickAnalytics.Point(t.plusSeconds(60), 1)), s.minutes());
+        assertEquals(List.of(new ClickAnalytics.Point(t.minusSeconds(3600), 1), new ClickAnalytics.Point(t, 4)), s.hours());
+
+        // через два часа минутный ряд пуст, часовой ещё хранит оба часа
+        var later = a.series("x", t.plusSeconds(7200));
+        assertTrue(later.minutes().isEmpty());
+        assertEquals(2, later.hours().size());
+        assertEquals(0, a.series("missing", t).total());
+    }
+
+    @Test
+    void trackedCodesAreBounded() {
+        var a = new ClickAnalytics(1 << 16, 100, false);
+        long t = Instant.parse("2030-01-01T10:00:00Z").toEpochMilli();
+        for (int i = 0; i < 1000; i++) a.publish("c" + i, t);
+        a.drain();
+        assertEquals(100, a.stats().get("codes"));
+        assertEquals(900L, a.stats().get("evictedCodes"));
+        assertEquals(1, a.series("c999", Instant.ofEpochMilli(t)).total());
+        assertEquals(0, a.series("c0", Instant.ofEpochMilli(t)).total());
+    }
+
+    @Test
+    void openPublishesClicksToBackgroundAggregator() throws Exception {
+        try (var a = new ClickAnalytics(1024, 100, true)) {
+            var s = ShortenerService.builder(new InMemoryLinkRepository(), new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60))
+                    .metrics(new ServiceMetrics())
+                    .analytics(a)
+                    .build();
+            String code = s.create(UUID.randomUUID(), "https://example.com", 3).code();
+            for (int i = 0; i < 5; i++) s.open(code);
+
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (s.clickSeries(code).total() < 3 && System.nanoTime() < deadline) Thread.sleep(5);
+            var series = s.clickSeries(code);
+            assertEquals(3, series.total());
+            assertEquals(3, series.minutes().stream().mapToInt(ClickAnalytics.Point::clicks).sum());
+        }
+    }
+}
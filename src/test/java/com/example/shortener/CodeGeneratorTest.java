@@ -0,0 +1,45 @@
+package com.example.shortener;
+
+import com.example.shortener.core.service.Base62;
+import com.example.shortener.core.service.CodeGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodeGeneratorTest {
+
+    @Test
+    void longEncodingMatchesBigIntegerEncoding() {
+        long[] values = {0L, 1L, 61L, 62L, 123456789L, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+        for (long v : values) {
+            char[] out = new char[10];
+            Base62.encode(v, 10, out, 0);
+            BigInteger n = new BigInteger(Long.toUnsignedString(v)).mod(BigInteger.valueOf(62).pow(10));
+            String expected = Base62.encode(n.toByteArray());
+            expected = "0".repeat(10 - expected.length()) + expected;
+            assertEquals(expected, new String(out), "value=" + Long.toUnsignedString(v));
+        }
+    }
+
+    @Test
+    void generatesRequestedLengthFromBase62Alphabet() {
+        UUID u = UUID.randomUUID();
+        for (int len = 6; len <= 16; len++) {
+            String code = new CodeGenerator(len).generate(u, "https://пример.рф/путь?q=" + len);
+            assertEquals(len, code.length());
+            assertTrue(code.matches("[0-9A-Za-z]+"), code);
+        }
+    }
+
+    @Test
+    void codesAreDistinctAcrossCalls() {
+        var gen = new CodeGenerator(8);
+        UUID u = UUID.randomUUID();
+        var seen = new HashSet<String>();
+        for (int i = 0; i < 10_000; i++) assertTrue(seen.add(gen.generate(u, "https://example.com")));
+    }
+}
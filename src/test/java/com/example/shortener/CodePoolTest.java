@@ -0,0 +1,154 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeAllocator;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.CodePool;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodePoolTest {
+
+    private static ShortenerService service(LinkRepository repo, CodeAllocator gen) {
+        return new ShortenerService(repo, gen, "clck.ru", Duration.ofDays(1));
+    }
+
+    @Test
+    void pooledCodesAreUniqueAndFallbackKicksInWhenDrained() {
+        var repo = new InMemoryLinkRepository();
+        try (var pool = new CodePool(new CodeGenerator(8), repo, 100, 25, 0)) {
+            assertEquals(100, pool.fill());
+            assertEquals(0, pool.fill());
+            assertEquals(100, pool.depth());
+
+            var s = service(repo, pool);
+            UUID u = UUID.randomUUID();
+            Set<String> codes = new HashSet<>();
+            for (int i = 0; i < 150; i++) assertTrue(codes.add(s.create(u, "https://example.com/" + i, 5).code()));
+            var stats = pool.stats();
+            assertEquals(0, stats.get("depth"));
+            assertEquals(100L, stats.get("hits"));
+            assertEquals(50L, stats.get("fallbacks"));
+            assertEquals(100L, stats.get("refilled"));
+            assertEquals(0, stats.get("reserved"));
+            assertEquals(150, repo.size());
+        }
+    }
+
+    @Test
+    void codeTakenInRepositoryOrReservedIsNotHandedOut() {
+        var repo = new InMemoryLinkRepository();
+        // источник с четырьмя кодами по кругу: "a" уже в репозитории, остальные пул держит занятыми
+        String[] cycle = {"a", "b", "c", "d"};
+        int[] next = {0};
+        CodeAllocator source = (userId, url) -> cycle[next[0]++ % cycle.length];
+        repo.save(new ShortLink("a", UUID.randomUUID(), "https://example.com", Instant.now(), Instant.now().plusSeconds(60), 1));
+        try (var pool = new CodePool(source, repo, 3, 1, 0)) {
+            assertEquals(3, pool.fill());
+            String[] got = {pool.allocate(null, ""), pool.allocate(null, ""), pool.allocate(null, "")};
+            Arrays.sort(got);
+            assertArrayEquals(new String[]{"b", "c", "d"}, got);
+            assertThrows(IllegalStateException.class, () -> pool.allocate(null, ""));
+            pool.committed("c");
+            assertEquals("c", pool.allocate(null, ""));
+            assertTrue((long) pool.stats().get("collisions") > 0);
+        }
+    }
+
+    @Test
+    void backgroundThreadRefillsBelowLowWatermark() {
+        var repo = new InMemoryLinkRepository();
+        try (var pool = new CodePool(new CodeGenerator(8), repo, 64, 16, 1)) {
+            awaitDepth(pool, 64);
+            var s = service(repo, pool);
+            UUID u = UUID.randomUUID();
+            // выше нижней отметки пул не дозаполняется
+            for (int i = 0; i < 40; i++) s.create(u, "https://example.com/" + i, 5);
+            LockSupport.parkNanos(50_000_000);
+            assertEquals(24, pool.depth());
+            // ниже — дозаполняется до capacity; create, пришедшие во время дозаполнения, могут оставить его
+            // чуть ниже capacity, но не ниже отметки
+            for (int i = 0; i < 10; i++) s.create(u, "https://example.com/x" + i, 5);
+            awaitDepth(pool, 64 - 10);
+            LockSupport.parkNanos(50_000_000);
+            assertEquals(0L, pool.stats().get("fallbacks"));
+            assertEquals(50L + pool.depth(), pool.stats().get("refilled"));
+        }
+    }
+
+    @Test
+    void importDiscardsPooledCodes(@TempDir Path dir) throws Exception {
+        var src = new InMemoryLinkRepository();
+        var a = service(src, new CodeGenerator(8));
+        for (int i = 0; i < 100; i++) a.create(UUID.randomUUID(), "https://example.com/" + i, 5);
+        Path file = dir.resolve("links.jsonl");
+        a.exportLinks(file);
+
+        var repo = new InMemoryLinkRepository();
+        try (var pool = new CodePool(new CodeGenerator(8), repo, 32, 8, 0)) {
+            pool.fill();
+            var s = service(repo, pool);
+            assertEquals(100, s.importLinks(file).links());
+            assertEquals(0, pool.depth());
+            assertEquals(0, pool.stats().get("reserved"));
+            List<ShortenerService.CreateItem> items = s.createAll(UUID.randomUUID(), List.of("https://a.example", "https://b.example"), 1);
+            assertTrue(items.stream().allMatch(ShortenerService.CreateItem::ok));
+            assertEquals(102, repo.size());
+        }
+    }
+
+    // задержка create с пулом и без (-Dpool.creates, по умолчанию 20000): запросы идут с паузой 20 мкс,
+    // за которую фоновый поток успевает дозаполнить пул даже на одном ядре
+    @Test
+    void createLatencyWithAndWithoutPool() {
+        int n = Integer.getInteger("pool.creates", 20_000);
+        long[] plain = latencies(new InMemoryLinkRepository(), null, n);
+        var repo = new InMemoryLinkRepository();
+        long[] pooled;
+        try (var pool = new CodePool(new CodeGenerator(8), repo, 4096, 1024, 1)) {
+            awaitDepth(pool, 4096);
+            pooled = latencies(repo, pool, n);
+            System.out.printf("[POOL] creates=%d p50 %d -> %d ns, p99 %d -> %d ns; %s%n", n,
+                    plain[n / 2], pooled[n / 2], plain[n * 99 / 100], pooled[n * 99 / 100], pool.stats());
+            assertEquals(n + 2_000L, (long) pool.stats().get("hits") + (long) pool.stats().get("fallbacks"));
+        }
+    }
+
+    private static long[] latencies(InMemoryLinkRepository repo, CodePool pool, int n) {
+        var s = service(repo, pool != null ? pool : new CodeGenerator(8));
+        UUID u = UUID.randomUUID();
+        for (int i = 0; i < 2_000; i++) s.create(u, "https://example.com/warmup/" + i, 5);
+        long[] t = new long[n];
+        for (int i = 0; i < n; i++) {
+            long t0 = System.nanoTime();
+            s.create(u, "https://example.com/" + i, 5);
+            t[i] = System.nanoTime() - t0;
+            LockSupport.parkNanos(20_000);
+        }
+        Arrays.sort(t);
+        return t;
+    }
+
+    private static void awaitDepth(CodePool pool, int depth) {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (pool.depth() < depth) {
+            assertTrue(System.nanoTime() < deadline, "depth " + pool.depth());
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.shortener;
+
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.ServiceMetrics;
+import com.example.shortener.ui.CommandServer;
+import com.example.shortener.ui.Replies;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandServerTest {
+
+    @Test
+    void pipelinedCommandsAreAnsweredInOrderWithSessionPerConnection() throws Exception {
+        var service = new ShortenerService(new InMemoryLinkRepository(), new CodeGenerator(8), "clck.ru", Duration.ofDays(1));
+        try (var server = CommandServer.start(service, Replies.JSONL, "clck.ru", 0);
+             var a = new Socket(InetAddress.getLoopbackAddress(), server.port());
+             var b = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            // всё отправляется одной записью, до чтения первого ответа
+            List<UUID> users = new ArrayList<>();
+            StringBuilder req = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                UUID u = UUID.randomUUID();
+                users.add(u);
+                req.append("login ").append(u).append("\nwhoami\n");
+            }
+            req.append("create \"https://example.com/a\" 5\nlist\nexport \"/tmp/x.jsonl\"\n\nexit\nwhoami\n");
+            send(a, req);
+            send(b, new StringBuilder("whoami\nhelp\nclck.ru/nope\nexit\n"));
+
+            var ra = reader(a);
+            for (UUID u : users) {
+                assertEquals("{\"user\":\"" + u + "\"}", ra.readLine());
+                assertEquals("{\"user\":\"" + u + "\"}", ra.readLine());
+            }
+            assertTrue(ra.readLine().startsWith("{\"cmd\":\"create\",\"status\":\"OK\""));
+            assertTrue(ra.readLine().startsWith("{\"cmd\":\"list\",\"user\":\"" + users.get(999) + "\",\"links\":[{"));
+            assertTrue(ra.readLine().contains("Not available over the network"));
+            assertTrue(ra.readLine().contains("Bye"));
+            assertNull(ra.readLine());
+
+            var rb = reader(b);
+            assertFalse(rb.readLine().contains(users.get(999).toString()));
+            // по сети help не показывает команды, которые сервер отклонит
+            String help = rb.readLine();
+            assertTrue(help.startsWith("{\"cmd\":\"help\"") && help.contains("stats"), help);
+            assertFalse(help.contains("export") || help.contains("import"), help);
+            assertTrue(rb.readLine().startsWith("{\"cmd\":\"open\",\"code\":\"nope\",\"status\":\"NOT_FOUND\""));
+            assertTrue(rb.readLine().contains("Bye"));
+            assertNull(rb.readLine());
+
+            var stats = server.stats();
+            assertEquals(2L, stats.get("connections"));
+            assertEquals(2008L, stats.get("commands"));
+            assertTrue((long) stats.get("flushes") < 100, stats.toString());
+        }
+    }
+
+    private static void send(Socket s, CharSequence text) throws Exception {
+        OutputStream out = s.getOutputStream();
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static BufferedReader reader(Socket s) throws Exception {
+        return new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    // сервер в отдельной JVM (файловых дескрипторов одного процесса на 10k соединений с обеих сторон не хватает),
+    // клиенты — неблокирующие каналы в одном потоке. Каждое соединение создаёт ссылку и дальше держит в полёте
+    // server.pipeline команд open. -Dserver.connections (по умолчанию 200), -Dserver.seconds (3), -Dserver.pipeline (16)
+    @Test
+    void loadManyConnections() throws Exception {
+        int connections = Integer.getInteger("server.connections", 200);
+        int seconds = Integer.getInteger("server.seconds", 3);
+        int pipeline = Integer.getInteger("server.pipeline", 16);
+        Process p = new ProcessBuilder(
+                System.getProperty("java.home") + "/bin/java", "-Xss256k", "-Xmx2g",
+                "-cp", System.getProperty("java.class.path"), ServerMain.class.getName(), "0", "--jsonl")
+                .redirectErrorStream(true)
+                .start();
+        try {
+            String ready = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8)).readLine();
+            assertNotNull(ready);
+            assertTrue(ready.startsWith("[COMMAND] listening on port "), ready);
+            int port = Integer.parseInt(ready.substring(ready.lastIndexOf(' ') + 1));
+            var r = new LoadClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), connections, pipeline)
+                    .run(Duration.ofSeconds(seconds));
+            System.out.printf("[COMMAND] connections=%d pipeline=%d connect=%d ms commands=%d in %d ms: %.0f commands/s%n",
+                    connections, pipeline, r[0], r[1], r[2], r[1] * 1000.0 / r[2]);
+            assertTrue(r[1] > connections, "commands=" + r[1]);
+        } finally {
+            p.destroy();
+            p.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // отдельная JVM для loadManyConnections: сервер без CliApp и конфигурации, метрики включены для stats
+    public static final class ServerMain {
+        public static void main(String[] args) throws Exception {
+            var service = ShortenerService.builder(new InMemoryLinkRepository(), new CodeGenerator(8), "clck.ru", Duration.ofDays(1))
+                    .metrics(new ServiceMetrics())
+                    .build();
+            var stop = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(stop::countDown));
+            try (var s = CommandServer.start(service, args.length > 1 && args[1].equals("--jsonl") ? Replies.JSONL : Replies.TEXT,
+                    "clck.ru", Integer.parseInt(args[0]))) {
+                // строка готовности: её ждёт loadManyConnections
+                System.out.println("[COMMAND] listening on port " + s.port());
+                stop.await();
+            }
+        }
+    }
+
+    private static final class LoadClient {
+        private static final int RAMP = 128;
+
+        private static final class Conn {
+            final SocketChannel ch;
+            final int n;
+            ByteBuffer out;
+            final ByteBuffer in = ByteBuffer.allocate(4096);
+            final StringBuilder first = new StringBuilder();
+            byte[] batch;
+            int pending;
+
+            Conn(SocketChannel ch, int n) {
+                this.ch = ch;
+                this.n = n;
+            }
+        }
+
+        private final InetSocketAddress addr;
+        private final int connections;
+        private final int pipeline;
+
+        LoadClient(InetSocketAddress addr, int connections, int pipeline) {
+            this.addr = addr;
+            this.connections = connections;
+            this.pipeline = pipeline;
+        }
+
+        // {мс до готовности всех соединений, ответов за окно замера, длительность окна в мс}
+        long[] run(Duration window) throws Exception {
+            List<Conn> conns = new ArrayList<>(connections);
+            long t0 = System.nanoTime();
+            try (Selector sel = Selector.open()) {
+                int ready = 0;
+                long start = 0, end = Long.MAX_VALUE, counted = 0;
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+                while (System.nanoTime() < end) {
+                    assertTrue(System.nanoTime() < deadline, "connections ready: " + ready);
+                    // подключение волнами: разом 10k SYN переполняют очередь accept, и ядро сбрасывает соединения
+                    while (conns.size() < connections && conns.size() - ready < RAMP) {
+                        SocketChannel ch = SocketChannel.open();
+                        ch.configureBlocking(false);
+                        ch.connect(addr);
+                        Conn c = new Conn(ch, conns.size());
+                        conns.add(c);
+                        ch.register(sel, SelectionKey.OP_CONNECT, c);
+                    }
+                    sel.select(100);
+                    for (var it = sel.selectedKeys().iterator(); it.hasNext(); ) {
+                        SelectionKey k = it.next();
+                        it.remove();
+                        Conn c = (Conn) k.attachment();
+                        if (k.isConnectable()) {
+                            c.ch.finishConnect();
+                            write(k, c, ("create \"https://example.com/load/" + c.n + "\" 2147483647\n").getBytes(StandardCharsets.UTF_8));
+                            continue;
+                        }
+                        if (k.isWritable()) flush(k, c);
+                        if (!k.isReadable()) continue;
+                        c.in.clear();
+                        int read = c.ch.read(c.in);
+                        assertTrue(read >= 0, "server closed connection");
+                        for (int i = 0; i < read; i++) {
+                            byte b = c.in.get(i);
+                            if (c.batch == null) {
+                                if (b != '\n') {
+                                    c.first.append((char) b);
+                                    continue;
+                                }
+                                String line = c.first.toString();
+                                int at = line.indexOf("\"code\":\"");
+                                assertTrue(at > 0, line);
+                                String code = line.substring(at + 8, line.indexOf('"', at + 8));
+                                c.batch = ("open " + code + "\n").repeat(pipeline).getBytes(StandardCharsets.UTF_8);
+                                // open начинаются, когда готовы все: иначе ранние соединения отнимают ядро у подключения остальных
+                                if (++ready == connections) {
+                                    for (Conn o : conns) {
+                                        o.pending = pipeline;
+                                        write(o.ch.keyFor(sel), o, o.batch);
+                                    }
+                                    start = System.nanoTime();
+                                    end = start + window.toNanos();
+                                }
+                            } else if (b == '\n') {
+                                c.pending--;
+                                if (start != 0) counted++;
+                            }
+                        }
+                        if (start != 0 && c.pending == 0) {
+                            c.pending = pipeline;
+                            write(k, c, c.batch);
+                        }
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                return new long[]{TimeUnit.NANOSECONDS.toMillis(start - t0), counted, TimeUnit.NANOSECONDS.toMillis(elapsed)};
+            } finally {
+                for (Conn c : conns) c.ch.close();
+            }
+        }
+
+        private static void write(SelectionKey k, Conn c, byte[] bytes) throws Exception {
+            c.out = ByteBuffer.wrap(bytes);
+            flush(k, c);
+        }
+
+        private static void flush(SelectionKey k, Conn c) throws Exception {
+            c.ch.write(c.out);
+            k.interestOps(c.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.CompactLinkRepository;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.infra.LinkRepository.OwnerCursor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactLinkRepositoryTest {
+
+    private static ShortLink link(String code, UUID owner, Instant createdAt, Instant expiresAt) {
+        return new ShortLink(code, owner, "https://example.com/" + code, createdAt, expiresAt, 5);
+    }
+
+    @Test
+    void serviceWorksOnCompactStore() {
+        var repo = new CompactLinkRepository(16);
+        var s = new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+        String a = s.create(u, "https://example.com/путь?q=1#x", 2).code();
+        String b = s.create(u, "https://example.com", 5).code();
+        String c = s.create(UUID.randomUUID(), "http://localhost:8080/b", 5).code();
+
+        assertEquals(LinkStatus.ACTIVE, s.open(a).status());
+        assertEquals(LinkStatus.ACTIVE, s.open(a).status());
+        assertEquals(LinkStatus.LIMIT_EXHAUSTED, s.open(a).status());
+        assertEquals(LinkStatus.ACTIVE, s.updateLimit(u, b, 9).status());
+        assertEquals(9, repo.get(b).maxClicks());
+        assertEquals(2, repo.get(a).clicks());
+        assertEquals("https://example.com/путь?q=1#x", repo.get(a).originalUrl);
+        assertEquals("https://example.com", repo.get(b).originalUrl);
+        assertEquals("http://localhost:8080/b", repo.get(c).originalUrl);
+        assertEquals(u, repo.get(a).ownerId);
+
+        assertEquals(2, s.list(u).size());
+        assertEquals(2, repo.countByOwner(u));
+        assertEquals(LinkStatus.ACTIVE, s.delete(u, a).status());
+        assertEquals(LinkStatus.NOT_FOUND, s.open(a).status());
+        assertEquals(1, repo.countByOwner(u));
+        assertEquals(2, repo.size());
+    }
+
+    @Test
+    void ownerOrderPagingDeleteAndSlotReuse() {
+        var repo = new CompactLinkRepository(16);
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        for (int i = 0; i < 100; i++) repo.save(link("c" + i, u, t.plusSeconds(i / 3), t.plusSeconds(600)));
+        repo.save(link("x", UUID.randomUUID(), t, t.plusSeconds(600)));
+
+        List<ShortLink> all = repo.listByOwner(u);
+        assertEquals(100, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(OwnerCursor.of(all.get(i - 1)).compareTo(OwnerCursor.of(all.get(i))) < 0);
+        }
+
+        List<String> paged = new ArrayList<>();
+        OwnerCursor c = null;
+        for (List<ShortLink> p; !(p = repo.listByOwner(u, c, 7)).isEmpty(); c = OwnerCursor.of(p.get(p.size() - 1))) {
+            p.forEach(l -> paged.add(l.code));
+        }
+        assertEquals(all.stream().map(l -> l.code).toList(), paged);
+
+        for (int i = 0; i < 50; i++) assertTrue(repo.delete("c" + i));
+        for (int i = 0; i < 50; i++) repo.save(link("d" + i, u, t, t.plusSeconds(600)));
+        assertEquals(101, repo.size());
+        assertEquals(100, repo.countByOwner(u));
+        assertNull(repo.get("c0"));
+        assertEquals("https://example.com/d49", repo.get("d49").originalUrl);
+        assertFalse(repo.delete("c0"));
+        assertNull(repo.get("code-longer-than-16"));
+    }
+
+    // клик по удалённой ссылке не должен попасть в ссылку, которой достался её слот
+    @Test
+    void clicksNeverLandOnLinkThatReusedTheSlot() throws Exception {
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        var repo = new CompactLinkRepository(16);
+        var victim = new ShortLink("victim", u, "https://example.com/v", t, t.plusSeconds(600), Integer.MAX_VALUE);
+        repo.save(victim);
+        var stop = new AtomicBoolean();
+        List<Thread> clickers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread th = new Thread(() -> {
+                while (!stop.get()) repo.tryClick(victim);
+            });
+            th.start();
+            clickers.add(th);
+        }
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                repo.delete("victim");
+                String code = "r" + i;
+                repo.save(new ShortLink(code, u, "https://example.com/r", t, t.plusSeconds(600), Integer.MAX_VALUE));
+                assertEquals(0, repo.get(code).clicks(), code);
+                repo.delete(code);
+                repo.save(victim);
+            }
+        } finally {
+            stop.set(true);
+            for (Thread th : clickers) th.join();
+        }
+    }
+
+    @Test
+    void drainExpiredRemovesOnlyDueLinks() {
+        var repo = new CompactLinkRepository(16);
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        for (int i = 0; i < 10; i++) repo.save(link("c" + i, u, t, t.plusSeconds(10 + i)));
+        assertEquals(t.plusSeconds(10), repo.nextExpiry());
+        assertEquals(3, repo.drainExpired(t.plusSeconds(15), 3));
+        assertEquals(3, repo.deleteExpired(t.plusSeconds(15)));
+        assertEquals(4, repo.size());
+        assertFalse(repo.exists("c5"));
+        assertTrue(repo.exists("c6"));
+        assertEquals(4, repo.countByOwner(u));
+    }
+
+    // срок хранится секундами: дробная часть округляется вверх, и ссылка не уходит раньше срока
+    @Test
+    void subSecondExpiryIsNeverDrainedEarly() {
+        var repo = new CompactLinkRepository(16);
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        Instant deadline = t.plusMillis(500);
+        repo.save(link("half", u, t, deadline));
+
+        assertFalse(repo.get("half").expiresAt.isBefore(deadline));
+        assertFalse(repo.get("half").expired(deadline.minusMillis(1)));
+        assertEquals(0, repo.drainExpired(t.plusMillis(100), 16));
+        assertEquals(0, repo.drainExpired(deadline.minusMillis(1), 16));
+        assertTrue(repo.exists("half"));
+        assertEquals(1, repo.drainExpired(t.plusSeconds(1), 16));
+    }
+
+    @Test
+    void urlArenaIsReusedAfterExpiry() {
+        var repo = new CompactLinkRepository(16);
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        String longPath = "p".repeat(4000);
+        for (int round = 0; round < 3; round++) {
+            List<ShortLink> batch = new ArrayList<>();
+            for (int i = 0; i < 600; i++) {
+                batch.add(new ShortLink("r" + round + "c" + i, u, "https://h" + i % 7 + ".example.com/" + i + "/" + longPath,
+                        t, t.plusSeconds(60L * (round + 1)), 5));
+            }
+            repo.saveAll(batch);
+            repo.save(link("keep" + round, u, t, t.plusSeconds(100_000)));
+            for (int i = 0; i < 600; i += 37) {
+                assertEquals("https://h" + i % 7 + ".example.com/" + i + "/" + longPath, repo.get("r" + round + "c" + i).originalUrl);
+            }
+            assertEquals(600, repo.deleteExpired(t.plusSeconds(60L * (round + 1))));
+        }
+        assertEquals(3, repo.size());
+        for (int round = 0; round < 3; round++) assertEquals("https://example.com/keep" + round, repo.get("keep" + round).originalUrl);
+    }
+
+    // байты кучи на ссылку после полной сборки, как у JOL GraphLayout.totalSize: -Dfootprint.links
+    // (по умолчанию 1000000; 10000000 — с -DargLine=-Xmx4g). Обычное хранилище меряется
+    // не больше чем на 1M ссылок: расход на ссылку у него линейный, а 10M объектов не влезают в память стенда
+    @Test
+    void compactStoreUsesAtLeastThreeTimesLessHeapPerLink() {
+        int links = Integer.getInteger("footprint.links", 1_000_000);
+        double memory = bytesPerLink(new InMemoryLinkRepository(), Math.min(links, 1_000_000));
+        double compact = bytesPerLink(new CompactLinkRepository(), links);
+        System.out.printf("[FOOTPRINT] links=%d memory=%.0f B/link compact=%.0f B/link ratio=%.1f%n",
+                links, memory, compact, memory / compact);
+        assertTrue(memory / compact >= 3, "memory=" + memory + " compact=" + compact);
+    }
+
+    // 10k владельцев, 200 хостов; у каждой ссылки свои UUID, Instant и строки — как после чтения из журнала
+    private static double bytesPerLink(LinkRepository repo, int links) {
+        long before = usedHeap();
+        Instant base = Instant.parse("2030-01-01T00:00:00Z");
+        List<ShortLink> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < links; i++) {
+            String code = Long.toString(78_364_164_096L + i, 36);
+            UUID owner = new UUID(0x5EED, i % 10_000);
+            String url = "https://h" + i % 200 + ".example.com/articles/" + i + "?utm_source=newsletter";
+            Instant created = Instant.ofEpochSecond(base.getEpochSecond() + i / 1000);
+            batch.add(new ShortLink(code, owner, url, created, Instant.ofEpochSecond(created.getEpochSecond() + 86_400), 100));
+            if (batch.size() == 10_000 || i == links - 1) {
+                repo.saveAll(batch);
+                batch.clear();
+            }
+        }
+        batch = null;
+        long after = usedHeap();
+        assertEquals(links, repo.size());
+        return (double) (after - before) / links;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.ExpiryCleanup;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.ServiceMetrics;
+import com.example.shortener.infra.VirtualClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiryCleanupTest {
+
+    // число ссылок, истекающих одновременно: -Dexpiry.links (по умолчанию 200000; 10000000 — нужен -Xmx8g)
+    @Test
+    void massExpiryIsRemovedInBoundedSlices() throws Exception {
+        int links = Integer.getInteger("expiry.links", 200_000);
+        var repo = new InMemoryLinkRepository();
+        var s = new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofDays(1));
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusMillis(500);
+        UUID u = UUID.randomUUID();
+        List<ShortLink> batch = new ArrayList<>(100_000);
+        for (int i = 0; i < links; i++) {
+            batch.add(new ShortLink(Integer.toString(i, 36), u, "https://example.com/" + i, now, expiresAt, 1));
+            if (batch.size() == 100_000 || i == links - 1) {
+                repo.saveAll(batch);
+                batch.clear();
+            }
+        }
+        String keep = s.create(u, "https://example.com/keep", 1).code();
+
+        try (var cleanup = new ExpiryCleanup(s, Duration.ofSeconds(60), Duration.ofMillis(2))) {
+            long deadline = System.nanoTime() + Duration.ofMinutes(5).toNanos();
+            while (repo.size() > 1 && System.nanoTime() < deadline) Thread.sleep(20);
+            assertEquals(1, repo.size());
+            assertNotNull(repo.get(keep));
+
+            var st = cleanup.stats();
+            System.out.printf("[EXPIRY] links=%d slices=%d p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                    links, st.slices(), st.p50SliceNanos() / 1e6, st.p99SliceNanos() / 1e6, st.maxSliceNanos() / 1e6);
+            assertEquals(links, st.removed());
+            assertTrue(st.slices() >= links / 100_000, "slices=" + st.slices());
+            // бюджет порции 2 мс плюс один CHUNK. Проверяется медиана: паузы GC и планировщика на общей машине
+            // задевают отдельные порции, а p99 по реальному времени меряет ExpiryCleanupBenchmark
+            assertTrue(st.p50SliceNanos() < Duration.ofMillis(25).toNanos(), st.toString());
+        }
+    }
+
+    @Test
+    void wakesUpWhenNextLinkIsDue() throws Exception {
+        var repo = new InMemoryLinkRepository();
+        var s = new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofMillis(300));
+        s.create(UUID.randomUUID(), "https://example.com/a", 1);
+
+        try (var cleanup = new ExpiryCleanup(s, Duration.ofSeconds(60))) {
+            long t0 = System.nanoTime();
+            while (repo.size() > 0 && System.nanoTime() - t0 < Duration.ofSeconds(5).toNanos()) Thread.sleep(5);
+            assertEquals(0, repo.size());
+            // без адаптивного планирования ссылка ждала бы следующего прохода (60 с)
+            assertTrue(System.nanoTime() - t0 < Duration.ofSeconds(2).toNanos());
+            assertEquals(1, cleanup.stats().removed());
+        }
+    }
+
+    // симуляция: -Dsim.links ссылок (по умолчанию 200000; 5000000 — нужен -Xmx4g) со сроками в пределах -Dsim.days суток
+    // (по умолчанию 7): половина истекает вразброс, половина — пачками в начале часа, как после рассылок.
+    // Очистка без фонового потока, часы проматываются на паузу, которую вернул проход. Сроки от seed
+    // фиксированы, поэтому после каждого полного прохода в хранилище ровно те ссылки, чей срок не наступил
+    @Test
+    void simulatedDaysOfExpiry() {
+        int links = Integer.getInteger("sim.links", 200_000);
+        int days = Integer.getInteger("sim.days", 7);
+        long hour = Duration.ofHours(1).toMillis();
+        long span = Duration.ofDays(days).toMillis();
+        var clock = new VirtualClock(Instant.parse("2026-01-01T00:00:00Z"));
+        long start = clock.millis();
+        var repo = new InMemoryLinkRepository();
+        var s = ShortenerService.builder(repo, new CodeGenerator(8), "clck.ru", Duration.ofDays(days))
+                .metrics(new ServiceMetrics())
+                .clock(clock)
+                .build();
+
+        var rnd = new Random(42);
+        UUID[] owners = new UUID[1000];
+        for (int i = 0; i < owners.length; i++) owners[i] = new UUID(rnd.nextLong(), rnd.nextLong());
+        Instant created = clock.now();
+        long[] expiries = new long[links];
+        List<ShortLink> batch = new ArrayList<>(100_000);
+        for (int i = 0; i < links; i++) {
+            long at = (i & 1) == 0
+                    ? start + 1 + (long) (rnd.nextDouble() * span)
+                    : start + hour * (1 + rnd.nextInt((int) (span / hour)));
+            expiries[i] = at;
+            batch.add(new ShortLink(Integer.toString(i, 36), owners[i % owners.length], "https://example.com/" + i,
+                    created, Instant.ofEpochMilli(at), 1));
+            if (batch.size() == 100_000 || i == links - 1) {
+                repo.saveAll(batch);
+                batch.clear();
+            }
+        }
+        Arrays.sort(expiries);
+
+        long passes = 0, checks = 0;
+        long t0 = System.nanoTime();
+        try (var cleanup = new ExpiryCleanup(s, Duration.ofSeconds(30), Duration.ofMillis(2), false)) {
+            // последняя пачка истекает ровно в конце периода: идти, пока есть что удалять
+            while (s.nextExpiry() != null) {
+                long pause = cleanup.runOnce();
+                passes++;
+                long now = clock.millis();
+                Instant next = s.nextExpiry();
+                if (next == null || next.toEpochMilli() > now) {
+                    assertEquals(links - expiredBy(expiries, now), repo.size(), "at +" + (now - start) + " ms");
+                    checks++;
+                }
+                clock.advanceMillis(Math.max(1, (pause + 999_999) / 1_000_000));
+            }
+            long wallNanos = System.nanoTime() - t0;
+
+            var st = cleanup.stats();
+            System.out.printf("[SIM] links=%d days=%d passes=%d checks=%d wall=%.0f ms slices=%d p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                    links, days, passes, checks, wallNanos / 1e6, st.slices(), st.p50SliceNanos() / 1e6,
+                    st.p99SliceNanos() / 1e6, st.maxSliceNanos() / 1e6);
+            assertEquals(0, repo.size());
+            assertEquals(links, st.removed());
+            // пробуждение не реже maxIdle (30 с) и к каждому сроку
+            assertTrue(passes >= span / 30_000, "passes=" + passes);
+            assertTrue(st.p50SliceNanos() < Duration.ofMillis(25).toNanos(), st.toString());
+        }
+    }
+
+    // пауза между порциями растёт с нагрузкой: время обслуживания запросов из метрик за прошлый интервал
+    @Test
+    void pauseBetweenSlicesGrowsWithRequestLoad() {
+        var clock = new VirtualClock(Instant.parse("2026-01-01T00:00:00Z"));
+        var repo = new InMemoryLinkRepository();
+        var metrics = new ServiceMetrics();
+        var s = ShortenerService.builder(repo, new CodeGenerator(8), "clck.ru", Duration.ofDays(1))
+                .metrics(metrics)
+                .clock(clock)
+                .build();
+        UUID u = UUID.randomUUID();
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            links.add(new ShortLink("x" + i, u, "https://example.com/" + i, clock.now(), clock.now().plusSeconds(1), 1));
+        }
+        repo.saveAll(links);
+        clock.advance(Duration.ofSeconds(2));
+
+        // нулевой бюджет — ровно одна порция за проход, после каждой ещё есть что удалять
+        try (var cleanup = new ExpiryCleanup(s, Duration.ofSeconds(60), Duration.ZERO, false)) {
+            long idle = cleanup.runOnce();
+            assertTrue(idle >= TimeUnit.MICROSECONDS.toNanos(100), "idle=" + idle);
+
+            // с прошлого прохода запросы заняли минуту реального времени — нагрузка упирается в потолок
+            metrics.recordNanos(ServiceMetrics.Op.OPEN, LinkStatus.ACTIVE, Duration.ofMinutes(1).toNanos());
+            long loaded = cleanup.runOnce();
+            assertTrue(loaded >= 16 * TimeUnit.MICROSECONDS.toNanos(100), "loaded=" + loaded);
+
+            // фоновая очистка сама нагрузкой не считается
+            long busy = metrics.busyNanos();
+            metrics.recordNanos(ServiceMetrics.Op.CLEANUP, LinkStatus.ACTIVE, Duration.ofMinutes(1).toNanos());
+            assertEquals(busy, metrics.busyNanos());
+        }
+    }
+
+    @Test
+    void virtualClockExpiresWithoutSleeping() {
+        var clock = new VirtualClock(Instant.parse("2026-01-01T00:00:00Z"));
+        var repo = new InMemoryLinkRepository();
+        var s = ShortenerService.builder(repo, new CodeGenerator(8), "clck.ru", Duration.ofDays(1))
+                .metrics(new ServiceMetrics())
+                .clock(clock)
+                .build();
+        UUID u = UUID.randomUUID();
+        var first = s.create(u, "https://example.com/a", 5);
+        assertEquals(clock.now().plus(Duration.ofDays(1)), first.expiresAt());
+        clock.advance(Duration.ofHours(12));
+        String second = s.create(u, "https://example.com/b", 5).code();
+
+        try (var cleanup = new ExpiryCleanup(s, Duration.ofDays(1), Duration.ofMillis(2), false)) {
+            // до первого срока 12 ч, плюс окно сбора близких сроков
+            assertEquals(Duration.ofHours(12).plusMillis(10).toNanos(), cleanup.runOnce());
+            clock.advance(Duration.ofHours(12).minusMillis(1));
+            assertEquals(LinkStatus.ACTIVE, s.open(first.code()).status());
+            clock.advanceMillis(1);
+            assertEquals(2, repo.size());
+            cleanup.runOnce();
+            assertEquals(1, repo.size());
+            assertEquals(1, cleanup.stats().removed());
+            assertEquals(LinkStatus.NOT_FOUND, s.open(first.code()).status());
+
+            clock.advance(Duration.ofHours(12));
+            assertEquals(LinkStatus.EXPIRED, s.open(second).status());
+            assertEquals(0, repo.size());
+        }
+    }
+
+    @Test
+    void expiredLinkIsRemovedOnAccessWithoutCleanup() throws Exception {
+        var repo = new InMemoryLinkRepository();
+        var s = new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofMillis(1));
+        String code = s.create(UUID.randomUUID(), "https://example.com/a", 1).code();
+        Thread.sleep(5);
+        assertEquals(LinkStatus.EXPIRED, s.open(code).status());
+        assertEquals(0, repo.size());
+    }
+
+    // сколько сроков из отсортированного массива уже наступило к now
+    private static int expiredBy(long[] sorted, long now) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= now) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkJournal;
+import com.example.shortener.infra.LinkRepository.OwnerCursor;
+import com.example.shortener.infra.VirtualClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryLinkRepositoryTest {
+
+    private static ShortLink link(String code, UUID owner, Instant createdAt, Instant expiresAt) {
+        return new ShortLink(code, owner, "https://example.com/" + code, createdAt, expiresAt, 5);
+    }
+
+    @Test
+    void listByOwnerIsNewestFirst() {
+        var repo = new InMemoryLinkRepository();
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        repo.save(link("a", u, t, t.plusSeconds(60)));
+        repo.save(link("c", u, t.plusSeconds(2), t.plusSeconds(60)));
+        repo.save(link("b", u, t.plusSeconds(1), t.plusSeconds(60)));
+        repo.save(link("x", UUID.randomUUID(), t, t.plusSeconds(60)));
+
+        List<String> codes = repo.listByOwner(u).stream().map(l -> l.code).toList();
+        assertEquals(List.of("c", "b", "a"), codes);
+    }
+
+    @Test
+    void pagesCoverAllLinksWithoutDuplicates() {
+        var repo = new InMemoryLinkRepository();
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        for (int i = 0; i < 25; i++) {
+            // половина ссылок с одинаковым createdAt — проверка порядка по коду
+            repo.save(link("c" + i, u, t.plusSeconds(i / 2), t.plusSeconds(600)));
+        }
+
+        List<ShortLink> all = new ArrayList<>();
+        OwnerCursor cursor = null;
+        while (true) {
+            var page = repo.listByOwner(u, cursor, 10);
+            if (page.isEmpty()) break;
+            all.addAll(page);
+            cursor = OwnerCursor.of(page.get(page.size() - 1));
+        }
+        assertEquals(repo.listByOwner(u), all);
+    }
+
+    @Test
+    void deleteAndExpiryRemoveFromOwnerIndex() {
+        var repo = new InMemoryLinkRepository();
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        repo.save(link("a", u, t, t.plusSeconds(10)));
+        repo.save(link("b", u, t, t.plusSeconds(100)));
+        repo.save(link("c", u, t, t.plusSeconds(100)));
+
+        assertTrue(repo.delete("c"));
+        assertEquals(1, repo.deleteExpired(t.plusSeconds(50)));
+        assertEquals(List.of("b"), repo.listByOwner(u).stream().map(l -> l.code).toList());
+    }
+
+    @Test
+    void urlIndexFollowsDeleteAndExpiry() {
+        var repo = new InMemoryLinkRepository(true);
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        var a = new ShortLink("a", u, "https://example.com/x", t, t.plusSeconds(10), 5);
+        var b = new ShortLink("b", u, "https://example.com/x", t, t.plusSeconds(10), 5);
+
+        assertSame(a, repo.saveIfAbsentByUrl(a, t));
+        assertSame(a, repo.saveIfAbsentByUrl(b, t));
+        assertNull(repo.get("b"));
+
+        repo.delete("a");
+        assertNull(repo.findByUrl(u, "https://example.com/x", t));
+        assertSame(b, repo.saveIfAbsentByUrl(b, t));
+
+        assertEquals(1, repo.drainExpired(t.plusSeconds(10), 10));
+        assertNull(repo.findByUrl(u, "https://example.com/x", t));
+    }
+
+    @Test
+    void drainExpiredStopsAtMaxAndKeepsLiveLinks() {
+        var repo = new InMemoryLinkRepository();
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        for (int i = 0; i < 10; i++) repo.save(link("e" + i, u, t, t.plusSeconds(i + 1)));
+        repo.save(link("live", u, t, t.plusSeconds(600)));
+        Instant now = t.plusSeconds(100);
+
+        assertEquals(3, repo.drainExpired(now, 3));
+        assertEquals(8, repo.size());
+        // удаляются самые ранние
+        assertNull(repo.get("e2"));
+        assertNotNull(repo.get("e3"));
+        assertEquals(t.plusSeconds(4), repo.nextExpiry());
+
+        assertEquals(7, repo.drainExpired(now, 64));
+        assertEquals(0, repo.drainExpired(now, 64));
+        assertEquals(List.of("live"), repo.listByOwner(u).stream().map(l -> l.code).toList());
+        assertEquals(t.plusSeconds(600), repo.nextExpiry());
+    }
+
+    @Test
+    void linksWithEqualExpiryAreAllDrained() {
+        var repo = new InMemoryLinkRepository();
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        Instant at = t.plusSeconds(10);
+        for (int i = 0; i < 100; i++) repo.save(link("c" + i, u, t, at));
+        repo.save(link("later", u, t, at.plusMillis(1)));
+
+        assertEquals(at, repo.nextExpiry());
+        // срок наступил ровно сейчас: ссылка уже истекла
+        assertEquals(40, repo.drainExpired(at, 40));
+        assertEquals(at, repo.nextExpiry());
+        assertEquals(60, repo.drainExpired(at, 1000));
+        assertEquals(1, repo.size());
+        assertEquals(at.plusMillis(1), repo.nextExpiry());
+    }
+
+    @Test
+    void nextExpiryIsNullWhenIndexIsEmpty() {
+        var repo = new InMemoryLinkRepository();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        assertNull(repo.nextExpiry());
+        assertEquals(0, repo.drainExpired(t, 10));
+
+        repo.save(link("a", UUID.randomUUID(), t, t.plusSeconds(1)));
+        assertEquals(1, repo.drainExpired(t.plusSeconds(1), 10));
+        assertNull(repo.nextExpiry());
+    }
+
+    // очистка берёт из индекса старую версию ссылки, а код в это время сохраняется заново:
+    // живая версия не должна удалиться, устаревшая запись индекса — не должна остаться
+    @Test
+    void resavedLinkSurvivesConcurrentDrain() throws Exception {
+        var repo = new InMemoryLinkRepository();
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        Instant now = t.plusSeconds(100);
+        var stop = new AtomicBoolean();
+        Thread drainer = new Thread(() -> {
+            while (!stop.get()) repo.drainExpired(now, 64);
+        });
+        drainer.start();
+        ShortLink live = null;
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                repo.save(link("a", u, t, t.plusMillis(i)));
+                live = link("a", u, t, now.plusSeconds(1 + i % 7));
+                repo.save(live);
+                assertSame(live, repo.get("a"));
+            }
+        } finally {
+            stop.set(true);
+            drainer.join();
+        }
+        assertEquals(0, repo.drainExpired(now, 64));
+        assertSame(live, repo.get("a"));
+        assertEquals(1, repo.size());
+        assertEquals(List.of(live), repo.listByOwner(u));
+        assertEquals(live.expiresAt, repo.nextExpiry());
+        assertEquals(1, repo.drainExpired(live.expiresAt, 64));
+        assertNull(repo.nextExpiry());
+    }
+
+    // list подчищает не больше INLINE_DRAIN (256) истёкших ссылок, но не отдаёт ни одной
+    @Test
+    void serviceListFiltersExpiredBeyondInlineDrain() {
+        var clock = new VirtualClock(Instant.parse("2030-01-01T00:00:00Z"));
+        var repo = new InMemoryLinkRepository();
+        var s = ShortenerService.builder(repo, new CodeGenerator(8), "clck.ru", Duration.ofMinutes(1))
+                .clock(clock)
+                .build();
+        UUID u = UUID.randomUUID();
+        for (int i = 0; i < 300; i++) s.create(u, "https://example.com/old" + i, 5);
+        clock.advance(Duration.ofSeconds(30));
+        String fresh = s.create(u, "https://example.com/fresh", 5).code();
+        clock.advance(Duration.ofSeconds(31));
+
+        assertEquals(List.of(fresh), s.list(u).stream().map(l -> l.code).toList());
+        assertEquals(301 - 256, repo.size());
+        assertEquals(List.of(fresh), s.list(u).stream().map(l -> l.code).toList());
+        assertEquals(1, repo.size());
+    }
+
+    // повтор WAL применяет последнюю запись о лимите. Первая смена задерживается между CAS и записью в журнал,
+    // пока вторая не дойдёт до журнала: без упорядочивания журнал кончится старым лимитом
+    @Test
+    void journalSeesConcurrentLimitChangesInCasOrder() throws Exception {
+        var journaled = new ArrayList<Integer>();
+        var secondJournaled = new CountDownLatch(1);
+        var journal = new LinkJournal() {
+            @Override public long saved(ShortLink link) { return 0; }
+            @Override public long deleted(String code) { return 0; }
+            @Override public long clicked(String code, int clicks) { return 0; }
+
+            @Override
+            public long limitChanged(String code, int maxClicks) {
+                try {
+                    if (maxClicks == 10) secondJournaled.await(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (journaled) {
+                    journaled.add(maxClicks);
+                }
+                if (maxClicks == 20) secondJournaled.countDown();
+                return 0;
+            }
+
+            @Override public void sync(long seq) {}
+        };
+        var repo = new InMemoryLinkRepository();
+        Instant t = Instant.now();
+        var l = link("a", UUID.randomUUID(), t, t.plusSeconds(600));
+        repo.save(l);
+        repo.attachJournal(journal);
+
+        var first = new Thread(() -> repo.trySetMaxClicks(l, 10));
+        first.start();
+        while (l.maxClicks() != 10) Thread.onSpinWait();
+        var second = new Thread(() -> repo.trySetMaxClicks(l, 20));
+        second.start();
+        first.join();
+        second.join();
+
+        assertEquals(20, l.maxClicks());
+        assertEquals(List.of(10, 20), journaled);
+    }
+}
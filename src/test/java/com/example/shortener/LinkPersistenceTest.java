@@ -0,0 +1,147 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.Durability;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkPersistence;
+import com.example.shortener.infra.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LinkPersistenceTest {
+
+    private static LinkPersistence open(Path dir, Durability d, InMemoryLinkRepository repo) throws Exception {
+        return LinkPersistence.open(dir, d, Duration.ofMillis(5), Duration.ofDays(1), repo);
+    }
+
+    private static ShortenerService svc(InMemoryLinkRepository repo) {
+        return new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+    }
+
+    @Test
+    void walReplayRestoresLinksClicksLimitsAndDeletes(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        String kept, deleted;
+
+        var repo = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.SYNC, repo)) {
+            var s = svc(repo);
+            kept = s.create(u, "https://example.com/a", 5).code();
+            deleted = s.create(u, "https://example.com/b", 5).code();
+            s.open(kept);
+            s.open(kept);
+            s.updateLimit(u, kept, 7);
+            s.delete(u, deleted);
+        }
+
+        var repo2 = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.SYNC, repo2)) {
+            assertEquals(1, p.recovery().links());
+            var l = repo2.get(kept);
+            assertEquals(2, l.clicks());
+            assertEquals(7, l.maxClicks());
+            assertEquals("https://example.com/a", l.originalUrl);
+            assertNull(repo2.get(deleted));
+        }
+    }
+
+    @Test
+    void snapshotPlusTailSurvivesRestartAndDropsOldWal(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        String a, b;
+
+        var repo = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.BATCHED, repo)) {
+            var s = svc(repo);
+            a = s.create(u, "https://example.com/a", 3).code();
+            s.open(a);
+            p.snapshot();
+            b = s.create(u, "https://example.com/b", 3).code();
+            s.open(a);
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.filter(f -> f.getFileName().toString().endsWith(".ok")).count());
+        }
+
+        var repo2 = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.BATCHED, repo2)) {
+            assertEquals(2, p.recovery().links());
+            assertEquals(2, repo2.get(a).clicks());
+            assertEquals(LinkStatus.ACTIVE, svc(repo2).open(b).status());
+        }
+    }
+
+    @Test
+    void tornTailIsIgnored(@TempDir Path dir) throws Exception {
+        var repo = new InMemoryLinkRepository();
+        String code;
+        try (var p = open(dir, Durability.SYNC, repo)) {
+            code = svc(repo).create(UUID.randomUUID(), "https://example.com", 3).code();
+        }
+        Files.write(WriteAheadLog.file(dir, 1), new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        var repo2 = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.SYNC, repo2)) {
+            assertNotNull(repo2.get(code));
+        }
+        // хвост отрезан: после старта сегмент 1 уже не последний, но повторный старт проходит
+        var repo3 = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.SYNC, repo3)) {
+            assertNotNull(repo3.get(code));
+        }
+    }
+
+    @Test
+    void corruptionBeforeLastSegmentFailsRecovery(@TempDir Path dir) throws Exception {
+        var repo = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.SYNC, repo)) {
+            var s = svc(repo);
+            s.create(UUID.randomUUID(), "https://example.com/a", 3);
+            s.create(UUID.randomUUID(), "https://example.com/b", 3);
+        }
+        var repo2 = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.SYNC, repo2)) {
+            svc(repo2).create(UUID.randomUUID(), "https://example.com/c", 3);
+        }
+        flipLastByte(WriteAheadLog.file(dir, 1));
+
+        var e = assertThrows(IOException.class, () -> open(dir, Durability.SYNC, new InMemoryLinkRepository()));
+        assertTrue(e.getMessage().contains("after 1 records"), e.getMessage());
+    }
+
+    @Test
+    void corruptSnapshotPartFailsRecovery(@TempDir Path dir) throws Exception {
+        var repo = new InMemoryLinkRepository();
+        try (var p = open(dir, Durability.BATCHED, repo)) {
+            var s = svc(repo);
+            for (int i = 0; i < 100; i++) s.create(UUID.randomUUID(), "https://example.com/" + i, 3);
+            p.snapshot();
+        }
+        Path part;
+        try (var files = Files.list(dir)) {
+            part = files.filter(f -> f.getFileName().toString().endsWith(".bin"))
+                    .filter(f -> f.toFile().length() > 0).findFirst().orElseThrow();
+        }
+        flipLastByte(part);
+
+        var e = assertThrows(IOException.class, () -> open(dir, Durability.BATCHED, new InMemoryLinkRepository()));
+        assertTrue(e.getMessage().contains("corrupt record at offset"), e.getMessage());
+    }
+
+    private static void flipLastByte(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+    }
+}
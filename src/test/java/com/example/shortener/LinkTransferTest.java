@@ -0,0 +1,145 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.CompactLinkRepository;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.ui.CliParser;
+import com.example.shortener.ui.CommandExecutor;
+import com.example.shortener.ui.Replies;
+import com.example.shortener.ui.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LinkTransferTest {
+
+    private static ShortenerService service(LinkRepository repo) {
+        return new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofDays(1));
+    }
+
+    @Test
+    void exportThenImportPreservesCodesOwnersCountersAndExpiry(@TempDir Path dir) throws Exception {
+        var src = new InMemoryLinkRepository();
+        var s = service(src);
+        UUID u = UUID.randomUUID();
+        String a = s.create(u, "https://example.com/путь?q=1&t=2#x", 3).code();
+        s.open(a);
+        s.open(a);
+        for (int i = 0; i < 10_000; i++) s.create(UUID.randomUUID(), "https://example.com/" + i, 5);
+
+        Path file = dir.resolve("links.jsonl");
+        var exported = s.exportLinks(file);
+        assertEquals(10_001, exported.links());
+        assertEquals(Files.size(file), exported.bytes());
+        assertFalse(Files.exists(dir.resolve("links.jsonl.tmp")));
+
+        var dst = new InMemoryLinkRepository();
+        var imported = service(dst).importLinks(file);
+        assertEquals(10_001, imported.links());
+        assertEquals(0, imported.skipped());
+        assertEquals(src.size(), dst.size());
+        src.forEach(l -> {
+            ShortLink c = dst.get(l.code);
+            assertEquals(l.ownerId, c.ownerId);
+            assertEquals(l.originalUrl, c.originalUrl);
+            assertEquals(l.createdAt, c.createdAt);
+            assertEquals(l.expiresAt, c.expiresAt);
+            assertEquals(l.clicks(), c.clicks());
+            assertEquals(l.maxClicks(), c.maxClicks());
+        });
+        assertEquals(2, dst.get(a).clicks());
+        assertEquals(1, dst.listByOwner(u).size());
+    }
+
+    @Test
+    void invalidAndExpiredLinesAreSkippedWithLineNumber(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("in.jsonl");
+        UUID u = UUID.randomUUID();
+        Instant now = Instant.now();
+        Files.write(file, List.of(
+                line("ok1", u, "https://example.com/1", now, now.plusSeconds(600), 0, 5),
+                "{\"code\":\"bad\"}",
+                line("ok2", u, "ftp://example.com/2", now, now.plusSeconds(600), 0, 5),
+                line("ok3", u, "https://example.com/3", now.minusSeconds(600), now.minusSeconds(1), 0, 5),
+                "",
+                line("ok4", u, "https://example.com/4", now, now.plusSeconds(600), 6, 5),
+                "not json",
+                line("ok5", u, "https://example.com/5", now, now.plusSeconds(600), 4, 5),
+                line("ok6", u, "https:\\/\\/example.com\\/6?x=\\u0041", now, now.plusSeconds(600), 0, 5),
+                line("ok7", u, "https://example.com/7", Instant.parse("2030-01-01T10:20:30.5Z"),
+                        Instant.parse("2099-12-31T23:59:59Z"), 0, 5)), StandardCharsets.UTF_8);
+
+        var repo = new CompactLinkRepository(16);
+        var r = service(repo).importLinks(file);
+        assertEquals(4, r.links());
+        assertEquals(5, r.skipped());
+        assertTrue(r.firstError().startsWith("line 2:"), r.firstError());
+        assertEquals(4, repo.get("ok5").clicks());
+        assertNull(repo.get("ok3"));
+        assertEquals("https://example.com/6?x=A", repo.get("ok6").originalUrl);
+        assertEquals(Instant.parse("2030-01-01T10:20:30Z"), repo.get("ok7").createdAt);
+        assertEquals(Instant.parse("2099-12-31T23:59:59Z"), repo.get("ok7").expiresAt);
+    }
+
+    @Test
+    void commandsReportThroughput(@TempDir Path dir) {
+        var s = service(new InMemoryLinkRepository());
+        s.create(UUID.randomUUID(), "https://example.com/a", 5);
+        var exec = new CommandExecutor(s, Replies.JSONL, null);
+        var parser = new CliParser();
+        var out = new StringBuilder();
+        String file = dir.resolve("out.jsonl").toString();
+        assertEquals(CommandExecutor.Outcome.OK, exec.execute(parser.parse("export \"" + file + "\""), new Session(), out));
+        assertEquals(CommandExecutor.Outcome.OK, exec.execute(parser.parse("import \"" + file + "\""), new Session(), out));
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[0].startsWith("{\"cmd\":\"export\",\"links\":1,"), lines[0]);
+        assertTrue(lines[1].startsWith("{\"cmd\":\"import\",\"links\":1,\"skipped\":0,"), lines[1]);
+        assertTrue(lines[1].contains("\"linksPerSecond\":"), lines[1]);
+    }
+
+    // размер файла: -Dtransfer.links (по умолчанию 200000); файл пишется построчно, импорт его целиком не читает
+    @Test
+    void largeFileIsImportedInStreamingBatches(@TempDir Path dir) throws Exception {
+        int links = Integer.getInteger("transfer.links", 200_000);
+        Path file = dir.resolve("big.jsonl");
+        Instant now = Instant.now();
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < links; i++) {
+                w.write(line(Integer.toString(i, 36), new UUID(7, i % 1000), "https://example.com/articles/" + i,
+                        now, now.plusSeconds(3600), i % 3, 10));
+                w.newLine();
+            }
+        }
+        var repo = new InMemoryLinkRepository();
+        var s = service(repo);
+        var imported = s.importLinks(file);
+        var exported = s.exportLinks(dir.resolve("back.jsonl"));
+        System.out.printf("[TRANSFER] links=%d import=%d ms (%.0f links/s, %.1f MB/s) export=%d ms (%.0f links/s)%n",
+                links, imported.millis(), imported.perSecond(), imported.bytes() / 1e3 / Math.max(1, imported.millis()),
+                exported.millis(), exported.perSecond());
+        assertEquals(links, imported.links());
+        assertEquals(links, repo.size());
+        assertEquals(links, exported.links());
+        ShortLink last = repo.get(Integer.toString(links - 1, 36));
+        assertEquals((links - 1) % 3, last.clicks());
+        assertEquals(10, last.maxClicks());
+    }
+
+    private static String line(String code, UUID owner, String url, Instant created, Instant expires, int clicks, int max) {
+        return "{\"code\":\"" + code + "\",\"owner\":\"" + owner + "\",\"url\":\"" + url + "\",\"createdAt\":\"" + created
+                + "\",\"expiresAt\":\"" + expires + "\",\"clicks\":" + clicks + ",\"maxClicks\":" + max + "}";
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.LinkRepository.OwnerCursor;
+import com.example.shortener.infra.MappedLinkRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedLinkRepositoryTest {
+
+    private static ShortLink link(String code, UUID owner, Instant createdAt, Instant expiresAt) {
+        return new ShortLink(code, owner, "https://example.com/" + code, createdAt, expiresAt, 5);
+    }
+
+    @Test
+    void serviceWorksOnMappedStoreAndStateSurvivesReopen(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        String a, b;
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            var s = new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+            a = s.create(u, "https://example.com/путь", 2).code();
+            b = s.create(u, "https://example.com/b", 5).code();
+            assertEquals(LinkStatus.ACTIVE, s.open(a).status());
+            assertEquals(LinkStatus.ACTIVE, s.open(a).status());
+            assertEquals(LinkStatus.LIMIT_EXHAUSTED, s.open(a).status());
+            assertEquals(LinkStatus.ACTIVE, s.updateLimit(u, b, 9).status());
+        }
+
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            assertEquals(2, repo.size());
+            assertEquals(2, repo.get(a).clicks());
+            assertEquals("https://example.com/путь", repo.get(a).originalUrl);
+            assertEquals(9, repo.get(b).maxClicks());
+            assertEquals(2, repo.listByOwner(u).size());
+        }
+    }
+
+    @Test
+    void ownerOrderPagingDeleteAndSlotReuse(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            for (int i = 0; i < 100; i++) repo.save(link("c" + i, u, t.plusSeconds(i / 3), t.plusSeconds(600)));
+            repo.save(link("x", UUID.randomUUID(), t, t.plusSeconds(600)));
+
+            List<ShortLink> all = repo.listByOwner(u);
+            assertEquals(100, all.size());
+            for (int i = 1; i < all.size(); i++) {
+                assertTrue(OwnerCursor.of(all.get(i - 1)).compareTo(OwnerCursor.of(all.get(i))) < 0);
+            }
+
+            List<String> paged = new ArrayList<>();
+            OwnerCursor c = null;
+            for (List<ShortLink> p; !(p = repo.listByOwner(u, c, 7)).isEmpty(); c = OwnerCursor.of(p.get(p.size() - 1))) {
+                p.forEach(l -> paged.add(l.code));
+            }
+            assertEquals(all.stream().map(l -> l.code).toList(), paged);
+
+            for (int i = 0; i < 50; i++) assertTrue(repo.delete("c" + i));
+            for (int i = 0; i < 50; i++) repo.save(link("d" + i, u, t, t.plusSeconds(600)));
+            assertEquals(101, repo.size());
+            assertNull(repo.get("c0"));
+            assertNotNull(repo.get("d49"));
+        }
+    }
+
+    // клик по удалённой ссылке не должен попасть в ссылку, которой достался её слот
+    @Test
+    void clicksNeverLandOnLinkThatReusedTheSlot(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            var victim = new ShortLink("victim", u, "https://example.com/v", t, t.plusSeconds(600), Integer.MAX_VALUE);
+            repo.save(victim);
+            var stop = new AtomicBoolean();
+            List<Thread> clickers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                Thread th = new Thread(() -> {
+                    while (!stop.get()) repo.tryClick(victim);
+                });
+                th.start();
+                clickers.add(th);
+            }
+            try {
+                for (int i = 0; i < 20_000; i++) {
+                    repo.delete("victim");
+                    String code = "r" + i;
+                    repo.save(new ShortLink(code, u, "https://example.com/r", t, t.plusSeconds(600), Integer.MAX_VALUE));
+                    assertEquals(0, repo.get(code).clicks(), code);
+                    repo.delete(code);
+                    repo.save(victim);
+                }
+            } finally {
+                stop.set(true);
+                for (Thread th : clickers) th.join();
+            }
+        }
+    }
+
+    // срок хранится секундами: дробная часть округляется вверх, и ссылка не уходит раньше срока
+    @Test
+    void subSecondExpiryIsNeverDrainedEarly(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        Instant deadline = t.plusMillis(500);
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            repo.save(new ShortLink("half", u, "https://example.com/h", t, deadline, 5));
+            assertFalse(repo.get("half").expiresAt.isBefore(deadline));
+            assertEquals(0, repo.drainExpired(t.plusMillis(100), 16));
+            assertEquals(0, repo.drainExpired(deadline.minusMillis(1), 16));
+            assertTrue(repo.exists("half"));
+        }
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            assertEquals(0, repo.drainExpired(deadline.minusMillis(1), 16));
+            assertEquals(1, repo.drainExpired(t.plusSeconds(1), 16));
+        }
+    }
+
+    // индекс — int на ячейку в одном буфере: ёмкость, при которой его размер в байтах не влез бы в int, отклоняется
+    @Test
+    void oversizedCapacityIsRejectedBeforeOpeningFiles(@TempDir Path dir) {
+        var e = assertThrows(IllegalArgumentException.class, () -> MappedLinkRepository.open(dir.resolve("big"), 1 << 28));
+        assertTrue(e.getMessage().contains("capacity too large"), e.getMessage());
+        assertFalse(Files.exists(dir.resolve("big")));
+    }
+
+    @Test
+    void drainExpiredRemovesOnlyDueLinks(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            for (int i = 0; i < 10; i++) repo.save(link("c" + i, u, t, t.plusSeconds(10 + i)));
+            assertEquals(t.plusSeconds(10), repo.nextExpiry());
+            assertEquals(3, repo.drainExpired(t.plusSeconds(15), 3));
+            assertEquals(3, repo.deleteExpired(t.plusSeconds(15)));
+            assertEquals(4, repo.size());
+            assertFalse(repo.exists("c5"));
+            assertTrue(repo.exists("c6"));
+        }
+    }
+
+    @Test
+    void saveAllSpansUrlChunksAndSurvivesReopen(@TempDir Path dir) throws Exception {
+        UUID u = UUID.randomUUID();
+        Instant t = Instant.parse("2030-01-01T00:00:00Z");
+        String longPath = "p".repeat(4000);
+        List<ShortLink> batch = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            batch.add(new ShortLink("c" + i, u, "https://example.com/" + i + "/" + longPath, t, t.plusSeconds(600), 5));
+        }
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            repo.saveAll(batch);
+            repo.save(link("tail", u, t, t.plusSeconds(600)));
+        }
+        try (var repo = MappedLinkRepository.open(dir, 16)) {
+            assertEquals(601, repo.size());
+            for (int i = 0; i < 600; i += 37) {
+                assertEquals("https://example.com/" + i + "/" + longPath, repo.get("c" + i).originalUrl);
+            }
+            assertEquals("https://example.com/tail", repo.get("tail").originalUrl);
+        }
+    }
+}
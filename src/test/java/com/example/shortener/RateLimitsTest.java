@@ -0,0 +1,236 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.LimitExceededException;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LinkRepository;
+import com.example.shortener.infra.RateLimits;
+import com.example.shortener.infra.ServiceMetrics;
+import com.example.shortener.infra.TokenBucketLimiter;
+import com.example.shortener.ui.RedirectServer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitsTest {
+
+    private static ShortenerService svc(RateLimits limits) {
+        return ShortenerService.builder(new InMemoryLinkRepository(), new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60))
+                .metrics(new ServiceMetrics())
+                .limits(limits)
+                .build();
+    }
+
+    @Test
+    void bucketAllowsBurstThenRefillsAtRate() {
+        var l = new TokenBucketLimiter<String>(10, 5);
+        long t = 1_000;
+        assertEquals(5, l.acquire("k", 10, t));
+        assertEquals(0, l.acquire("k", 1, t));
+        assertEquals(0, l.acquire("k", 1, t + 50));
+        assertEquals(1, l.acquire("k", 1, t + 100));
+        // дробное накопление при отказах не теряется
+        assertEquals(0, l.acquire("k", 1, t + 150));
+        assertEquals(1, l.acquire("k", 1, t + 200));
+        assertEquals(5, l.acquire("k", 10, t + 100_000));
+        assertEquals(5, l.acquire("other", 5, t));
+    }
+
+    @Test
+    void idleBucketsAreEvicted() {
+        var l = new TokenBucketLimiter<Integer>(100, 10);
+        for (int i = 0; i < 1000; i++) l.acquire(i, 1, 0);
+        assertEquals(1000, l.size());
+        assertEquals(0, l.evictIdle(5));
+        assertEquals(1000, l.evictIdle(10));
+        assertEquals(0, l.size());
+    }
+
+    @Test
+    void concurrentAcquireNeverExceedsBurst() throws Exception {
+        var l = new TokenBucketLimiter<String>(0.001, 1000);
+        AtomicInteger granted = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread th = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) granted.addAndGet(l.acquire("hot", 1, 0));
+            });
+            th.start();
+            threads.add(th);
+        }
+        start.countDown();
+        for (Thread t : threads) t.join();
+        assertEquals(1000, granted.get());
+    }
+
+    @Test
+    void openIsRateLimitedPerCode() {
+        var s = svc(new RateLimits(0, 0, 0.001, 2, 0));
+        UUID u = UUID.randomUUID();
+        String a = s.create(u, "https://example.com/a", 100).code();
+        String b = s.create(u, "https://example.com/b", 100).code();
+
+        assertEquals(LinkStatus.ACTIVE, s.open(a).status());
+        assertEquals(LinkStatus.ACTIVE, s.open(a).status());
+        var limited = s.open(a);
+        assertEquals(LinkStatus.RATE_LIMITED, limited.status());
+        assertEquals(2, limited.clicks());
+        assertEquals(LinkStatus.ACTIVE, s.open(b).status());
+        assertEquals(LinkStatus.NOT_FOUND, s.open("missing").status());
+        assertEquals(429, RedirectServer.httpStatus(LinkStatus.RATE_LIMITED));
+    }
+
+    @Test
+    void createIsRateLimitedPerOwner() {
+        var s = svc(new RateLimits(0.001, 3, 0, 0, 0));
+        UUID u = UUID.randomUUID();
+        for (int i = 0; i < 3; i++) s.create(u, "https://example.com/" + i, 1);
+        var e = assertThrows(LimitExceededException.class, () -> s.create(u, "https://example.com/x", 1));
+        assertEquals(LinkStatus.RATE_LIMITED, e.status());
+        assertNotNull(s.create(UUID.randomUUID(), "https://example.com/x", 1));
+
+        var items = s.createAll(UUID.randomUUID(), List.of("https://a.com", "bad", "https://b.com", "https://c.com", "https://d.com"), 1);
+        assertTrue(items.get(0).ok());
+        assertFalse(items.get(1).ok());
+        assertTrue(items.get(2).ok() && items.get(3).ok());
+        assertEquals("Too many creates, retry later", items.get(4).error());
+
+        var create = s.metrics().snapshot().ops().get(ServiceMetrics.Op.CREATE.ordinal());
+        assertEquals(1, create.byStatus()[LinkStatus.RATE_LIMITED.ordinal()]);
+    }
+
+    // повторы URL в пачке и уже сохранённые URL ничего не создают и не тратят токены
+    @Test
+    void idempotentRepeatsDoNotSpendCreateTokens() {
+        var s = ShortenerService.builder(new InMemoryLinkRepository(true), new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60))
+                .idempotentCreate(true)
+                .metrics(new ServiceMetrics())
+                .limits(new RateLimits(0.001, 4, 0, 0, 0))
+                .build();
+        UUID u = UUID.randomUUID();
+        String a = s.create(u, "https://a.com", 1).code();
+        assertEquals(a, s.create(u, "https://a.com", 1).code());
+
+        var items = s.createAll(u, List.of("https://a.com", "https://b.com", "https://a.com", "https://b.com", "https://c.com"), 1);
+        assertTrue(items.stream().allMatch(ShortenerService.CreateItem::ok), items.toString());
+        assertEquals(a, items.get(0).result().code());
+        assertEquals(items.get(1).result().code(), items.get(3).result().code());
+        // 4 токена: a, b, c — осталось на одну новую ссылку
+        assertNotNull(s.create(u, "https://d.com", 1));
+        var e = assertThrows(LimitExceededException.class, () -> s.create(u, "https://e.com", 1));
+        assertEquals(LinkStatus.RATE_LIMITED, e.status());
+
+        var batch = s.createAll(u, List.of("https://a.com", "https://f.com"), 1);
+        assertTrue(batch.get(0).ok());
+        assertEquals("Too many creates, retry later", batch.get(1).error());
+        var createAll = s.metrics().snapshot().ops().get(ServiceMetrics.Op.CREATE_ALL.ordinal());
+        assertEquals(1, createAll.byStatus()[LinkStatus.ACTIVE.ordinal()]);
+        assertEquals(1, createAll.byStatus()[LinkStatus.RATE_LIMITED.ordinal()]);
+    }
+
+    @Test
+    void ownerQuotaCountsLiveLinksAndFreesOnDelete() {
+        var s = svc(new RateLimits(0, 0, 0, 0, 2));
+        UUID u = UUID.randomUUID();
+        String a = s.create(u, "https://example.com/a", 1).code();
+        s.create(u, "https://example.com/b", 1);
+        var e = assertThrows(LimitExceededException.class, () -> s.create(u, "https://example.com/c", 1));
+        assertEquals(LinkStatus.QUOTA_EXCEEDED, e.status());
+
+        assertEquals(LinkStatus.ACTIVE, s.delete(u, a).status());
+        assertNotNull(s.create(u, "https://example.com/c", 1));
+
+        UUID v = UUID.randomUUID();
+        var items = s.createAll(v, List.of("https://x.com", "https://y.com", "https://z.com"), 1);
+        assertTrue(items.get(0).ok() && items.get(1).ok());
+        assertEquals("Link quota exceeded", items.get(2).error());
+    }
+
+    // вставка медленная, поэтому без резерва квоты потоки успевают проверить countByOwner до чужих вставок
+    @Test
+    void concurrentCreatesNeverExceedOwnerQuota() throws Exception {
+        var store = new InMemoryLinkRepository();
+        var slow = (LinkRepository) Proxy.newProxyInstance(LinkRepository.class.getClassLoader(),
+                new Class<?>[]{LinkRepository.class}, (proxy, m, args) -> {
+                    if (m.getName().startsWith("save")) Thread.sleep(2);
+                    try {
+                        return m.invoke(store, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        var s = ShortenerService.builder(slow, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60))
+                .limits(new RateLimits(0, 0, 0, 0, 10))
+                .build();
+        UUID u = UUID.randomUUID();
+        var start = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            int id = t;
+            Thread th = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 10; i++) {
+                        if (id % 2 == 0) {
+                            try {
+                                s.create(u, "https://example.com/" + id + "/" + i, 1);
+                                created.incrementAndGet();
+                            } catch (LimitExceededException e) {
+                                assertEquals(LinkStatus.QUOTA_EXCEEDED, e.status());
+                            }
+                        } else {
+                            var urls = List.of("https://a.com/" + id + "/" + i, "https://b.com/" + id + "/" + i,
+                                    "https://c.com/" + id + "/" + i);
+                            for (var item : s.createAll(u, urls, 1)) if (item.ok()) created.incrementAndGet();
+                        }
+                        assertTrue(store.countByOwner(u) <= 10, "count=" + store.countByOwner(u));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            th.start();
+            threads.add(th);
+        }
+        start.countDown();
+        for (Thread th : threads) th.join();
+
+        assertEquals(created.get(), store.countByOwner(u));
+        assertTrue(store.countByOwner(u) <= 10, "count=" + store.countByOwner(u));
+        assertTrue(store.countByOwner(u) > 0);
+    }
+
+    @Test
+    void inMemoryOwnerCountFollowsSavesAndDeletes() {
+        var repo = new InMemoryLinkRepository();
+        var s = new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) codes.add(s.create(u, "https://example.com/" + i, 1).code());
+        s.createAll(u, List.of("https://example.com/x", "https://example.com/y"), 1);
+        assertEquals(12, repo.countByOwner(u));
+        repo.save(repo.get(codes.get(0)));
+        assertEquals(12, repo.countByOwner(u));
+        for (int i = 0; i < 4; i++) s.delete(u, codes.get(i));
+        assertEquals(8, repo.countByOwner(u));
+        assertEquals(0, repo.countByOwner(UUID.randomUUID()));
+    }
+}
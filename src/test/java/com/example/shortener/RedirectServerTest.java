@@ -0,0 +1,145 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.ui.RedirectServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedirectServerTest {
+    // как в CliApp.serve: без TCP_NODELAY нагрузочный тест мерил бы delayed ACK
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static ShortenerService svc(Duration ttl) {
+        return new ShortenerService(new InMemoryLinkRepository(), new CodeGenerator(8), "clck.ru", ttl);
+    }
+
+    private static HttpClient client() {
+        return HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    }
+
+    private static HttpResponse<String> get(HttpClient c, int port, String path) throws Exception {
+        var req = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+        return c.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void redirectsAndMapsStatuses() throws Exception {
+        var s = svc(Duration.ofSeconds(60));
+        var c = s.create(UUID.randomUUID(), "https://example.com/a", 1);
+        var http = client();
+
+        try (var server = RedirectServer.start(s, 0)) {
+            var ok = get(http, server.port(), "/" + c.code());
+            assertEquals(302, ok.statusCode());
+            assertEquals("https://example.com/a", ok.headers().firstValue("Location").orElseThrow());
+
+            assertEquals(429, get(http, server.port(), "/" + c.code()).statusCode());
+            assertEquals(404, get(http, server.port(), "/NO_SUCH_CODE").statusCode());
+            assertEquals(404, get(http, server.port(), "/").statusCode());
+        }
+        assertEquals(403, RedirectServer.httpStatus(LinkStatus.FORBIDDEN));
+    }
+
+    @Test
+    void headResolvesWithoutCountingClick() throws Exception {
+        var s = svc(Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+        var c = s.create(u, "https://example.com/a", 1);
+        var http = client();
+
+        try (var server = RedirectServer.start(s, 0)) {
+            var req = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/" + c.code()))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+            for (int i = 0; i < 3; i++) {
+                var head = http.send(req, HttpResponse.BodyHandlers.discarding());
+                assertEquals(302, head.statusCode());
+                assertEquals("https://example.com/a", head.headers().firstValue("Location").orElseThrow());
+            }
+            assertEquals(0, s.list(u).get(0).clicks());
+
+            assertEquals(302, get(http, server.port(), "/" + c.code()).statusCode());
+            assertEquals(1, s.list(u).get(0).clicks());
+            assertEquals(429, http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(1, s.list(u).get(0).clicks());
+        }
+    }
+
+    @Test
+    void expiredLinkIsGone() throws Exception {
+        var s = svc(Duration.ofMillis(1));
+        var c = s.create(UUID.randomUUID(), "https://example.com/a", 5);
+        Thread.sleep(5);
+
+        try (var server = RedirectServer.start(s, 0)) {
+            assertEquals(410, get(client(), server.port(), "/" + c.code()).statusCode());
+        }
+    }
+
+    // нагрузка: -Dload.requests (по умолчанию 5000), -Dload.clients (8), -Dload.links (1000)
+    @Test
+    void loadReportsLatencyAndThroughput() throws Exception {
+        int requests = Integer.getInteger("load.requests", 5000);
+        int clients = Integer.getInteger("load.clients", 8);
+        int links = Integer.getInteger("load.links", 1000);
+
+        var s = svc(Duration.ofHours(1));
+        List<String> codes = new ArrayList<>(links);
+        for (int i = 0; i < links; i++) {
+            codes.add(s.create(UUID.randomUUID(), "https://example.com/" + i, Integer.MAX_VALUE).code());
+        }
+
+        var http = client();
+        long[] lat = new long[requests];
+        var next = new AtomicInteger();
+        var bad = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try (var server = RedirectServer.start(s, 0)) {
+            int port = server.port();
+            for (int i = 0; i < 100; i++) get(http, port, "/" + codes.get(i % links));
+
+            long t0 = System.nanoTime();
+            List<Future<?>> fs = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                fs.add(pool.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        long start = System.nanoTime();
+                        var r = get(http, port, "/" + codes.get(i % links));
+                        lat[i] = System.nanoTime() - start;
+                        if (r.statusCode() != 302) bad.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : fs) f.get();
+            long elapsed = System.nanoTime() - t0;
+
+            Arrays.sort(lat);
+            System.out.printf("[LOAD] requests=%d clients=%d p50=%.3f ms p99=%.3f ms rps=%.0f%n",
+                    requests, clients,
+                    lat[requests / 2] / 1e6, lat[(int) (requests * 0.99)] / 1e6,
+                    requests / (elapsed / 1e9));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0, bad.get());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.shortener;
+
+import com.example.shortener.core.service.SequentialCodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequentialCodeGeneratorTest {
+
+    @Test
+    void codesAreUniqueAcrossThreadsAndNodes() throws Exception {
+        var node0 = new SequentialCodeGenerator(6, 0, 2, 42L);
+        var node1 = new SequentialCodeGenerator(6, 1, 2, 42L);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        UUID u = UUID.randomUUID();
+
+        List<Thread> ts = new ArrayList<>();
+        for (var gen : List.of(node0, node1, node0, node1)) {
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) assertTrue(seen.add(gen.allocate(u, "https://example.com")));
+            });
+            ts.add(t);
+            t.start();
+        }
+        for (Thread t : ts) t.join();
+        assertEquals(80_000, seen.size());
+    }
+
+    @Test
+    void consecutiveCodesAreNotSequential() {
+        var gen = new SequentialCodeGenerator(8, 0, 1, 7L);
+        UUID u = UUID.randomUUID();
+        String a = gen.allocate(u, "https://example.com");
+        String b = gen.allocate(u, "https://example.com");
+        assertEquals(8, a.length());
+        assertTrue(a.matches("[0-9A-Za-z]+"));
+        assertNotEquals(a.substring(0, 7), b.substring(0, 7));
+    }
+
+    @Test
+    void serviceCreatesWithSequentialCodes() {
+        var s = new ShortenerService(new InMemoryLinkRepository(), new SequentialCodeGenerator(12, 0, 1, 1L),
+                "clck.ru", Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+        var a = s.create(u, "https://example.com", 5);
+        var b = s.create(u, "https://example.com", 5);
+        assertEquals(12, a.code().length());
+        assertNotEquals(a.code(), b.code());
+        assertEquals(2, s.list(u).size());
+    }
+
+    @Test
+    void advancePastSkipsCodesIssuedBeforeRestart() {
+        UUID u = UUID.randomUUID();
+        var before = new SequentialCodeGenerator(8, 0, 1, 99L);
+        Set<String> issued = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 5000; i++) issued.add(before.allocate(u, "https://example.com"));
+
+        var after = new SequentialCodeGenerator(8, 0, 1, 99L);
+        issued.forEach(after::advancePast);
+        for (int i = 0; i < 5000; i++) assertFalse(issued.contains(after.allocate(u, "https://example.com")));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.service.CodeAllocator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.InMemoryLinkRepository;
+import com.example.shortener.infra.LatencyHistogram;
+import com.example.shortener.infra.ServiceMetrics;
+import com.example.shortener.infra.ServiceMetrics.Op;
+import com.example.shortener.infra.ServiceMetrics.OpStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceMetricsTest {
+
+    private static OpStats op(ServiceMetrics m, Op op) {
+        return m.snapshot().ops().get(op.ordinal());
+    }
+
+    @Test
+    void histogramPercentilesStayWithinBucketError() {
+        var h = new LatencyHistogram();
+        for (int i = 1; i <= 100_000; i++) h.record(i * 10L);
+
+        assertEquals(100_000, h.count());
+        assertEquals(1_000_000, h.max());
+        assertEquals(500_005, h.mean(), 500_005 / 16.0);
+        for (double q : new double[] {0.5, 0.9, 0.99}) {
+            double exact = q * 1_000_000;
+            assertEquals(exact, h.percentile(q), exact / 16, "q=" + q);
+        }
+        assertEquals(0, new LatencyHistogram().percentile(0.5));
+    }
+
+    @Test
+    void countsOutcomesPerOperationAndStatus() {
+        var m = new ServiceMetrics();
+        var s = ShortenerService.builder(new InMemoryLinkRepository(), (u, url) -> "c" + url.length(), "clck.ru", Duration.ofSeconds(60))
+                .metrics(m)
+                .build();
+        UUID u = UUID.randomUUID();
+        String code = s.create(u, "https://example.com/a", 1).code();
+        assertThrows(IllegalArgumentException.class, () -> s.create(u, "ftp://x", 1));
+
+        s.open(code);
+        s.open(code);
+        s.open("missing");
+        s.updateLimit(UUID.randomUUID(), code, 5);
+        s.delete(u, code);
+        s.list(u);
+        s.cleanupExpiredNow();
+
+        OpStats create = op(m, Op.CREATE);
+        assertEquals(2, create.count());
+        assertEquals(1, create.byStatus()[LinkStatus.ACTIVE.ordinal()]);
+        assertEquals(1, create.byStatus()[LinkStatus.INVALID_INPUT.ordinal()]);
+
+        OpStats open = op(m, Op.OPEN);
+        assertEquals(3, open.count());
+        assertEquals(1, open.byStatus()[LinkStatus.ACTIVE.ordinal()]);
+        assertEquals(1, open.byStatus()[LinkStatus.LIMIT_EXHAUSTED.ordinal()]);
+        assertEquals(1, open.byStatus()[LinkStatus.NOT_FOUND.ordinal()]);
+        assertTrue(open.p99Micros() >= open.p50Micros() && open.maxMicros() > 0);
+
+        assertEquals(1, op(m, Op.UPDATE_LIMIT).byStatus()[LinkStatus.FORBIDDEN.ordinal()]);
+        assertEquals(1, op(m, Op.DELETE).byStatus()[LinkStatus.ACTIVE.ordinal()]);
+        assertEquals(1, op(m, Op.LIST).count());
+        assertEquals(1, m.snapshot().cleanupSweeps());
+    }
+
+    @Test
+    void countsCollisionRetries() {
+        AtomicInteger next = new AtomicInteger();
+        String[] seq = {"AAAA", "AAAA", "AAAA", "BBBB"};
+        CodeAllocator stub = (user, url) -> seq[next.getAndIncrement() % seq.length];
+        var m = new ServiceMetrics();
+        var s = ShortenerService.builder(new InMemoryLinkRepository(), stub, "clck.ru", Duration.ofSeconds(60))
+                .metrics(m)
+                .build();
+        UUID u = UUID.randomUUID();
+
+        assertEquals("AAAA", s.create(u, "https://example.com/0", 1).code());
+        assertEquals("BBBB", s.create(u, "https://example.com/1", 1).code());
+        assertEquals(2, m.snapshot().collisionRetries());
+    }
+
+    @Test
+    void disabledMetricsRecordNothing() {
+        var s = ShortenerService.builder(new InMemoryLinkRepository(), (u, url) -> "x", "clck.ru", Duration.ofSeconds(60))
+                .build();
+        s.open(s.create(null, "https://example.com", 1).code());
+        assertTrue(ServiceMetrics.OFF.snapshot().ops().stream().allMatch(o -> o.count() == 0));
+    }
+
+    @Test
+    void snapshotRendersTextAndJsonWithSources() {
+        var m = new ServiceMetrics();
+        Map<String, Number> cache = new LinkedHashMap<>();
+        cache.put("hits", 3);
+        cache.put("hitRatio", 0.75);
+        m.source("cache", () -> cache);
+        m.record(Op.OPEN, LinkStatus.NOT_FOUND, System.nanoTime());
+
+        var text = new StringBuilder();
+        m.snapshot().appendText(text);
+        assertTrue(text.toString().contains("NOT_FOUND=1"), text.toString());
+        assertTrue(text.toString().contains("cache: hits=3 hitRatio=0.75"), text.toString());
+
+        var json = new StringBuilder();
+        m.snapshot().appendJson(json);
+        assertTrue(json.toString().contains("\"open\":{\"count\":1,\"status\":{\"NOT_FOUND\":1}"), json.toString());
+        assertTrue(json.toString().endsWith(",\"cache\":{\"hits\":3,\"hitRatio\":0.75}}"), json.toString());
+    }
+}
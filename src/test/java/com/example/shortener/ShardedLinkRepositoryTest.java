@@ -0,0 +1,195 @@
+package com.example.shortener;
+
+import com.example.shortener.core.model.LinkStatus;
+import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeGenerator;
+import com.example.shortener.core.service.ShortenerService;
+import com.example.shortener.infra.*;
+import com.example.shortener.infra.LinkRepository.OwnerCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedLinkRepositoryTest {
+
+    private static ShortLink link(String code, UUID owner, Instant createdAt, Instant expiresAt) {
+        return new ShortLink(code, owner, "https://example.com/" + code, createdAt, expiresAt, 5);
+    }
+
+    private static ShardedLinkRepository inProcess(int n) {
+        List<LinkRepository> shards = new ArrayList<>();
+        for (int i = 0; i < n; i++) shards.add(new InMemoryLinkRepository(true));
+        return new ShardedLinkRepository(shards);
+    }
+
+    @Test
+    void ringIsBalancedAndMovesFewCodesWhenShardAdded() {
+        var four = new ShardRing(4, 128);
+        var five = new ShardRing(5, 128);
+        int[] load = new int[4];
+        int moved = 0, n = 100_000;
+        for (int i = 0; i < n; i++) {
+            String code = "c" + i;
+            int a = four.shardOf(code);
+            load[a]++;
+            int b = five.shardOf(code);
+            if (a != b) {
+                moved++;
+                assertEquals(4, b, "a code may only move to the new shard");
+            }
+        }
+        for (int l : load) assertTrue(l > n / 4 * 0.8 && l < n / 4 * 1.2, Arrays.toString(load));
+        assertTrue(moved > n / 5 * 0.7 && moved < n / 5 * 1.3, "moved=" + moved);
+    }
+
+    @Test
+    void scatterGatherKeepsOwnerOrderAndPaging() throws Exception {
+        try (var repo = inProcess(4)) {
+            UUID u = UUID.randomUUID();
+            Instant t = Instant.parse("2030-01-01T00:00:00Z");
+            for (int i = 0; i < 50; i++) repo.save(link("c" + i, u, t.plusSeconds(i / 3), t.plusSeconds(600)));
+            repo.save(link("x", UUID.randomUUID(), t, t.plusSeconds(600)));
+
+            List<ShortLink> all = repo.listByOwner(u);
+            assertEquals(50, all.size());
+            for (int i = 1; i < all.size(); i++) {
+                assertTrue(OwnerCursor.of(all.get(i - 1)).compareTo(OwnerCursor.of(all.get(i))) < 0);
+            }
+
+            List<String> paged = new ArrayList<>();
+            OwnerCursor after = null;
+            while (true) {
+                List<ShortLink> page = repo.listByOwner(u, after, 7);
+                if (page.isEmpty()) break;
+                page.forEach(l -> paged.add(l.code));
+                after = OwnerCursor.of(page.get(page.size() - 1));
+            }
+            assertEquals(all.stream().map(l -> l.code).toList(), paged);
+            assertEquals(51, repo.size());
+        }
+    }
+
+    @Test
+    void expiryRunsAcrossAllShards() throws Exception {
+        try (var repo = inProcess(3)) {
+            UUID u = UUID.randomUUID();
+            Instant t = Instant.parse("2030-01-01T00:00:00Z");
+            for (int i = 0; i < 30; i++) repo.save(link("e" + i, u, t, t.plusSeconds(10 + i)));
+            for (int i = 0; i < 10; i++) repo.save(link("k" + i, u, t, t.plusSeconds(1000)));
+
+            assertEquals(t.plusSeconds(10), repo.nextExpiry());
+            assertEquals(5, repo.drainExpired(t.plusSeconds(100), 5));
+            assertEquals(25, repo.deleteExpired(t.plusSeconds(100)));
+            assertEquals(10, repo.size());
+            assertEquals(t.plusSeconds(1000), repo.nextExpiry());
+        }
+    }
+
+    @Test
+    void idempotentCreateIsDedupedAcrossShards() throws Exception {
+        try (var repo = inProcess(4)) {
+            var s = ShortenerService.builder(repo, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60))
+                    .idempotentCreate(true)
+                    .build();
+            UUID u = UUID.randomUUID();
+            Set<String> codes = new HashSet<>();
+            for (int i = 0; i < 20; i++) codes.add(s.create(u, "https://example.com/same", 100).code());
+            assertEquals(1, codes.size());
+        }
+    }
+
+    @Test
+    void serviceWorksOverSocketShards() throws Exception {
+        List<ShardServer> servers = new ArrayList<>();
+        List<LinkRepository> clients = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            var server = ShardServer.start(new InMemoryLinkRepository(), 0);
+            servers.add(server);
+            clients.add(new RemoteLinkRepository(new InetSocketAddress("127.0.0.1", server.port()), 4));
+        }
+        try (var repo = new ShardedLinkRepository(clients)) {
+            var s = new ShortenerService(repo, new CodeGenerator(8), "clck.ru", Duration.ofSeconds(60));
+            UUID u = UUID.randomUUID();
+            var a = s.create(u, "https://example.com/путь", 2);
+            var items = s.createAll(u, List.of("https://example.com/1", "https://example.com/2", "bad"), 3);
+            assertFalse(items.get(2).ok());
+
+            assertEquals(LinkStatus.ACTIVE, s.open(a.code()).status());
+            assertEquals(LinkStatus.ACTIVE, s.open(a.code()).status());
+            assertEquals(LinkStatus.LIMIT_EXHAUSTED, s.open(a.code()).status());
+            assertEquals(LinkStatus.INVALID_INPUT, s.updateLimit(u, a.code(), 1).status());
+            assertEquals(LinkStatus.ACTIVE, s.updateLimit(u, a.code(), 4).status());
+            assertEquals(4, repo.get(a.code()).maxClicks());
+            assertEquals("https://example.com/путь", repo.get(a.code()).originalUrl);
+
+            assertEquals(3, s.list(u).size());
+            List<String> seen = new ArrayList<>();
+            repo.forEach(l -> seen.add(l.code));
+            assertEquals(3, seen.size());
+            assertEquals(LinkStatus.ACTIVE, s.delete(u, a.code()).status());
+            assertEquals(LinkStatus.NOT_FOUND, s.open(a.code()).status());
+            assertEquals(2, repo.size());
+        } finally {
+            for (ShardServer server : servers) server.close();
+        }
+    }
+
+    // шард, у которого get падает сразу, а forEach — после первой ссылки, когда часть ответа уже ушла
+    private static LinkRepository failing(LinkRepository delegate) {
+        return (LinkRepository) Proxy.newProxyInstance(LinkRepository.class.getClassLoader(),
+                new Class<?>[]{LinkRepository.class}, (proxy, m, args) -> {
+                    if (m.getName().equals("get") && "boom".equals(args[0])) throw new IllegalStateException("get failed");
+                    if (m.getName().equals("forEach")) {
+                        @SuppressWarnings("unchecked")
+                        var action = (java.util.function.Consumer<ShortLink>) args[0];
+                        int[] n = {0};
+                        delegate.forEach(l -> {
+                            if (n[0]++ == 1) throw new IllegalStateException("forEach failed");
+                            action.accept(l);
+                        });
+                        return null;
+                    }
+                    try {
+                        return m.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    // рассинхронизированный клиент не падает, а ждёт ответа вечно
+    @Test
+    @Timeout(30)
+    void handlerFailureDoesNotDesyncPooledConnection() throws Exception {
+        var backing = new InMemoryLinkRepository();
+        Instant now = Instant.now();
+        UUID u = UUID.randomUUID();
+        for (int i = 0; i < 3; i++) backing.save(link("c" + i, u, now, now.plusSeconds(60)));
+        try (var server = ShardServer.start(failing(backing), 0);
+             var remote = new RemoteLinkRepository(new InetSocketAddress("127.0.0.1", server.port()), 1)) {
+            // ответ ещё не начат: ERR, соединение остаётся в пуле и согласованным
+            var e = assertThrows(IllegalStateException.class, () -> remote.get("boom"));
+            assertTrue(e.getMessage().contains("get failed"), e.getMessage());
+            assertEquals("c0", remote.get("c0").code);
+
+            // OK и одна ссылка уже отправлены: сервер закрывает соединение вместо ERR посреди данных
+            List<String> seen = new ArrayList<>();
+            assertThrows(UncheckedIOException.class, () -> remote.forEach(l -> seen.add(l.code)));
+            assertEquals(1, seen.size());
+
+            // новое соединение из пула отвечает на свои запросы, а не на хвост старого ответа
+            assertEquals(3, remote.size());
+            assertTrue(remote.exists("c2"));
+            assertEquals("c1", remote.get("c1").code);
+        }
+    }
+}
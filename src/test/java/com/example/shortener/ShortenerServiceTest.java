@@ -2,6 +2,7 @@ package com.example.shortener;
 
 import com.example.shortener.core.model.LinkStatus;
 import com.example.shortener.core.model.ShortLink;
+import com.example.shortener.core.service.CodeAllocator;
 import com.example.shortener.core.service.CodeGenerator;
 import com.example.shortener.core.service.ShortenerService;
 import com.example.shortener.infra.InMemoryLinkRepository;
@@ -10,6 +11,8 @@ import org.junit.jupiter.api.Test;
 import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -250,4 +253,126 @@ public class ShortenerServiceTest {
         assertEquals(LinkStatus.NOT_FOUND, s.open(c1.code()).status());
         assertEquals(LinkStatus.NOT_FOUND, s.open(c2.code()).status());
     }
-}
\ No newline at end of file
+
+    @Test
+    void concurrentOpensNeverExceedMaxClicks() throws Exception {
+        var s = svc(Duration.ofSeconds(60));
+        UUID owner = UUID.randomUUID();
+        var c = s.create(owner, "https://ya.ru", 1000);
+
+        int threads = 8;
+        AtomicInteger active = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] ts = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            ts[i] = new Thread(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                for (int k = 0; k < 500; k++) {
+                    if (s.open(c.code()).status() == LinkStatus.ACTIVE) active.incrementAndGet();
+                }
+            });
+            ts[i].start();
+        }
+        start.countDown();
+        for (Thread t : ts) t.join();
+
+        assertEquals(1000, active.get());
+        assertEquals(1000, s.list(owner).get(0).clicks());
+    }
+
+    @Test
+    void createAllReturnsResultsInOrderWithInlineFailures() {
+        var s = svc(Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+
+        var res = s.createAll(u, List.of("https://example.com/a", "ftp://nope", "https://example.com/b"), 3);
+
+        assertEquals(3, res.size());
+        assertTrue(res.get(0).ok());
+        assertFalse(res.get(1).ok());
+        assertEquals("ftp://nope", res.get(1).url());
+        assertTrue(res.get(1).error().contains("http"));
+        assertTrue(res.get(2).ok());
+        assertEquals(2, s.list(u).size());
+        assertEquals(LinkStatus.ACTIVE, s.open(res.get(2).result().code()).status());
+    }
+
+    @Test
+    void createAllSkipsCodesTakenInsideBatchAndInRepository() {
+        String[] seq = {"AAAA", "AAAA", "BBBB", "BBBB", "AAAA", "CCCC"};
+        AtomicInteger next = new AtomicInteger();
+        CodeAllocator stub = (user, url) -> seq[next.getAndIncrement() % seq.length];
+        var s = new ShortenerService(new InMemoryLinkRepository(), stub, "clck.ru", Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+
+        var first = s.create(u, "https://example.com/0", 1);
+        assertEquals("AAAA", first.code());
+        var res = s.createAll(u, List.of("https://example.com/1", "https://example.com/2"), 1);
+
+        assertEquals("BBBB", res.get(0).result().code());
+        assertEquals("CCCC", res.get(1).result().code());
+    }
+
+    private static ShortenerService idempotent(Duration ttl) {
+        return ShortenerService.builder(new InMemoryLinkRepository(true), new CodeGenerator(8), "clck.ru", ttl)
+                .idempotentCreate(true)
+                .build();
+    }
+
+    @Test
+    void idempotentCreateReturnsLiveLinkUntilExhaustedOrDeleted() {
+        var s = idempotent(Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+
+        var a = s.create(u, "https://example.com/x", 1);
+        assertEquals(a.code(), s.create(u, " https://example.com/x", 1).code());
+        assertNotEquals(a.code(), s.create(UUID.randomUUID(), "https://example.com/x", 1).code());
+
+        assertEquals(LinkStatus.ACTIVE, s.open(a.code()).status());
+        var b = s.create(u, "https://example.com/x", 1);
+        assertNotEquals(a.code(), b.code());
+
+        assertEquals(LinkStatus.ACTIVE, s.delete(u, b.code()).status());
+        var c = s.create(u, "https://example.com/x", 1);
+        assertNotEquals(b.code(), c.code());
+        assertEquals(c.code(), s.createAll(u, List.of("https://example.com/x", "https://example.com/y", "https://example.com/y"), 1)
+                .get(0).result().code());
+        assertEquals(3, s.list(u).size());
+    }
+
+    @Test
+    void idempotentCreateDoesNotReuseExpiredLink() throws Exception {
+        var s = idempotent(Duration.ofMillis(20));
+        UUID u = UUID.randomUUID();
+
+        var a = s.create(u, "https://example.com/x", 5);
+        Thread.sleep(30);
+        assertNotEquals(a.code(), s.create(u, "https://example.com/x", 5).code());
+    }
+
+    @Test
+    void concurrentIdempotentRetriesShareOneLink() throws Exception {
+        var s = idempotent(Duration.ofSeconds(60));
+        UUID u = UUID.randomUUID();
+        int threads = 8;
+        var start = new CountDownLatch(1);
+        var codes = java.util.concurrent.ConcurrentHashMap.<String>newKeySet();
+        Thread[] ts = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            ts[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 200; i++) codes.add(s.create(u, "https://example.com/retry", 1000).code());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            ts[t].start();
+        }
+        start.countDown();
+        for (Thread t : ts) t.join();
+
+        assertEquals(1, codes.size());
+        assertEquals(1, s.list(u).size());
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.shortener;
+
+import com.example.shortener.core.service.UrlCanonicalizer;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlCanonicalizerTest {
+
+    @Test
+    void normalizesCaseDefaultPortEscapesAndDotSegments() {
+        assertEquals("https://example.com/a/c?q=%7B#F", UrlCanonicalizer.canonicalize(" HTTPS://Example.COM:443/a/./b/../c?q=%7b#F "));
+        assertEquals("http://u:p@example.com:8080/~x/%2F", UrlCanonicalizer.canonicalize("http://u:p@example.com:08080/%7ex/%2f"));
+        assertEquals("http://example.com/", UrlCanonicalizer.canonicalize("http://example.com:80/a/.."));
+        assertEquals("http://example.com/x", UrlCanonicalizer.canonicalize("http://example.com:/../x"));
+        assertEquals("http://example.com/a/", UrlCanonicalizer.canonicalize("http://example.com/a/%2E"));
+        assertEquals("http://[2001:db8::ff00:1.2.3.4]:8443/", UrlCanonicalizer.canonicalize("http://[2001:DB8::FF00:1.2.3.4]:8443/"));
+        assertEquals("https://xn--e1afmkfd.xn--p1ai/путь", UrlCanonicalizer.canonicalize("https://пример.рф/путь"));
+        assertEquals("https://xn--e1afmkfd.xn--p1ai", UrlCanonicalizer.canonicalize("https://ПРИМЕР.РФ"));
+    }
+
+    @Test
+    void returnsInputItselfWhenAlreadyCanonical() {
+        String url = "https://example.com/путь?q=1&t=%E2%82%AC#x";
+        assertSame(url, UrlCanonicalizer.canonicalize(url));
+        assertEquals(url, UrlCanonicalizer.canonicalize("  " + url + "\n"));
+    }
+
+    @Test
+    void rejectsWhatServiceRejected() {
+        assertMessage("URL must start with http:// or https://", "ftp://ya.ru");
+        assertMessage("URL must start with http:// or https://", "not-a-url");
+        assertMessage("URL must start with http:// or https://", "");
+        assertMessage("URL must have host", "http://");
+        assertMessage("URL must have host", "http:ya.ru");
+        assertMessage("URL must have host", "http://a_b.com/");
+        assertMessage("URL must have host", "http://1.2.3.999/");
+        assertMessage("URL must have host", "http://[1::2::3]/");
+        assertMessage("URL must have host", "http://ya.ru:8a/");
+        assertMessage("URL port must be <= 65535", "http://ya.ru:65536/");
+        assertMessage("Illegal character in path at index 14: http://ya.ru/a b", "http://ya.ru/a b");
+        assertMessage("Malformed escape pair at index 15: http://ya.ru/?q%4", "http://ya.ru/?q%4");
+    }
+
+    private static void assertMessage(String expected, String url) {
+        var e = assertThrows(IllegalArgumentException.class, () -> UrlCanonicalizer.canonicalize(url));
+        assertEquals(expected, e.getMessage());
+    }
+
+    private static final String[] SCHEMES = {"http", "https", "HTTP", "hTTps", "ftp", "http:/", "", "ht+tp"};
+    private static final String[] USERS = {"", "", "", "user@", "u:p@", "%7Eu%3a@", "a@b@", "@", "пользователь@"};
+    private static final String[] HOSTS = {"example.com", "Example.COM", "a-b.c1.org", "localhost", "123", "1.2.3.4",
+            "01.2.3.4", "256.1.1.1", "1.2.3.4.", "a.com.", "a_b.com", "-a.com", "a-.com", "a..b", "a.1com", "xn--e1afmkfd.xn--p1ai",
+            "[::1]", "[2001:DB8::1]", "[::ffff:1.2.3.4]", "[1:2:3:4:5:6:7:8]", "[1:2:3:4:5:6:7::]", "[1::2::3]", "[::1%25eth0]", "[g::1]", ""};
+    private static final String[] PORTS = {"", "", "", ":", ":80", ":443", ":0080", ":8080", ":65535", ":x", ":0"};
+    private static final String[] SEGMENTS = {"", "a", "b", ".", "..", "%2e", "%2E%2e", "путь", "%7e", "%7E", "%41", "%2f", "%c3%a9",
+            "%zz", "a b", "~x", "[x]", "a:b", "@", "!$&'()*+,;=", "%", "\"", "a\tb", "x%2"};
+    private static final String[] QUERIES = {"", "", "?", "?a=1&b=%7e", "?q=[1]", "?x?y", "?%E2%82%ac", "?a/b", "?a#", "?{}"};
+    private static final String[] FRAGMENTS = {"", "", "#", "#f", "#a/b?c", "#x#y", "#%7e", "#[1]", "#я"};
+    private static final String NOISE = " !\"#$%&'()*+,-./0123456789:;<=>?@AZ[\\]^_`az{|}~é  \u0007";
+
+    // корпус из фрагментов плюс случайные вставки символов; -Dcanon.samples (по умолчанию 200000), -Dcanon.seed.
+    // Всё, что принимает URI с хостом, принимается, и результат означает тот же ресурс; отличия только в IDN-хостах и портах > 65535
+    @Test
+    void corpusParityWithUri() {
+        int samples = Integer.getInteger("canon.samples", 200_000);
+        Random rnd = new Random(Long.getLong("canon.seed", 42));
+        int accepted = 0;
+        for (int n = 0; n < samples; n++) {
+            String url = sample(rnd);
+            if (rnd.nextInt(3) == 0) {
+                int at = rnd.nextInt(url.length() + 1);
+                url = url.substring(0, at) + NOISE.charAt(rnd.nextInt(NOISE.length())) + url.substring(at);
+            }
+            URI reference = accepted(url);
+            String canonical;
+            try {
+                canonical = UrlCanonicalizer.canonicalize(url);
+            } catch (IllegalArgumentException e) {
+                if (reference != null && reference.getPort() <= 65_535) fail(url + " accepted by URI, rejected: " + e.getMessage());
+                continue;
+            }
+            if (reference == null) {
+                assertTrue(hasNonAsciiHost(url), url + " rejected by URI, accepted as " + canonical);
+                continue;
+            }
+            accepted++;
+            assertSame(canonical, UrlCanonicalizer.canonicalize(canonical), url);
+            assertEquivalent(reference, URI.create(canonical), url + " -> " + canonical);
+        }
+        System.out.printf("[CANON] samples=%d acceptedByUri=%d%n", samples, accepted);
+        assertTrue(accepted > samples / 20, "corpus too narrow: " + accepted);
+    }
+
+    private static String sample(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        if (rnd.nextInt(10) == 0) sb.append(' ');
+        sb.append(pick(rnd, SCHEMES)).append("://").append(pick(rnd, USERS)).append(pick(rnd, HOSTS)).append(pick(rnd, PORTS));
+        for (int i = rnd.nextInt(4); i > 0; i--) sb.append('/').append(pick(rnd, SEGMENTS));
+        sb.append(pick(rnd, QUERIES)).append(pick(rnd, FRAGMENTS));
+        if (rnd.nextInt(10) == 0) sb.append('\n');
+        return sb.toString();
+    }
+
+    private static String pick(Random rnd, String[] values) {
+        return values[rnd.nextInt(values.length)];
+    }
+
+    // прежняя проверка сервиса
+    private static URI accepted(String url) {
+        try {
+            URI uri = URI.create(url.trim());
+            String scheme = uri.getScheme();
+            if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) return null;
+            return uri.getHost() == null || uri.getHost().isBlank() ? null : uri;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasNonAsciiHost(String url) {
+        String rest = url.trim().substring(url.trim().indexOf("//") + 2);
+        for (int i = 0; i < rest.length() && "/?#".indexOf(rest.charAt(i)) < 0; i++) {
+            if (rest.charAt(i) >= 128) return true;
+        }
+        return false;
+    }
+
+    private static void assertEquivalent(URI expected, URI actual, String message) {
+        assertEquals(expected.getScheme().toLowerCase(), actual.getScheme(), message);
+        assertTrue(expected.getHost().equalsIgnoreCase(actual.getHost()), message);
+        assertEquals(port(expected), port(actual), message);
+        assertEquals(escapes(expected.getRawUserInfo()), actual.getRawUserInfo(), message);
+        // URI.normalize схлопывает пустые сегменты, а RFC 3986 их сохраняет и не оставляет ".." в начале пути
+        String path = URI.create("http://h" + emptySegments(escapes(expected.getRawPath()))).normalize().getRawPath();
+        while (path.startsWith("/../")) path = path.substring(3);
+        if (path.equals("/..")) path = "/";
+        assertEquals(path, emptySegments(actual.getRawPath()), message);
+        assertEquals(escapes(expected.getRawQuery()), actual.getRawQuery(), message);
+        assertEquals(escapes(expected.getRawFragment()), actual.getRawFragment(), message);
+    }
+
+    private static String emptySegments(String path) {
+        return path.replaceAll("/(?=/)", "/_e_");
+    }
+
+    private static int port(URI uri) {
+        return uri.getPort() >= 0 ? uri.getPort() : uri.getScheme().equalsIgnoreCase("https") ? 443 : 80;
+    }
+
+    private static final Pattern ESCAPE = Pattern.compile("%([0-9A-Fa-f]{2})");
+
+    // %XX незарезервированного символа — сам символ, остальные — заглавными
+    private static String escapes(String raw) {
+        if (raw == null) return null;
+        Matcher m = ESCAPE.matcher(raw);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            char c = (char) Integer.parseInt(m.group(1), 16);
+            boolean unreserved = Character.isLetterOrDigit(c) && c < 128 || "-._~".indexOf(c) >= 0;
+            m.appendReplacement(sb, Matcher.quoteReplacement(unreserved ? String.valueOf(c) : "%" + m.group(1).toUpperCase()));
+        }
+        return m.appendTail(sb).toString();
+    }
+}